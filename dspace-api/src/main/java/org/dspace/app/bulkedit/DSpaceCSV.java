@@ -109,132 +109,169 @@ public class DSpaceCSV implements Serializable
             input = new BufferedReader(new InputStreamReader(new FileInputStream(f),"UTF-8"));
 
             // Read the heading line
-            String head = input.readLine();
-            String[] headingElements = head.split(escapedFieldSeparator);
-            int columnCounter = 0;
-            for (String element : headingElements)
+            readHeadings(input, c);
+
+            // Read each subsequent line
+            String record;
+            while ((record = readRecord(input)) != null)
+            {
+                addItem(record);
+            }
+        }
+        finally
+        {
+            if (input != null)
             {
-                columnCounter++;
+                input.close();
+            }
+        }
+    }
 
-                // Remove surrounding quotes if there are any
-                if ((element.startsWith("\"")) && (element.endsWith("\"")))
-                {
-                    element = element.substring(1, element.length() - 1);
-                }
+    /**
+     * Read and check the heading line of a CSV file
+     *
+     * @param input The reader of the file, at its first line
+     * @param c The DSpace Context
+     *
+     * @throws Exception thrown if there is an error reading the file, or if a heading is invalid
+     */
+    final void readHeadings(BufferedReader input, Context c) throws Exception
+    {
+        String head = input.readLine();
+        String[] headingElements = head.split(escapedFieldSeparator);
+        int columnCounter = 0;
+        for (String element : headingElements)
+        {
+            columnCounter++;
 
+            // Remove surrounding quotes if there are any
+            if ((element.startsWith("\"")) && (element.endsWith("\"")))
+            {
+                element = element.substring(1, element.length() - 1);
+            }
+
+            // Store the heading
+            if ("collection".equals(element))
+            {
                 // Store the heading
-                if ("collection".equals(element))
-                {
-                    // Store the heading
-                    headings.add(element);
-                }
-                // Store the action
-                else if ("action".equals(element))
-                {
-                    // Store the heading
-                    headings.add(element);
+                headings.add(element);
+            }
+            // Store the action
+            else if ("action".equals(element))
+            {
+                // Store the heading
+                headings.add(element);
+            }
+            else if (!"id".equals(element))
+            {
+                String authorityPrefix = "";
+                AuthorityValue authorityValueType = MetadataImport.getAuthorityValueType(element);
+                if (authorityValueType != null) {
+                    String authorityType = authorityValueType.getAuthorityType();
+                    authorityPrefix = element.substring(0, authorityType.length() + 1);
+                    element = element.substring(authorityPrefix.length());
                 }
-                else if (!"id".equals(element))
-                {
-                    String authorityPrefix = "";
-                    AuthorityValue authorityValueType = MetadataImport.getAuthorityValueType(element);
-                    if (authorityValueType != null) {
-                        String authorityType = authorityValueType.getAuthorityType();
-                        authorityPrefix = element.substring(0, authorityType.length() + 1);
-                        element = element.substring(authorityPrefix.length());
-                    }
-
-                    // Verify that the heading is valid in the metadata registry
-                    String[] clean = element.split("\\[");
-                    String[] parts = clean[0].split("\\.");
 
-                    if (parts.length < 2) {
-                        throw new MetadataImportInvalidHeadingException(element,
-                                                                        MetadataImportInvalidHeadingException.ENTRY,
-                                                                        columnCounter);
-                    }
+                // Verify that the heading is valid in the metadata registry
+                String[] clean = element.split("\\[");
+                String[] parts = clean[0].split("\\.");
 
-                    String metadataSchema = parts[0];
-                    String metadataElement = parts[1];
-                    String metadataQualifier = null;
-                    if (parts.length > 2) {
-                        metadataQualifier = parts[2];
-                    }
+                if (parts.length < 2) {
+                    throw new MetadataImportInvalidHeadingException(element,
+                                                                    MetadataImportInvalidHeadingException.ENTRY,
+                                                                    columnCounter);
+                }
 
-                    // Check that the scheme exists
-                    MetadataSchema foundSchema = MetadataSchema.find(c, metadataSchema);
-                    if (foundSchema == null) {
-                        throw new MetadataImportInvalidHeadingException(clean[0],
-                                                                        MetadataImportInvalidHeadingException.SCHEMA,
-                                                                        columnCounter);
-                    }
+                String metadataSchema = parts[0];
+                String metadataElement = parts[1];
+                String metadataQualifier = null;
+                if (parts.length > 2) {
+                    metadataQualifier = parts[2];
+                }
 
-                    // Check that the metadata element exists in the schema
-                    int schemaID = foundSchema.getSchemaID();
-                    MetadataField foundField = MetadataField.findByElement(c, schemaID, metadataElement, metadataQualifier);
-                    if (foundField == null) {
-                        throw new MetadataImportInvalidHeadingException(clean[0],
-                                                                        MetadataImportInvalidHeadingException.ELEMENT,
-                                                                        columnCounter);
-                    }
+                // Check that the scheme exists
+                MetadataSchema foundSchema = MetadataSchema.find(c, metadataSchema);
+                if (foundSchema == null) {
+                    throw new MetadataImportInvalidHeadingException(clean[0],
+                                                                    MetadataImportInvalidHeadingException.SCHEMA,
+                                                                    columnCounter);
+                }
 
-                    // Store the heading
-                    headings.add(authorityPrefix + element);
+                // Check that the metadata element exists in the schema
+                int schemaID = foundSchema.getSchemaID();
+                MetadataField foundField = MetadataField.findByElement(c, schemaID, metadataElement, metadataQualifier);
+                if (foundField == null) {
+                    throw new MetadataImportInvalidHeadingException(clean[0],
+                                                                    MetadataImportInvalidHeadingException.ELEMENT,
+                                                                    columnCounter);
                 }
-            }
 
-            // Read each subsequent line
-            StringBuilder lineBuilder = new StringBuilder();
-            String lineRead;
+                // Store the heading
+                headings.add(authorityPrefix + element);
+            }
+        }
+    }
 
-            while ((lineRead = input.readLine()) != null)
-            {
-                if (lineBuilder.length() > 0) {
-                    // Already have a previously read value - add this line
-                    lineBuilder.append("\n").append(lineRead);
-
-                    // Count the number of quotes in the buffer
-                    int quoteCount = 0;
-                    for (int pos = 0; pos < lineBuilder.length(); pos++) {
-                        if (lineBuilder.charAt(pos) == '"') {
-                            quoteCount++;
-                        }
-                    }
+    /**
+     * Read the next record of a CSV file, which spans several lines of the
+     * file if a quoted value contains new lines
+     *
+     * @param input The reader of the file, after its heading line
+     * @return The record, or null at the end of the file
+     *
+     * @throws IOException thrown if there is an error reading the file
+     */
+    static String readRecord(BufferedReader input) throws IOException
+    {
+        StringBuilder lineBuilder = new StringBuilder();
+        int quoteCount = 0;
+        String lineRead;
 
-                    if (quoteCount % 2 == 0) {
-                        // Number of quotes is a multiple of 2, add the item
-                        addItem(lineBuilder.toString());
-                        lineBuilder = new StringBuilder();
-                    }
-                } else if (lineRead.indexOf('"') > -1) {
-                    // Get the number of quotes in the line
-                    int quoteCount = 0;
-                    for (int pos = 0; pos < lineRead.length(); pos++) {
-                        if (lineRead.charAt(pos) == '"') {
-                            quoteCount++;
-                        }
-                    }
+        while ((lineRead = input.readLine()) != null)
+        {
+            if (lineBuilder.length() > 0) {
+                // Already have a previously read value - add this line
+                lineBuilder.append("\n").append(lineRead);
+                quoteCount += countQuotes(lineRead);
+
+                if (quoteCount % 2 == 0) {
+                    // Number of quotes is a multiple of 2, the record is complete
+                    return lineBuilder.toString();
+                }
+            } else if (lineRead.indexOf('"') > -1) {
+                // Get the number of quotes in the line
+                quoteCount = countQuotes(lineRead);
 
-                    if (quoteCount % 2 == 0) {
-                        // Number of quotes is a multiple of 2, add the item
-                        addItem(lineRead);
-                    } else {
-                        // Uneven quotes - add to the buffer and leave for later
-                        lineBuilder.append(lineRead);
-                    }
+                if (quoteCount % 2 == 0) {
+                    // Number of quotes is a multiple of 2, the record is complete
+                    return lineRead;
                 } else {
-                    // No previously read line, and no quotes in the line - add item
-                    addItem(lineRead);
+                    // Uneven quotes - add to the buffer and leave for later
+                    lineBuilder.append(lineRead);
                 }
+            } else {
+                // No previously read line, and no quotes in the line
+                return lineRead;
             }
         }
-        finally
-        {
-            if (input != null)
-            {
-                input.close();
+        return null;
+    }
+
+    /**
+     * Count the quotes in a line
+     *
+     * @param line The line
+     * @return The number of quotes
+     */
+    private static int countQuotes(String line)
+    {
+        int quoteCount = 0;
+        for (int pos = 0; pos < line.length(); pos++) {
+            if (line.charAt(pos) == '"') {
+                quoteCount++;
             }
         }
+        return quoteCount;
     }
 
     /**
@@ -399,11 +436,30 @@ public class DSpaceCSV implements Serializable
      * @throws Exception if something goes wrong with adding the Item
      */
     public final void addItem(Item i) throws Exception
+    {
+        DSpaceCSVLine line = toCSVLine(i);
+        if (line != null)
+        {
+            lines.add(line);
+            counter++;
+        }
+    }
+
+    /**
+     * Create the CSV line of a DSpace item, adding any new headings it needs
+     * to this CSV file, but not the line itself
+     *
+     * @param i The DSpace item
+     * @return The CSV line, or null if the item has no owning collection
+     *
+     * @throws Exception if something goes wrong with reading the Item
+     */
+    final DSpaceCSVLine toCSVLine(Item i) throws Exception
     {
         // If the item does not have an "owningCollection" the the below "getHandle()" call will fail
         // This should not happen but is here for safety.
         if (i.getOwningCollection() == null) {
-            return;
+            return null;
         }
 
         // Create the CSV line
@@ -460,8 +516,7 @@ public class DSpaceCSV implements Serializable
                 }
             }
         }
-        lines.add(line);
-        counter++;
+        return line;
     }
 
     /**
@@ -611,13 +666,8 @@ public class DSpaceCSV implements Serializable
     {
         // Create the headings line
         String[] csvLines = new String[counter + 1];
-        csvLines[0] = "id" + fieldSeparator + "collection";
-        List<String> headingsCopy = new ArrayList<String>(headings);
-        Collections.sort(headingsCopy);
-        for (String value : headingsCopy)
-        {
-            csvLines[0] = csvLines[0] + fieldSeparator + value;
-        }
+        List<String> headingsCopy = getSortedHeadings();
+        csvLines[0] = getHeadingLine(headingsCopy);
 
         Iterator<DSpaceCSVLine> i = lines.iterator();
         int c = 1;
@@ -642,11 +692,61 @@ public class DSpaceCSV implements Serializable
         BufferedWriter out = new BufferedWriter(
                              new OutputStreamWriter(
                              new FileOutputStream(filename), "UTF-8"));
-        for (String csvLine : getCSVLinesAsStringArray()) {
-            out.write(csvLine + "\n");
+        try
+        {
+            List<String> headingsCopy = getSortedHeadings();
+            out.write(getHeadingLine(headingsCopy));
+            out.write("\n");
+            for (DSpaceCSVLine line : lines)
+            {
+                out.write(line.toCSV(headingsCopy));
+                out.write("\n");
+            }
+            out.flush();
+        }
+        finally
+        {
+            out.close();
         }
-        out.flush();
-        out.close();
+    }
+
+    /**
+     * Get the headings in the order they are written out, without the id
+     * and collection headings which always come first
+     *
+     * @return The sorted headings
+     */
+    final List<String> getSortedHeadings()
+    {
+        List<String> headingsCopy = new ArrayList<String>(headings);
+        Collections.sort(headingsCopy);
+        return headingsCopy;
+    }
+
+    /**
+     * Create the heading line of the CSV file
+     *
+     * @param sortedHeadings The headings, as returned by getSortedHeadings()
+     * @return The CSV formatted heading line
+     */
+    final String getHeadingLine(List<String> sortedHeadings)
+    {
+        StringBuilder head = new StringBuilder("id").append(fieldSeparator).append("collection");
+        for (String value : sortedHeadings)
+        {
+            head.append(fieldSeparator).append(value);
+        }
+        return head.toString();
+    }
+
+    /**
+     * Remove the lines read so far, keeping the headings, so that the lines
+     * of a large file can be read a chunk at a time
+     */
+    final void clearLines()
+    {
+        lines = new ArrayList<DSpaceCSVLine>();
+        counter = 0;
     }
 
     /**
@@ -0,0 +1,121 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.bulkedit;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.dspace.core.Context;
+
+/**
+ * Reads a CSV file a chunk of lines at a time, so that files too large to
+ * be held in memory as one DSpaceCSV can be imported.
+ *
+ * @see MetadataImport
+ */
+public class DSpaceCSVReader implements Closeable
+{
+    /** The file being read */
+    private final BufferedReader input;
+
+    /** The headings of the file, and the lines of the current chunk */
+    private final DSpaceCSV csv;
+
+    /** The number of lines read or skipped so far */
+    private int linesRead = 0;
+
+    /**
+     * Open a CSV file, reading and checking its headings
+     *
+     * @param f The file to read from
+     * @param c The DSpace Context
+     *
+     * @throws Exception thrown if there is an error reading the file, or if a heading is invalid
+     */
+    public DSpaceCSVReader(File f, Context c) throws Exception
+    {
+        input = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        try
+        {
+            csv = new DSpaceCSV(false);
+            csv.readHeadings(input, c);
+        }
+        catch (Exception e)
+        {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Skip lines, for instance those already imported by an earlier run
+     *
+     * @param lines The number of lines to skip
+     * @return The number of lines skipped, fewer if the end of the file was reached
+     *
+     * @throws IOException thrown if there is an error reading the file
+     */
+    public int skip(int lines) throws IOException
+    {
+        int skipped = 0;
+        while ((skipped < lines) && (DSpaceCSV.readRecord(input) != null))
+        {
+            skipped++;
+        }
+        linesRead += skipped;
+        return skipped;
+    }
+
+    /**
+     * Read the next chunk of lines. The DSpaceCSV returned is the same each
+     * time, holding only the lines of the latest chunk.
+     *
+     * @param max The maximum number of lines to read
+     * @return The headings and lines read, or null at the end of the file
+     *
+     * @throws Exception thrown if there is an error reading or processing the file
+     */
+    public DSpaceCSV read(int max) throws Exception
+    {
+        csv.clearLines();
+        int read = 0;
+        String record;
+        while ((read < max) && ((record = DSpaceCSV.readRecord(input)) != null))
+        {
+            csv.addItem(record);
+            read++;
+        }
+        linesRead += read;
+        return (read > 0) ? csv : null;
+    }
+
+    /**
+     * Get the number of lines read or skipped so far, not counting the heading line
+     *
+     * @return The number of lines
+     */
+    public int getLinesRead()
+    {
+        return linesRead;
+    }
+
+    /**
+     * Close the file
+     *
+     * @throws IOException thrown if there is an error closing the file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        input.close();
+    }
+}
@@ -14,9 +14,12 @@ import org.dspace.core.Constants;
 import org.dspace.core.Context;
 import org.dspace.handle.HandleManager;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.sql.SQLException;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Metadata exporter to allow the batch export of metadata into a file
@@ -57,7 +60,8 @@ public class MetadataExport
         try
         {
             // Try to export the community
-            this.toExport = new ItemIterator(c, buildFromCommunity(toExport, new ArrayList<Integer>(), 0));
+            this.toExport = new ItemIterator(c, new ArrayList<Integer>(
+                    buildFromCommunity(toExport, new LinkedHashSet<Integer>(), 0)));
             this.exportAll = exportAll;
         }
         catch (SQLException sqle)
@@ -73,12 +77,12 @@ public class MetadataExport
      * Build an array list of item ids that are in a community (include sub-communities and collections)
      *
      * @param community The community to build from
-     * @param itemIDs The itemID (used for recursion - use an empty ArrayList)
+     * @param itemIDs The itemID (used for recursion - use an empty LinkedHashSet)
      * @param indent How many spaces to use when writing out the names of items added
-     * @return The list of item ids
+     * @return The item ids, in the order they were found
      * @throws SQLException
      */
-    private List<Integer> buildFromCommunity(Community community, List<Integer> itemIDs, int indent)
+    private Set<Integer> buildFromCommunity(Community community, Set<Integer> itemIDs, int indent)
                                                                                throws SQLException
     {
         // Add all the collections
@@ -93,12 +97,10 @@ public class MetadataExport
             ItemIterator items = collection.getAllItems();
             while (items.hasNext())
             {
-                int id = items.next().getID();
-                // Only add if not already included (so mapped items only appear once)
-                if (!itemIDs.contains(id))
-                {
-                    itemIDs.add(id);
-                }
+                Item item = items.next();
+                // Only added if not already included (so mapped items only appear once)
+                itemIDs.add(item.getID());
+                item.decache();
             }
         }
 
@@ -144,6 +146,148 @@ public class MetadataExport
         }
     }
 
+    /**
+     * Run the export, writing the CSV to a file. Unlike export(), this does
+     * not hold the lines in memory: as the headings are only known once
+     * every item has been read, each line is spooled to a temporary file as
+     * its item is read, and written out under the headings at the end.
+     *
+     * @param filename The file to write the CSV to
+     * @return The number of items exported
+     *
+     * @throws Exception if something goes wrong reading the items or writing the file
+     */
+    public int exportToFile(String filename) throws Exception
+    {
+        DSpaceCSV csv = new DSpaceCSV(exportAll);
+        File spool = File.createTempFile("metadataexport", ".spool");
+        try
+        {
+            // Spool the lines, collecting the headings
+            int count = 0;
+            DataOutputStream out = new DataOutputStream(
+                                   new BufferedOutputStream(
+                                   new FileOutputStream(spool)));
+            try
+            {
+                while (toExport.hasNext())
+                {
+                    Item item = toExport.next();
+                    DSpaceCSVLine line = csv.toCSVLine(item);
+                    if (line != null)
+                    {
+                        writeLine(out, line);
+                        count++;
+                    }
+                    item.decache();
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // Write out the headings, then the lines
+            List<String> headings = csv.getSortedHeadings();
+            DataInputStream in = new DataInputStream(
+                                 new BufferedInputStream(
+                                 new FileInputStream(spool)));
+            BufferedWriter csvOut = new BufferedWriter(
+                                    new OutputStreamWriter(
+                                    new FileOutputStream(filename), "UTF-8"));
+            try
+            {
+                csvOut.write(csv.getHeadingLine(headings));
+                csvOut.write("\n");
+                for (int i = 0; i < count; i++)
+                {
+                    csvOut.write(readLine(in).toCSV(headings));
+                    csvOut.write("\n");
+                }
+            }
+            finally
+            {
+                in.close();
+                csvOut.close();
+            }
+            return count;
+        }
+        finally
+        {
+            if (!spool.delete())
+            {
+                spool.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Write a CSV line to the spool
+     *
+     * @param out The spool
+     * @param line The line
+     * @throws IOException if the spool cannot be written
+     */
+    private static void writeLine(DataOutputStream out, DSpaceCSVLine line) throws IOException
+    {
+        out.writeInt(line.getID());
+        out.writeInt(line.keys().size());
+        for (String key : line.keys())
+        {
+            writeString(out, key);
+            List<String> values = line.get(key);
+            out.writeInt(values.size());
+            for (String value : values)
+            {
+                writeString(out, value);
+            }
+        }
+    }
+
+    /**
+     * Read a CSV line back from the spool
+     *
+     * @param in The spool
+     * @return The line
+     * @throws IOException if the spool cannot be read
+     */
+    private static DSpaceCSVLine readLine(DataInputStream in) throws IOException
+    {
+        DSpaceCSVLine line = new DSpaceCSVLine(in.readInt());
+        int keys = in.readInt();
+        for (int k = 0; k < keys; k++)
+        {
+            String key = readString(in);
+            line.add(key, null);
+            int values = in.readInt();
+            for (int v = 0; v < values; v++)
+            {
+                line.add(key, readString(in));
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Write a string of any length (writeUTF is limited to 64KB)
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString()
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
     /**
      * Print the help message
      *
@@ -256,11 +400,9 @@ public class MetadataExport
             }
         }
 
-        // Perform the export
-        DSpaceCSV csv = exporter.export();
-
-        // Save the files to the file
-        csv.save(filename);        
+        // Perform the export, writing the file as it goes
+        int count = exporter.exportToFile(filename);
+        System.out.println("Exported " + count + " item(s) to " + filename);
 
         // Finish off and tidy up
         c.restoreAuthSystemState();
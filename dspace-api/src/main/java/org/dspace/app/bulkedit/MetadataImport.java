@@ -28,7 +28,11 @@ import org.dspace.xmlworkflow.XmlWorkflowManager;
 
 import java.util.ArrayList;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.sql.SQLException;
@@ -60,6 +64,9 @@ public class MetadataImport
         setAuthorizedMetadataFields();
     }
 
+    /** Appended to the name of a CSV file to name the checkpoint of a chunked import */
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
     /** The prefix of the authority controlled field */
     private static final String AC_PREFIX = "authority.controlled.";
 
@@ -83,6 +90,21 @@ public class MetadataImport
         this.toImport = toImport.getCSVLines();
     }
 
+    /**
+     * Create an instance of the metadata importer to examine some of the
+     * lines of a CSV file.
+     *
+     * @param c The context
+     * @param csv The CSV file, for its headings
+     * @param toImport The lines to examine
+     */
+    MetadataImport(Context c, DSpaceCSV csv, List<DSpaceCSVLine> toImport)
+    {
+        this.c = c;
+        this.csv = csv;
+        this.toImport = toImport;
+    }
+
     /**
      * Run an import. The import can either be read-only to detect changes, or
      * can write changes as it goes.
@@ -1211,6 +1233,9 @@ public class MetadataImport
         options.addOption("w", "workflow", false, "workflow - when adding new items, use collection workflow");
         options.addOption("n", "notify", false, "notify - when adding new items using a workflow, send notification emails");
         options.addOption("t", "template", false, "template - when adding new items, use the collection template (if it exists)");        
+        options.addOption("c", "chunk", true, "chunk - read and commit the file this many lines at a time (default import-chunk-size in bulkedit.cfg, 0 for all at once)");
+        options.addOption("r", "resume", false, "resume - carry on a chunked import from where it last committed");
+        options.addOption("p", "threads", true, "threads - number of threads working out the changes (default import-threads in bulkedit.cfg)");
         options.addOption("h", "help", false, "help");
 
         // Parse the command line arguments
@@ -1263,6 +1288,28 @@ public class MetadataImport
             System.exit(1);
         }
 
+        // Options for reading the file in chunks, and comparing in parallel
+        int chunkSize;
+        int threads;
+        try
+        {
+            chunkSize = line.hasOption('c') ? Integer.parseInt(line.getOptionValue('c'))
+                    : ConfigurationManager.getIntProperty("bulkedit", "import-chunk-size", 0);
+            threads = line.hasOption('p') ? Integer.parseInt(line.getOptionValue('p'))
+                    : ConfigurationManager.getIntProperty("bulkedit", "import-threads", 1);
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.err.println("Invalid number: " + nfe.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (line.hasOption('r') && (chunkSize <= 0))
+        {
+            System.err.println("Invalid option 'r': (resume) can only be used when importing in chunks.");
+            System.exit(1);
+        }
+
         // Create a context
         Context c;
         try
@@ -1307,14 +1354,29 @@ public class MetadataImport
             return;
         }
 
-        // Is this a silent run?
-        boolean change = false;
+        // Lines already imported by an earlier, interrupted run
+        File file = new File(filename);
+        File checkpoint = new File(filename + CHECKPOINT_SUFFIX);
+        int done = 0;
+        if (line.hasOption('r') && checkpoint.exists())
+        {
+            try
+            {
+                done = readCheckpoint(checkpoint);
+                System.out.println("Resuming after line " + done);
+            }
+            catch (Exception e)
+            {
+                System.err.println("Error reading checkpoint " + checkpoint + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
 
-        // Read lines from the CSV file
-        DSpaceCSV csv;
+        // Check the headings of the CSV file
         try
         {
-            csv = new DSpaceCSV(new File(filename), c);
+            new DSpaceCSVReader(file, c).close();
         }
         catch (MetadataImportInvalidHeadingException miihe)
         {
@@ -1329,16 +1391,26 @@ public class MetadataImport
             return;
         }
 
-        // Perform the first import - just highlight differences
-        MetadataImport importer = new MetadataImport(c, csv);
-        List<BulkEditChange> changes;
+        // Is this a silent run?
+        boolean change = false;
 
         if (!line.hasOption('s'))
         {
-            // See what has changed
+            // Perform the first import - just highlight differences
+            int changeCounter = 0;
+            MetadataImportWorkers workers = null;
+            DSpaceCSVReader reader = null;
             try
             {
-                changes = importer.runImport(false, useWorkflow, workflowNotify, useTemplate);
+                workers = new MetadataImportWorkers(c, threads);
+                reader = openCSV(file, c, done);
+                DSpaceCSV csv;
+                while ((csv = reader.read(chunkSize > 0 ? chunkSize : Integer.MAX_VALUE)) != null)
+                {
+                    // See what has changed, and display the changes
+                    changeCounter += displayChanges(workers.compare(csv, useWorkflow, workflowNotify, useTemplate), false);
+                    workers.clearCache();
+                }
             }
             catch (MetadataImportException mie)
             {
@@ -1346,9 +1418,20 @@ public class MetadataImport
                 System.exit(1);
                 return;
             }
-
-            // Display the changes
-            int changeCounter = displayChanges(changes, false);
+            catch (Exception e)
+            {
+                System.err.println("Error reading file: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            finally
+            {
+                closeQuietly(reader);
+                if (workers != null)
+                {
+                    workers.close();
+                }
+            }
 
             // If there were changes, ask if we should execute them
             if (changeCounter > 0)
@@ -1390,23 +1473,50 @@ public class MetadataImport
             // If required, make the change
             if (change)
             {
+                DSpaceCSVReader reader = null;
                 try
                 {
-                    // Make the changes
-                    changes = importer.runImport(true, useWorkflow, workflowNotify, useTemplate);
+                    reader = openCSV(file, c, done);
+                    DSpaceCSV csv;
+                    while ((csv = reader.read(chunkSize > 0 ? chunkSize : Integer.MAX_VALUE)) != null)
+                    {
+                        // Make the changes
+                        List<BulkEditChange> changes = new MetadataImport(c, csv)
+                                .runImport(true, useWorkflow, workflowNotify, useTemplate);
+
+                        // Display the changes
+                        displayChanges(changes, true);
+
+                        // Commit the chunk to the DB, and record how far we got
+                        if (chunkSize > 0)
+                        {
+                            c.commit();
+                            writeCheckpoint(checkpoint, reader.getLinesRead());
+                            c.clearCache();
+                        }
+                    }
                 }
                 catch (MetadataImportException mie)
                 {
                     System.err.println("Error: " + mie.getMessage());
+                    if (chunkSize > 0)
+                    {
+                        System.err.println("Changes up to the last chunk have been committed; run again with -r to resume.");
+                    }
                     System.exit(1);
                     return;
                 }
-
-                // Display the changes
-                displayChanges(changes, true);
+                finally
+                {
+                    closeQuietly(reader);
+                }
 
                 // Commit the change to the DB
                 c.commit();
+                if (checkpoint.exists() && !checkpoint.delete())
+                {
+                    System.err.println("Unable to delete checkpoint " + checkpoint);
+                }
             }
 
             // Finsh off and tidy up
@@ -1421,4 +1531,75 @@ public class MetadataImport
             System.exit(1);
         }
     }
+
+    /**
+     * Open a CSV file, skipping the lines already imported
+     *
+     * @param file The file
+     * @param c The context
+     * @param done The number of lines to skip
+     * @return The reader of the file
+     * @throws Exception if the file cannot be read, or has an invalid heading
+     */
+    private static DSpaceCSVReader openCSV(File file, Context c, int done) throws Exception
+    {
+        DSpaceCSVReader reader = new DSpaceCSVReader(file, c);
+        reader.skip(done);
+        return reader;
+    }
+
+    /**
+     * Read the number of lines already imported from a checkpoint file
+     *
+     * @param checkpoint The checkpoint file
+     * @return The number of lines
+     * @throws IOException if the file cannot be read
+     */
+    private static int readCheckpoint(File checkpoint) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpoint), "UTF-8"));
+        try
+        {
+            return Integer.parseInt(in.readLine().trim());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Record the number of lines imported and committed in a checkpoint file
+     *
+     * @param checkpoint The checkpoint file
+     * @param done The number of lines
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeCheckpoint(File checkpoint, int done) throws IOException
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(checkpoint), "UTF-8");
+        try
+        {
+            out.write(done + "\n");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void closeQuietly(DSpaceCSVReader reader)
+    {
+        if (reader != null)
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException ioe)
+            {
+                log.warn("Unable to close CSV file", ioe);
+            }
+        }
+    }
 }
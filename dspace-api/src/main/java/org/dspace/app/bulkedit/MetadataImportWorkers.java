@@ -0,0 +1,184 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.bulkedit;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.dspace.core.Context;
+import org.dspace.eperson.EPerson;
+
+/**
+ * Works out the changes the lines of a CSV file would make, without making
+ * them, by dividing the lines among several threads. As a Context may only
+ * be used by one thread at a time, each thread compares its lines with the
+ * items read through a Context of its own. The contexts are kept open, so
+ * that the changes returned may still be displayed, until clearCache() or
+ * close() is called.
+ */
+class MetadataImportWorkers
+{
+    /** The context of each worker */
+    private final List<Context> contexts = new ArrayList<Context>();
+
+    /** The threads, null if there is only one worker */
+    private final ExecutorService pool;
+
+    /** The context of the caller, used by the only worker when there is one */
+    private final Context c;
+
+    /**
+     * Create the workers.
+     *
+     * @param c The context of the caller, whose current user the workers act as
+     * @param threads The number of workers
+     * @throws SQLException if a context cannot be created
+     */
+    MetadataImportWorkers(Context c, int threads) throws SQLException
+    {
+        this.c = c;
+        if (threads <= 1)
+        {
+            contexts.add(c);
+            pool = null;
+            return;
+        }
+
+        try
+        {
+            for (int i = 0; i < threads; i++)
+            {
+                Context context = new Context();
+                contexts.add(context);
+                context.turnOffAuthorisationSystem();
+                if (c.getCurrentUser() != null)
+                {
+                    context.setCurrentUser(EPerson.find(context, c.getCurrentUser().getID()));
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            close();
+            throw e;
+        }
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Work out the changes the lines of a CSV file would make.
+     *
+     * @param csv The CSV file
+     * @param useWorkflow Whether the workflows should be used when creating new items
+     * @param workflowNotify If the workflows should be used, whether to send notifications or not
+     * @param useTemplate Use collection template if create new item
+     * @return The changes, in the order of the lines
+     * @throws MetadataImportException if something is wrong with a line
+     */
+    List<BulkEditChange> compare(final DSpaceCSV csv, final boolean useWorkflow,
+                                 final boolean workflowNotify, final boolean useTemplate)
+            throws MetadataImportException
+    {
+        List<DSpaceCSVLine> lines = csv.getCSVLines();
+        if (pool == null)
+        {
+            return new MetadataImport(c, csv, lines).runImport(false, useWorkflow, workflowNotify, useTemplate);
+        }
+
+        // Give each worker a run of consecutive lines, so that the changes
+        // come back in order
+        int workers = contexts.size();
+        int perWorker = (lines.size() + workers - 1) / workers;
+        List<Future<List<BulkEditChange>>> results = new ArrayList<Future<List<BulkEditChange>>>();
+        for (int i = 0; (i < workers) && (i * perWorker < lines.size()); i++)
+        {
+            final MetadataImport importer = new MetadataImport(contexts.get(i), csv,
+                    lines.subList(i * perWorker, Math.min(lines.size(), (i + 1) * perWorker)));
+            results.add(pool.submit(new Callable<List<BulkEditChange>>()
+            {
+                @Override
+                public List<BulkEditChange> call() throws Exception
+                {
+                    return importer.runImport(false, useWorkflow, workflowNotify, useTemplate);
+                }
+            }));
+        }
+
+        List<BulkEditChange> changes = new ArrayList<BulkEditChange>();
+        MetadataImportException failure = null;
+        for (Future<List<BulkEditChange>> result : results)
+        {
+            // wait for every worker, so none is still using its context
+            try
+            {
+                changes.addAll(result.get());
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error)
+                {
+                    throw (Error) cause;
+                }
+                if (failure == null)
+                {
+                    failure = (cause instanceof MetadataImportException)
+                            ? (MetadataImportException) cause
+                            : new MetadataImportException(cause.getMessage(), (Exception) cause);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new MetadataImportException("Interrupted while comparing lines", e);
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+        return changes;
+    }
+
+    /**
+     * Empty the caches of the contexts, once the changes of a chunk of lines
+     * are no longer needed.
+     */
+    void clearCache()
+    {
+        for (Context context : contexts)
+        {
+            context.clearCache();
+        }
+    }
+
+    /**
+     * Stop the workers. The contexts of the workers are aborted, as they
+     * have changed nothing.
+     */
+    void close()
+    {
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+        for (Context context : contexts)
+        {
+            if ((context != c) && context.isValid())
+            {
+                context.abort();
+            }
+        }
+    }
+}
@@ -78,6 +78,10 @@ public final class ChecksumChecker
      *            <dd>Report only errors in the logs</dd>
      *            <dt>-p</dt>
      *            <dd>Don't prune results before running checker</dd>
+     *            <dt>-t [threads]</dt>
+     *            <dd>number of threads checking bitstreams</dd>
+     *            <dt>-r [kilobytes]</dt>
+     *            <dd>maximum read rate in kilobytes per second</dd>
      *            </dl>
      */
     public static void main(String[] args) throws SQLException {
@@ -96,6 +100,10 @@ public final class ChecksumChecker
         options.addOption("c", "count", true, "Check count");
         options.addOption("a", "handle", true, "Specify a handle to check");
         options.addOption("v", "verbose", false, "Report all processing");
+        options.addOption("t", "threads", true,
+                "Number of threads checking bitstreams (default checker.threads)");
+        options.addOption("r", "rate", true,
+                "Maximum read rate in kilobytes per second, 0 for no limit (default checker.max-bandwidth)");
 
         OptionBuilder.withArgName("bitstream-ids").hasArgs().withDescription(
                 "Space separated list of bitstream ids");
@@ -228,6 +236,23 @@ public final class ChecksumChecker
             checker.setReportVerbose(true);
         }
 
+        try
+        {
+            if (line.hasOption('t'))
+            {
+                checker.setThreads(Integer.parseInt(line.getOptionValue('t')));
+            }
+            if (line.hasOption('r'))
+            {
+                checker.setMaxBandwidth(1024L * Long.parseLong(line.getOptionValue('r')));
+            }
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.err.println("The -t and -r arguments must be integers");
+            System.exit(1);
+        }
+
         checker.setProcessStartDate(processStart);
         checker.setDispatcher(dispatcher);
         checker.setCollector(logger);
@@ -265,6 +290,7 @@ public final class ChecksumChecker
         System.out
                 .println("\nCheck a defined number of bitstreams: ChecksumChecker -c 10");
         System.out.println("\nReport all processing (verbose)(default reports only errors): ChecksumChecker -v");
+        System.out.println("\nCheck with 4 threads reading at most 50 MB/s: ChecksumChecker -l -t 4 -r 51200");
         System.out.println("\nDefault (no arguments) is equivalent to '-c 1'");
         System.exit(0);
     }
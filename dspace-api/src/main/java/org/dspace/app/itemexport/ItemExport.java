@@ -8,6 +8,7 @@
 package org.dspace.app.itemexport;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -15,7 +16,9 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -416,21 +419,24 @@ public class ItemExport
         }
     }
 
-    // output the item's dublin core into the item directory
-    private static void writeMetadata(Context c, String schema, Item i,
-            File destDir, boolean migrate) throws Exception
+    // the name of the file holding the metadata in a schema
+    private static String getMetadataFileName(String schema)
     {
-        String filename;
         if (schema.equals(MetadataSchema.DC_SCHEMA))
         {
-            filename = "dublin_core.xml";
+            return "dublin_core.xml";
         }
         else
         {
-            filename = "metadata_" + schema + ".xml";
+            return "metadata_" + schema + ".xml";
         }
+    }
 
-        File outFile = new File(destDir, filename);
+    // output the item's dublin core into the item directory
+    private static void writeMetadata(Context c, String schema, Item i,
+            File destDir, boolean migrate) throws Exception
+    {
+        File outFile = new File(destDir, getMetadataFileName(schema));
 
         System.out.println("Attempting to create file " + outFile);
 
@@ -439,96 +445,103 @@ public class ItemExport
             BufferedOutputStream out = new BufferedOutputStream(
                     new FileOutputStream(outFile));
 
-            Metadatum[] dcorevalues = i.getMetadata(schema, Item.ANY, Item.ANY,
-                    Item.ANY);
+            writeMetadata(c, schema, i, out, migrate);
 
-            // XML preamble
-            byte[] utf8 = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\"?>\n"
-                    .getBytes("UTF-8");
-            out.write(utf8, 0, utf8.length);
+            out.close();
+        }
+        else
+        {
+            throw new Exception("Cannot create dublin_core.xml in " + destDir);
+        }
+    }
 
-            String dcTag = "<dublin_core schema=\"" + schema + "\">\n";
-            utf8 = dcTag.getBytes("UTF-8");
-            out.write(utf8, 0, utf8.length);
+    // output the item's metadata in a schema to a stream
+    private static void writeMetadata(Context c, String schema, Item i,
+            OutputStream out, boolean migrate) throws Exception
+    {
+        Metadatum[] dcorevalues = i.getMetadata(schema, Item.ANY, Item.ANY,
+                Item.ANY);
 
-            String dateIssued = null;
-            String dateAccessioned = null;
+        // XML preamble
+        byte[] utf8 = "<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"no\"?>\n"
+                .getBytes("UTF-8");
+        out.write(utf8, 0, utf8.length);
 
-            for (Metadatum dcv : dcorevalues)
-            {
-                String qualifier = dcv.qualifier;
+        String dcTag = "<dublin_core schema=\"" + schema + "\">\n";
+        utf8 = dcTag.getBytes("UTF-8");
+        out.write(utf8, 0, utf8.length);
 
-                if (qualifier == null)
-                {
-                    qualifier = "none";
-                }
+        String dateIssued = null;
+        String dateAccessioned = null;
 
-                String language = dcv.language;
+        for (Metadatum dcv : dcorevalues)
+        {
+            String qualifier = dcv.qualifier;
 
-                if (language != null)
-                {
-                    language = " language=\"" + language + "\"";
-                }
-                else
-                {
-                    language = "";
-                }
+            if (qualifier == null)
+            {
+                qualifier = "none";
+            }
 
-                utf8 = ("  <dcvalue element=\"" + dcv.element + "\" "
-                        + "qualifier=\"" + qualifier + "\""
-                        + language + ">"
-                        + Utils.addEntities(dcv.value) + "</dcvalue>\n")
-                        .getBytes("UTF-8");
-
-                if ((!migrate) ||
-                    (migrate && !(
-                     ("date".equals(dcv.element) && "issued".equals(qualifier)) ||
-                     ("date".equals(dcv.element) && "accessioned".equals(qualifier)) ||
-                     ("date".equals(dcv.element) && "available".equals(qualifier)) ||
-                     ("identifier".equals(dcv.element) && "uri".equals(qualifier) &&
-                      (dcv.value != null && dcv.value.startsWith("http://hdl.handle.net/" +
-                       HandleManager.getPrefix() + "/"))) ||
-                     ("description".equals(dcv.element) && "provenance".equals(qualifier)) ||
-                     ("format".equals(dcv.element) && "extent".equals(qualifier)) ||
-                     ("format".equals(dcv.element) && "mimetype".equals(qualifier)))))
-                {
-                    out.write(utf8, 0, utf8.length);
-                }
+            String language = dcv.language;
 
-                // Store the date issued and accession to see if they are different
-                // because we need to keep date.issued if they are, when migrating
-                if (("date".equals(dcv.element) && "issued".equals(qualifier)))
-                {
-                    dateIssued = dcv.value;
-                }
-                if (("date".equals(dcv.element) && "accessioned".equals(qualifier)))
-                {
-                    dateAccessioned = dcv.value;
-                }
+            if (language != null)
+            {
+                language = " language=\"" + language + "\"";
             }
+            else
+            {
+                language = "";
+            }
+
+            utf8 = ("  <dcvalue element=\"" + dcv.element + "\" "
+                    + "qualifier=\"" + qualifier + "\""
+                    + language + ">"
+                    + Utils.addEntities(dcv.value) + "</dcvalue>\n")
+                    .getBytes("UTF-8");
 
-            // When migrating, only keep date.issued if it is different to date.accessioned
-            if ((migrate) &&
-                (dateIssued != null) &&
-                (dateAccessioned != null) &&
-                (!dateIssued.equals(dateAccessioned)))
+            if ((!migrate) ||
+                (migrate && !(
+                 ("date".equals(dcv.element) && "issued".equals(qualifier)) ||
+                 ("date".equals(dcv.element) && "accessioned".equals(qualifier)) ||
+                 ("date".equals(dcv.element) && "available".equals(qualifier)) ||
+                 ("identifier".equals(dcv.element) && "uri".equals(qualifier) &&
+                  (dcv.value != null && dcv.value.startsWith("http://hdl.handle.net/" +
+                   HandleManager.getPrefix() + "/"))) ||
+                 ("description".equals(dcv.element) && "provenance".equals(qualifier)) ||
+                 ("format".equals(dcv.element) && "extent".equals(qualifier)) ||
+                 ("format".equals(dcv.element) && "mimetype".equals(qualifier)))))
             {
-                utf8 = ("  <dcvalue element=\"date\" "
-                        + "qualifier=\"issued\">"
-                        + Utils.addEntities(dateIssued) + "</dcvalue>\n")
-                        .getBytes("UTF-8");
                 out.write(utf8, 0, utf8.length);
             }
 
-            utf8 = "</dublin_core>\n".getBytes("UTF-8");
-            out.write(utf8, 0, utf8.length);
-
-            out.close();
+            // Store the date issued and accession to see if they are different
+            // because we need to keep date.issued if they are, when migrating
+            if (("date".equals(dcv.element) && "issued".equals(qualifier)))
+            {
+                dateIssued = dcv.value;
+            }
+            if (("date".equals(dcv.element) && "accessioned".equals(qualifier)))
+            {
+                dateAccessioned = dcv.value;
+            }
         }
-        else
+
+        // When migrating, only keep date.issued if it is different to date.accessioned
+        if ((migrate) &&
+            (dateIssued != null) &&
+            (dateAccessioned != null) &&
+            (!dateIssued.equals(dateAccessioned)))
         {
-            throw new Exception("Cannot create dublin_core.xml in " + destDir);
+            utf8 = ("  <dcvalue element=\"date\" "
+                    + "qualifier=\"issued\">"
+                    + Utils.addEntities(dateIssued) + "</dcvalue>\n")
+                    .getBytes("UTF-8");
+            out.write(utf8, 0, utf8.length);
         }
+
+        utf8 = "</dublin_core>\n".getBytes("UTF-8");
+        out.write(utf8, 0, utf8.length);
     }
 
     // create the file 'handle' which contains the handle assigned to the item
@@ -590,8 +603,6 @@ public class ItemExport
                 // bundles can have multiple bitstreams now...
                 Bitstream[] bitstreams = bundles[j].getBitstreams();
 
-                String bundleName = bundles[j].getName();
-
                 for (int k = 0; k < bitstreams.length; k++)
                 {
                     Bitstream b = bitstreams[k];
@@ -599,20 +610,6 @@ public class ItemExport
                     String myName = b.getName();
                     String oldName = myName;
 
-                    String description = b.getDescription();
-                    if (!StringUtils.isEmpty(description))
-                    {
-                        description = "\tdescription:" + description;
-                    } else
-                    {
-                        description = "";
-                    }
-
-                    String primary = "";
-                    if (bundles[j].getPrimaryBitstreamID() == b.getID()) {
-                        primary = "\tprimary:true ";
-                    }
-
                     int myPrefix = 1; // only used with name conflict
 
                     InputStream is = b.retrieve();
@@ -645,18 +642,7 @@ public class ItemExport
                             fos.close();
 
                             // write the manifest file entry
-                            if (b.isRegisteredBitstream())
-                            {
-                                out.println("-r -s " + b.getStoreNumber()
-                                        + " -f " + myName +
-                                        "\tbundle:" + bundleName +
-                                        primary + description);
-                            }
-                            else
-                            {
-                                out.println(myName + "\tbundle:" + bundleName +
-                                            primary + description);
-                            }
+                            out.println(getContentsLine(bundles[j], b, myName));
 
                             isDone = true;
                         }
@@ -682,6 +668,137 @@ public class ItemExport
         }
     }
 
+    /**
+     * Get the line of the contents file for a bitstream. A bitstream which
+     * was originally registered is marked as such.
+     *
+     * @param bundle
+     *            the bundle holding the bitstream
+     * @param b
+     *            the bitstream
+     * @param name
+     *            the name it is exported as
+     * @return the line, without a line separator
+     */
+    private static String getContentsLine(Bundle bundle, Bitstream b, String name)
+    {
+        String description = b.getDescription();
+        if (!StringUtils.isEmpty(description))
+        {
+            description = "\tdescription:" + description;
+        } else
+        {
+            description = "";
+        }
+
+        String primary = "";
+        if (bundle.getPrimaryBitstreamID() == b.getID()) {
+            primary = "\tprimary:true ";
+        }
+
+        if (b.isRegisteredBitstream())
+        {
+            return "-r -s " + b.getStoreNumber() + " -f " + name +
+                    "\tbundle:" + bundle.getName() + primary + description;
+        }
+        else
+        {
+            return name + "\tbundle:" + bundle.getName() + primary + description;
+        }
+    }
+
+    /**
+     * Write items into a zip archive, laid out as the export directory would
+     * be, without writing them to disk first.
+     *
+     * @param c
+     *            the DSpace context
+     * @param i
+     *            the items to export
+     * @param zip
+     *            the archive
+     * @param path
+     *            path in the archive of the export directory, ending in a
+     *            slash, or "" for the top
+     * @param seqStart
+     *            the first number in the sequence
+     * @param migrate
+     *            whether to use the migrate option or not
+     */
+    private static void exportItem(Context c, ItemIterator i, ZipExportWriter zip,
+            String path, int seqStart, boolean migrate) throws Exception
+    {
+        int mySequenceNumber = seqStart;
+
+        System.out.println("Beginning export");
+
+        while (i.hasNext())
+        {
+            System.out.println("Exporting item to " + mySequenceNumber);
+            Item myItem = i.next();
+            exportItem(c, myItem, zip, path + mySequenceNumber + "/", migrate);
+            myItem.decache();
+            mySequenceNumber++;
+        }
+    }
+
+    // write the files of an item into its directory in a zip archive
+    private static void exportItem(Context c, Item myItem, ZipExportWriter zip,
+            String itemPath, boolean migrate) throws Exception
+    {
+        System.out.println("Exporting Item " + myItem.getID() + " to " + itemPath);
+
+        // metadata, one file per schema
+        Set<String> schemas = new HashSet<String>();
+        for (Metadatum dcValue : myItem.getMetadata(Item.ANY, Item.ANY, Item.ANY, Item.ANY))
+        {
+            schemas.add(dcValue.schema);
+        }
+        for (String schema : schemas)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeMetadata(c, schema, myItem, out, migrate);
+            zip.addEntry(itemPath + getMetadataFileName(schema), out.toByteArray());
+        }
+
+        // bitstreams, with names made unique as writeBitstreams() does
+        List<Bitstream> bitstreams = new ArrayList<Bitstream>();
+        List<String> names = new ArrayList<String>();
+        Set<String> used = new HashSet<String>();
+        StringWriter contents = new StringWriter();
+        PrintWriter out = new PrintWriter(contents);
+        for (Bundle bundle : myItem.getBundles())
+        {
+            for (Bitstream b : bundle.getBitstreams())
+            {
+                String myName = b.getName();
+                int myPrefix = 1;
+                while (!used.add(myName))
+                {
+                    myName = myPrefix + "_" + b.getName();
+                    myPrefix++;
+                }
+
+                bitstreams.add(b);
+                names.add(itemPath + myName);
+                out.println(getContentsLine(bundle, b, myName));
+            }
+        }
+        out.close();
+
+        zip.addBitstreams(c, bitstreams, names);
+        zip.addEntry(itemPath + "contents", contents.toString().getBytes("UTF-8"));
+
+        if (!migrate && myItem.getHandle() != null)
+        {
+            StringWriter handle = new StringWriter();
+            out = new PrintWriter(handle);
+            out.println(myItem.getHandle());
+            out.close();
+            zip.addEntry(itemPath + "handle", handle.toString().getBytes("UTF-8"));
+        }
+    }
+
     /**
      * Method to perform an export and save it as a zip file.
      *
@@ -697,27 +814,64 @@ public class ItemExport
                                    String destDirName, String zipFileName,
                                    int seqStart, boolean migrate) throws Exception
     {
-        String workDir = getExportWorkDirectory() +
-                         System.getProperty("file.separator") +
-                         zipFileName;
-
-        File wkDir = new File(workDir);
-        if (!wkDir.exists() && !wkDir.mkdirs())
-        {
-            log.error("Unable to create working direcory");
-        }
-
         File dnDir = new File(destDirName);
         if (!dnDir.exists() && !dnDir.mkdirs())
         {
             log.error("Unable to create destination directory");
         }
 
-        // export the items using normal export method
-        exportItem(context, items, workDir, seqStart, migrate);
+        // write the zip file as the items are exported
+        File target = new File(dnDir, zipFileName);
+        File tempFile = new File(dnDir, zipFileName + "_tmp");
+        ZipExportWriter zip = new ZipExportWriter(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try
+        {
+            exportItem(context, items, zip, "", seqStart, migrate);
+            zip.close();
+            zip = null;
+        }
+        finally
+        {
+            if (zip != null)
+            {
+                zip.close();
+                if (!tempFile.delete())
+                {
+                    log.error("Unable to delete file: " + tempFile.getName());
+                }
+            }
+        }
 
-        // now zip up the export directory created above
-        zip(workDir, destDirName + System.getProperty("file.separator") + zipFileName);
+        if (!tempFile.renameTo(target))
+        {
+            log.error("Unable to rename file");
+        }
+    }
+
+    /**
+     * Method to perform an export and write it as a zip archive to a stream,
+     * such as an HTTP response. Nothing is written to disk.
+     *
+     * @param context The DSpace Context
+     * @param items The items to export
+     * @param out Where to write the archive; it is closed when done
+     * @param seqStart The first number in the sequence
+     * @param migrate Whether to use the migrate option or not
+     * @throws Exception
+     */
+    public static void exportAsZip(Context context, ItemIterator items,
+                                   OutputStream out, int seqStart,
+                                   boolean migrate) throws Exception
+    {
+        ZipExportWriter zip = new ZipExportWriter(out);
+        try
+        {
+            exportItem(context, items, zip, "", seqStart, migrate);
+        }
+        finally
+        {
+            zip.close();
+        }
     }
 
     /**
@@ -975,9 +1129,6 @@ public class ItemExport
 
                         String fileName = assembleFileName("item", eperson,
                                 new Date());
-                        String workParentDir = getExportWorkDirectory()
-                                + System.getProperty("file.separator")
-                                + fileName;
                         String downloadDir = getExportDownloadDirectory(eperson
                                 .getID());
                         File dnDir = new File(downloadDir);
@@ -986,32 +1137,41 @@ public class ItemExport
                             log.error("Unable to create download directory");
                         }
 
-                        Iterator<String> iter = itemsMap.keySet().iterator();
-                        while(iter.hasNext())
+                        // write the zip file as the items are exported,
+                        // one directory for each collection or item
+                        File tempFile = new File(dnDir, fileName + ".zip_tmp");
+                        ZipExportWriter zip = new ZipExportWriter(
+                                new BufferedOutputStream(new FileOutputStream(tempFile)));
+                        try
                         {
-                            String keyName = iter.next();
-                            iitems = new ItemIterator(context, itemsMap.get(keyName));
-
-                            String workDir = workParentDir 
-                                    + System.getProperty("file.separator")
-                                    + keyName;
+                            Iterator<String> iter = itemsMap.keySet().iterator();
+                            while(iter.hasNext())
+                            {
+                                String keyName = iter.next();
+                                iitems = new ItemIterator(context, itemsMap.get(keyName));
 
-                            File wkDir = new File(workDir);
-                            if (!wkDir.exists() && !wkDir.mkdirs())
+                                exportItem(context, iitems, zip, keyName + "/", 1, migrate);
+                                iitems.close();
+                            }
+                            zip.close();
+                            zip = null;
+                        }
+                        finally
+                        {
+                            if (zip != null)
                             {
-                                log.error("Unable to create working directory");
+                                zip.close();
+                                if (!tempFile.delete())
+                                {
+                                    log.error("Unable to delete file: " + tempFile.getName());
+                                }
                             }
-
-
-                            // export the items using normal export method
-                            exportItem(context, iitems, workDir, 1, migrate);
-                            iitems.close();
                         }
 
-                        // now zip up the export directory created above
-                        zip(workParentDir, downloadDir
-                                + System.getProperty("file.separator")
-                                + fileName + ".zip");
+                        if (!tempFile.renameTo(new File(dnDir, fileName + ".zip")))
+                        {
+                            log.error("Unable to rename file");
+                        }
                         // email message letting user know the file is ready for
                         // download
                         emailSuccessMessage(context, eperson, fileName + ".zip");
@@ -0,0 +1,369 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.itemexport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.log4j.Logger;
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.content.Bitstream;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+
+/**
+ * Writes a ZIP archive straight to a stream, such as a file or an HTTP
+ * response, without staging its contents on disk.
+ * <p>
+ * The bitstreams of an archive are read ahead by a pool of threads, each of
+ * which buffers a little of one bitstream, while the calling thread
+ * compresses the bitstream it has reached. Bitstreams in formats which are
+ * already compressed are written without trying to compress them again.
+ * <p>
+ * Configuration in dspace.cfg:
+ * <ul>
+ * <li><code>org.dspace.app.itemexport.zip.level</code>: compression level,
+ * 0 to 9 (default 6)</li>
+ * <li><code>org.dspace.app.itemexport.zip.threads</code>: bitstreams read
+ * at once (default 4)</li>
+ * <li><code>org.dspace.app.itemexport.zip.stored-formats</code>: MIME types
+ * which are not compressed again; <code>video/*</code> matches any video
+ * type</li>
+ * </ul>
+ */
+public class ZipExportWriter
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(ZipExportWriter.class);
+
+    /** MIME types not compressed again, unless configured */
+    private static final String DEFAULT_STORED_FORMATS = "application/zip, application/gzip, "
+            + "application/x-gzip, application/x-bzip2, application/x-7z-compressed, "
+            + "application/x-rar-compressed, image/jpeg, image/png, image/gif, image/jp2, "
+            + "audio/*, video/*";
+
+    /** Size of the chunks bitstreams are read in */
+    private static final int CHUNK_SIZE = 65536;
+
+    /** How many chunks of each bitstream may be read ahead */
+    private static final int CHUNKS_AHEAD = 16;
+
+    /** Marks the end of a bitstream */
+    private static final byte[] END = new byte[0];
+
+    private final ZipOutputStream zip;
+
+    private final int level;
+
+    private final int threads;
+
+    /** Threads reading bitstreams, started when first needed */
+    private ExecutorService readers = null;
+
+    /**
+     * Start an archive.
+     *
+     * @param out
+     *            where to write the archive; it is closed by {@link #close}
+     */
+    public ZipExportWriter(OutputStream out)
+    {
+        this.zip = new ZipOutputStream(out);
+        this.level = ConfigurationManager.getIntProperty("org.dspace.app.itemexport.zip.level",
+                Deflater.DEFAULT_COMPRESSION);
+        this.threads = Math.max(1, ConfigurationManager.getIntProperty(
+                "org.dspace.app.itemexport.zip.threads", 4));
+    }
+
+    /**
+     * Add an entry, such as a metadata file, to the archive.
+     *
+     * @param name
+     *            name of the entry
+     * @param data
+     *            content of the entry
+     */
+    public void addEntry(String name, byte[] data) throws IOException
+    {
+        zip.setLevel(level);
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * Add bitstreams to the archive. They are opened in this thread, so with
+     * its context, and read by others.
+     *
+     * @param context
+     *            DSpace context
+     * @param bitstreams
+     *            the bitstreams to add
+     * @param names
+     *            the name of the entry for each bitstream
+     * @throws AuthorizeException
+     *             if a bitstream may not be read
+     */
+    public void addBitstreams(Context context, List<Bitstream> bitstreams, List<String> names)
+            throws SQLException, IOException, AuthorizeException
+    {
+        if (readers == null)
+        {
+            readers = Executors.newFixedThreadPool(threads, new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "zip-export-reader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        LinkedList<ReadAhead> ahead = new LinkedList<ReadAhead>();
+        int next = 0;
+        try
+        {
+            for (int i = 0; i < bitstreams.size(); i++)
+            {
+                while (next < bitstreams.size() && next < i + threads)
+                {
+                    ReadAhead read = new ReadAhead(bitstreams.get(next).retrieve());
+                    read.future = readers.submit(read);
+                    ahead.add(read);
+                    next++;
+                }
+
+                Bitstream bitstream = bitstreams.get(i);
+                ReadAhead read = ahead.getFirst();
+
+                zip.setLevel(isStoredFormat(bitstream.getFormat().getMIMEType())
+                        ? Deflater.NO_COMPRESSION : level);
+                zip.putNextEntry(new ZipEntry(names.get(i)));
+                for (byte[] chunk = read.take(); chunk != END; chunk = read.take())
+                {
+                    zip.write(chunk);
+                }
+                zip.closeEntry();
+                ahead.removeFirst();
+            }
+        }
+        finally
+        {
+            // stop reading bitstreams we won't write after a failure
+            for (ReadAhead read : ahead)
+            {
+                read.future.cancel(true);
+                read.close();
+            }
+        }
+    }
+
+    /**
+     * Is a format already compressed, so not worth compressing again?
+     *
+     * @param mimeType
+     *            MIME type of the format
+     * @return true if it is one of the stored formats configured
+     */
+    public static boolean isStoredFormat(String mimeType)
+    {
+        if (mimeType == null)
+        {
+            return false;
+        }
+
+        String formats = ConfigurationManager.getProperty("org.dspace.app.itemexport.zip.stored-formats");
+        for (String format : (formats != null ? formats : DEFAULT_STORED_FORMATS).trim().split("\\s*,\\s*"))
+        {
+            if (format.endsWith("/*")
+                    ? mimeType.startsWith(format.substring(0, format.length() - 1))
+                    : mimeType.equalsIgnoreCase(format))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finish the archive, close the stream it was written to, and stop the
+     * reading threads.
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            zip.close();
+        }
+        finally
+        {
+            if (readers != null)
+            {
+                readers.shutdownNow();
+                readers = null;
+            }
+        }
+    }
+
+    /**
+     * Reads one bitstream into a short queue of chunks.
+     */
+    private static class ReadAhead implements Runnable
+    {
+        private final InputStream in;
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNKS_AHEAD);
+
+        /** Set before END is queued, if reading failed */
+        private volatile Throwable error = null;
+
+        private Future<?> future;
+
+        ReadAhead(InputStream in)
+        {
+            this.in = in;
+        }
+
+        public void run()
+        {
+            boolean cancelled = false;
+            try
+            {
+                int n;
+                do
+                {
+                    byte[] buffer = new byte[CHUNK_SIZE];
+                    n = fill(buffer);
+                    if (n > 0)
+                    {
+                        chunks.put(n == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, n));
+                    }
+                }
+                while (n == CHUNK_SIZE);
+            }
+            catch (InterruptedException e)
+            {
+                // cancelled, nobody is waiting for the rest
+                cancelled = true;
+            }
+            catch (Throwable t)
+            {
+                // whatever went wrong, the writing thread is told
+                error = t;
+            }
+            finally
+            {
+                try
+                {
+                    close();
+                }
+                finally
+                {
+                    if (!cancelled)
+                    {
+                        end();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queue END, so the writing thread never waits forever.
+         */
+        private void end()
+        {
+            try
+            {
+                chunks.put(END);
+            }
+            catch (InterruptedException e)
+            {
+                // cancelled while the queue was full, nobody is waiting
+            }
+        }
+
+        void close()
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to close bitstream: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Read until the buffer is full or the bitstream ends.
+         *
+         * @return bytes read
+         */
+        private int fill(byte[] buffer) throws IOException
+        {
+            int total = 0;
+            while (total < buffer.length)
+            {
+                int n = in.read(buffer, total, buffer.length - total);
+                if (n < 0)
+                {
+                    break;
+                }
+                total += n;
+            }
+            return total;
+        }
+
+        /**
+         * Take the next chunk, waiting for it to be read.
+         *
+         * @return the chunk, or END at the end of the bitstream
+         * @throws IOException
+         *             if the bitstream could not be read
+         */
+        byte[] take() throws IOException
+        {
+            byte[] chunk;
+            try
+            {
+                chunk = chunks.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted reading a bitstream");
+            }
+
+            if (chunk == END && error != null)
+            {
+                if (error instanceof IOException)
+                {
+                    throw (IOException) error;
+                }
+                throw new IOException("Unable to read a bitstream", error);
+            }
+            return chunk;
+        }
+    }
+}
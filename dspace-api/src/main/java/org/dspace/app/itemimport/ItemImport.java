@@ -20,6 +20,13 @@ import java.net.URL;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipEntry;
 
@@ -172,6 +179,10 @@ public class ItemImport
             options.addOption("R", "resume", false,
                     "resume a failed import (add only)");
             options.addOption("q", "quiet", false, "don't display metadata");
+            options.addOption("P", "parallel", true,
+                    "import with this many threads, each committing in chunks (add only)");
+            options.addOption("k", "chunk-size", true,
+                    "items each thread commits at once with --parallel (default 100)");
 
             options.addOption("h", "help", false, "help");
 
@@ -192,6 +203,8 @@ public class ItemImport
                        .println("\nadding items:    ItemImport -a -e eperson -c collection -s sourcedir -m mapfile");
                 System.out
                         .println("\nadding items from zip file:    ItemImport -a -e eperson -c collection -s sourcedir -z filename.zip -m mapfile");
+                System.out
+                        .println("adding items with 4 threads:   ItemImport -a -e eperson -c collection -s sourcedir -m mapfile -P 4 [-k 100]");
                 System.out
                         .println("replacing items: ItemImport -r -e eperson -c collection -s sourcedir -m mapfile");
                 System.out
@@ -279,6 +292,31 @@ public class ItemImport
                 isQuiet = true;
             }
 
+            int threads = 0;
+            int chunkSize = 100;
+            try
+            {
+                if (line.hasOption('P'))
+                {
+                    threads = Integer.parseInt(line.getOptionValue('P'));
+                }
+                if (line.hasOption('k'))
+                {
+                    chunkSize = Integer.parseInt(line.getOptionValue('k'));
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                System.out.println("Error - the parallel and chunk-size options must be integers");
+                System.exit(1);
+            }
+
+            if ((line.hasOption('P') && threads < 1) || chunkSize < 1)
+            {
+                System.out.println("Error - the parallel and chunk-size options must be at least 1");
+                System.exit(1);
+            }
+
             boolean zip = false;
             String zipfilename = "";
             if (line.hasOption('z'))
@@ -379,6 +417,14 @@ public class ItemImport
                 }
             }
 
+            // can only import in parallel for adds
+            if (threads > 0 && !"add".equals(command))
+            {
+                System.out
+                        .println("Error - parallel option only works with the --add command");
+                System.exit(1);
+            }
+
             // can only resume for adds
             if (isResume && !"add".equals(command) && !"add-bte".equals(command))
             {
@@ -493,7 +539,11 @@ public class ItemImport
 
                 c.turnOffAuthorisationSystem();
 
-                if ("add".equals(command))
+                if ("add".equals(command) && threads > 0)
+                {
+                    myloader.addItemsParallel(c, mycollections, sourcedir, mapfile, template, threads, chunkSize);
+                }
+                else if ("add".equals(command))
                 {
                     myloader.addItems(c, mycollections, sourcedir, mapfile, template);
                 }
@@ -734,6 +784,12 @@ public class ItemImport
                     clist = mycollections;
                 }
                 addItem(c, clist, sourceDir, dircontents[i], mapOut, template);
+                c.commit();
+                if (mapOut != null)
+                {
+                    // so that a resumed import skips the item
+                    mapOut.flush();
+                }
                 System.out.println(i + " " + dircontents[i]);
                 c.clearCache();
             }
@@ -747,6 +803,241 @@ public class ItemImport
         }
     }
 
+    /**
+     * Add items from a source directory with several threads at once. Each
+     * thread has its own context and database connection, and commits after
+     * every chunk of items, so that storing one item's bitstreams overlaps
+     * the database work of others. Items are written to the mapfile once
+     * they are committed, so after a failure the import can be resumed with
+     * the items already in the mapfile skipped.
+     *
+     * @param c
+     *            context whose current user imports the items
+     * @param mycollections
+     *            collections to add the items to, or null to read each item's
+     *            collections file
+     * @param sourceDir
+     *            directory of item directories
+     * @param mapFile
+     *            the mapfile, appended to when resuming
+     * @param template
+     *            whether to apply the collection's template
+     * @param threads
+     *            number of threads
+     * @param chunkSize
+     *            items each thread commits at once
+     * @throws Exception
+     *             the first failure of any thread, after the others stop
+     */
+    public void addItemsParallel(Context c, Collection[] mycollections, final String sourceDir,
+            String mapFile, final boolean template, int threads, final int chunkSize) throws Exception
+    {
+        if (threads < 1 || chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Threads and chunk size must be at least 1");
+        }
+
+        System.out.println("Adding items from directory: " + sourceDir + " with " + threads + " threads");
+        System.out.println("Generating mapfile: " + mapFile);
+
+        File d = new File(sourceDir);
+        if (!d.isDirectory())
+        {
+            throw new Exception("Error, cannot open source directory " + sourceDir);
+        }
+
+        Map<String, String> skipItems = new HashMap<String, String>();
+        if (isResume && !isTest)
+        {
+            skipItems = readMapFile(mapFile);
+        }
+
+        String[] dircontents = d.list(directoryFilter);
+        Arrays.sort(dircontents, ComparatorUtils.naturalComparator());
+
+        final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+        for (String dir : dircontents)
+        {
+            if (skipItems.containsKey(dir))
+            {
+                System.out.println("Skipping import of " + dir);
+            }
+            else
+            {
+                queue.add(dir);
+            }
+        }
+
+        // each thread finds the collections and user in its own context
+        final int[] collectionIDs;
+        if (mycollections == null)
+        {
+            collectionIDs = null;
+        }
+        else
+        {
+            collectionIDs = new int[mycollections.length];
+            for (int i = 0; i < mycollections.length; i++)
+            {
+                collectionIDs[i] = mycollections[i].getID();
+            }
+        }
+        final int epersonID = c.getCurrentUser().getID();
+
+        final PrintWriter sharedMapOut = isTest ? null : new PrintWriter(new FileWriter(mapFile, isResume));
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threads; t++)
+            {
+                results.add(pool.submit(new Callable<Integer>()
+                {
+                    public Integer call() throws Exception
+                    {
+                        return importItems(sourceDir, queue, collectionIDs, epersonID, template,
+                                chunkSize, sharedMapOut, failed);
+                    }
+                }));
+            }
+
+            Exception failure = null;
+            int imported = 0;
+            for (Future<Integer> result : results)
+            {
+                try
+                {
+                    imported += result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                    }
+                }
+            }
+
+            System.out.println("Imported " + imported + " items");
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            if (sharedMapOut != null)
+            {
+                sharedMapOut.close();
+            }
+        }
+    }
+
+    /**
+     * Import items taken from a queue until it is empty or another thread
+     * fails, in a context of its own.
+     *
+     * @return the number of items imported
+     */
+    private int importItems(String sourceDir, Queue<String> queue, int[] collectionIDs, int epersonID,
+            boolean template, int chunkSize, PrintWriter sharedMapOut, AtomicBoolean failed)
+            throws Exception
+    {
+        Context c = new Context();
+        try
+        {
+            c.setCurrentUser(EPerson.find(c, epersonID));
+            c.turnOffAuthorisationSystem();
+
+            Collection[] mycollections = null;
+            if (collectionIDs != null)
+            {
+                mycollections = new Collection[collectionIDs.length];
+                for (int i = 0; i < collectionIDs.length; i++)
+                {
+                    mycollections[i] = Collection.find(c, collectionIDs[i]);
+                }
+            }
+
+            // mapfile lines of the items not yet committed
+            StringWriter chunk = new StringWriter();
+            PrintWriter chunkOut = new PrintWriter(chunk);
+            int inChunk = 0;
+            int imported = 0;
+
+            String dir;
+            while (!failed.get() && (dir = queue.poll()) != null)
+            {
+                Collection[] clist = mycollections;
+                if (clist == null)
+                {
+                    try
+                    {
+                        clist = processCollectionFile(c, sourceDir + File.separatorChar + dir, "collections");
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        System.out.println(e.getMessage() + " Skipping.");
+                        continue;
+                    }
+                    if (clist == null)
+                    {
+                        System.out.println("No collections specified for item " + dir + ". Skipping.");
+                        continue;
+                    }
+                }
+
+                addItem(c, clist, sourceDir, dir, chunkOut, template);
+                System.out.println(dir);
+                c.clearCache();
+
+                if (++inChunk == chunkSize)
+                {
+                    commitChunk(c, chunk, sharedMapOut);
+                    imported += inChunk;
+                    inChunk = 0;
+                }
+            }
+
+            commitChunk(c, chunk, sharedMapOut);
+            imported += inChunk;
+            c.complete();
+            return imported;
+        }
+        catch (Exception e)
+        {
+            // stop the other threads after the items they are adding
+            failed.set(true);
+            log.error("Parallel import failed, the uncommitted items of this thread are discarded", e);
+            throw e;
+        }
+        finally
+        {
+            if (c.isValid())
+            {
+                c.abort();
+            }
+        }
+    }
+
+    // commit a chunk of items, then record them in the mapfile
+    private void commitChunk(Context c, StringWriter chunk, PrintWriter sharedMapOut) throws SQLException
+    {
+        c.commit();
+
+        if (sharedMapOut != null)
+        {
+            synchronized (sharedMapOut)
+            {
+                sharedMapOut.print(chunk.toString());
+                sharedMapOut.flush();
+            }
+        }
+        chunk.getBuffer().setLength(0);
+    }
+
     private void replaceItems(Context c, Collection[] mycollections,
             String sourceDir, String mapFile, boolean template) throws Exception
     {
@@ -807,6 +1098,7 @@ public class ItemImport
 
             deleteItem(c, oldItem);
             addItem(c, mycollections, sourceDir, newItemName, null, template);
+            c.commit();
             c.clearCache();
         }
     }
@@ -843,7 +1135,7 @@ public class ItemImport
     }
 
     /**
-     * item? try and add it to the archive.
+     * item? try and add it to the archive. The caller commits the context.
      * @param mycollections - add item to these Collections.
      * @param path - directory containing the item directories.
      * @param itemname handle - non-null means we have a pre-defined handle already
@@ -946,14 +1238,12 @@ public class ItemImport
             }
         }
 
-        // made it this far, everything is fine, commit transaction
+        // made it this far, everything is fine; the caller commits
         if (mapOut != null)
         {
             mapOut.println(mapOutputString);
         }
 
-        c.commit();
-
         return myitem;
     }
 
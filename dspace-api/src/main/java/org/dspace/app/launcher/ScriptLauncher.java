@@ -16,6 +16,7 @@ import org.dspace.core.ConfigurationManager;
 import org.dspace.servicemanager.DSpaceKernelImpl;
 import org.dspace.servicemanager.DSpaceKernelInit;
 import org.dspace.services.RequestService;
+import org.dspace.statistics.SolrLoggerQueue;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.input.SAXBuilder;
@@ -77,6 +78,9 @@ public class ScriptLauncher
         int status;
         status = runOneCommand(args);
 
+        // Send the usage events still queued, if any
+        SolrLoggerQueue.shutdownAll();
+
         // Destroy the service kernel if it is still alive
         if (kernelImpl != null)
         {
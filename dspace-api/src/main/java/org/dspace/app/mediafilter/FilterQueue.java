@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * Access to the filterqueue table, which holds the items whose bitstreams
+ * need filtering. Items are added by {@link MediaFilterConsumer}, and taken
+ * off by {@link MediaFilterManager} once they are filtered. An item may be in
+ * the queue more than once; adding never conflicts with another web
+ * application adding the same item.
+ */
+final class FilterQueue
+{
+    private FilterQueue()
+    {
+    }
+
+    /**
+     * Add items to the queue. Does not commit.
+     *
+     * @param context
+     *            DSpace context
+     * @param itemIDs
+     *            IDs of the items
+     * @throws SQLException
+     */
+    static void enqueue(Context context, Set<Integer> itemIDs) throws SQLException
+    {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Integer itemID : itemIDs)
+        {
+            TableRow row = DatabaseManager.row("filterqueue");
+            row.setColumn("item_id", itemID);
+            row.setColumn("queued", now);
+            DatabaseManager.insert(context, row);
+        }
+    }
+
+    /**
+     * @return the highest ID of the entries queued so far, or -1 if the
+     *         queue is empty
+     * @throws SQLException
+     */
+    static int getLastEntry(Context context) throws SQLException
+    {
+        TableRow row = DatabaseManager.querySingle(context,
+                "SELECT COUNT(*) AS num, MAX(filterqueue_id) AS maxid FROM filterqueue");
+        return (row.getLongColumn("num") == 0) ? -1 : row.getIntColumn("maxid");
+    }
+
+    /**
+     * Get the items queued, up to an entry, each once, in ID order.
+     *
+     * @param lastEntry
+     *            highest ID of the entries to read
+     * @return item IDs
+     * @throws SQLException
+     */
+    static List<Integer> getItems(Context context, int lastEntry) throws SQLException
+    {
+        List<Integer> itemIDs = new ArrayList<Integer>();
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT DISTINCT item_id FROM filterqueue WHERE filterqueue_id <= ? ORDER BY item_id",
+                lastEntry);
+        try
+        {
+            while (tri.hasNext())
+            {
+                itemIDs.add(tri.next().getIntColumn("item_id"));
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+        return itemIDs;
+    }
+
+    /**
+     * Take an item off the queue, leaving entries added after it was read.
+     * Does not commit.
+     *
+     * @param itemID
+     *            ID of the item
+     * @param lastEntry
+     *            highest ID of the entries to remove
+     * @throws SQLException
+     */
+    static void dequeue(Context context, int itemID, int lastEntry) throws SQLException
+    {
+        DatabaseManager.updateQuery(context,
+                "DELETE FROM filterqueue WHERE item_id = ? AND filterqueue_id <= ?",
+                itemID, lastEntry);
+    }
+}
@@ -0,0 +1,425 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.dspace.app.mediafilter.MediaFilterManager.FilterJob;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Bundle;
+import org.dspace.content.Item;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+
+/**
+ * Runs the filters of {@link MediaFilterManager} in threads, with a bounded
+ * pool of threads for each filter, while the main thread goes on to the next
+ * items.
+ * <p>
+ * Only the filtering itself (FormatFilter.getDestinationStream) runs in the
+ * pools. Everything which uses the Context (deciding what to filter, opening
+ * the source bitstream, storing the result) stays in the main thread, and
+ * items are finished in the order they were submitted.
+ * <p>
+ * Configuration, in dspace.cfg:
+ * <ul>
+ * <li><code>filter.threads</code>: threads per filter (default 0, which
+ * filters in the main thread without a FilterScheduler). Can be set for one
+ * filter with <code>filter.&lt;class-name&gt;.threads</code>.</li>
+ * <li><code>filter.timeout</code>: seconds a filter may take for one
+ * bitstream before it is given up on (default 0, no limit). Can be set for
+ * one filter with <code>filter.&lt;class-name&gt;.timeout</code>.</li>
+ * <li><code>filter.memory.max-used</code>: percentage of the maximum heap
+ * above which no more bitstreams are handed to the filters until those being
+ * filtered are done (default 90).</li>
+ * </ul>
+ */
+class FilterScheduler
+{
+    private static final Logger log = Logger.getLogger(FilterScheduler.class);
+
+    /** The filters, in the order they are applied */
+    private final FormatFilter[] filters;
+
+    /** Thread pool of each filter */
+    private final Map<FormatFilter, ExecutorService> pools = new IdentityHashMap<FormatFilter, ExecutorService>();
+
+    /** Timeout of each filter, in seconds, 0 for none */
+    private final Map<FormatFilter, Integer> timeouts = new IdentityHashMap<FormatFilter, Integer>();
+
+    /** Cancels filters which run too long */
+    private final ScheduledExecutorService watchdog;
+
+    /** Items submitted and not finished yet, in the order they were submitted */
+    private final Deque<PendingItem> pending = new ArrayDeque<PendingItem>();
+
+    /** Number of bitstreams handed to the filters and not stored yet */
+    private int pendingJobs = 0;
+
+    /** Number of bitstreams which may be handed to the filters at once */
+    private final int maxPendingJobs;
+
+    /** Percentage of the maximum heap which may be used before waiting */
+    private final int maxUsedMemory;
+
+    /**
+     * Create a scheduler with the threads and timeout, in seconds, of each
+     * filter.
+     */
+    FilterScheduler(FormatFilter[] filters, int[] threads, int[] timeouts)
+    {
+        this.filters = filters;
+        int totalThreads = 0;
+        for (int i = 0; i < filters.length; i++)
+        {
+            pools.put(filters[i], Executors.newFixedThreadPool(threads[i],
+                    new FilterThreadFactory(filters[i].getClass().getSimpleName())));
+            this.timeouts.put(filters[i], timeouts[i]);
+            totalThreads += threads[i];
+        }
+        watchdog = Executors.newSingleThreadScheduledExecutor(new FilterThreadFactory("watchdog"));
+        maxPendingJobs = 2 * totalThreads;
+        maxUsedMemory = ConfigurationManager.getIntProperty("filter.memory.max-used", 90);
+    }
+
+    /**
+     * Create a scheduler for the filters, if threads or timeouts are
+     * configured for any of them.
+     *
+     * @param filters
+     *            the filters to run
+     * @return the scheduler, or null if filters run in the main thread
+     */
+    static FilterScheduler create(FormatFilter[] filters)
+    {
+        int defaultThreads = ConfigurationManager.getIntProperty("filter.threads", 0);
+        int defaultTimeout = ConfigurationManager.getIntProperty("filter.timeout", 0);
+
+        int[] threads = new int[filters.length];
+        int[] timeouts = new int[filters.length];
+        boolean needed = false;
+        for (int i = 0; i < filters.length; i++)
+        {
+            threads[i] = ConfigurationManager.getIntProperty(
+                    MediaFilterManager.getFilterConfigKey(filters[i], "threads"), defaultThreads);
+            timeouts[i] = ConfigurationManager.getIntProperty(
+                    MediaFilterManager.getFilterConfigKey(filters[i], "timeout"), defaultTimeout);
+            needed |= threads[i] > 0 || timeouts[i] > 0;
+        }
+        if (!needed)
+        {
+            return null;
+        }
+
+        for (int i = 0; i < filters.length; i++)
+        {
+            threads[i] = Math.max(1, threads[i]);
+        }
+        return new FilterScheduler(filters, threads, timeouts);
+    }
+
+    /**
+     * Hand the bitstreams of an item in the ORIGINAL bundle to the filters
+     * which apply to them, and finish the items whose filters are done.
+     *
+     * @param c
+     *            context
+     * @param item
+     *            the item to filter
+     */
+    void submit(Context c, Item item) throws Exception
+    {
+        PendingItem pendingItem = new PendingItem(item);
+
+        for (Bundle bundle : item.getBundles("ORIGINAL"))
+        {
+            for (Bitstream bitstream : bundle.getBitstreams())
+            {
+                for (FormatFilter filter : filters)
+                {
+                    if (!MediaFilterManager.appliesTo(filter, bitstream))
+                    {
+                        continue;
+                    }
+
+                    FilterJob job;
+                    try
+                    {
+                        job = MediaFilterManager.prepareBitstream(c, item, bitstream, filter);
+                    }
+                    catch (Exception e)
+                    {
+                        MediaFilterManager.reportError(item, bitstream, e);
+                        continue;
+                    }
+                    if (job == null)
+                    {
+                        continue;
+                    }
+
+                    // wait for earlier items when there is enough work queued,
+                    // or too little memory left
+                    while (!pending.isEmpty()
+                            && (pendingJobs >= maxPendingJobs || isMemoryLow()))
+                    {
+                        finishFirst(c);
+                    }
+
+                    pendingItem.jobs.add(start(job));
+                    pendingJobs++;
+                }
+            }
+        }
+
+        pending.add(pendingItem);
+
+        while (!pending.isEmpty() && pending.peek().isDone())
+        {
+            finishFirst(c);
+        }
+    }
+
+    /**
+     * Wait for the filters of all submitted items, and finish them.
+     *
+     * @param c
+     *            context
+     */
+    void finish(Context c) throws Exception
+    {
+        while (!pending.isEmpty())
+        {
+            finishFirst(c);
+        }
+    }
+
+    /**
+     * Stop all threads. Filters still running are interrupted.
+     */
+    void shutdown()
+    {
+        for (ExecutorService pool : pools.values())
+        {
+            pool.shutdownNow();
+        }
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * @return the number of items submitted and not finished yet
+     */
+    int getPendingItems()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Hand a bitstream to the pool of its filter. The timeout counts from
+     * when a thread of the pool starts on it.
+     */
+    private Job start(FilterJob filterJob)
+    {
+        final Job job = new Job(filterJob);
+        final int timeout = timeouts.get(filterJob.formatFilter);
+
+        job.future = new FutureTask<InputStream>(new Callable<InputStream>()
+        {
+            @Override
+            public InputStream call() throws Exception
+            {
+                ScheduledFuture<?> alarm = null;
+                if (timeout > 0)
+                {
+                    alarm = watchdog.schedule(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            job.future.cancel(true);
+                        }
+                    }, timeout, TimeUnit.SECONDS);
+                }
+
+                MediaFilterManager.setCurrentItem(job.filterJob.item);
+                try
+                {
+                    return job.filterJob.formatFilter.getDestinationStream(job.filterJob.sourceStream);
+                }
+                catch (OutOfMemoryError oome)
+                {
+                    System.out.println("!!! OutOfMemoryError !!!");
+                    return null;
+                }
+                finally
+                {
+                    MediaFilterManager.setCurrentItem(null);
+                    if (alarm != null)
+                    {
+                        alarm.cancel(false);
+                    }
+                }
+            }
+        });
+        pools.get(filterJob.formatFilter).execute(job.future);
+        return job;
+    }
+
+    /**
+     * Wait for the filters of the first pending item, store their results
+     * and finish the item.
+     */
+    private void finishFirst(Context c) throws Exception
+    {
+        PendingItem pendingItem = pending.poll();
+        boolean filtered = false;
+
+        for (Job job : pendingItem.jobs)
+        {
+            FilterJob filterJob = job.filterJob;
+            pendingJobs--;
+            try
+            {
+                InputStream destStream = job.future.get();
+                if (MediaFilterManager.storeBitstream(c, filterJob, destStream))
+                {
+                    pendingItem.item.update(); // Make sure new bitstream has a sequence
+                                               // number
+                    filtered = true;
+                }
+            }
+            catch (CancellationException e)
+            {
+                System.out.println("TIMEOUT: bitstream " + filterJob.source.getID()
+                        + " (item: " + pendingItem.item.getHandle() + ") not filtered by "
+                        + filterJob.formatFilter.getClass().getName() + " within "
+                        + timeouts.get(filterJob.formatFilter) + " seconds");
+            }
+            catch (ExecutionException e)
+            {
+                MediaFilterManager.reportError(pendingItem.item, filterJob.source, e.getCause());
+            }
+            catch (Exception e)
+            {
+                MediaFilterManager.reportError(pendingItem.item, filterJob.source, e);
+            }
+            finally
+            {
+                close(filterJob.sourceStream);
+            }
+        }
+
+        MediaFilterManager.itemDone(c, pendingItem.item, filtered);
+    }
+
+    private boolean isMemoryLow()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used * 100 > runtime.maxMemory() * maxUsedMemory;
+    }
+
+    private static void close(InputStream stream)
+    {
+        if (stream != null)
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Could not close bitstream: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A bitstream handed to a filter.
+     */
+    private static class Job
+    {
+        final FilterJob filterJob;
+
+        FutureTask<InputStream> future;
+
+        Job(FilterJob filterJob)
+        {
+            this.filterJob = filterJob;
+        }
+    }
+
+    /**
+     * An item whose bitstreams are being filtered.
+     */
+    private static class PendingItem
+    {
+        final Item item;
+
+        final List<Job> jobs = new ArrayList<Job>();
+
+        PendingItem(Item item)
+        {
+            this.item = item;
+        }
+
+        boolean isDone()
+        {
+            for (Job job : jobs)
+            {
+                if (!job.future.isDone())
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Creates daemon threads, so a filter which never returns does not keep
+     * the JVM from exiting.
+     */
+    private static class FilterThreadFactory implements ThreadFactory
+    {
+        private final String name;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        FilterThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "filter-media-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Bundle;
+import org.dspace.content.Item;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Queues archived items which get new or changed bitstreams in their ORIGINAL
+ * bundle, and items as they are installed, so that
+ * <code>filter-media -u</code> only has to look at those. The queue is kept
+ * in the database, in the filterqueue table.
+ * <p>
+ * Filters in dspace.cfg:
+ * <code>event.consumer.mediafilter.filters = Item+Install : Bundle+Add : Bitstream+Modify</code>
+ */
+public class MediaFilterConsumer implements Consumer
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(MediaFilterConsumer.class);
+
+    /** IDs of the items to queue at the end of the event */
+    private Set<Integer> itemIDs = null;
+
+    @Override
+    public void initialize() throws Exception
+    {
+
+    }
+
+    /**
+     * Note the item of the bitstream or bundle, if it is a bitstream of the
+     * ORIGINAL bundle of an archived item.
+     *
+     * @param ctx
+     *            DSpace context
+     * @param event
+     *            Content event
+     */
+    @Override
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (itemIDs == null)
+        {
+            itemIDs = new HashSet<Integer>();
+        }
+
+        int st = event.getSubjectType();
+        int et = event.getEventType();
+
+        switch (st)
+        {
+            case Constants.ITEM:
+                if (et == Event.INSTALL)
+                {
+                    itemIDs.add(event.getSubjectID());
+                }
+                break;
+
+            case Constants.BUNDLE:
+                if (et == Event.ADD && event.getObjectType() == Constants.BITSTREAM)
+                {
+                    addItems((Bundle) event.getSubject(ctx));
+                }
+                break;
+
+            case Constants.BITSTREAM:
+                if (et == Event.MODIFY)
+                {
+                    Bitstream bitstream = (Bitstream) event.getSubject(ctx);
+                    if (bitstream != null)
+                    {
+                        for (Bundle bundle : bitstream.getBundles())
+                        {
+                            addItems(bundle);
+                        }
+                    }
+                }
+                break;
+
+            default:
+                log.warn("consume() got unrecognized event: " + event.toString());
+        }
+    }
+
+    private void addItems(Bundle bundle) throws SQLException
+    {
+        if (bundle == null || !"ORIGINAL".equals(bundle.getName()))
+        {
+            return;
+        }
+
+        // items still being submitted are queued when they are installed
+        for (Item item : bundle.getItems())
+        {
+            if (item.isArchived())
+            {
+                itemIDs.add(item.getID());
+            }
+        }
+    }
+
+    /**
+     * Write the queued items to the database.
+     *
+     * @param ctx
+     *            DSpace context
+     */
+    @Override
+    public void end(Context ctx) throws Exception
+    {
+        if (itemIDs != null && !itemIDs.isEmpty())
+        {
+            FilterQueue.enqueue(ctx, itemIDs);
+            ctx.getDBConnection().commit();
+            log.debug("Queued items " + itemIDs + " for media filtering");
+        }
+
+        itemIDs = null;
+    }
+
+    @Override
+    public void finish(Context ctx) throws Exception
+    {
+
+    }
+}
@@ -7,7 +7,10 @@
  */
 package org.dspace.app.mediafilter;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -24,6 +27,7 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
 import org.dspace.authorize.AuthorizeManager;
@@ -44,6 +48,7 @@ import org.dspace.core.SelfNamedPlugin;
 import org.dspace.eperson.Group;
 import org.dspace.handle.HandleManager;
 import org.dspace.search.DSIndexer;
+import org.dspace.storage.rdbms.DatabaseManager;
 
 /**
  * MediaFilterManager is the class that invokes the media/format filters over the
@@ -51,8 +56,14 @@ import org.dspace.search.DSIndexer;
  * MFM: -v verbose outputs all extracted text to STDOUT; -f force forces all
  * bitstreams to be processed, even if they have been before; -n noindex does not
  * recreate index after processing bitstreams; -i [identifier] limits processing 
- * scope to a community, collection or item; and -m [max] limits processing to a
- * maximum number of items.
+ * scope to a community, collection or item; -m [max] limits processing to a
+ * maximum number of items; -c [file] keeps a checkpoint of a run over all
+ * items in file, from which the next run resumes; and -u only processes the
+ * items queued by {@link MediaFilterConsumer}.
+ * <p>
+ * If <code>filter.threads</code> or <code>filter.timeout</code> is set, the
+ * filters run in a {@link FilterScheduler}, so several bitstreams are filtered
+ * at once and a filter which hangs can be given up on.
  */
 public class MediaFilterManager
 {
@@ -79,7 +90,20 @@ public class MediaFilterManager
     
     static int processed = 0;   // number items processed
     
-    private static Item currentItem = null;   // current item being processed
+    // current item being processed, by the thread running a filter on it
+    private static final ThreadLocal<Item> currentItem = new ThreadLocal<Item>();
+
+    private static FilterScheduler scheduler = null; // runs filters in threads, if configured
+
+    private static File checkpointFile = null; // where the last item done is kept
+
+    private static int checkpointID = -1; // ID of the last item done, in item ID order
+
+    private static long checkpointWritten = 0; // when checkpointFile was last written
+
+    private static final long CHECKPOINT_INTERVAL = 10000; // ms between checkpoint writes
+
+    private static int queueLastEntry = -1; // last filterqueue entry read, when processing the queue
     
     private static FormatFilter[] filterClasses = null;
     
@@ -125,6 +149,10 @@ public class MediaFilterManager
         		"ONLY process bitstreams belonging to identifier");
         options.addOption("m", "maximum", true,
 				"process no more than maximum items");
+        options.addOption("c", "checkpoint", true,
+                "keep progress of a run over all items in this file, and resume from it");
+        options.addOption("u", "queue", false,
+                "ONLY process items queued by the mediafilter event consumer");
         options.addOption("h", "help", false, "help");
 
         //create a "plugin" option (to specify specific MediaFilter plugins to run)
@@ -324,6 +352,40 @@ public class MediaFilterManager
             //save to a global skip list
             skipList = Arrays.asList(skipIds);
         }
+
+        if (line.hasOption('c'))
+        {
+            if (identifier != null || skipList != null)
+            {
+                System.err.println("\nERROR: -c (-checkpoint) can only be used when filtering all items.\n");
+                System.exit(1);
+            }
+            checkpointFile = new File(line.getOptionValue('c'));
+            if (checkpointFile.exists())
+            {
+                String checkpoint = FileUtils.readFileToString(checkpointFile, "UTF-8").trim();
+                try
+                {
+                    checkpointID = Integer.parseInt(checkpoint);
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("\nERROR: checkpoint file " + checkpointFile.getPath()
+                            + " does not hold an item ID (found \"" + checkpoint + "\")."
+                            + " Delete it to start from the first item.\n");
+                    System.exit(1);
+                }
+            }
+        }
+
+        boolean useQueue = line.hasOption('u');
+        if (useQueue && (identifier != null || checkpointFile != null))
+        {
+            System.err.println("\nERROR: -u (-queue) cannot be used with -i or -c.\n");
+            System.exit(1);
+        }
+
+        scheduler = FilterScheduler.create(filterClasses);
         
         Context c = null;
 
@@ -335,7 +397,11 @@ public class MediaFilterManager
             c.turnOffAuthorisationSystem();
 
             // now apply the filters
-            if (identifier == null)
+            if (useQueue)
+            {
+                applyFiltersQueue(c);
+            }
+            else if (identifier == null)
             {
             	applyFiltersAllItems(c);
             }
@@ -362,6 +428,10 @@ public class MediaFilterManager
             	}
             }
 
+            if (scheduler != null)
+            {
+                scheduler.finish(c);
+            }
             c.complete();
             c = null;
         }
@@ -371,6 +441,10 @@ public class MediaFilterManager
         }
         finally
         {
+            if (scheduler != null)
+            {
+                scheduler.shutdown();
+            }
             if (c != null)
             {
                 c.abort();
@@ -395,13 +469,16 @@ public class MediaFilterManager
         else 
         {
             //otherwise, just find every item and process
-            ItemIterator i = Item.findAll(c);
+            ItemIterator i = (checkpointFile == null) ? Item.findAll(c)
+                    : findAllAfterCheckpoint(c);
+            boolean complete = false;
             try
             {
-                while (i.hasNext() && processed < max2Process)
+                while (i.hasNext() && moreToProcess())
                 {
                     applyFiltersItem(c, i.next());
                 }
+                complete = !i.hasNext();
             }
             finally
             {
@@ -410,9 +487,99 @@ public class MediaFilterManager
                     i.close();
                 }
             }
+
+            if (scheduler != null)
+            {
+                scheduler.finish(c);
+            }
+            if (checkpointFile != null)
+            {
+                if (complete)
+                {
+                    // start from the beginning next time
+                    checkpointFile.delete();
+                }
+                else
+                {
+                    writeCheckpoint();
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the items after the one recorded in the checkpoint file (read
+     * when the options are parsed), in item ID order, so that the
+     * checkpoint can be moved along as items are done.
+     */
+    private static ItemIterator findAllAfterCheckpoint(Context c)
+            throws SQLException
+    {
+        if (checkpointID >= 0 && !isQuiet)
+        {
+            System.out.println("Resuming after item " + checkpointID);
         }
+
+        return new ItemIterator(c, DatabaseManager.queryTable(c, "item",
+                "SELECT * FROM item WHERE in_archive='1' AND item_id > ? ORDER BY item_id",
+                checkpointID));
+    }
+
+    private static void writeCheckpoint() throws IOException
+    {
+        FileUtils.writeStringToFile(checkpointFile, Integer.toString(checkpointID), "UTF-8");
+        checkpointWritten = System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if fewer than the maximum number of items have been
+     *         processed, counting those still being filtered
+     */
+    private static boolean moreToProcess()
+    {
+        int filtering = (scheduler == null) ? 0 : scheduler.getPendingItems();
+        return processed + filtering < max2Process;
     }
     
+    /**
+     * Apply the filters to the items queued by {@link MediaFilterConsumer},
+     * taking each off the queue once it is done. Items queued while this
+     * runs are left for the next run.
+     */
+    public static void applyFiltersQueue(Context c) throws Exception
+    {
+        queueLastEntry = FilterQueue.getLastEntry(c);
+        if (queueLastEntry < 0)
+        {
+            return;
+        }
+
+        for (Integer itemID : FilterQueue.getItems(c, queueLastEntry))
+        {
+            if (!moreToProcess())
+            {
+                break;
+            }
+
+            Item item = Item.find(c, itemID);
+            if (item != null && item.isArchived())
+            {
+                applyFiltersItem(c, item);
+            }
+            else
+            {
+                // deleted, withdrawn or not installed yet
+                FilterQueue.dequeue(c, itemID, queueLastEntry);
+                c.commit();
+            }
+        }
+
+        if (scheduler != null)
+        {
+            scheduler.finish(c);
+        }
+    }
+
     public static void applyFiltersCommunity(Context c, Community community)
                                              throws Exception
     {   //only apply filters if community not in skip-list
@@ -441,7 +608,7 @@ public class MediaFilterManager
             ItemIterator i = collection.getItems();
             try
             {
-                while (i.hasNext() && processed < max2Process)
+                while (i.hasNext() && moreToProcess())
                 {
                     applyFiltersItem(c, i.next());
                 }
@@ -461,21 +628,64 @@ public class MediaFilterManager
         //only apply filters if item not in skip-list
         if(!inSkipList(item.getHandle()))
         {
+          if (scheduler != null)
+          {
+              // the scheduler calls itemDone once it is filtered
+              scheduler.submit(c, item);
+              return;
+          }
+
     	  //cache this item in MediaFilterManager
     	  //so it can be accessed by MediaFilters as necessary
-    	  currentItem = item;
+    	  currentItem.set(item);
     	
-          if (filterItem(c, item))
-          {
-        	  // commit changes after each filtered item
-        	  c.commit();
-              // increment processed count
-              ++processed;
-          }
-          // clear item objects from context cache and internal cache
-          item.decache();
-          currentItem = null;
-        }  
+          boolean filtered = filterItem(c, item);
+          currentItem.remove();
+          itemDone(c, item, filtered);
+        }
+        else if (queueLastEntry >= 0)
+        {
+            // skipped items do not stay in the queue
+            FilterQueue.dequeue(c, item.getID(), queueLastEntry);
+            c.commit();
+        }
+    }
+
+    /**
+     * Finish an item once all filters have been applied to it.
+     *
+     * @param filtered
+     *            true if any bitstreams of the item were processed
+     */
+    static void itemDone(Context c, Item item, boolean filtered) throws Exception
+    {
+        if (queueLastEntry >= 0)
+        {
+            FilterQueue.dequeue(c, item.getID(), queueLastEntry);
+        }
+
+        if (filtered || queueLastEntry >= 0)
+        {
+            // commit changes after each filtered item
+            c.commit();
+        }
+        if (filtered)
+        {
+            // increment processed count
+            ++processed;
+        }
+        // clear item objects from context cache and internal cache
+        item.decache();
+
+        // items are done in ID order when a checkpoint is kept
+        if (checkpointFile != null)
+        {
+            checkpointID = item.getID();
+            if (System.currentTimeMillis() - checkpointWritten > CHECKPOINT_INTERVAL)
+            {
+                writeCheckpoint();
+            }
+        }
     }
 
     /**
@@ -522,27 +732,7 @@ public class MediaFilterManager
     	// by more than one filter
     	for (int i = 0; i < filterClasses.length; i++)
     	{
-    		//List fmts = (List)filterFormats.get(filterClasses[i].getClass().getName());
-    	    String pluginName = null;
-    	               
-    	    //if this filter class is a SelfNamedPlugin,
-    	    //its list of supported formats is different for
-    	    //differently named "plugin"
-    	    if( SelfNamedPlugin.class.isAssignableFrom(filterClasses[i].getClass()) )
-    	    {
-    	        //get plugin instance name for this media filter
-    	        pluginName = ((SelfNamedPlugin)filterClasses[i]).getPluginInstanceName();
-    	    }
-    	               
-    	    //Get list of supported formats for the filter (and possibly named plugin)
-    	    //For SelfNamedPlugins, map key is:  
-    	    //  <class-name><separator><plugin-name>
-    	    //For other MediaFilters, map key is just:
-    	    //  <class-name>
-    	    List<String> fmts = filterFormats.get(filterClasses[i].getClass().getName() +
-    	                       (pluginName!=null ? FILTER_PLUGIN_SEPARATOR + pluginName : ""));
-    	   
-    	    if (fmts.contains(myBitstream.getFormat().getShortDescription()))
+    	    if (appliesTo(filterClasses[i], myBitstream))
     		{
             	try
             	{
@@ -556,102 +746,125 @@ public class MediaFilterManager
             	}
                 catch (Exception e)
                 {
-                	String handle = myItem.getHandle();
-                	Bundle[] bundles = myBitstream.getBundles();
-                	long size = myBitstream.getSize();
-                	String checksum = myBitstream.getChecksum() + " ("+myBitstream.getChecksumAlgorithm()+")";
-                	int assetstore = myBitstream.getStoreNumber();
-   
-                	// Printout helpful information to find the errored bitstream.
-                	System.out.println("ERROR filtering, skipping bitstream:\n");
-                	System.out.println("\tItem Handle: "+ handle);
-                	for (Bundle bundle : bundles)
-                	{
-                		System.out.println("\tBundle Name: " + bundle.getName());
-                	}
-                	System.out.println("\tFile Size: " + size);
-                	System.out.println("\tChecksum: " + checksum);
-                	System.out.println("\tAsset Store: " + assetstore);
-                	System.out.println(e);
-                    e.printStackTrace();
+                    reportError(myItem, myBitstream, e);
                 }
     		}
-            else if (filterClasses[i] instanceof SelfRegisterInputFormats)
+    	}
+        return filtered;
+    }
+
+    /**
+     * Check whether a filter should be applied to a bitstream, from the input
+     * formats configured for the filter, or those it registers itself.
+     *
+     * @return true if the filter handles the bitstream's format
+     */
+    static boolean appliesTo(FormatFilter filter, Bitstream myBitstream)
+    {
+    	//List fmts = (List)filterFormats.get(filter.getClass().getName());
+        String pluginName = null;
+                   
+        //if this filter class is a SelfNamedPlugin,
+        //its list of supported formats is different for
+        //differently named "plugin"
+        if( SelfNamedPlugin.class.isAssignableFrom(filter.getClass()) )
+        {
+            //get plugin instance name for this media filter
+            pluginName = ((SelfNamedPlugin)filter).getPluginInstanceName();
+        }
+                   
+        //Get list of supported formats for the filter (and possibly named plugin)
+        //For SelfNamedPlugins, map key is:  
+        //  <class-name><separator><plugin-name>
+        //For other MediaFilters, map key is just:
+        //  <class-name>
+        List<String> fmts = filterFormats.get(filter.getClass().getName() +
+                           (pluginName!=null ? FILTER_PLUGIN_SEPARATOR + pluginName : ""));
+       
+        if (fmts != null && fmts.contains(myBitstream.getFormat().getShortDescription()))
+        {
+            return true;
+        }
+        else if (filter instanceof SelfRegisterInputFormats)
+        {
+            // Filter implements self registration, so check to see if it should be applied
+            // given the formats it claims to support
+            SelfRegisterInputFormats srif = (SelfRegisterInputFormats)filter;
+
+            // Check MIME type
+            String[] mimeTypes = srif.getInputMIMETypes();
+            if (mimeTypes != null)
             {
-                // Filter implements self registration, so check to see if it should be applied
-                // given the formats it claims to support
-                SelfRegisterInputFormats srif = (SelfRegisterInputFormats)filterClasses[i];
-                boolean applyFilter = false;
-
-                // Check MIME type
-                String[] mimeTypes = srif.getInputMIMETypes();
-                if (mimeTypes != null)
+                for (String mimeType : mimeTypes)
                 {
-                    for (String mimeType : mimeTypes)
+                    if (mimeType.equalsIgnoreCase(myBitstream.getFormat().getMIMEType()))
                     {
-                        if (mimeType.equalsIgnoreCase(myBitstream.getFormat().getMIMEType()))
-                        {
-                            applyFilter = true;
-                        }
+                        return true;
                     }
                 }
+            }
 
-                // Check description
-                if (!applyFilter)
+            // Check description
+            String[] descriptions = srif.getInputDescriptions();
+            if (descriptions != null)
+            {
+                for (String desc : descriptions)
                 {
-                    String[] descriptions = srif.getInputDescriptions();
-                    if (descriptions != null)
+                    if (desc.equalsIgnoreCase(myBitstream.getFormat().getShortDescription()))
                     {
-                        for (String desc : descriptions)
-                        {
-                            if (desc.equalsIgnoreCase(myBitstream.getFormat().getShortDescription()))
-                            {
-                                applyFilter = true;
-                            }
-                        }
+                        return true;
                     }
                 }
+            }
 
-                // Check extensions
-                if (!applyFilter)
+            // Check extensions
+            String[] extensions = srif.getInputExtensions();
+            if (extensions != null)
+            {
+                for (String ext : extensions)
                 {
-                    String[] extensions = srif.getInputExtensions();
-                    if (extensions != null)
+                    String[] formatExtensions = myBitstream.getFormat().getExtensions();
+                    if (formatExtensions != null && ArrayUtils.contains(formatExtensions, ext))
                     {
-                        for (String ext : extensions)
-                        {
-                            String[] formatExtensions = myBitstream.getFormat().getExtensions();
-                            if (formatExtensions != null && ArrayUtils.contains(formatExtensions, ext))
-                            {
-                                applyFilter = true;
-                            }
-                        }
+                        return true;
                     }
                 }
+            }
+        }
+        return false;
+    }
 
-                // Filter claims to handle this type of file, so attempt to apply it
-                if (applyFilter)
-                {
-                    try
-                    {
-                        // only update item if bitstream not skipped
-                        if (processBitstream(c, myItem, myBitstream, filterClasses[i]))
-                        {
-                               myItem.update(); // Make sure new bitstream has a sequence
-                                                 // number
-                               filtered = true;
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        System.out.println("ERROR filtering, skipping bitstream #"
-                                + myBitstream.getID() + " " + e);
-                        e.printStackTrace();
-                    }
-                }
+    /**
+     * Print out helpful information to find a bitstream which could not be
+     * filtered.
+     */
+    static void reportError(Item myItem, Bitstream myBitstream, Throwable e)
+    {
+        try
+        {
+            String handle = myItem.getHandle();
+            Bundle[] bundles = myBitstream.getBundles();
+            long size = myBitstream.getSize();
+            String checksum = myBitstream.getChecksum() + " ("+myBitstream.getChecksumAlgorithm()+")";
+            int assetstore = myBitstream.getStoreNumber();
+
+            System.out.println("ERROR filtering, skipping bitstream:\n");
+            System.out.println("\tItem Handle: "+ handle);
+            for (Bundle bundle : bundles)
+            {
+                System.out.println("\tBundle Name: " + bundle.getName());
             }
-    	}
-        return filtered;
+            System.out.println("\tFile Size: " + size);
+            System.out.println("\tChecksum: " + checksum);
+            System.out.println("\tAsset Store: " + assetstore);
+        }
+        catch (SQLException sqle)
+        {
+            System.out.println("ERROR filtering, skipping bitstream #"
+                    + myBitstream.getID());
+        }
+        System.out.println(e);
+        e.printStackTrace();
     }
     
     /**
@@ -675,11 +888,65 @@ public class MediaFilterManager
      */
     public static boolean processBitstream(Context c, Item item, Bitstream source, FormatFilter formatFilter)
             throws Exception
+    {
+        FilterJob job = prepareBitstream(c, item, source, formatFilter);
+        if (job == null)
+        {
+            return false;
+        }
+
+        InputStream destStream;
+        try {
+            destStream = formatFilter.getDestinationStream(job.sourceStream);
+        }
+        catch (OutOfMemoryError oome)
+        {
+            System.out.println("!!! OutOfMemoryError !!!");
+            return false;
+        }
+
+        return storeBitstream(c, job, destStream);
+    }
+
+    /**
+     * A bitstream which is to be filtered, with what is needed to store the
+     * result.
+     */
+    static final class FilterJob
+    {
+        final Item item;
+
+        final Bitstream source;
+
+        final FormatFilter formatFilter;
+
+        final String newName; // name of the rendition
+
+        InputStream sourceStream; // bits of the source bitstream
+
+        FilterJob(Item item, Bitstream source, FormatFilter formatFilter, String newName)
+        {
+            this.item = item;
+            this.source = source;
+            this.formatFilter = formatFilter;
+            this.newName = newName;
+        }
+    }
+
+    /**
+     * First part of {@link #processBitstream}: decide whether the bitstream
+     * is to be filtered, and open it. Uses the context, so it must run in the
+     * thread which owns it.
+     *
+     * @return the bitstream to filter, or null if it is skipped
+     */
+    static FilterJob prepareBitstream(Context c, Item item, Bitstream source, FormatFilter formatFilter)
+            throws Exception
     {
         //do pre-processing of this bitstream, and if it fails, skip this bitstream!
     	if(!formatFilter.preProcessBitstream(c, item, source))
         {
-            return false;
+            return null;
         }
         	
     	boolean overWrite = MediaFilterManager.isForce;
@@ -687,29 +954,8 @@ public class MediaFilterManager
         // get bitstream filename, calculate destination filename
         String newName = formatFilter.getFilteredName(source.getName());
 
-        Bitstream existingBitstream = null; // is there an existing rendition?
-        Bundle targetBundle = null; // bundle we're modifying
-
-        Bundle[] bundles = item.getBundles(formatFilter.getBundleName());
-
-        // check if destination bitstream exists
-        if (bundles.length > 0)
-        {
-            // only finds the last match (FIXME?)
-            for (int i = 0; i < bundles.length; i++)
-            {
-                Bitstream[] bitstreams = bundles[i].getBitstreams();
-
-                for (int j = 0; j < bitstreams.length; j++)
-                {
-                    if (bitstreams[j].getName().equals(newName))
-                    {
-                        targetBundle = bundles[i];
-                        existingBitstream = bitstreams[j];
-                    }
-                }
-            }
-        }
+        // is there an existing rendition?
+        Bitstream existingBitstream = findRendition(item.getBundles(formatFilter.getBundleName()), newName);
 
         // if exists and overwrite = false, exit
         if (!overWrite && (existingBitstream != null))
@@ -720,7 +966,7 @@ public class MediaFilterManager
                         + " (item: " + item.getHandle() + ") because '" + newName + "' already exists");
             }
 
-            return false;
+            return null;
         }
         
         if(isVerbose) {
@@ -728,27 +974,56 @@ public class MediaFilterManager
                 + " (item: " + item.getHandle() + ")");
         }
 
-        InputStream destStream;
-        try {
-            System.out.println("File: " + newName);
-            destStream = formatFilter.getDestinationStream(source.retrieve());
-            if (destStream == null)
-            {
-                if (!isQuiet)
-                {
-                    System.out.println("SKIPPED: bitstream " + source.getID()
-                        + " (item: " + item.getHandle() + ") because filtering was unsuccessful");
-                }
+        System.out.println("File: " + newName);
+        FilterJob job = new FilterJob(item, source, formatFilter, newName);
+        job.sourceStream = source.retrieve();
+        return job;
+    }
+
+    /**
+     * Last part of {@link #processBitstream}: store the result of the
+     * filter. Uses the context, so it must run in the thread which owns it.
+     *
+     * @param destStream
+     *            result of the filter, or null if filtering was unsuccessful
+     * @return true if new rendition is created
+     */
+    static boolean storeBitstream(Context c, FilterJob job, InputStream destStream)
+            throws Exception
+    {
+        Item item = job.item;
+        Bitstream source = job.source;
+        FormatFilter formatFilter = job.formatFilter;
 
-                return false;
+        if (destStream == null)
+        {
+            if (!isQuiet)
+            {
+                System.out.println("SKIPPED: bitstream " + source.getID()
+                    + " (item: " + item.getHandle() + ") because filtering was unsuccessful");
             }
+
+            return false;
         }
-        catch (OutOfMemoryError oome)
+
+        // look again, as other jobs for the item may have been stored since
+        // this one was prepared
+        Bundle[] bundles = item.getBundles(formatFilter.getBundleName());
+        Bitstream existingBitstream = findRendition(bundles, job.newName);
+
+        if (!isForce && (existingBitstream != null))
         {
-            System.out.println("!!! OutOfMemoryError !!!");
+            if (!isQuiet)
+            {
+                System.out.println("SKIPPED: bitstream " + source.getID()
+                        + " (item: " + item.getHandle() + ") because '" + job.newName + "' already exists");
+            }
+
             return false;
         }
 
+        Bundle targetBundle = null; // bundle we're modifying
+
         // create new bundle if needed
         if (bundles.length < 1)
         {
@@ -763,7 +1038,7 @@ public class MediaFilterManager
         Bitstream b = targetBundle.createBitstream(destStream);
 
         // Now set the format and name of the bitstream
-        b.setName(newName);
+        b.setName(job.newName);
         b.setSource("Written by FormatFilter " + formatFilter.getClass().getName() +
         			" on " + DCDate.getCurrent() + " (GMT)."); 
         b.setDescription(formatFilter.getDescription());
@@ -798,7 +1073,7 @@ public class MediaFilterManager
         if (!isQuiet)
         {
             System.out.println("FILTERED: bitstream " + source.getID()
-                    + " (item: " + item.getHandle() + ") and created '" + newName + "'");
+                    + " (item: " + item.getHandle() + ") and created '" + job.newName + "'");
         }
 
         //do post-processing of the generated bitstream
@@ -807,6 +1082,31 @@ public class MediaFilterManager
         return true;
     }
     
+    /**
+     * Find a rendition by name in the bundles renditions go in.
+     *
+     * @return the rendition, or null if there is none
+     */
+    private static Bitstream findRendition(Bundle[] bundles, String newName) throws SQLException
+    {
+        Bitstream existingBitstream = null;
+
+        // only finds the last match (FIXME?)
+        for (int i = 0; i < bundles.length; i++)
+        {
+            Bitstream[] bitstreams = bundles[i].getBitstreams();
+
+            for (int j = 0; j < bitstreams.length; j++)
+            {
+                if (bitstreams[j].getName().equals(newName))
+                {
+                    existingBitstream = bitstreams[j];
+                }
+            }
+        }
+        return existingBitstream;
+    }
+
     /**
      * Return the item that is currently being processed/filtered
      * by the MediaFilterManager.
@@ -819,7 +1119,41 @@ public class MediaFilterManager
      */
     public static Item getCurrentItem()
     {
-        return currentItem;
+        return currentItem.get();
+    }
+
+    /**
+     * Set the item being filtered by this thread.
+     *
+     * @param item
+     *            the item, or null when done with it
+     */
+    static void setCurrentItem(Item item)
+    {
+        if (item == null)
+        {
+            currentItem.remove();
+        }
+        else
+        {
+            currentItem.set(item);
+        }
+    }
+
+    /**
+     * Get the key of a setting of a filter in dspace.cfg. For SelfNamedPlugins
+     * it is filter.&lt;class-name&gt;.&lt;plugin-name&gt;.&lt;suffix&gt;,
+     * for other MediaFilters filter.&lt;class-name&gt;.&lt;suffix&gt;.
+     */
+    static String getFilterConfigKey(FormatFilter filter, String suffix)
+    {
+        String pluginName = null;
+        if (SelfNamedPlugin.class.isAssignableFrom(filter.getClass()))
+        {
+            pluginName = ((SelfNamedPlugin) filter).getPluginInstanceName();
+        }
+        return FILTER_PREFIX + "." + filter.getClass().getName()
+                + (pluginName != null ? "." + pluginName : "") + "." + suffix;
     }
     
     /**
@@ -50,6 +50,9 @@ public class CreateStatReport {
 	/**File suffix for log files*/
 	private static String outputSuffix = ".dat";
 	
+	/**File suffix for the state of incremental log analysis*/
+	private static String stateSuffix = ".state";
+	
 	/**User context*/
 	private static Context context;
 
@@ -178,7 +181,9 @@ public class CreateStatReport {
         myOutFile.append(calendar.get(Calendar.MONTH)+1);
         myOutFile.append(outputSuffix);        
                              
-        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp);
+        // only the lines logged since the last run need analysing
+        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp,
+                                myOutFile.toString() + stateSuffix, 0);
 	}	
 	
 	/**
@@ -209,7 +214,9 @@ public class CreateStatReport {
         myOutFile.append(calendar.get(Calendar.DAY_OF_MONTH));
         myOutFile.append(outputSuffix); 
 		
-        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp);
+        // only the lines logged since the last run need analysing
+        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp,
+                                outputLogDirectory + outputPrefix + "all" + stateSuffix, 0);
 	}
 	
 	/**
@@ -256,7 +263,8 @@ public class CreateStatReport {
 	        myOutFile.append(currentMonth.get(Calendar.MONTH)+1);
 	        myOutFile.append(outputSuffix); 
 	        	        
-	        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp);
+	        LogAnalyser.processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile.toString(), myStartDate, myEndDate, myLookUp,
+	                                myOutFile.toString() + stateSuffix, 0);
 	        
 			currentMonth.add(Calendar.MONTH, 1);
 		}
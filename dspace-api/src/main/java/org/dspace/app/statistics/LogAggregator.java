@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.statistics;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class holds the counts the LogAnalyser aggregates from log lines.
+ * Each log file is analysed into an aggregator of its own, so that files
+ * may be analysed by several threads at once, and the aggregators are then
+ * merged.  For incremental analysis, the merged counts are saved between
+ * runs, and the lines added to the log files since are merged into them.
+ *
+ * @see LogAnalyser
+ */
+class LogAggregator implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /** counts of all actions performed in the system */
+    final Map<String, Integer> actions = new HashMap<String, Integer>();
+
+    /** counts of all search words */
+    final Map<String, Integer> searches = new HashMap<String, Integer>();
+
+    /** counts of user logins */
+    final Map<String, Integer> users = new HashMap<String, Integer>();
+
+    /** counts of item views */
+    final Map<String, Integer> items = new HashMap<String, Integer>();
+
+    /** number of lines analysed */
+    int lineCount = 0;
+
+    /** number of warnings */
+    int warnCount = 0;
+
+    /** date of the earliest line analysed */
+    Date startDate = null;
+
+    /** date of the latest line analysed */
+    Date endDate = null;
+
+    /**
+     * count a line's date towards the start and end dates
+     *
+     * @param   date    the date of the line
+     */
+    void addDate(Date date)
+    {
+        if ((startDate == null) || (date.compareTo(startDate) < 0))
+        {
+            startDate = date;
+        }
+        if ((endDate == null) || (date.compareTo(endDate) > 0))
+        {
+            endDate = date;
+        }
+    }
+
+    /**
+     * add the counts of another aggregator to this one
+     *
+     * @param   other   the aggregator to merge in
+     */
+    void merge(LogAggregator other)
+    {
+        merge(actions, other.actions);
+        merge(searches, other.searches);
+        merge(users, other.users);
+        merge(items, other.items);
+        lineCount += other.lineCount;
+        warnCount += other.warnCount;
+        if (other.startDate != null)
+        {
+            addDate(other.startDate);
+        }
+        if (other.endDate != null)
+        {
+            addDate(other.endDate);
+        }
+    }
+
+    /**
+     * add the counts of one map to another
+     *
+     * @param   to      the map to add to
+     * @param   from    the map whose counts to add
+     */
+    static void merge(Map<String, Integer> to, Map<String, Integer> from)
+    {
+        for (Map.Entry<String, Integer> entry : from.entrySet())
+        {
+            Integer count = to.get(entry.getKey());
+            to.put(entry.getKey(), (count == null) ? entry.getValue()
+                    : Integer.valueOf(count.intValue() + entry.getValue().intValue()));
+        }
+    }
+}
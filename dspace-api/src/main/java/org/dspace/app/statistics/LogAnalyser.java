@@ -21,15 +21,28 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
 
 /**
  * This class performs all the actual analysis of a given set of DSpace log
@@ -116,6 +129,9 @@ public class LogAnalyser
     
     /** the average number of views per item */
     private static int views = 0;
+
+    /** number of threads analysing log files at once */
+    private static int threads = 1;
     
     ///////////////////////
     // regular expressions
@@ -124,12 +140,6 @@ public class LogAnalyser
    /** Exclude characters regular expression pattern */
    private static Pattern excludeCharRX = null;
    
-   /** handle indicator string regular expression pattern */
-   private static Pattern handleRX = null;
-   
-   /** item id indicator string regular expression pattern */
-   private static Pattern itemRX = null;
-  
    /** query string indicator regular expression pattern */
    private static Pattern queryRX = null;
    
@@ -145,12 +155,6 @@ public class LogAnalyser
    /** single character regular expression pattern */
    private static Pattern singleRX = null;
    
-   /** a pattern to match a valid version 1.3 log file line */
-   private static Pattern valid13 = null;
-   
-   /** a pattern to match a valid version 1.4 log file line */
-   private static Pattern valid14 = null;
-   
    /** pattern to match valid log file names */
    private static Pattern logRegex = null;
    
@@ -196,6 +200,9 @@ public class LogAnalyser
         
    /** the end date of the report */
    private static Date endDate = null;
+
+   /** the file in which to keep the state of incremental analysis, or null */
+   private static String stateFile = null;
         
    /** the starting date of the report as obtained from the log files */
    private static Date logStartDate = null;
@@ -225,6 +232,8 @@ public class LogAnalyser
         Date myStartDate = null;
         Date myEndDate = null;
         boolean myLookUp = false;
+        String myStateFile = null;
+        int myThreads = 0;
         
         // read in our command line options
         for (int i = 0; i < argv.length; i++)
@@ -269,10 +278,21 @@ public class LogAnalyser
             {
                 myLookUp = true;
             }
+            
+            if (argv[i].equals("-incremental"))
+            {
+                myStateFile = argv[i+1];
+            }
+            
+            if (argv[i].equals("-threads"))
+            {
+                myThreads = Integer.parseInt(argv[i+1]);
+            }
         }
         
         // now call the method which actually processes the logs
-        processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile, myStartDate, myEndDate, myLookUp);
+        processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile, myStartDate, myEndDate, myLookUp,
+                    myStateFile, myThreads);
     }
     
     /**
@@ -293,6 +313,37 @@ public class LogAnalyser
                                     String myOutFile, Date myStartDate, 
                                     Date myEndDate, boolean myLookUp)
         throws IOException, SQLException
+    {
+        processLogs(context, myLogDir, myFileTemplate, myConfigFile, myOutFile,
+                    myStartDate, myEndDate, myLookUp, null, 0);
+    }
+    
+    /**
+     * using the pre-configuration information passed here, analyse the logs
+     * and produce the aggregation file, optionally only analysing the lines
+     * added to the log files since the last analysis with the same state file
+     * and parameters
+     *
+     * @param   context     the DSpace context object this occurs under
+     * @param   myLogDir    the passed log directory.  Uses default if null
+     * @param   myFileTemplate  the passed file name regex.  Uses default if null
+     * @param   myConfigFile    the DStat config file.  Uses default if null
+     * @param   myOutFile    the file to which to output aggregation data.  Uses default if null
+     * @param   myStartDate     the desired start of the analysis.  Starts from the beginning otherwise
+     * @param   myEndDate       the desired end of the analysis.  Goes to the end otherwise
+     * @param   myLookUp        force a lookup of the database
+     * @param   myStateFile     the file in which to keep the counts so far and
+     *                          how far each log file has been read.  Analyses
+     *                          all the log files if null
+     * @param   myThreads       the number of log files to analyse at once.
+     *                          Uses analysis.threads from the config file if 0
+     */
+    public static void processLogs(Context context, String myLogDir, 
+                                    String myFileTemplate, String myConfigFile, 
+                                    String myOutFile, Date myStartDate, 
+                                    Date myEndDate, boolean myLookUp,
+                                    String myStateFile, int myThreads)
+        throws IOException, SQLException
     {
         // FIXME: perhaps we should have all parameters and aggregators put 
         // together in a single aggregating object
@@ -317,13 +368,14 @@ public class LogAnalyser
         // set the parameters for this analysis
         setParameters(myLogDir, myFileTemplate, myConfigFile, myOutFile, myStartDate, myEndDate, myLookUp);
         
-        // pre prepare our standard file readers and buffered readers
-        FileReader fr = null;
-        BufferedReader br = null;
-        
         // read in the config information, throwing an error if we fail to open
         // the given config file
         readConfig(configFile);
+        if (myThreads > 0)
+        {
+            threads = myThreads;
+        }
+        stateFile = myStateFile;
         
         // assemble the regular expressions for later use (requires the file
         // template to build the regex to match it
@@ -335,151 +387,108 @@ public class LogAnalyser
         // standard loop counter
         int i = 0;
         
-        // for every log file do analysis
+        // pick up the counts so far, and how far each file has been read, if
+        // analysing incrementally
+        AnalysisState state = null;
+        if (stateFile != null)
+        {
+            state = AnalysisState.load(stateFile, getStateKey());
+        }
+        LogAggregator totals = (state != null) ? state.totals : new LogAggregator();
+        
+        // analyse the log files, several at once.  Each file is analysed into
+        // counts of its own, which are then merged, so the results are the
+        // same however many threads there are
         // FIXME: it is easy to implement not processing log files after the
         // dates exceed the end boundary, but is there an easy way to do it
         // for the start of the file?  Note that we can assume that the contents
         // of the log file are sequential, but can we assume the files are
         // provided in a data sequence?
+        List<FileAnalysis> analyses = new ArrayList<FileAnalysis>();
         for (i = 0; i < logFiles.length; i++)
         {
             // check to see if this file is a log file agains the global regex
             Matcher matchRegex = logRegex.matcher(logFiles[i].getName());
-            if (matchRegex.matches())
+            if (!matchRegex.matches())
+            {
+                continue;
+            }
+            
+            // a file last written before the start date only holds lines
+            // from before it
+            if ((startDate != null) && (logFiles[i].lastModified() < startDate.getTime()))
+            {
+                continue;
+            }
+            
+            // pick up where the last analysis left off, unless the file has
+            // shrunk since, in which case it has been replaced
+            long offset = 0;
+            if (state != null)
+            {
+                Long done = state.offsets.get(logFiles[i].getName());
+                if ((done != null) && (done.longValue() <= logFiles[i].length()))
+                {
+                    offset = done.longValue();
+                }
+            }
+            if ((state == null) || (offset < logFiles[i].length()))
+            {
+                analyses.add(new FileAnalysis(logFiles[i], offset, state != null));
+            }
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, analyses.size())));
+        try
+        {
+            List<Future<LogAggregator>> results = new ArrayList<Future<LogAggregator>>();
+            for (FileAnalysis analysis : analyses)
             {
-                // if it is a log file, open it up and lets have a look at the
-                // contents.
-                try 
-                {  
-                    fr = new FileReader(logFiles[i].toString());  
-                    br = new BufferedReader(fr);
-                } 
-                catch (IOException e) 
-                {  
-                    System.out.println("Failed to read log file " + logFiles[i].toString());
+                results.add(pool.submit(analysis));
+            }
+            
+            for (i = 0; i < analyses.size(); i++)
+            {
+                try
+                {
+                    totals.merge(results.get(i).get());
+                }
+                catch (ExecutionException e)
+                {
+                    System.out.println("Failed to read log file " + analyses.get(i).file.toString());
                     System.exit(0);
-                } 
-
-                // for each line in the file do the analysis
-                // FIXME: perhaps each section needs to be dolled out to an
-                // analysing class to allow pluggability of other methods of
-                // analysis, and ease of code reading too - Pending further thought
-                String line = null;
-                while ((line = br.readLine()) != null)
+                }
+                catch (InterruptedException e)
                 {
-                    // get the log line object
-                    LogLine logLine = getLogLine(line);
-                    
-                    // if there are line segments get on with the analysis
-                    if (logLine != null)
-                    {
-                        // first find out if we are constraining by date and 
-                        // if so apply the restrictions
-                        if ((startDate != null) && (!logLine.afterDate(startDate)))
-                        {
-                            continue;
-                        }
-                        
-                        if ((endDate !=null) && (!logLine.beforeDate(endDate)))
-                        {
-                            break;
-                        }
-                        
-                        // count the number of lines parsed
-                        lineCount++;
-                        
-                        // if we are not constrained by date, register the date
-                        // as the start/end date if it is the earliest/latest so far
-                        // FIXME: this should probably have a method of its own
-                        if (startDate == null)
-                        {
-                            if (logStartDate != null)
-                            {
-                                if (logLine.beforeDate(logStartDate))
-                                {
-                                    logStartDate = logLine.getDate();
-                                }
-                            }
-                            else
-                            {
-                                logStartDate = logLine.getDate();
-                            }
-                        }
-                        
-                        if (endDate == null)
-                        {
-                            if (logEndDate != null)
-                            {
-                                if (logLine.afterDate(logEndDate))
-                                {
-                                    logEndDate = logLine.getDate();
-                                }
-                            }
-                            else
-                            {
-                                logEndDate = logLine.getDate();
-                            }
-                        }
-                        
-                        // count the warnings
-                        if (logLine.isLevel("WARN"))
-                        {
-                            // FIXME: really, this ought to be some kind of level
-                            // aggregator
-                            warnCount++;
-                        }
-
-                        // is the action a search?
-                        if (logLine.isAction("search"))
-                        {
-                            // get back all the valid search words from the query
-                            String[] words = analyseQuery(logLine.getParams());
-                            
-                            // for each search word add to the aggregator or
-                            // increment the aggregator's counter
-                            for (int j = 0; j < words.length; j++)
-                            {
-                                // FIXME: perhaps aggregators ought to be objects
-                                // themselves
-                                searchAggregator.put(words[j], increment(searchAggregator, words[j]));
-                            }
-                        }
-
-                        // is the action a login, and are we counting user logins?
-                        if (logLine.isAction("login") && !userEmail.equals("off"))
-                        {
-                            userAggregator.put(logLine.getUser(), increment(userAggregator, logLine.getUser()));
-                        }
-
-                        // is the action an item view?
-                        if (logLine.isAction("view_item"))
-                        {
-                            String handle = logLine.getParams();
-
-                            // strip the handle string
-                            Matcher matchHandle = handleRX.matcher(handle);
-                            handle = matchHandle.replaceAll("");
-                            
-                            // strip the item id string
-                            Matcher matchItem = itemRX.matcher(handle);
-                            handle = matchItem.replaceAll("").trim();
-
-                            // either add the handle to the aggregator or
-                            // increment its counter
-                            itemAggregator.put(handle, increment(itemAggregator, handle));
-                        }
-
-                        // log all the activity
-                        actionAggregator.put(logLine.getAction(), increment(actionAggregator, logLine.getAction()));
-                    }
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while analysing log files", e);
+                }
+                if (state != null)
+                {
+                    state.offsets.put(analyses.get(i).file.getName(), Long.valueOf(analyses.get(i).offset));
                 }
-
-                // close the file reading buffers
-                br.close();
-                fr.close();
-
             }
         }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        
+        // keep the counts so far for the next incremental analysis
+        if (state != null)
+        {
+            state.save(stateFile);
+        }
+        
+        // hand the counts over to the aggregators the output is written from
+        LogAggregator.merge(actionAggregator, totals.actions);
+        searchAggregator.putAll(totals.searches);
+        userAggregator.putAll(totals.users);
+        itemAggregator.putAll(totals.items);
+        lineCount = totals.lineCount;
+        warnCount = totals.warnCount;
+        logStartDate = totals.startDate;
+        logEndDate = totals.endDate;
         
         // do we want to do a database lookup?  Do so only if the start and
         // end dates are null or lookUp is true
@@ -774,12 +783,6 @@ public class LogAnalyser
         charRegEx.append("]");
         excludeCharRX = Pattern.compile(charRegEx.toString());
         
-        // regular expression to find handle indicators in strings
-        handleRX = Pattern.compile("handle=");
-        
-        // regular expression to find item_id indicators in strings
-        itemRX = Pattern.compile(",item_id=.*$");
-        
         // regular expression to find query indicators in strings
         queryRX = Pattern.compile("query=");
         
@@ -795,12 +798,6 @@ public class LogAnalyser
         // regular expressions to find single characters anywhere in the string
         singleRX = Pattern.compile("( . |^. | .$)");
         
-        // set up the standard log file line regular expression
-        String logLine13 = "^(\\d\\d\\d\\d-\\d\\d\\-\\d\\d) \\d\\d:\\d\\d:\\d\\d,\\d\\d\\d (\\w+)\\s+\\S+ @ ([^:]+):[^:]+:([^:]+):(.*)";
-        String logLine14 = "^(\\d\\d\\d\\d-\\d\\d\\-\\d\\d) \\d\\d:\\d\\d:\\d\\d,\\d\\d\\d (\\w+)\\s+\\S+ @ ([^:]+):[^:]+:[^:]+:([^:]+):(.*)";
-        valid13 = Pattern.compile(logLine13);
-        valid14 = Pattern.compile(logLine14);
-        
         // set up the pattern for validating log file names
         logRegex = Pattern.compile(fileTemplate);
         
@@ -876,6 +873,7 @@ public class LogAnalyser
         excludeTypes = new ArrayList<String>();
         excludeChars = new ArrayList<String>();
         itemTypes = new ArrayList<String>();
+        threads = 1;
 
         // prepare our standard file readers and buffered readers
         FileReader fr = null;
@@ -954,6 +952,11 @@ public class LogAnalyser
                 {
                     userEmail = value;
                 }
+
+                if (key.equals("analysis.threads"))
+                {
+                    threads = Integer.parseInt(value);
+                }
             }
         }
 
@@ -1099,36 +1102,468 @@ public class LogAnalyser
      */
     public static LogLine getLogLine(String line)
     {
-        // FIXME: consider moving this code into the LogLine class.  To do this
-        // we need to much more carefully define the structure and behaviour
-        // of the LogLine class
-        Matcher match;
+        return new LineParser().parse(line);
+    }
+    
+    
+    /**
+     * This class splits log lines into their segments in a single pass over
+     * each line.  It accepts the same lines as the regular expressions
+     * <pre>
+     * ^(\d\d\d\d-\d\d\-\d\d) \d\d:\d\d:\d\d,\d\d\d (\w+)\s+\S+ @ ([^:]+):[^:]+:([^:]+):(.*)
+     * ^(\d\d\d\d-\d\d\-\d\d) \d\d:\d\d:\d\d,\d\d\d (\w+)\s+\S+ @ ([^:]+):[^:]+:[^:]+:([^:]+):(.*)
+     * </pre>
+     * for version 1.3 log lines and for version 1.4 ones (which have an
+     * ip_addr field), but is several times faster.  As consecutive lines
+     * almost always fall on the same day, it keeps the date of the last line
+     * rather than parsing the same date again.  It is not thread safe, so
+     * each thread analysing log files needs its own.
+     */
+    private static class LineParser
+    {
+        /** the date string of the last line */
+        private String lastDay = null;
+        
+        /** the date of the last line */
+        private Date lastDate = null;
+        
+        /**
+         * split the given line into it's relevant segments if applicable
+         *
+         * @param   line    the line to be segmented
+         * @return          a Log Line object for the given line, or null if
+         *                  the line is not a valid log line
+         */
+        LogLine parse(String line)
+        {
+            // yyyy-MM-dd HH:mm:ss,SSS 
+            if ((line.length() < 24) || !matchesTimestamp(line))
+            {
+                return null;
+            }
+            
+            // the level, a word followed by white space
+            int pos = 24;
+            while ((pos < line.length()) && isWordChar(line.charAt(pos)))
+            {
+                pos++;
+            }
+            if ((pos == 24) || (pos == line.length()) || !isSpace(line.charAt(pos)))
+            {
+                return null;
+            }
+            String level = line.substring(24, pos);
+            while ((pos < line.length()) && isSpace(line.charAt(pos)))
+            {
+                pos++;
+            }
+            
+            // the logger, followed by " @ "
+            int logger = pos;
+            while ((pos < line.length()) && !isSpace(line.charAt(pos)))
+            {
+                pos++;
+            }
+            if ((pos == logger) || !line.startsWith(" @ ", pos))
+            {
+                return null;
+            }
+            pos += 3;
+            
+            // user:session:[ip_addr=...:]action:params, where none of the
+            // fields before the parameters may be empty
+            int fields = (line.indexOf(":ip_addr") > 0) ? 4 : 3;
+            int[] ends = new int[fields];
+            int from = pos;
+            for (int i = 0; i < fields; i++)
+            {
+                int colon = line.indexOf(':', from);
+                if (colon <= from)
+                {
+                    return null;
+                }
+                ends[i] = colon;
+                from = colon + 1;
+            }
+            if (hasLineTerminator(line, from))
+            {
+                return null;
+            }
+            
+            String day = line.substring(0, 10);
+            if (!day.equals(lastDay))
+            {
+                lastDate = parseDate(day);
+                lastDay = day;
+            }
+            
+            return new LogLine(lastDate,
+                               LogManager.unescapeLogField(level).trim(),
+                               LogManager.unescapeLogField(line.substring(pos, ends[0])).trim(),
+                               LogManager.unescapeLogField(line.substring(ends[fields - 2] + 1, ends[fields - 1])).trim(),
+                               LogManager.unescapeLogField(line.substring(from)).trim());
+        }
         
-        if (line.indexOf(":ip_addr") > 0)
+        /**
+         * check the line starts with a timestamp of the form
+         * yyyy-MM-dd HH:mm:ss,SSS followed by a space
+         */
+        private static boolean matchesTimestamp(String line)
         {
-            match = valid14.matcher(line);
+            String format = "dddd-dd-dd dd:dd:dd,ddd ";
+            for (int i = 0; i < format.length(); i++)
+            {
+                char c = line.charAt(i);
+                if ((format.charAt(i) == 'd') ? !((c >= '0') && (c <= '9')) : (c != format.charAt(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
         }
-        else
+        
+        /** the regular expression \w */
+        private static boolean isWordChar(char c)
         {
-            match = valid13.matcher(line);
+            return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))
+                    || ((c >= '0') && (c <= '9')) || (c == '_');
         }
         
-        if (match.matches())
+        /** the regular expression \s */
+        private static boolean isSpace(char c)
         {
-            // set up a new log line object
-            LogLine logLine = new LogLine(parseDate(match.group(1).trim()),
-                                          LogManager.unescapeLogField(match.group(2)).trim(),
-                                          LogManager.unescapeLogField(match.group(3)).trim(),
-                                          LogManager.unescapeLogField(match.group(4)).trim(),
-                                          LogManager.unescapeLogField(match.group(5)).trim());
+            return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000B') || (c == '\f') || (c == '\r');
+        }
+        
+        /** whether the regular expression . fails to match any of the rest of the line */
+        private static boolean hasLineTerminator(String line, int from)
+        {
+            for (int i = from; i < line.length(); i++)
+            {
+                char c = line.charAt(i);
+                if ((c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029'))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    
+    /**
+     * This class analyses one log file, from a given offset, into counts of
+     * its own, so that several files may be analysed at once.  When
+     * analysing incrementally, a last line which has no line end yet, as it
+     * is still being written, is left for the next analysis.
+     */
+    private static class FileAnalysis implements Callable<LogAggregator>
+    {
+        /** the log file */
+        final File file;
+        
+        /** the offset to start reading at, then the offset reading stopped at */
+        long offset;
+        
+        /** whether to leave a partly written last line */
+        private final boolean incremental;
+        
+        FileAnalysis(File file, long offset, boolean incremental)
+        {
+            this.file = file;
+            this.offset = offset;
+            this.incremental = incremental;
+        }
+        
+        @Override
+        public LogAggregator call() throws IOException
+        {
+            LogAggregator counts = new LogAggregator();
+            LineParser parser = new LineParser();
+            Charset charset = Charset.defaultCharset();
             
-            return logLine;
+            InputStream in = new FileInputStream(file);
+            try
+            {
+                long skip = offset;
+                while (skip > 0)
+                {
+                    long skipped = in.skip(skip);
+                    if (skipped <= 0)
+                    {
+                        break;
+                    }
+                    skip -= skipped;
+                }
+                
+                // for each line in the file do the analysis, reading the
+                // file in blocks and splitting them into lines as they go
+                byte[] block = new byte[65536];
+                int lineStart = 0;
+                int scanned = 0;
+                int length = 0;
+                while (true)
+                {
+                    // find the end of the next line
+                    int lineEnd = -1;
+                    for (int i = scanned; i < length; i++)
+                    {
+                        if (block[i] == '\n')
+                        {
+                            lineEnd = i;
+                            break;
+                        }
+                    }
+                    
+                    if (lineEnd < 0)
+                    {
+                        // read some more, keeping the start of the line
+                        if (lineStart > 0)
+                        {
+                            System.arraycopy(block, lineStart, block, 0, length - lineStart);
+                            length -= lineStart;
+                            lineStart = 0;
+                        }
+                        if (length == block.length)
+                        {
+                            block = Arrays.copyOf(block, block.length * 2);
+                        }
+                        scanned = length;
+                        int read = in.read(block, length, block.length - length);
+                        if (read > 0)
+                        {
+                            length += read;
+                            continue;
+                        }
+                        
+                        // a last line without a line end is still being
+                        // written, so is left for the next incremental run
+                        if ((length > 0) && !incremental)
+                        {
+                            offset += length;
+                            analyseLine(parser.parse(decode(block, 0, length, charset)), counts);
+                        }
+                        break;
+                    }
+                    
+                    offset += lineEnd + 1 - lineStart;
+                    String line = decode(block, lineStart, lineEnd, charset);
+                    lineStart = lineEnd + 1;
+                    scanned = lineStart;
+                    if (!analyseLine(parser.parse(line), counts))
+                    {
+                        // the rest of the file is after the end date
+                        offset = file.length();
+                        break;
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            return counts;
         }
-        else
+        
+        /**
+         * decode a line, without any carriage return before its end
+         */
+        private static String decode(byte[] block, int start, int end, Charset charset)
         {
-            return null;
+            if ((end > start) && (block[end - 1] == '\r'))
+            {
+                end--;
+            }
+            return new String(block, start, end - start, charset);
+        }
+        
+        /**
+         * count a log line
+         *
+         * @param   logLine     the line, null if it is not a valid log line
+         * @param   counts      the counts to add the line to
+         * @return              false if the line is after the end date
+         */
+        private boolean analyseLine(LogLine logLine, LogAggregator counts)
+        {
+            // if there are line segments get on with the analysis
+            if (logLine == null)
+            {
+                return true;
+            }
+            
+            // first find out if we are constraining by date and 
+            // if so apply the restrictions
+            if ((startDate != null) && (!logLine.afterDate(startDate)))
+            {
+                return true;
+            }
+            
+            if ((endDate !=null) && (!logLine.beforeDate(endDate)))
+            {
+                return false;
+            }
+            
+            // count the number of lines parsed
+            counts.lineCount++;
+            
+            // register the date as the start/end date if it is the
+            // earliest/latest so far
+            counts.addDate(logLine.getDate());
+            
+            // count the warnings
+            if (logLine.isLevel("WARN"))
+            {
+                // FIXME: really, this ought to be some kind of level
+                // aggregator
+                counts.warnCount++;
+            }
+
+            // is the action a search?
+            if (logLine.isAction("search"))
+            {
+                // get back all the valid search words from the query
+                String[] words = analyseQuery(logLine.getParams());
+                
+                // for each search word add to the aggregator or
+                // increment the aggregator's counter
+                for (int j = 0; j < words.length; j++)
+                {
+                    counts.searches.put(words[j], increment(counts.searches, words[j]));
+                }
+            }
+
+            // is the action a login, and are we counting user logins?
+            if (logLine.isAction("login") && !userEmail.equals("off"))
+            {
+                counts.users.put(logLine.getUser(), increment(counts.users, logLine.getUser()));
+            }
+
+            // is the action an item view?
+            if (logLine.isAction("view_item"))
+            {
+                // strip the handle string and the item id string
+                String handle = logLine.getParams().replace("handle=", "");
+                int itemId = handle.indexOf(",item_id=");
+                if (itemId >= 0)
+                {
+                    handle = handle.substring(0, itemId);
+                }
+                handle = handle.trim();
+
+                // either add the handle to the aggregator or
+                // increment its counter
+                counts.items.put(handle, increment(counts.items, handle));
+            }
+
+            // log all the activity
+            counts.actions.put(logLine.getAction(), increment(counts.actions, logLine.getAction()));
+            return true;
+        }
+    }
+    
+    
+    /**
+     * This class holds the state of incremental analysis between runs: the
+     * counts so far, and how far each log file has been read.  The state
+     * only applies to analyses with the same parameters, so it is started
+     * afresh when they change.
+     */
+    private static class AnalysisState implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        
+        /** the parameters of the analysis the state applies to */
+        private String key;
+        
+        /** the counts so far */
+        LogAggregator totals = new LogAggregator();
+        
+        /** the number of bytes of each log file analysed, by file name */
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        
+        /**
+         * read the state of incremental analysis from a file
+         *
+         * @param   stateFile   the file
+         * @param   key         the parameters of the current analysis
+         * @return              the state, empty if there is none yet or if it
+         *                      applies to other parameters
+         */
+        static AnalysisState load(String stateFile, String key)
+        {
+            File file = new File(stateFile);
+            if (file.exists())
+            {
+                try
+                {
+                    ObjectInputStream in = new ObjectInputStream(
+                            new BufferedInputStream(new FileInputStream(file)));
+                    try
+                    {
+                        AnalysisState state = (AnalysisState) in.readObject();
+                        if (key.equals(state.key))
+                        {
+                            return state;
+                        }
+                        System.out.println("Analysis parameters have changed, starting afresh");
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+                catch (Exception e)
+                {
+                    System.out.println("Unable to read state file " + stateFile + ", starting afresh");
+                }
+            }
+            AnalysisState state = new AnalysisState();
+            state.key = key;
+            return state;
+        }
+        
+        /**
+         * write the state of incremental analysis to a file
+         *
+         * @param   stateFile   the file
+         */
+        void save(String stateFile) throws IOException
+        {
+            // write a new file, then replace the old one with it, so that an
+            // interrupted run leaves the previous state
+            File file = new File(stateFile);
+            File temp = new File(stateFile + ".tmp");
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(temp));
+            try
+            {
+                out.writeObject(this);
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            {
+                throw new IOException("Unable to write state file " + stateFile);
+            }
         }
     }
+    
+    
+    /**
+     * describe the parameters which affect the counts, so that the state of
+     * an incremental analysis is only used by analyses with the same ones
+     *
+     * @return  a description of the parameters
+     */
+    private static String getStateKey()
+    {
+        File config = new File(configFile);
+        return logDir + "|" + fileTemplate + "|" + config.getAbsolutePath() + "|" + config.lastModified()
+                + "|" + ((startDate == null) ? "" : Long.toString(startDate.getTime()))
+                + "|" + ((endDate == null) ? "" : Long.toString(endDate.getTime()));
+    }
  
     
     /**
@@ -1329,6 +1764,16 @@ public class LogAnalyser
                             "\tOptional\n" +
                             "\tForce a lookup of the current database statistics\n" +
                             "\tOnly needs to be used if date constraints are also in place\n" +
+                        "-incremental [state file path]\n" +
+                            "\tOptional\n" +
+                            "\tOnly analyse the lines added to the log files since the last\n" +
+                            "\tanalysis with the same state file, adding them to the counts\n" +
+                            "\tkept in it.  The state file is started afresh if the other\n" +
+                            "\toptions or the config file change\n" +
+                        "-threads [number]\n" +
+                            "\tOptional\n" +
+                            "\tThe number of log files to analyse at once\n" +
+                            "\tDefault uses analysis.threads from the config file, or 1\n" +
                         "-help\n" +
                             "\tdisplay this usage information\n";
         
@@ -0,0 +1,616 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.authorize.AuthorizeManager;
+import org.dspace.content.Bitstream;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.storage.bitstore.BitstreamStorageManager;
+
+/**
+ * Works out the response to a request for the content of a bitstream, and
+ * writes it. The Range, If-Range and If-None-Match request headers are
+ * honoured, so a download can be resumed, a media player can seek, and a
+ * cache can revalidate a copy against the ETag made from the bitstream's
+ * stored checksum.
+ * <p>
+ * Bitstreams in a local assetstore are sent with
+ * {@link FileChannel#transferTo}, starting at the requested position.
+ * Others are read from the start, so their ranges must come in order.
+ * <p>
+ * The JSPUI, XMLUI and REST API all deliver bitstreams through this class.
+ * The caller checks that the bitstream may be read, makes a delivery before
+ * completing its context, sets the status and headers, then calls
+ * {@link #write} and {@link #close}.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc7233">RFC 7233</a>
+ */
+public class BitstreamDelivery
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(BitstreamDelivery.class);
+
+    /** Buffer size when copying from a stream */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String CRLF = "\r\n";
+
+    /** Size of the content */
+    private final long size;
+
+    /** MIME type of the content */
+    private final String mimeType;
+
+    /** ETag of the content, or null if it has none */
+    private final String etag;
+
+    /** The content as a local file, or null if it is read from a stream */
+    private final File file;
+
+    /** The content as a stream, opened when needed */
+    private InputStream stream;
+
+    /** Position reached in the stream */
+    private long streamPosition = 0;
+
+    private FileChannel channel;
+
+    /** HTTP status of the response */
+    private int status = HttpServletResponse.SC_OK;
+
+    /** Ranges to send, each {first, last}, or null to send everything */
+    private List<long[]> ranges = null;
+
+    /** Multipart boundary, and the header of each part */
+    private String boundary;
+
+    private byte[][] partHeaders;
+
+    /**
+     * Prepare to deliver a bitstream.
+     *
+     * @param context
+     *            DSpace context, which may be completed once this returns
+     * @param bitstream
+     *            the bitstream to deliver
+     * @param mimeType
+     *            the MIME type to send it as
+     * @param range
+     *            the Range request header, or null
+     * @param ifRange
+     *            the If-Range request header, or null
+     * @param ifNoneMatch
+     *            the If-None-Match request header, or null
+     * @throws AuthorizeException
+     *             if the current user may not read the bitstream
+     */
+    public BitstreamDelivery(Context context, Bitstream bitstream, String mimeType,
+            String range, String ifRange, String ifNoneMatch)
+            throws SQLException, IOException, AuthorizeException
+    {
+        this.mimeType = mimeType;
+        this.etag = getETag(bitstream);
+
+        // the local file is read without the check retrieve() makes
+        AuthorizeManager.authorizeAction(context, bitstream, Constants.READ);
+        this.file = BitstreamStorageManager.retrieveLocalFile(context, bitstream.getID());
+        this.size = (file != null) ? file.length() : bitstream.getSize();
+
+        evaluate(range, ifRange, ifNoneMatch);
+
+        // the stream has to be opened while the context is still open
+        if (file == null && hasBody())
+        {
+            this.stream = bitstream.retrieve();
+        }
+    }
+
+    /**
+     * Prepare to deliver a file, such as one generated from a bitstream.
+     * The file has no ETag, so If-None-Match is not honoured, and a Range
+     * is only honoured without an If-Range.
+     *
+     * @param file
+     *            the file to deliver
+     * @param mimeType
+     *            the MIME type to send it as
+     * @param range
+     *            the Range request header, or null
+     * @param ifRange
+     *            the If-Range request header, or null
+     */
+    public BitstreamDelivery(File file, String mimeType, String range, String ifRange)
+    {
+        this.mimeType = mimeType;
+        this.etag = null;
+        this.file = file;
+        this.size = file.length();
+
+        evaluate(range, ifRange, null);
+    }
+
+    /**
+     * Get the ETag of a bitstream, made from its stored checksum.
+     *
+     * @param bitstream
+     *            the bitstream
+     * @return the quoted ETag, or null if the bitstream has no checksum
+     */
+    public static String getETag(Bitstream bitstream)
+    {
+        String checksum = bitstream.getChecksum();
+        if (checksum == null || checksum.length() == 0)
+        {
+            return null;
+        }
+
+        return '"' + checksum + '"';
+    }
+
+    /**
+     * Work out the status of the response and the ranges to send.
+     */
+    private void evaluate(String range, String ifRange, String ifNoneMatch)
+    {
+        if (etag != null && ifNoneMatch != null && matches(ifNoneMatch, etag))
+        {
+            status = HttpServletResponse.SC_NOT_MODIFIED;
+            return;
+        }
+
+        if (range == null || !ConfigurationManager.getBooleanProperty("bitstream.delivery.ranges", true))
+        {
+            return;
+        }
+
+        // a Range only applies if the client's copy is still current; we
+        // have no dates for bitstreams, so only an ETag can show that
+        if (ifRange != null && (etag == null || !etag.equals(ifRange.trim())))
+        {
+            return;
+        }
+
+        List<long[]> parsed = parseRanges(range, size,
+                ConfigurationManager.getIntProperty("bitstream.delivery.max-ranges", 20));
+        if (parsed == null)
+        {
+            return;
+        }
+        if (parsed.isEmpty())
+        {
+            status = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+            return;
+        }
+
+        // a stream can't go back, so send all of it instead
+        if (file == null && !isAscending(parsed))
+        {
+            log.debug("Ignoring out of order ranges for a bitstream not in a local assetstore");
+            return;
+        }
+
+        ranges = parsed;
+        status = HttpServletResponse.SC_PARTIAL_CONTENT;
+
+        if (ranges.size() > 1)
+        {
+            boundary = UUID.randomUUID().toString();
+            partHeaders = new byte[ranges.size()][];
+            for (int i = 0; i < ranges.size(); i++)
+            {
+                long[] r = ranges.get(i);
+                partHeaders[i] = ascii("--" + boundary + CRLF
+                        + "Content-Type: " + mimeType + CRLF
+                        + "Content-Range: bytes " + r[0] + "-" + r[1] + "/" + size + CRLF
+                        + CRLF);
+            }
+        }
+    }
+
+    /**
+     * Parse a Range header.
+     *
+     * @param header
+     *            the value of the Range header
+     * @param size
+     *            the size of the content
+     * @param max
+     *            the most ranges to accept
+     * @return the satisfiable ranges, each {first, last}, in the order
+     *         requested; an empty list if none of them can be satisfied; or
+     *         null if the header is invalid or asks for too many ranges, and
+     *         should be ignored
+     */
+    static List<long[]> parseRanges(String header, long size, int max)
+    {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6))
+        {
+            return null;
+        }
+
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > max)
+        {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<long[]>();
+        for (String spec : specs)
+        {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0)
+            {
+                return null;
+            }
+
+            long first;
+            long last;
+            try
+            {
+                if (dash == 0)
+                {
+                    // the last N bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix < 0)
+                    {
+                        return null;
+                    }
+                    if (suffix == 0)
+                    {
+                        continue;
+                    }
+                    first = Math.max(0, size - suffix);
+                    last = size - 1;
+                }
+                else
+                {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = (dash == spec.length() - 1) ? Long.MAX_VALUE
+                            : Long.parseLong(spec.substring(dash + 1));
+                    if (first < 0 || last < first)
+                    {
+                        return null;
+                    }
+                    last = Math.min(last, size - 1);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+
+            if (first < size)
+            {
+                ranges.add(new long[] { first, last });
+            }
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Does an If-None-Match header match an ETag? Weak and strong ETags
+     * match alike, as they may for a GET.
+     */
+    static boolean matches(String ifNoneMatch, String etag)
+    {
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+            {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAscending(List<long[]> ranges)
+    {
+        long next = 0;
+        for (long[] r : ranges)
+        {
+            if (r[0] < next)
+            {
+                return false;
+            }
+            next = r[1] + 1;
+        }
+
+        return true;
+    }
+
+    private static byte[] ascii(String s)
+    {
+        try
+        {
+            return s.getBytes("US-ASCII");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the HTTP status of the response: 200, 206 (Partial Content),
+     *         304 (Not Modified) or 416 (Requested Range Not Satisfiable)
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return true if the response has a body to {@link #write}
+     */
+    public boolean hasBody()
+    {
+        return status == HttpServletResponse.SC_OK
+                || status == HttpServletResponse.SC_PARTIAL_CONTENT;
+    }
+
+    /**
+     * @return the size of the whole content
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the value of the ETag response header, or null if there is none
+     */
+    public String getETag()
+    {
+        return etag;
+    }
+
+    /**
+     * @return the value of the Content-Type response header; a multipart
+     *         type if several ranges are sent
+     */
+    public String getContentType()
+    {
+        if (boundary != null)
+        {
+            return "multipart/byteranges; boundary=" + boundary;
+        }
+
+        return mimeType;
+    }
+
+    /**
+     * @return the value of the Content-Length response header
+     */
+    public long getContentLength()
+    {
+        if (!hasBody())
+        {
+            return 0;
+        }
+        if (ranges == null)
+        {
+            return size;
+        }
+        if (boundary == null)
+        {
+            return length(ranges.get(0));
+        }
+
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            length += partHeaders[i].length + length(ranges.get(i)) + CRLF.length();
+        }
+        return length + ascii("--" + boundary + "--" + CRLF).length;
+    }
+
+    /**
+     * @return the value of the Content-Range response header, or null if
+     *         there should be none
+     */
+    public String getContentRange()
+    {
+        if (status == HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE)
+        {
+            return "bytes */" + size;
+        }
+        if (ranges != null && boundary == null)
+        {
+            long[] r = ranges.get(0);
+            return "bytes " + r[0] + "-" + r[1] + "/" + size;
+        }
+
+        return null;
+    }
+
+    private static long length(long[] range)
+    {
+        return range[1] - range[0] + 1;
+    }
+
+    /**
+     * Set the status and headers of a servlet response, write the body and
+     * close this delivery. The Content-Disposition and caching headers are
+     * left to the caller.
+     *
+     * @param response
+     *            the response, not yet committed
+     */
+    public void send(HttpServletResponse response) throws IOException
+    {
+        try
+        {
+            response.setStatus(status);
+            response.setHeader("Accept-Ranges", "bytes");
+            if (etag != null)
+            {
+                response.setHeader("ETag", etag);
+            }
+            if (getContentRange() != null)
+            {
+                response.setHeader("Content-Range", getContentRange());
+            }
+            if (hasBody())
+            {
+                response.setContentType(getContentType());
+                response.setHeader("Content-Length", String.valueOf(getContentLength()));
+                write(response.getOutputStream());
+            }
+        }
+        finally
+        {
+            close();
+        }
+    }
+
+    /**
+     * Write the body of the response: the content, the range requested, or
+     * a multipart body of the ranges requested. Nothing is written for a
+     * response without a body.
+     *
+     * @param out
+     *            where to write; it is not closed
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        if (!hasBody())
+        {
+            return;
+        }
+
+        if (ranges == null)
+        {
+            copy(0, size, out);
+        }
+        else if (boundary == null)
+        {
+            copy(ranges.get(0)[0], length(ranges.get(0)), out);
+        }
+        else
+        {
+            byte[] crlf = ascii(CRLF);
+            for (int i = 0; i < ranges.size(); i++)
+            {
+                out.write(partHeaders[i]);
+                copy(ranges.get(i)[0], length(ranges.get(i)), out);
+                out.write(crlf);
+            }
+            out.write(ascii("--" + boundary + "--" + CRLF));
+        }
+        out.flush();
+    }
+
+    /**
+     * Copy part of the content.
+     */
+    private void copy(long position, long length, OutputStream out) throws IOException
+    {
+        if (file != null)
+        {
+            if (channel == null)
+            {
+                channel = new FileInputStream(file).getChannel();
+            }
+
+            // the target is not closed, as that would close out
+            out.flush();
+            WritableByteChannel target = Channels.newChannel(out);
+            long done = 0;
+            while (done < length)
+            {
+                long n = channel.transferTo(position + done, length - done, target);
+                if (n <= 0)
+                {
+                    throw new IOException("Unexpected end of file " + file);
+                }
+                done += n;
+            }
+            return;
+        }
+
+        while (streamPosition < position)
+        {
+            long n = stream.skip(position - streamPosition);
+            if (n <= 0)
+            {
+                throw new IOException("Unexpected end of bitstream");
+            }
+            streamPosition += n;
+        }
+
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+        long done = 0;
+        while (done < length)
+        {
+            int n = stream.read(buffer, 0, (int) Math.min(buffer.length, length - done));
+            if (n < 0)
+            {
+                throw new IOException("Unexpected end of bitstream");
+            }
+            out.write(buffer, 0, n);
+            done += n;
+        }
+        streamPosition += done;
+    }
+
+    /**
+     * Release the file or stream being delivered.
+     */
+    public void close()
+    {
+        try
+        {
+            if (channel != null)
+            {
+                channel.close();
+            }
+            if (stream != null)
+            {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Caught IO exception when closing a bitstream: " + e.getMessage());
+        }
+        finally
+        {
+            channel = null;
+            stream = null;
+        }
+    }
+}
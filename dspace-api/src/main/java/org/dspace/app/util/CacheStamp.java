@@ -0,0 +1,97 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+
+/**
+ * Access to the cachestamp table, which holds a stamp for each Community,
+ * Collection and Item changed since {@link CacheStampConsumer} was enabled.
+ * The stamp of an object changes whenever the object, or anything shown
+ * along with it on its page, changes, so that a page cached by a web
+ * application can be checked by reading the stamp instead of the whole
+ * object. As the stamps are kept in the database, a change made by any web
+ * application or command line tool is seen by all of them, and stamps
+ * outlive restarts.
+ * <P>
+ * Stamps are only used when <code>xmlui.cache.stamps</code> is enabled in
+ * dspace.cfg, which should only be done when the <code>cachestamp</code>
+ * consumer is added to every event dispatcher in use.
+ *
+ * @see CacheStampConsumer
+ */
+public final class CacheStamp
+{
+    /** Stamp of an object not changed since stamping was enabled */
+    public static final int UNCHANGED = 0;
+
+    private CacheStamp()
+    {
+    }
+
+    /**
+     * @return true if cached pages may be checked against stamps
+     */
+    public static boolean isEnabled()
+    {
+        return ConfigurationManager.getBooleanProperty("xmlui.cache.stamps", false);
+    }
+
+    /**
+     * Get the stamp of an object.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the object, as defined in Constants
+     * @param id
+     *            ID of the object
+     * @return the stamp, or UNCHANGED if the object has not been changed
+     *         since stamping was enabled
+     * @throws SQLException
+     */
+    public static int get(Context context, int type, int id) throws SQLException
+    {
+        TableRow row = DatabaseManager.querySingle(context,
+                "SELECT MAX(cachestamp_id) AS stamp FROM cachestamp"
+                + " WHERE resource_type_id = ? AND resource_id = ?", type, id);
+        return (row == null || row.isColumnNull("stamp")) ? UNCHANGED : row.getIntColumn("stamp");
+    }
+
+    /**
+     * Give objects new stamps. The previous stamps are removed; if another
+     * web application stamps the same object at the same time, the object
+     * is left with two stamps, of which the highest counts. Does not commit.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the objects, as defined in Constants
+     * @param ids
+     *            IDs of the objects
+     * @throws SQLException
+     */
+    static void stamp(Context context, int type, Set<Integer> ids) throws SQLException
+    {
+        for (Integer id : ids)
+        {
+            DatabaseManager.updateQuery(context,
+                    "DELETE FROM cachestamp WHERE resource_type_id = ? AND resource_id = ?", type, id);
+            TableRow row = DatabaseManager.row("cachestamp");
+            row.setColumn("resource_type_id", type);
+            row.setColumn("resource_id", id);
+            DatabaseManager.insert(context, row);
+        }
+    }
+}
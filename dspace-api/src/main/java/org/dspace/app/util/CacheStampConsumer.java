@@ -0,0 +1,191 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Bundle;
+import org.dspace.content.Community;
+import org.dspace.content.DSpaceObject;
+import org.dspace.content.Item;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * Gives changed Communities, Collections and Items new stamps in the
+ * cachestamp table, so that pages cached by the XMLUI can be checked by
+ * reading one stamp. A change to a Bundle or Bitstream stamps the Items it
+ * belongs to, and a change to a Collection or Community also stamps its
+ * parent Communities, whose pages list it.
+ * <p>
+ * Filters in dspace.cfg:
+ * <code>event.consumer.cachestamp.filters = Community|Collection|Item|Bundle|Bitstream+All</code>
+ *
+ * @see CacheStamp
+ */
+public class CacheStampConsumer implements Consumer
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(CacheStampConsumer.class);
+
+    /** IDs of the objects to stamp at the end of the event, by type */
+    private Set<Integer> communityIDs = null;
+
+    private Set<Integer> collectionIDs = null;
+
+    private Set<Integer> itemIDs = null;
+
+    @Override
+    public void initialize() throws Exception
+    {
+
+    }
+
+    /**
+     * Note the objects whose pages are changed by an event.
+     *
+     * @param ctx
+     *            DSpace context
+     * @param event
+     *            Content event
+     */
+    @Override
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (itemIDs == null)
+        {
+            communityIDs = new HashSet<Integer>();
+            collectionIDs = new HashSet<Integer>();
+            itemIDs = new HashSet<Integer>();
+        }
+
+        int et = event.getEventType();
+        boolean changed = (et == Event.MODIFY || et == Event.MODIFY_METADATA);
+
+        switch (event.getSubjectType())
+        {
+            case Constants.COMMUNITY:
+                communityIDs.add(event.getSubjectID());
+                if (changed)
+                {
+                    Community community = (Community) event.getSubject(ctx);
+                    if (community != null && community.getParentCommunity() != null)
+                    {
+                        communityIDs.add(community.getParentCommunity().getID());
+                    }
+                }
+                break;
+
+            case Constants.COLLECTION:
+                collectionIDs.add(event.getSubjectID());
+                if (event.getObjectType() == Constants.ITEM)
+                {
+                    // an item mapped to or moved between collections
+                    itemIDs.add(event.getObjectID());
+                }
+                if (changed)
+                {
+                    // only the communities directly holding the collection;
+                    // getCommunities() returns all of their parents as well
+                    TableRowIterator tri = DatabaseManager.query(ctx,
+                            "SELECT community_id FROM community2collection WHERE collection_id = ?",
+                            event.getSubjectID());
+                    try
+                    {
+                        while (tri.hasNext())
+                        {
+                            communityIDs.add(tri.next().getIntColumn("community_id"));
+                        }
+                    }
+                    finally
+                    {
+                        tri.close();
+                    }
+                }
+                break;
+
+            case Constants.ITEM:
+                itemIDs.add(event.getSubjectID());
+                break;
+
+            case Constants.BUNDLE:
+                addItems((Bundle) event.getSubject(ctx));
+                break;
+
+            case Constants.BITSTREAM:
+                DSpaceObject subject = event.getSubject(ctx);
+                if (subject != null)
+                {
+                    for (Bundle bundle : ((Bitstream) subject).getBundles())
+                    {
+                        addItems(bundle);
+                    }
+                }
+                break;
+
+            default:
+                log.warn("consume() got unrecognized event: " + event.toString());
+        }
+    }
+
+    private void addItems(Bundle bundle) throws SQLException
+    {
+        // a deleted bundle was first removed from its items, which
+        // stamped them
+        if (bundle == null)
+        {
+            return;
+        }
+
+        for (Item item : bundle.getItems())
+        {
+            itemIDs.add(item.getID());
+        }
+    }
+
+    /**
+     * Stamp the objects noted.
+     *
+     * @param ctx
+     *            DSpace context
+     */
+    @Override
+    public void end(Context ctx) throws Exception
+    {
+        if (itemIDs != null)
+        {
+            CacheStamp.stamp(ctx, Constants.COMMUNITY, communityIDs);
+            CacheStamp.stamp(ctx, Constants.COLLECTION, collectionIDs);
+            CacheStamp.stamp(ctx, Constants.ITEM, itemIDs);
+            ctx.getDBConnection().commit();
+            if (log.isDebugEnabled())
+            {
+                log.debug("Stamped communities " + communityIDs + ", collections " + collectionIDs
+                        + " and items " + itemIDs);
+            }
+        }
+
+        communityIDs = null;
+        collectionIDs = null;
+        itemIDs = null;
+    }
+
+    @Override
+    public void finish(Context ctx) throws Exception
+    {
+
+    }
+}
@@ -8,6 +8,7 @@
 package org.dspace.app.util;
 
 import org.dspace.core.ConfigurationManager;
+import org.dspace.statistics.SolrLoggerQueue;
 import org.dspace.storage.rdbms.DatabaseManager;
 import org.apache.log4j.Logger;
 
@@ -147,6 +148,9 @@ public class DSpaceContextListener implements ServletContextListener
 
         try
         {
+            // Send the usage events still queued, and stop the queue's thread
+            SolrLoggerQueue.shutdownAll();
+
             // Remove the database pool
             DatabaseManager.shutdown();
 
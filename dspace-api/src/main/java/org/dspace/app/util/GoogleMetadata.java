@@ -366,17 +366,17 @@ public class GoogleMetadata
 
             int optionMatches = 0;
             String[] components;
-            Metadatum[] values;
+            List<Metadatum> values;
             ArrayList<Metadatum> resolvedFields = new ArrayList<Metadatum>();
 
             for (String field : optionFields)
             {
 
                 components = parseComponents(field);
-                values = item.getMetadata(components[0], components[1],
+                values = item.getMetadataView(components[0], components[1],
                         components[2], Item.ANY);
 
-                if (values.length > 0)
+                if (!values.isEmpty())
                 {
                     for (Metadatum v : values)
                     {
@@ -596,7 +596,7 @@ public class GoogleMetadata
                 }
             }
 
-            Metadatum[] allMD = item.getMetadata(components[0], components[1],
+            List<Metadatum> allMD = item.getMetadataView(components[0], components[1],
                     components[2], Item.ANY);
 
             ArrayList<String> expandedDC = new ArrayList<String>();
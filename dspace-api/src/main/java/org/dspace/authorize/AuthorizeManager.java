@@ -10,7 +10,10 @@ package org.dspace.authorize;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dspace.content.*;
 import org.dspace.core.Constants;
@@ -36,6 +39,10 @@ import org.dspace.workflow.WorkflowItem;
  * Note: If an eperson is a member of the administrator group (id 1), then they
  * are automatically given permission for all requests another special group is
  * group 0, which is anonymous - all EPeople are members of group 0.
+ * <p>
+ * The result of every check is remembered in the Context until the current
+ * user, special groups, policies or group memberships change, or an event is
+ * added to the Context.
  */
 public class AuthorizeManager
 {
@@ -150,7 +157,7 @@ public class AuthorizeManager
                             + actionText + " by user " + userid);
         }
 
-        if (!authorize(c, o, action, c.getCurrentUser(), useInheritance))
+        if (!authorize(c, o, action, c.getCurrentUser(), useInheritance, null))
         {
             // denied, assemble and throw exception
             int otype = o.getType();
@@ -225,22 +232,59 @@ public class AuthorizeManager
     public static boolean authorizeActionBoolean(Context c, DSpaceObject o,
                                                  int a, boolean useInheritance) throws SQLException
     {
-        boolean isAuthorized = true;
+        return authorize(c, o, a, c.getCurrentUser(), useInheritance, null);
+    }
 
-        if (o == null)
+    /**
+     * Check whether the current user can perform an action on each of a list
+     * of objects, such as a page of search results. The policies of all the
+     * objects are read at once, rather than with a query per object.
+     *
+     * @param c
+     *         DSpace context, containing current user
+     * @param objects
+     *         DSpaceObjects, which may contain <code>null</code>
+     * @param a
+     *         action being attempted, from
+     *         <code>org.dspace.core.Constants</code>
+     * @return for every object, in the same order, <code>true</code> if the
+     *         current user is authorized to perform the given action on it
+     */
+    public static boolean[] authorizeActionBoolean(Context c,
+            List<? extends DSpaceObject> objects, int a) throws SQLException
+    {
+        boolean[] authorized = new boolean[objects.size()];
+        EPerson e = c.getCurrentUser();
+
+        // Read the policies of the objects not checked yet in one go
+        List<DSpaceObject> unchecked = new ArrayList<DSpaceObject>();
+        if (!c.ignoreAuthorization())
         {
-            return false;
+            for (DSpaceObject o : objects)
+            {
+                if (o != null && c.getCachedAuthorization(getCacheKey(o, a, e, true)) == null)
+                {
+                    unchecked.add(o);
+                }
+            }
         }
+        Map<String, List<ResourcePolicy>> policies = getPoliciesActionFilter(c, unchecked, a);
 
-        try
-        {
-            authorizeAction(c, o, a, useInheritance);
-        } catch (AuthorizeException e)
+        for (int i = 0; i < authorized.length; i++)
         {
-            isAuthorized = false;
+            DSpaceObject o = objects.get(i);
+            List<ResourcePolicy> objectPolicies = null;
+            if (o != null)
+            {
+                objectPolicies = policies.get(o.getType() + ":" + o.getID());
+                if (objectPolicies == null)
+                {
+                    objectPolicies = new ArrayList<ResourcePolicy>();
+                }
+            }
+            authorized[i] = authorize(c, o, a, e, true, objectPolicies);
         }
-
-        return isAuthorized;
+        return authorized;
     }
 
     /**
@@ -261,12 +305,16 @@ public class AuthorizeManager
      * @param useInheritance
      *         flag to say if ADMIN action on the current object or parent
      *         object can be used
+     * @param policies
+     *         the policies of the object for the action, or
+     *         <code>null</code> to read them from the database
      * @return <code>true</code> if user is authorized to perform the given
      *         action, <code>false</code> otherwise
      * @throws SQLException
      */
     private static boolean authorize(Context c, DSpaceObject o, int action,
-                                     EPerson e, boolean useInheritance) throws SQLException
+                                     EPerson e, boolean useInheritance,
+                                     List<ResourcePolicy> policies) throws SQLException
     {
         // return FALSE if there is no DSpaceObject
         if (o == null)
@@ -280,6 +328,38 @@ public class AuthorizeManager
             return true;
         }
 
+        String key = getCacheKey(o, action, e, useInheritance);
+        Boolean cached = c.getCachedAuthorization(key);
+        if (cached != null)
+        {
+            return cached.booleanValue();
+        }
+
+        boolean authorized = checkPolicies(c, o, action, e, useInheritance, policies);
+        c.cacheAuthorization(key, authorized);
+        return authorized;
+    }
+
+    /**
+     * Identifies an authorization check in the Context's cache.
+     */
+    private static String getCacheKey(DSpaceObject o, int action, EPerson e,
+                                      boolean useInheritance)
+    {
+        return o.getType() + ":" + o.getID() + ":" + action + ":"
+                + (e == null ? 0 : e.getID()) + ":" + useInheritance;
+    }
+
+    /**
+     * Does the actual work of
+     * {@link #authorize(Context, DSpaceObject, int, EPerson, boolean, List)},
+     * without the cache.
+     */
+    private static boolean checkPolicies(Context c, DSpaceObject o, int action,
+                                         EPerson e, boolean useInheritance,
+                                         List<ResourcePolicy> policies) throws SQLException
+    {
+
         // is eperson set? if not, userid = 0 (anonymous)
         int userid = 0;
         if (e != null)
@@ -317,16 +397,21 @@ public class AuthorizeManager
         {
             ignoreCustomPolicies = !isAnyItemInstalled(c, new Bundle[] {(Bundle) o});
         }
-        if (o instanceof Item)
+        if (o instanceof Item && !((Item) o).isArchived())
         {
+            // an archived item can't be in workspace or workflow
             if (WorkspaceItem.findByItem(c, (Item) o) != null ||
                     WorkflowItem.findByItem(c, (Item) o) != null)
             {
                 ignoreCustomPolicies = true;
             }
         }
-        
-        for (ResourcePolicy rp : getPoliciesActionFilter(c, o, action))
+
+        if (policies == null)
+        {
+            policies = getPoliciesActionFilter(c, o, action);
+        }
+        for (ResourcePolicy rp : policies)
         {
             if (ignoreCustomPolicies 
                     && ResourcePolicy.TYPE_CUSTOM.equals(rp.getRpType()))
@@ -364,8 +449,9 @@ public class AuthorizeManager
         {
             for (Item item : bundle.getItems())
             {
-                if (WorkspaceItem.findByItem(ctx, item) == null
-                        && WorkflowItem.findByItem(ctx, item) == null)
+                if (item.isArchived()
+                        || (WorkspaceItem.findByItem(ctx, item) == null
+                        && WorkflowItem.findByItem(ctx, item) == null))
                 {
                     return true;
                 }
@@ -790,6 +876,86 @@ public class AuthorizeManager
         return policies;
     }
 
+    /**
+     * Return the policies of several objects for a given action, reading
+     * them with one query per type of object (and per
+     * {@link DatabaseManager#MAX_IN_VALUES} objects).
+     *
+     * @param c
+     *         current context
+     * @param objects
+     *         objects to get the policies of
+     * @param actionID
+     *         action to get policies for
+     * @return map from <code>type:id</code> of an object to its policies;
+     *         objects without policies are left out
+     * @throws SQLException
+     *         if there's a database problem
+     */
+    private static Map<String, List<ResourcePolicy>> getPoliciesActionFilter(Context c,
+            List<DSpaceObject> objects, int actionID) throws SQLException
+    {
+        Map<Integer, List<Integer>> idsByType = new LinkedHashMap<Integer, List<Integer>>();
+        for (DSpaceObject o : objects)
+        {
+            List<Integer> ids = idsByType.get(o.getType());
+            if (ids == null)
+            {
+                ids = new ArrayList<Integer>();
+                idsByType.put(o.getType(), ids);
+            }
+            ids.add(o.getID());
+        }
+
+        Map<String, List<ResourcePolicy>> policies = new HashMap<String, List<ResourcePolicy>>();
+        for (Map.Entry<Integer, List<Integer>> entry : idsByType.entrySet())
+        {
+            List<Integer> ids = entry.getValue();
+            for (int start = 0; start < ids.size(); start += DatabaseManager.MAX_IN_VALUES)
+            {
+                List<Integer> chunk = ids.subList(start,
+                        Math.min(ids.size(), start + DatabaseManager.MAX_IN_VALUES));
+                List<Object> parameters = new ArrayList<Object>(chunk.size() + 2);
+                parameters.add(entry.getKey());
+                parameters.add(actionID);
+                parameters.addAll(chunk);
+
+                TableRowIterator tri = DatabaseManager.queryTable(c, "resourcepolicy",
+                        "SELECT * FROM resourcepolicy WHERE resource_type_id= ? " +
+                                "AND action_id= ? AND " +
+                                DatabaseManager.inClause("resource_id", chunk.size()),
+                        parameters.toArray());
+                try
+                {
+                    while (tri.hasNext())
+                    {
+                        TableRow row = tri.next();
+                        ResourcePolicy rp = (ResourcePolicy) c.fromCache(
+                                ResourcePolicy.class, row.getIntColumn("policy_id"));
+                        if (rp == null)
+                        {
+                            rp = new ResourcePolicy(c, row);
+                        }
+
+                        String key = entry.getKey() + ":" + row.getIntColumn("resource_id");
+                        List<ResourcePolicy> objectPolicies = policies.get(key);
+                        if (objectPolicies == null)
+                        {
+                            objectPolicies = new ArrayList<ResourcePolicy>();
+                            policies.put(key, objectPolicies);
+                        }
+                        objectPolicies.add(rp);
+                    }
+                }
+                finally
+                {
+                    tri.close();
+                }
+            }
+        }
+        return policies;
+    }
+
     /**
      * Add policies to an object to match those from a previous object
      *
@@ -880,6 +1046,7 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? ",
                 o.getType(), o.getID());
+        c.clearAuthorizationCache();
         
         c.turnOffAuthorisationSystem();
         o.updateLastModified();
@@ -902,6 +1069,7 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND (rptype <> ? OR rptype IS NULL)",
                 o.getType(), o.getID(), type);
+        c.clearAuthorizationCache();
     }
 
 
@@ -923,6 +1091,7 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND rptype=? ",
                 o.getType(), o.getID(), type);
+        c.clearAuthorizationCache();
     }
     
 	/**
@@ -975,6 +1144,7 @@ public class AuthorizeManager
                     "DELETE FROM resourcepolicy WHERE resource_type_id= ? AND " +
                             "resource_id= ? AND action_id= ? ",
                     dso.getType(), dso.getID(), actionID);
+            context.clearAuthorizationCache();
         }
         
         context.turnOffAuthorisationSystem();
@@ -998,6 +1168,7 @@ public class AuthorizeManager
     {
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "epersongroup_id= ? ", groupID);
+        c.clearAuthorizationCache();
     }
 
     /**
@@ -1019,6 +1190,7 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND epersongroup_id= ? ",
                 o.getType(), o.getID(), g.getID());
+        c.clearAuthorizationCache();
         
         c.turnOffAuthorisationSystem();
         o.updateLastModified();
@@ -1044,6 +1216,7 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND eperson_id= ? ",
                 o.getType(), o.getID(), e.getID());
+        c.clearAuthorizationCache();
         
         c.turnOffAuthorisationSystem();
         o.updateLastModified();
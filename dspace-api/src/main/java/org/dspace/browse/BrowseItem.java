@@ -17,6 +17,7 @@ import org.dspace.handle.HandleManager;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -157,6 +158,23 @@ public class BrowseItem extends DSpaceObject
             return null;
         }
     }
+
+	/**
+	 * Get the metadata values matching the given parameters, from the same
+	 * sources as {@link #getMetadata(String, String, String, String)}
+	 *
+	 * @return read-only list of matching values
+	 */
+	@Override
+	public List<Metadatum> getMetadataView(String schema, String element, String qualifier, String lang)
+	{
+		Metadatum[] values = getMetadata(schema, element, qualifier, lang);
+		if (values == null)
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(values));
+	}
 	
 	/**
 	 * Get the type of object.  This object masquerades as an Item, so this
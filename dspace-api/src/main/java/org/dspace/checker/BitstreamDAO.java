@@ -7,6 +7,7 @@
  */
 package org.dspace.checker;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
@@ -66,4 +67,29 @@ public class BitstreamDAO
 
         return is;
     }
+
+    /**
+     * Get the file holding the bitstream, if it is kept in a local
+     * assetstore.
+     * 
+     * @param context
+     *            the context to look up the bitstream with
+     * @param id
+     *            the bitstream id.
+     * 
+     * @return the file, or null if the bitstream is not in a local assetstore
+     * 
+     * @throws IOException
+     *             Rethrown from BitstreamStorageManager
+     * @throws SQLException
+     *             Rethrown from BitstreamStorageManager
+     * 
+     * @see org.dspace.storage.bitstore.BitstreamStorageManager#retrieveLocalFile(Context,
+     *      int)
+     */
+    public File getLocalFile(Context context, int id) throws IOException,
+            SQLException
+    {
+        return BitstreamStorageManager.retrieveLocalFile(context, id);
+    }
 }
@@ -7,7 +7,9 @@
  */
 package org.dspace.checker;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * <p>
@@ -41,6 +43,12 @@ public final class BitstreamInfo
     /** the check sum value calculated by the algorithm. */
     private String calculatedChecksum;
 
+    /**
+     * checksums calculated with other algorithms in the same pass, keyed by
+     * algorithm.
+     */
+    private Map<String, String> additionalChecksums = Collections.emptyMap();
+
     /** should be processed or not? */
     private boolean toBeProcessed;
 
@@ -371,6 +379,28 @@ public final class BitstreamInfo
         this.calculatedChecksum = calculatedChecksum;
     }
 
+    /**
+     * additionalChecksums accessor.
+     * 
+     * @return checksums calculated with other algorithms than the stored
+     *         checksum's, keyed by algorithm.
+     */
+    public Map<String, String> getAdditionalChecksums()
+    {
+        return additionalChecksums;
+    }
+
+    /**
+     * additionalChecksums accessor.
+     * 
+     * @param additionalChecksums
+     *            checksums keyed by algorithm.
+     */
+    public void setAdditionalChecksums(Map<String, String> additionalChecksums)
+    {
+        this.additionalChecksums = additionalChecksums;
+    }
+
     /**
      * infoFound accessor.
      * 
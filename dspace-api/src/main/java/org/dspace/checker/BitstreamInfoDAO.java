@@ -98,6 +98,17 @@ public final class BitstreamInfoDAO extends DAOSupport
             + "SET current_checksum = ?, expected_checksum = ?, matched_prev_checksum = ?, to_be_processed= ?, "
             + "last_process_start_date=?, last_process_end_date=?, result=? WHERE bitstream_id = ? ";
 
+    /**
+     * Query that marks a bitstream in most_recent_checksum as taken by a
+     * checker thread, so the dispatcher moves on to the next one.
+     */
+    private static final String UPDATE_STARTED = "UPDATE most_recent_checksum "
+            + "SET last_process_start_date = ?, last_process_end_date = ? WHERE bitstream_id = ? ";
+
+    /** Processing dates of a bitstream, read before they are overwritten. */
+    private static final String FIND_PROCESS_DATES = "SELECT last_process_start_date, last_process_end_date "
+            + "FROM most_recent_checksum WHERE bitstream_id = ? ";
+
     /**
      * Deletes from the most_recent_checksum where the bitstream id is found
      */
@@ -219,6 +230,97 @@ public final class BitstreamInfoDAO extends DAOSupport
         }
     }
 
+    /**
+     * Mark a bitstream as being processed since the given date, before its
+     * checksum is calculated. Both processing dates are set, so neither
+     * query used by {@link SimpleDispatcher} returns the bitstream again
+     * while it is being checked. The dates are overwritten by
+     * {@link #update(BitstreamInfo)} once the check is done, or put back
+     * with {@link #restoreProcessDates(int, Date[])} if it fails.
+     * 
+     * @param id
+     *            the bitstream id
+     * @param startDate
+     *            date the processing started
+     * @return the previous start and end dates, either may be null
+     */
+    public Date[] markStarted(int id, Date startDate)
+    {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        Date[] previous = new Date[2];
+
+        try
+        {
+            conn = DatabaseManager.getConnection();
+            stmt = conn.prepareStatement(FIND_PROCESS_DATES);
+            stmt.setInt(1, id);
+            rs = stmt.executeQuery();
+            if (rs.next())
+            {
+                previous[0] = rs.getTimestamp(1);
+                previous[1] = rs.getTimestamp(2);
+            }
+            rs.close();
+            cleanup(stmt);
+
+            stmt = conn.prepareStatement(UPDATE_STARTED);
+            Timestamp start = new Timestamp(startDate.getTime());
+            stmt.setTimestamp(1, start);
+            stmt.setTimestamp(2, start);
+            stmt.setInt(3, id);
+            stmt.executeUpdate();
+            conn.commit();
+        }
+        catch (SQLException e)
+        {
+            LOG.error("Problem updating checksum row. " + e.getMessage(), e);
+            throw new IllegalStateException("Problem updating checksum row. " + e.getMessage(), e);
+        }
+        finally
+        {
+            cleanup(stmt, conn);
+        }
+        return previous;
+    }
+
+    /**
+     * Put back the processing dates of a bitstream whose check failed
+     * without a result, so that it is not taken as checked.
+     * 
+     * @param id
+     *            the bitstream id
+     * @param dates
+     *            the start and end dates returned by
+     *            {@link #markStarted(int, Date)}
+     */
+    public void restoreProcessDates(int id, Date[] dates)
+    {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try
+        {
+            conn = DatabaseManager.getConnection();
+            stmt = conn.prepareStatement(UPDATE_STARTED);
+            stmt.setTimestamp(1, (dates[0] == null) ? null : new Timestamp(dates[0].getTime()));
+            stmt.setTimestamp(2, (dates[1] == null) ? null : new Timestamp(dates[1].getTime()));
+            stmt.setInt(3, id);
+            stmt.executeUpdate();
+            conn.commit();
+        }
+        catch (SQLException e)
+        {
+            LOG.error("Problem updating checksum row. " + e.getMessage(), e);
+            throw new IllegalStateException("Problem updating checksum row. " + e.getMessage(), e);
+        }
+        finally
+        {
+            cleanup(stmt, conn);
+        }
+    }
+
     /**
      * Find a bitstream by its id.
      * 
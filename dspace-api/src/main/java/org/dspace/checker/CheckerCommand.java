@@ -7,15 +7,32 @@
  */
 package org.dspace.checker;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Context;
 import org.dspace.core.Utils;
 
@@ -26,6 +43,14 @@ import org.dspace.core.Utils;
  * against the last calculated checksum for that bitstream.
  * </p>
  * 
+ * <p>
+ * Bitstreams can be checked by several threads at once
+ * (<code>checker.threads</code>), and the rate at which they read the
+ * assetstore can be capped (<code>checker.max-bandwidth</code>). Checksums in
+ * further algorithms (<code>checker.additional-algorithms</code>) are
+ * calculated in the same pass and reported along with the result.
+ * </p>
+ * 
  * @author Jim Downing
  * @author Grace Carpenter
  * @author Nathan Sarr
@@ -42,8 +67,21 @@ public final class CheckerCommand
     /** Default digest algorithm (MD5). */
     private static final String DEFAULT_DIGEST_ALGORITHM = "MD5";
 
-    /** 4 Meg byte array for reading file. */
-    private int BYTE_ARRAY_SIZE = 4 * 1024;
+    /** 1 Meg buffer for reading file. */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Direct buffer of each checker thread, for reading files of local
+     * assetstores without copying them to the heap.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
 
     /** BitstreamInfoDAO dependency. */
     private BitstreamInfoDAO bitstreamInfoDAO = null;
@@ -72,6 +110,15 @@ public final class CheckerCommand
     /** Report all processing */
     private boolean reportVerbose = false;
 
+    /** Number of threads checking bitstreams. */
+    private int threads = 1;
+
+    /** Cap on reads from the assetstore, or null for none. */
+    private ThroughputLimiter limiter = null;
+
+    /** Algorithms calculated in addition to the stored checksum's. */
+    private String[] additionalAlgorithms = new String[0];
+
     /**
      * Default constructor uses DSpace plugin manager to construct dependencies.
      */
@@ -80,6 +127,35 @@ public final class CheckerCommand
         bitstreamInfoDAO = new BitstreamInfoDAO();
         bitstreamDAO = new BitstreamDAO();
         checksumHistoryDAO = new ChecksumHistoryDAO();
+
+        setThreads(ConfigurationManager.getIntProperty("checker.threads", 1));
+        setMaxBandwidth(1024L * ConfigurationManager.getLongProperty(
+                "checker.max-bandwidth", 0));
+
+        List<String> algorithms = new ArrayList<String>();
+        String configured = ConfigurationManager.getProperty("checker.additional-algorithms");
+        if (configured != null)
+        {
+            for (String algorithm : configured.split(","))
+            {
+                algorithm = algorithm.trim();
+                if (algorithm.length() == 0)
+                {
+                    continue;
+                }
+                try
+                {
+                    MessageDigest.getInstance(algorithm);
+                    algorithms.add(algorithm);
+                }
+                catch (NoSuchAlgorithmException e)
+                {
+                    LOG.warn("Ignoring unknown digest algorithm " + algorithm
+                            + " in checker.additional-algorithms");
+                }
+            }
+        }
+        additionalAlgorithms = algorithms.toArray(new String[algorithms.size()]);
     }
 
     /**
@@ -112,20 +188,152 @@ public final class CheckerCommand
         // bitstream table - this always done.
         bitstreamInfoDAO.updateMissingBitstreams();
 
+        if (threads > 1)
+        {
+            processInParallel();
+            return;
+        }
+
         int id = dispatcher.next();
 
         while (id != BitstreamDispatcher.SENTINEL)
         {
             LOG.debug("Processing bitstream id = " + id);
-            BitstreamInfo info = checkBitstream(context, id);
+            report(checkBitstream(context, id));
+
+            id = dispatcher.next();
+        }
+    }
 
-            if (reportVerbose
-                    || !ChecksumCheckResults.CHECKSUM_MATCH.equals(info.getChecksumCheckResult()))
+    /**
+     * Check the bitstreams from the dispatcher with a pool of threads, each
+     * with its own Context. This thread takes the IDs from the dispatcher,
+     * and marks each bitstream as started before handing it over, so the
+     * dispatcher does not return it again while it is being checked. At most
+     * two bitstreams per thread are waiting to be checked at any time.
+     */
+    private void processInParallel()
+    {
+        final BlockingQueue<Context> contexts = new ArrayBlockingQueue<Context>(threads);
+        final Semaphore slots = new Semaphore(2 * threads);
+        final Set<Integer> inProgress = new HashSet<Integer>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try
+        {
+            for (int i = 0; i < threads; i++)
             {
-                collector.collect(info);
+                contexts.add(new Context());
             }
 
-            id = dispatcher.next();
+            int id = dispatcher.next();
+
+            while (id != BitstreamDispatcher.SENTINEL)
+            {
+                final int bitstreamId = id;
+                slots.acquire();
+
+                // a looping dispatcher may come back to a bitstream which is
+                // still being checked: wait for it rather than check it twice
+                // at once
+                synchronized (inProgress)
+                {
+                    while (inProgress.contains(bitstreamId))
+                    {
+                        inProgress.wait();
+                    }
+                    inProgress.add(bitstreamId);
+                }
+                final Date[] previousDates = bitstreamInfoDAO.markStarted(bitstreamId, new Date());
+
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        Context context = contexts.poll();
+                        try
+                        {
+                            LOG.debug("Processing bitstream id = " + bitstreamId);
+                            BitstreamInfo info;
+                            try
+                            {
+                                info = checkBitstream(context, bitstreamId);
+                            }
+                            catch (RuntimeException e)
+                            {
+                                // no result was recorded, so do not leave
+                                // the bitstream looking freshly checked
+                                bitstreamInfoDAO.restoreProcessDates(bitstreamId, previousDates);
+                                throw e;
+                            }
+                            report(info);
+                        }
+                        catch (RuntimeException e)
+                        {
+                            LOG.error("Error checking bitstream ID " + bitstreamId, e);
+                        }
+                        finally
+                        {
+                            context.clearCache();
+                            contexts.add(context);
+                            synchronized (inProgress)
+                            {
+                                inProgress.remove(bitstreamId);
+                                inProgress.notifyAll();
+                            }
+                            slots.release();
+                        }
+                    }
+                });
+
+                id = dispatcher.next();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted, no more bitstreams will be checked");
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Could not create a context for a checker thread. "
+                    + e.getMessage(), e);
+        }
+        finally
+        {
+            pool.shutdown();
+            try
+            {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            for (Context context : contexts)
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * Hand the result of a check to the collector, unless it is a match and
+     * only errors are reported.
+     * 
+     * @param info
+     *            the checked bitstream
+     */
+    private void report(BitstreamInfo info)
+    {
+        if (reportVerbose
+                || !ChecksumCheckResults.CHECKSUM_MATCH.equals(info.getChecksumCheckResult()))
+        {
+            synchronized (collector)
+            {
+                collector.collect(info);
+            }
         }
     }
 
@@ -168,44 +376,150 @@ public final class CheckerCommand
         }
         else
         {
-            processBitstream(info);
+            processBitstream(context, info);
         }
 
         return info;
     }
 
     /**
-     * Digest the stream and get the checksum value.
+     * Read a bitstream once, and calculate its checksum with the algorithm of
+     * the stored checksum and with the additional algorithms. Bitstreams in
+     * a local assetstore are read through a FileChannel into a direct buffer.
      * 
-     * @param stream
-     *            InputStream to digest.
-     * @param algorithm
-     *            the algorithm to use when digesting.
-     * @todo Document the algorithm parameter
-     * @return digest
+     * @param context
+     *            the context to look up the bitstream with
+     * @param info
+     *            the bitstream; the additional checksums are set on it
+     * @return checksum calculated with the algorithm of the stored checksum
      * 
      * @throws java.security.NoSuchAlgorithmException
-     *             if the requested algorithm is not provided by the system
-     *             security provider.
+     *             if the stored checksum's algorithm is not provided by the
+     *             system security provider.
      * @throws java.io.IOException
-     *             If an exception arises whilst reading the stream
+     *             If an exception arises whilst reading the bitstream
+     * @throws SQLException
+     *             if the bitstream could not be looked up
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting for bandwidth
      */
-    private String digestStream(InputStream stream, String algorithm)
-            throws java.security.NoSuchAlgorithmException, java.io.IOException
+    private String digestBitstream(Context context, BitstreamInfo info)
+            throws NoSuchAlgorithmException, IOException, SQLException,
+            InterruptedException
     {
-        // create the digest stream
-        DigestInputStream dStream = new DigestInputStream(stream, MessageDigest
-                .getInstance(algorithm));
+        List<String> algorithms = new ArrayList<String>();
+        algorithms.add(info.getChecksumAlgorithm());
+        for (String algorithm : additionalAlgorithms)
+        {
+            if (!algorithm.equalsIgnoreCase(info.getChecksumAlgorithm()))
+            {
+                algorithms.add(algorithm);
+            }
+        }
 
-        byte[] bytes = new byte[BYTE_ARRAY_SIZE];
+        MessageDigest[] digests = new MessageDigest[algorithms.size()];
+        for (int i = 0; i < digests.length; i++)
+        {
+            digests[i] = MessageDigest.getInstance(algorithms.get(i));
+        }
 
-        // make sure all the data is read by the digester
-        int bytesRead = -1;
-        do {
-            bytesRead = dStream.read(bytes, 0, BYTE_ARRAY_SIZE);
-        } while (bytesRead != -1);
+        File file = bitstreamDAO.getLocalFile(context, info.getBitstreamId());
+        if (file != null)
+        {
+            FileInputStream stream = new FileInputStream(file);
+            info.setBitstreamFound(true);
+            try
+            {
+                digestChannel(stream.getChannel(), digests);
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        else
+        {
+            InputStream stream = bitstreamDAO.getBitstream(info.getBitstreamId());
+            if (stream == null)
+            {
+                throw new FileNotFoundException("No bits for bitstream ID "
+                        + info.getBitstreamId());
+            }
+            info.setBitstreamFound(true);
+            try
+            {
+                digestStream(stream, digests);
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+
+        if (digests.length > 1)
+        {
+            Map<String, String> additional = new LinkedHashMap<String, String>();
+            for (int i = 1; i < digests.length; i++)
+            {
+                additional.put(algorithms.get(i), Utils.toHex(digests[i].digest()));
+            }
+            info.setAdditionalChecksums(additional);
+        }
+
+        return Utils.toHex(digests[0].digest());
+    }
+
+    /**
+     * Feed a whole file channel to the digests.
+     */
+    private void digestChannel(FileChannel channel, MessageDigest[] digests)
+            throws IOException, InterruptedException
+    {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
 
-        return Utils.toHex(dStream.getMessageDigest().digest());
+        while (channel.read(buffer) != -1)
+        {
+            buffer.flip();
+            throttle(buffer.remaining());
+            for (MessageDigest digest : digests)
+            {
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Feed a whole stream to the digests.
+     */
+    private void digestStream(InputStream stream, MessageDigest[] digests)
+            throws IOException, InterruptedException
+    {
+        byte[] bytes = new byte[BUFFER_SIZE];
+
+        int bytesRead;
+        while ((bytesRead = stream.read(bytes, 0, BUFFER_SIZE)) != -1)
+        {
+            throttle(bytesRead);
+            for (MessageDigest digest : digests)
+            {
+                digest.update(bytes, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * Wait until the bandwidth cap allows a number of bytes to be read.
+     */
+    private void throttle(int bytes) throws InterruptedException
+    {
+        if (limiter != null)
+        {
+            limiter.acquire(bytes);
+        }
     }
 
     /**
@@ -286,10 +600,12 @@ public final class CheckerCommand
      * @todo Why does bitstream have a timestamp indicating it's checked if
      *       checksumming doesn't occur?
      * 
+     * @param context
+     *            the context to look up the bitstream with
      * @param info
      *            BitstreamInfo to handle
      */
-    private void processBitstream(BitstreamInfo info)
+    private void processBitstream(Context context, BitstreamInfo info)
     {
         info.setProcessStartDate(new Date());
 
@@ -300,13 +616,7 @@ public final class CheckerCommand
 
         try
         {
-            InputStream bitstream = bitstreamDAO.getBitstream(info
-                    .getBitstreamId());
-
-            info.setBitstreamFound(true);
-
-            String checksum = digestStream(bitstream, info
-                    .getChecksumAlgorithm());
+            String checksum = digestBitstream(context, info);
 
             info.setCalculatedChecksum(checksum);
 
@@ -341,6 +651,14 @@ public final class CheckerCommand
             LOG.error("Invalid digest algorithm type for bitstream ID"
                     + info.getBitstreamId(), e);
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            info
+                    .setChecksumCheckResult(ChecksumCheckResults.BITSTREAM_NOT_PROCESSED);
+            LOG.warn("Interrupted while checking bitstream ID "
+                    + info.getBitstreamId());
+        }
         finally
         {
             info.setProcessEndDate(new Date());
@@ -351,6 +669,69 @@ public final class CheckerCommand
         }
     }
 
+    /**
+     * Get the number of threads checking bitstreams.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads checking bitstreams. Each thread uses its
+     * own database connection.
+     * 
+     * @param threads
+     *            the number of threads, at least 1
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Cap the rate at which all threads together read bitstreams.
+     * 
+     * @param bytesPerSecond
+     *            the maximum number of bytes read per second, or 0 for no cap
+     */
+    public void setMaxBandwidth(long bytesPerSecond)
+    {
+        limiter = (bytesPerSecond > 0) ? new ThroughputLimiter(bytesPerSecond) : null;
+    }
+
+    /**
+     * Get the algorithms calculated in addition to the stored checksum's.
+     * 
+     * @return the algorithm names
+     */
+    public String[] getAdditionalAlgorithms()
+    {
+        return additionalAlgorithms.clone();
+    }
+
+    /**
+     * Set the algorithms to calculate in addition to the stored checksum's,
+     * in the same pass over each bitstream.
+     * 
+     * @param algorithms
+     *            the algorithm names, for example SHA-256
+     * @throws NoSuchAlgorithmException
+     *             if an algorithm is not provided by the system security
+     *             provider
+     */
+    public void setAdditionalAlgorithms(String[] algorithms)
+            throws NoSuchAlgorithmException
+    {
+        for (String algorithm : algorithms)
+        {
+            MessageDigest.getInstance(algorithm);
+        }
+        additionalAlgorithms = algorithms.clone();
+    }
+
     /**
      * Get dispatcher being used by this run of the checker.
      * 
@@ -9,6 +9,7 @@ package org.dspace.checker;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.dspace.core.I18nUtil;
@@ -112,6 +113,11 @@ public class ResultsLogger implements ChecksumResultsCollector
                 + ((info.getProcessEndDate() != null) ? DATE_FORMAT.format(info
                         .getProcessEndDate()) : "unknown"));
         LOG.info(msg("new-checksum") + ": " + info.getCalculatedChecksum());
+        for (Map.Entry<String, String> checksum : info.getAdditionalChecksums().entrySet())
+        {
+            LOG.info(msg("additional-checksum") + " (" + checksum.getKey()
+                    + "): " + checksum.getValue());
+        }
         LOG.info(msg("checksum-comparison-result") + ": "
                 + resultDAO.getChecksumCheckStr(info.getChecksumCheckResult()));
         LOG.info("\n\n");
@@ -0,0 +1,74 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.checker;
+
+/**
+ * <p>
+ * Caps the rate at which the checker threads together read from the
+ * assetstore, so a checker run does not take the disk bandwidth needed to
+ * serve bitstreams to users.
+ * </p>
+ *
+ * <p>
+ * Every read is booked on a shared clock which advances by the time the read
+ * is allowed to take at the configured rate. A thread whose read is booked in
+ * the future sleeps until then.
+ * </p>
+ */
+public final class ThroughputLimiter
+{
+    /** nanoseconds allowed per byte read. */
+    private final double nanosPerByte;
+
+    /** time (System.nanoTime) at which the next read may start. */
+    private long next;
+
+    /**
+     * Create a limiter.
+     *
+     * @param bytesPerSecond
+     *            the number of bytes which may be read per second, by all
+     *            threads together.
+     */
+    public ThroughputLimiter(long bytesPerSecond)
+    {
+        if (bytesPerSecond <= 0)
+        {
+            throw new IllegalArgumentException("bytesPerSecond must be positive");
+        }
+        this.nanosPerByte = 1000000000.0 / bytesPerSecond;
+        this.next = System.nanoTime();
+    }
+
+    /**
+     * Wait until a number of bytes may be read.
+     *
+     * @param bytes
+     *            the number of bytes about to be read, or just read.
+     *
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting.
+     */
+    public void acquire(int bytes) throws InterruptedException
+    {
+        long wait;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            // do not let an idle period build up credit for a burst
+            long start = Math.max(next, now);
+            next = start + (long) (bytes * nanosPerByte);
+            wait = start - now;
+        }
+
+        if (wait > 0)
+        {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+}
@@ -641,6 +641,12 @@ public class Bitstream extends DSpaceObject
         return bundleArray;
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      * 
@@ -60,6 +60,23 @@ public class Bundle extends DSpaceObject
      *            the corresponding row in the table
      */
     Bundle(Context context, TableRow row) throws SQLException
+    {
+        this(context, row, null);
+    }
+
+    /**
+     * Construct a bundle object with the given table row, and the already
+     * retrieved rows of its bitstreams.
+     *
+     * @param context
+     *            the context this object exists in
+     * @param row
+     *            the corresponding row in the table
+     * @param bitstreamRows
+     *            the rows of the bitstreams in this bundle, in bitstream
+     *            order, or <code>null</code> to query them
+     */
+    Bundle(Context context, TableRow row, List<TableRow> bitstreamRows) throws SQLException
     {
         super(context);
 
@@ -69,63 +86,43 @@ public class Bundle extends DSpaceObject
 
         bundleRow = row;
         bitstreams = new ArrayList<Bitstream>();
-        String bitstreamOrderingField  = ConfigurationManager.getProperty("webui.bitstream.order.field");
-        String bitstreamOrderingDirection   = ConfigurationManager.getProperty("webui.bitstream.order.direction");
-
-        if (bitstreamOrderingField == null)
-        {
-            bitstreamOrderingField = "sequence_id";
-        }
 
-        if (bitstreamOrderingDirection == null)
+        if (bitstreamRows != null)
         {
-            bitstreamOrderingDirection = "ASC";
+            for (TableRow r : bitstreamRows)
+            {
+                addBitstreamRow(r);
+            }
         }
-
-        StringBuilder query = new StringBuilder();
-        query.append("SELECT bitstream.*,bundle2bitstream.bitstream_order FROM bitstream, bundle2bitstream WHERE");
-        query.append(" bundle2bitstream.bitstream_id=bitstream.bitstream_id AND");
-        query.append(" bundle2bitstream.bundle_id= ?");
-        query.append(" ORDER BY ");
-        query.append(bitstreamOrderingField);
-        query.append(" ");
-        query.append(bitstreamOrderingDirection);
-
-        // Get bitstreams
-        TableRowIterator tri = DatabaseManager.query(
-                ourContext,
-                query.toString(),
-                bundleRow.getIntColumn("bundle_id"));
-
-        try
+        else
         {
-            while (tri.hasNext())
+            StringBuilder query = new StringBuilder();
+            query.append("SELECT bitstream.*,bundle2bitstream.bitstream_order FROM bitstream, bundle2bitstream WHERE");
+            query.append(" bundle2bitstream.bitstream_id=bitstream.bitstream_id AND");
+            query.append(" bundle2bitstream.bundle_id= ?");
+            query.append(" ORDER BY ");
+            query.append(getBitstreamOrder());
+
+            // Get bitstreams
+            TableRowIterator tri = DatabaseManager.query(
+                    ourContext,
+                    query.toString(),
+                    bundleRow.getIntColumn("bundle_id"));
+
+            try
             {
-                TableRow r = tri.next();
-
-                // First check the cache
-                Bitstream fromCache = (Bitstream) context.fromCache(
-                        Bitstream.class, r.getIntColumn("bitstream_id"));
-
-                if (fromCache != null)
+                while (tri.hasNext())
                 {
-                    bitstreams.add(fromCache);
-                }
-                else
-                {
-                    //Since bitstreams can be ordered by a column in bundle2bitstream
-                    //We cannot use queryTable & so we need to add our table later on
-                    r.setTable("bitstream");
-                    bitstreams.add(new Bitstream(ourContext, r));
+                    addBitstreamRow(tri.next());
                 }
             }
-        }
-        finally
-        {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
+            finally
             {
-                tri.close();
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
             }
         }
 
@@ -135,6 +132,53 @@ public class Bundle extends DSpaceObject
         modified = false;
     }
 
+    /**
+     * Add the bitstream of a bitstream row to this bundle, using the cached
+     * Bitstream object if there is one.
+     */
+    private void addBitstreamRow(TableRow r) throws SQLException
+    {
+        // First check the cache
+        Bitstream fromCache = (Bitstream) ourContext.fromCache(
+                Bitstream.class, r.getIntColumn("bitstream_id"));
+
+        if (fromCache != null)
+        {
+            bitstreams.add(fromCache);
+        }
+        else
+        {
+            //Since bitstreams can be ordered by a column in bundle2bitstream
+            //We cannot use queryTable & so we need to add our table later on
+            r.setTable("bitstream");
+            bitstreams.add(new Bitstream(ourContext, r));
+        }
+    }
+
+    /**
+     * Get the configured ordering of bitstreams within a bundle.
+     *
+     * @return the column and direction to order bitstreams by, suitable for
+     *         an ORDER BY clause
+     */
+    static String getBitstreamOrder()
+    {
+        String bitstreamOrderingField  = ConfigurationManager.getProperty("webui.bitstream.order.field");
+        String bitstreamOrderingDirection   = ConfigurationManager.getProperty("webui.bitstream.order.direction");
+
+        if (bitstreamOrderingField == null)
+        {
+            bitstreamOrderingField = "sequence_id";
+        }
+
+        if (bitstreamOrderingDirection == null)
+        {
+            bitstreamOrderingDirection = "ASC";
+        }
+
+        return bitstreamOrderingField + " " + bitstreamOrderingDirection;
+    }
+
     /**
      * Get a bundle from the database. The bundle and bitstream metadata are all
      * loaded into memory.
@@ -656,6 +700,12 @@ public class Bundle extends DSpaceObject
         removeMetadataFromDatabase();
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      */
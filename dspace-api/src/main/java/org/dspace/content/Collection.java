@@ -484,8 +484,8 @@ public class Collection extends DSpaceObject
     }
 
     /**
-     * Get the in_archive items in this collection. The order is indeterminate.
-     * Provides the ability to use limit and offset, for efficient paging.
+     * Get the in_archive items in this collection, in order of their internal
+     * ID. Provides the ability to use limit and offset, for efficient paging.
      * @param limit Max number of results in set
      * @param offset Number of results to jump ahead by. 100 = 100th result is first, not 100th page.
      * @return an iterator over the items in the collection.
@@ -499,7 +499,8 @@ public class Collection extends DSpaceObject
             "FROM item, collection2item " + 
             "WHERE item.item_id = collection2item.item_id " +
               "AND collection2item.collection_id = ? " +
-              "AND item.in_archive = '1'"
+              "AND item.in_archive = '1' " +
+            "ORDER BY item.item_id"
         );
 
         params.add(getID());
@@ -511,6 +512,40 @@ public class Collection extends DSpaceObject
         return new ItemIterator(ourContext, rows);
     }
 
+    /**
+     * Get the in_archive items in this collection whose internal ID follows
+     * a given one, in order of their internal ID. Paging by the ID of the
+     * last item of the previous page costs the same however deep into the
+     * collection the page is, unlike paging by offset.
+     *
+     * @param afterID internal ID of the last item of the previous page, or -1 for the first page
+     * @param limit Max number of results in set
+     * @return an iterator over the items in the collection.
+     * @throws SQLException
+     */
+    public ItemIterator getItemsAfter(int afterID, int limit) throws SQLException
+    {
+        List<Serializable> params = new ArrayList<Serializable>();
+        StringBuffer myQuery = new StringBuffer(
+            "SELECT item.* " +
+            "FROM item, collection2item " +
+            "WHERE item.item_id = collection2item.item_id " +
+              "AND collection2item.collection_id = ? " +
+              "AND item.in_archive = '1' " +
+              "AND item.item_id > ? " +
+            "ORDER BY item.item_id"
+        );
+
+        params.add(getID());
+        params.add(afterID);
+        DatabaseManager.applyOffsetAndLimit(myQuery, params, 0, limit);
+
+        TableRowIterator rows = DatabaseManager.query(ourContext,
+                myQuery.toString(), params.toArray());
+
+        return new ItemIterator(ourContext, rows);
+    }
+
     /**
      * Get all the items in this collection. The order is indeterminate.
      *
@@ -1559,6 +1594,12 @@ public class Collection extends DSpaceObject
         return Group.find(ourContext, collectionRow.getIntColumn(col));
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      *
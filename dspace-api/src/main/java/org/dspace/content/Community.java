@@ -1342,6 +1342,12 @@ public class Community extends DSpaceObject
         return Group.find(ourContext, communityRow.getIntColumn(col));
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      */
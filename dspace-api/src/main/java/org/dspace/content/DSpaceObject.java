@@ -299,6 +299,18 @@ public abstract class DSpaceObject
         return (eventDetails == null ? null : eventDetails.toString());
     }
 
+    /**
+     * Find out whether this object has been changed since it was loaded or
+     * last updated. Unmodified objects may be evicted from the Context cache.
+     *
+     * @return true if there are changes which have not been written by
+     *         <code>update()</code>
+     */
+    public boolean isModified()
+    {
+        return modifiedMetadata;
+    }
+
     /**
      * Get the type of this object, found in Constants
      * 
@@ -580,30 +592,74 @@ public abstract class DSpaceObject
     public Metadatum[] getMetadata(String schema, String element, String qualifier,
                                  String lang)
     {
-        // Build up list of matching values
+        List<Metadatum> values = getMetadataView(schema, element, qualifier, lang);
+
+        // We will return copies of the objects in case they are altered
+        Metadatum[] valueArray = new Metadatum[values.size()];
+        for (int i = 0; i < valueArray.length; i++)
+        {
+            Metadatum dcv = values.get(i);
+            Metadatum copy = new Metadatum();
+            copy.element = dcv.element;
+            copy.qualifier = dcv.qualifier;
+            copy.value = dcv.value;
+            copy.language = dcv.language;
+            copy.schema = dcv.schema;
+            copy.authority = dcv.authority;
+            copy.confidence = dcv.confidence;
+            valueArray[i] = copy;
+        }
+
+        return valueArray;
+    }
+
+    /**
+     * Get metadata values without copying them. The parameters are the same
+     * as for {@link #getMetadata(String, String, String, String)}, which
+     * should be used by callers that want to change the values they get.
+     * <P>
+     * The returned list cannot be modified, and the <code>Metadatum</code>
+     * objects in it are the ones held by this object, so they must not be
+     * changed either. The list is a snapshot: it does not follow later
+     * changes to the metadata of this object.
+     * <P>
+     * Lookups of a single field (no wildcard in the schema, element or
+     * qualifier) and any language do not allocate anything once the field
+     * index of this object has been built.
+     *
+     * @param schema
+     *            the schema for the metadata field
+     * @param element
+     *            the element name, or <code>Item.ANY</code>
+     * @param qualifier
+     *            the qualifier, <code>null</code> for unqualified or
+     *            <code>Item.ANY</code>
+     * @param lang
+     *            the language, <code>null</code> for no language or
+     *            <code>Item.ANY</code>
+     * @return read-only list of the metadata values that match the parameters
+     */
+    public List<Metadatum> getMetadataView(String schema, String element, String qualifier,
+                                           String lang)
+    {
+        List<Metadatum> metadata = getMetadata();
+
+        List<Metadatum> field = metadataCache.getField(schema, element, qualifier);
+        if (field != null && Item.ANY.equals(lang))
+        {
+            return field;
+        }
+
+        // Filter the values of the field, or of everything for wildcards
         List<Metadatum> values = new ArrayList<Metadatum>();
-        for (Metadatum dcv : getMetadata())
+        for (Metadatum dcv : (field != null) ? field : metadata)
         {
             if (match(schema, element, qualifier, lang, dcv))
             {
-                // We will return a copy of the object in case it is altered
-                Metadatum copy = new Metadatum();
-                copy.element = dcv.element;
-                copy.qualifier = dcv.qualifier;
-                copy.value = dcv.value;
-                copy.language = dcv.language;
-                copy.schema = dcv.schema;
-                copy.authority = dcv.authority;
-                copy.confidence = dcv.confidence;
-                values.add(copy);
+                values.add(dcv);
             }
         }
-
-        // Create an array of matching values
-        Metadatum[] valueArray = new Metadatum[values.size()];
-        valueArray = (Metadatum[]) values.toArray(valueArray);
-
-        return valueArray;
+        return Collections.unmodifiableList(values);
     }
 
     /**
@@ -650,9 +706,9 @@ public abstract class DSpaceObject
      * Retrieve first metadata field value
      */
     protected String getMetadataFirstValue(String schema, String element, String qualifier, String language){
-        Metadatum[] dcvalues = getMetadata(schema, element, qualifier, Item.ANY);
-        if(dcvalues.length>0){
-            return dcvalues[0].value;
+        List<Metadatum> dcvalues = getMetadataView(schema, element, qualifier, Item.ANY);
+        if(dcvalues.size()>0){
+            return dcvalues.get(0).value;
         }
         return null;
     }
@@ -911,6 +967,7 @@ public abstract class DSpaceObject
         boolean authorityControlled = mam.isAuthorityControlled(schema, element, qualifier);
         boolean authorityRequired = mam.isAuthorityRequired(schema, element, qualifier);
         String fieldName = schema+"."+element+((qualifier==null)? "": "."+qualifier);
+        metadataCache.clearIndex();
 
         // We will not verify that they are valid entries in the registry
         // until update() is called.
@@ -1251,10 +1308,123 @@ public abstract class DSpaceObject
         modifiedMetadata = true;
     }
 
+    /**
+     * Make a Metadatum from a row of the MetadataValue table.
+     *
+     * @param c
+     *            current context
+     * @param resultRow
+     *            the MetadataValue row
+     * @param log
+     *            where to log unknown fields or schemas
+     * @return the value, or <code>null</code> if its field or schema is unknown
+     * @throws SQLException
+     */
+    static Metadatum toMetadatum(Context c, TableRow resultRow, Logger log) throws SQLException
+    {
+        int resourceId = resultRow.getIntColumn("resource_id");
+        int resourceTypeId = resultRow.getIntColumn("resource_type_id");
+
+        // Get the associated metadata field and schema information
+        int fieldID = resultRow.getIntColumn("metadata_field_id");
+        MetadataField field = MetadataField.find(c, fieldID);
+
+        if (field == null)
+        {
+            log.error("Loading item - cannot find metadata field " + fieldID + " for resourceType=" + resourceTypeId + " and resourceId=" + resourceId);
+            return null;
+        }
+
+        MetadataSchema schema = MetadataSchema.find(c, field.getSchemaID());
+        if (schema == null)
+        {
+            log.error("Loading item - cannot find metadata schema " + field.getSchemaID() + ", field " + fieldID);
+            return null;
+        }
+
+        // Make a Metadatum object
+        Metadatum dcv = new Metadatum();
+        dcv.element = field.getElement();
+        dcv.qualifier = field.getQualifier();
+        dcv.value = resultRow.getStringColumn("text_value");
+        dcv.language = resultRow.getStringColumn("text_lang");
+        //dcv.namespace = schema.getNamespace();
+        dcv.schema = schema.getName();
+        dcv.authority = resultRow.getStringColumn("authority");
+        dcv.confidence = resultRow.getIntColumn("confidence");
+        return dcv;
+    }
+
+    /**
+     * Load the metadata of several objects of the same type, using as few
+     * queries as possible.
+     *
+     * @param c
+     *            current context
+     * @param resourceTypeId
+     *            type of the objects, as defined in Constants
+     * @param resourceIds
+     *            IDs of the objects
+     * @return map from object ID to its metadata. Every requested ID is in the
+     *         map, objects without metadata map to an empty list.
+     * @throws SQLException
+     */
+    static Map<Integer, List<Metadatum>> retrieveMetadata(Context c, int resourceTypeId,
+            List<Integer> resourceIds) throws SQLException
+    {
+        Map<Integer, List<Metadatum>> metadata = new HashMap<Integer, List<Metadatum>>();
+        for (Integer id : resourceIds)
+        {
+            metadata.put(id, new ArrayList<Metadatum>());
+        }
+
+        for (int start = 0; start < resourceIds.size(); start += DatabaseManager.MAX_IN_VALUES)
+        {
+            List<Integer> chunk = resourceIds.subList(start,
+                    Math.min(resourceIds.size(), start + DatabaseManager.MAX_IN_VALUES));
+            List<Object> params = new ArrayList<Object>(chunk.size() + 1);
+            params.add(resourceTypeId);
+            params.addAll(chunk);
+
+            TableRowIterator tri = DatabaseManager.queryTable(c, "MetadataValue",
+                    "SELECT * FROM MetadataValue WHERE resource_type_id = ? AND "
+                            + DatabaseManager.inClause("resource_id", chunk.size())
+                            + " ORDER BY resource_id, metadata_field_id, place",
+                    params.toArray());
+            try
+            {
+                while (tri.hasNext())
+                {
+                    TableRow row = tri.next();
+                    Metadatum dcv = toMetadatum(c, row, log);
+                    if (dcv != null)
+                    {
+                        metadata.get(row.getIntColumn("resource_id")).add(dcv);
+                    }
+                }
+            }
+            finally
+            {
+                tri.close();
+            }
+        }
+        return metadata;
+    }
+
     class MetadataCache
     {
         List<Metadatum> metadata = null;
 
+        /**
+         * Read-only lists of the values of each field, by schema, element
+         * and qualifier (null for unqualified). Built on the first field
+         * lookup and dropped whenever the metadata change.
+         */
+        private Map<String, Map<String, Map<String, List<Metadatum>>>> index = null;
+
+        /** True if some value has no schema, so that it matches any schema */
+        private boolean unscoped = false;
+
         List<Metadatum> get(Context c, int resourceId, int resourceTypeId, Logger log) throws SQLException
         {
             if (metadata == null)
@@ -1270,39 +1440,10 @@ public abstract class DSpaceObject
                     {
                         while (tri.hasNext())
                         {
-                            TableRow resultRow = tri.next();
-
-                            // Get the associated metadata field and schema information
-                            int fieldID = resultRow.getIntColumn("metadata_field_id");
-                            MetadataField field = MetadataField.find(c, fieldID);
-
-                            if (field == null)
+                            Metadatum dcv = toMetadatum(c, tri.next(), log);
+                            if (dcv != null)
                             {
-                                log.error("Loading item - cannot find metadata field " + fieldID + " for resourceType=" + resourceTypeId + " and resourceId=" + resourceId);
-                            }
-                            else
-                            {
-                                MetadataSchema schema = MetadataSchema.find(c, field.getSchemaID());
-                                if (schema == null)
-                                {
-                                    log.error("Loading item - cannot find metadata schema " + field.getSchemaID() + ", field " + fieldID);
-                                }
-                                else
-                                {
-                                    // Make a Metadatum object
-                                    Metadatum dcv = new Metadatum();
-                                    dcv.element = field.getElement();
-                                    dcv.qualifier = field.getQualifier();
-                                    dcv.value = resultRow.getStringColumn("text_value");
-                                    dcv.language = resultRow.getStringColumn("text_lang");
-                                    //dcv.namespace = schema.getNamespace();
-                                    dcv.schema = schema.getName();
-                                    dcv.authority = resultRow.getStringColumn("authority");
-                                    dcv.confidence = resultRow.getIntColumn("confidence");
-
-                                    // Add it to the list
-                                    metadata.add(dcv);
-                                }
+                                metadata.add(dcv);
                             }
                         }
                     }
@@ -1323,6 +1464,99 @@ public abstract class DSpaceObject
         void set(List<Metadatum> m)
         {
             metadata = m;
+            index = null;
+        }
+
+        /**
+         * Drop the field index, after the metadata list has been changed.
+         */
+        void clearIndex()
+        {
+            index = null;
+        }
+
+        /**
+         * Get the values of a single field from the index. The metadata must
+         * have been loaded.
+         *
+         * @return read-only list of the values of the field, in metadata
+         *         order, or <code>null</code> if the index can't answer
+         *         because of wildcards
+         */
+        List<Metadatum> getField(String schema, String element, String qualifier)
+        {
+            if (metadata == null || Item.ANY.equals(schema) || Item.ANY.equals(element)
+                    || Item.ANY.equals(qualifier))
+            {
+                return null;
+            }
+
+            if (index == null)
+            {
+                buildIndex();
+            }
+            if (unscoped)
+            {
+                return null;
+            }
+
+            Map<String, Map<String, List<Metadatum>>> elements = index.get(schema);
+            Map<String, List<Metadatum>> qualifiers = (elements == null) ? null : elements.get(element);
+            List<Metadatum> values = (qualifiers == null) ? null : qualifiers.get(qualifier);
+            return (values == null) ? Collections.<Metadatum>emptyList() : values;
+        }
+
+        private void buildIndex()
+        {
+            Map<String, Map<String, Map<String, List<Metadatum>>>> built =
+                    new HashMap<String, Map<String, Map<String, List<Metadatum>>>>();
+            unscoped = false;
+            for (Metadatum dcv : metadata)
+            {
+                if (dcv.schema == null)
+                {
+                    unscoped = true;
+                    continue;
+                }
+
+                Map<String, Map<String, List<Metadatum>>> elements = built.get(dcv.schema);
+                if (elements == null)
+                {
+                    elements = new HashMap<String, Map<String, List<Metadatum>>>();
+                    built.put(dcv.schema, elements);
+                }
+                Map<String, List<Metadatum>> qualifiers = elements.get(dcv.element);
+                if (qualifiers == null)
+                {
+                    qualifiers = new HashMap<String, List<Metadatum>>(4);
+                    elements.put(dcv.element, qualifiers);
+                }
+                List<Metadatum> values = qualifiers.get(dcv.qualifier);
+                if (values == null)
+                {
+                    values = new ArrayList<Metadatum>(2);
+                    qualifiers.put(dcv.qualifier, values);
+                }
+                values.add(dcv);
+            }
+
+            // Hand out read-only lists only
+            for (Map<String, Map<String, List<Metadatum>>> elements : built.values())
+            {
+                for (Map<String, List<Metadatum>> qualifiers : elements.values())
+                {
+                    for (Map.Entry<String, List<Metadatum>> entry : qualifiers.entrySet())
+                    {
+                        entry.setValue(Collections.unmodifiableList(entry.getValue()));
+                    }
+                }
+            }
+            index = built;
+        }
+
+        boolean isLoaded()
+        {
+            return metadata != null;
         }
 
         TableRowIterator retrieveMetadata(int resourceId, int resourceTypeId) throws SQLException
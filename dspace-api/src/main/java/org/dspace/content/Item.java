@@ -9,12 +9,17 @@ package org.dspace.content;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.dspace.app.util.AuthorizeUtil;
@@ -97,6 +102,26 @@ public class Item extends DSpaceObject
      * @throws SQLException
      */
     Item(Context context, TableRow row) throws SQLException
+    {
+        this(context, row, null);
+
+        // Get our Handle if any
+        handle = HandleManager.findHandle(context, this);
+    }
+
+    /**
+     * Construct an item with the given table row and an already retrieved
+     * Handle.
+     *
+     * @param context
+     *            the context this object exists in
+     * @param row
+     *            the corresponding row in the table
+     * @param handle
+     *            the item's Handle, or <code>null</code> if it has none
+     * @throws SQLException
+     */
+    private Item(Context context, TableRow row, String handle) throws SQLException
     {
         super(context);
 
@@ -108,8 +133,7 @@ public class Item extends DSpaceObject
         modified = false;
         clearDetails();
 
-        // Get our Handle if any
-        handle = HandleManager.findHandle(context, this);
+        this.handle = handle;
 
         // Cache ourselves
         context.cache(this, row.getIntColumn("item_id"));
@@ -160,6 +184,276 @@ public class Item extends DSpaceObject
         return new Item(context, row);
     }
 
+    /**
+     * Get several items from the database at once. Unlike repeated calls to
+     * {@link #find(Context, int)}, the items, their Handles and metadata, and
+     * their bundles and bitstreams with their metadata, are loaded using a
+     * handful of queries for the whole list. This is meant for pages of
+     * search or browse results.
+     *
+     * @param context
+     *            DSpace context object
+     * @param ids
+     *            Internal IDs of the items
+     * @return the items, in the same order as <code>ids</code>. The element
+     *         for an invalid internal ID is <code>null</code>.
+     * @throws SQLException
+     */
+    public static Item[] findAll(Context context, int[] ids) throws SQLException
+    {
+        Map<Integer, Item> found = new HashMap<Integer, Item>();
+        Set<Integer> notCached = new LinkedHashSet<Integer>();
+        for (int id : ids)
+        {
+            Item fromCache = (Item) context.fromCache(Item.class, id);
+            if (fromCache != null)
+            {
+                found.put(id, fromCache);
+            }
+            else
+            {
+                notCached.add(id);
+            }
+        }
+
+        List<Integer> toLoad = new ArrayList<Integer>(notCached);
+        for (int start = 0; start < toLoad.size(); start += DatabaseManager.MAX_IN_VALUES)
+        {
+            List<Integer> chunk = toLoad.subList(start,
+                    Math.min(toLoad.size(), start + DatabaseManager.MAX_IN_VALUES));
+            List<TableRow> rows = DatabaseManager.queryTable(context, "item",
+                    "SELECT * FROM item WHERE " + DatabaseManager.inClause("item_id", chunk.size()),
+                    chunk.toArray()).toList();
+
+            for (Item item : load(context, rows))
+            {
+                found.put(item.getID(), item);
+            }
+        }
+
+        Item[] items = new Item[ids.length];
+        for (int i = 0; i < ids.length; i++)
+        {
+            items[i] = found.get(ids[i]);
+        }
+        return items;
+    }
+
+    /**
+     * Construct items from rows of the item table, loading their Handles,
+     * metadata, bundles and bitstreams in bulk. Items already in the context
+     * cache are used as they are.
+     *
+     * @param context
+     *            DSpace context object
+     * @param rows
+     *            rows of the item table
+     * @return the items, in the same order as the rows
+     * @throws SQLException
+     */
+    static List<Item> load(Context context, List<TableRow> rows) throws SQLException
+    {
+        List<Item> items = new ArrayList<Item>(rows.size());
+        List<Integer> newIDs = new ArrayList<Integer>();
+        for (TableRow row : rows)
+        {
+            int id = row.getIntColumn("item_id");
+            if (context.fromCache(Item.class, id) == null)
+            {
+                newIDs.add(id);
+            }
+        }
+
+        Map<Integer, String> handles = HandleManager.findHandles(context, Constants.ITEM, newIDs);
+        for (TableRow row : rows)
+        {
+            int id = row.getIntColumn("item_id");
+            Item item = (Item) context.fromCache(Item.class, id);
+            if (item == null)
+            {
+                item = new Item(context, row, handles.get(id));
+            }
+            items.add(item);
+        }
+
+        prefetch(context, items);
+        return items;
+    }
+
+    /**
+     * Load the metadata, bundles and bitstreams of several items in bulk,
+     * skipping anything already loaded.
+     *
+     * @param context
+     *            DSpace context object
+     * @param items
+     *            the items
+     * @throws SQLException
+     */
+    private static void prefetch(Context context, List<Item> items) throws SQLException
+    {
+        // Item metadata
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Item item : items)
+        {
+            if (!item.metadataCache.isLoaded())
+            {
+                ids.add(item.getID());
+            }
+        }
+        Map<Integer, List<Metadatum>> metadata = retrieveMetadata(context, Constants.ITEM, ids);
+        for (Item item : items)
+        {
+            if (!item.metadataCache.isLoaded())
+            {
+                item.metadataCache.set(metadata.get(item.getID()));
+            }
+        }
+
+        // Bundle rows, by item
+        ids.clear();
+        for (Item item : items)
+        {
+            if (item.bundles == null)
+            {
+                ids.add(item.getID());
+            }
+        }
+        Map<Integer, List<TableRow>> bundleRows = queryByParent(context,
+                "SELECT item2bundle.item_id, bundle.* FROM bundle, item2bundle "
+                        + "WHERE item2bundle.bundle_id=bundle.bundle_id AND ",
+                "item2bundle.item_id", "", ids, "item_id");
+
+        // Bitstream rows, by bundle
+        ids.clear();
+        for (List<TableRow> rowList : bundleRows.values())
+        {
+            for (TableRow row : rowList)
+            {
+                if (context.fromCache(Bundle.class, row.getIntColumn("bundle_id")) == null)
+                {
+                    ids.add(row.getIntColumn("bundle_id"));
+                }
+            }
+        }
+        Map<Integer, List<TableRow>> bitstreamRows = queryByParent(context,
+                "SELECT bundle2bitstream.bundle_id, bitstream.*, bundle2bitstream.bitstream_order "
+                        + "FROM bitstream, bundle2bitstream "
+                        + "WHERE bundle2bitstream.bitstream_id=bitstream.bitstream_id AND ",
+                "bundle2bitstream.bundle_id", ", " + Bundle.getBitstreamOrder(), ids, "bundle_id");
+
+        // Build the bundles
+        List<DSpaceObject> needMetadata = new ArrayList<DSpaceObject>();
+        for (Item item : items)
+        {
+            if (item.bundles != null)
+            {
+                continue;
+            }
+
+            List<Bundle> bundles = new ArrayList<Bundle>();
+            for (TableRow row : bundleRows.get(item.getID()))
+            {
+                int bundleID = row.getIntColumn("bundle_id");
+                Bundle bundle = (Bundle) context.fromCache(Bundle.class, bundleID);
+                if (bundle == null)
+                {
+                    row.setTable("bundle");
+                    bundle = new Bundle(context, row, bitstreamRows.get(bundleID));
+                }
+                bundles.add(bundle);
+
+                if (!bundle.metadataCache.isLoaded())
+                {
+                    needMetadata.add(bundle);
+                }
+                for (Bitstream bitstream : bundle.getBitstreams())
+                {
+                    if (!bitstream.metadataCache.isLoaded())
+                    {
+                        needMetadata.add(bitstream);
+                    }
+                }
+            }
+            item.bundles = bundles;
+        }
+
+        // Bundle and bitstream metadata
+        for (int type : new int[] { Constants.BUNDLE, Constants.BITSTREAM })
+        {
+            ids.clear();
+            for (DSpaceObject dso : needMetadata)
+            {
+                if (dso.getType() == type)
+                {
+                    ids.add(dso.getID());
+                }
+            }
+            metadata = retrieveMetadata(context, type, ids);
+            for (DSpaceObject dso : needMetadata)
+            {
+                if (dso.getType() == type && !dso.metadataCache.isLoaded())
+                {
+                    dso.metadataCache.set(metadata.get(dso.getID()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a query for the children of several parents, in chunks.
+     *
+     * @param context
+     *            DSpace context object
+     * @param select
+     *            the query, up to and including the "AND " before the
+     *            parent condition
+     * @param parentColumn
+     *            the column holding the parent ID
+     * @param orderBy
+     *            additional ORDER BY terms, starting with a comma, or empty
+     * @param parentIDs
+     *            the parent IDs
+     * @param parentLabel
+     *            name of the parent ID column in the result rows
+     * @return map from parent ID to its child rows, in query order. Every
+     *         requested parent is in the map.
+     * @throws SQLException
+     */
+    private static Map<Integer, List<TableRow>> queryByParent(Context context, String select,
+            String parentColumn, String orderBy, List<Integer> parentIDs, String parentLabel)
+            throws SQLException
+    {
+        Map<Integer, List<TableRow>> children = new HashMap<Integer, List<TableRow>>();
+        for (Integer id : parentIDs)
+        {
+            children.put(id, new ArrayList<TableRow>());
+        }
+
+        for (int start = 0; start < parentIDs.size(); start += DatabaseManager.MAX_IN_VALUES)
+        {
+            List<Integer> chunk = parentIDs.subList(start,
+                    Math.min(parentIDs.size(), start + DatabaseManager.MAX_IN_VALUES));
+            TableRowIterator tri = DatabaseManager.query(context,
+                    select + DatabaseManager.inClause(parentColumn, chunk.size())
+                            + " ORDER BY " + parentColumn + orderBy,
+                    chunk.toArray());
+            try
+            {
+                while (tri.hasNext())
+                {
+                    TableRow row = tri.next();
+                    children.get(row.getIntColumn(parentLabel)).add(row);
+                }
+            }
+            finally
+            {
+                tri.close();
+            }
+        }
+        return children;
+    }
+
     /**
      * Create a new item, with a new internal ID. This method is not public,
      * since items need to be created as workspace items. Authorisation is the
@@ -230,6 +524,62 @@ public class Item extends DSpaceObject
         return new ItemIterator(context, rows);
 	}
 
+    /**
+     * Get a page of the "final" items in the archive, both archived and
+     * withdrawn, in order of their internal ID. Paging by offset makes the
+     * database skip the items before the page, so use
+     * {@link #findAllUnfilteredAfter} for pages deep into the archive.
+     *
+     * @param context
+     *            DSpace context object
+     * @param limit
+     *            maximum number of items
+     * @param offset
+     *            number of items to skip
+     * @return an iterator over the items of the page.
+     * @throws SQLException
+     */
+    public static ItemIterator findAllUnfiltered(Context context, int limit, int offset) throws SQLException
+    {
+        List<Serializable> params = new ArrayList<Serializable>();
+        StringBuffer myQuery = new StringBuffer(
+                "SELECT * FROM item WHERE (in_archive='1' OR withdrawn='1') ORDER BY item_id");
+        DatabaseManager.applyOffsetAndLimit(myQuery, params, offset, limit);
+
+        TableRowIterator rows = DatabaseManager.query(context, myQuery.toString(), params.toArray());
+
+        return new ItemIterator(context, rows);
+    }
+
+    /**
+     * Get a page of the "final" items in the archive, both archived and
+     * withdrawn, whose internal ID follows a given one, in order of their
+     * internal ID. Paging by the ID of the last item of the previous page
+     * costs the same however deep into the archive the page is.
+     *
+     * @param context
+     *            DSpace context object
+     * @param afterID
+     *            internal ID of the last item of the previous page, or -1
+     *            for the first page
+     * @param limit
+     *            maximum number of items
+     * @return an iterator over the items of the page.
+     * @throws SQLException
+     */
+    public static ItemIterator findAllUnfilteredAfter(Context context, int afterID, int limit) throws SQLException
+    {
+        List<Serializable> params = new ArrayList<Serializable>();
+        StringBuffer myQuery = new StringBuffer(
+                "SELECT * FROM item WHERE (in_archive='1' OR withdrawn='1') AND item_id > ? ORDER BY item_id");
+        params.add(afterID);
+        DatabaseManager.applyOffsetAndLimit(myQuery, params, 0, limit);
+
+        TableRowIterator rows = DatabaseManager.query(context, myQuery.toString(), params.toArray());
+
+        return new ItemIterator(context, rows);
+    }
+
     /**
      * Find all the items in the archive by a given submitter. The order is
      * indeterminate. Only items with the "in archive" flag set are included.
@@ -1437,6 +1787,12 @@ public class Item extends DSpaceObject
         return false;
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      *
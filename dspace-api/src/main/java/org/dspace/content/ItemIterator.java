@@ -9,6 +9,7 @@ package org.dspace.content;
 
 import java.sql.SQLException;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -22,6 +23,10 @@ import org.dspace.storage.rdbms.TableRowIterator;
  * load a set of items into memory all at once. For example, loading in an
  * entire community or site's worth of items wouldn't make sense.
  *
+ * Items are loaded in pages of {@link #PREFETCH_SIZE}, so that the metadata,
+ * bundles and bitstreams of a page of items are retrieved with a few queries
+ * rather than a few queries per item (see {@link Item#findAll(Context, int[])}).
+ *
  * Note that this class is not a real Iterator, as it does not implement
  * the Iterator interface
  * 
@@ -43,6 +48,18 @@ public class ItemIterator
 
     /** a real iterator which works over the item ids when present */
     private Iterator<Integer> iditr;
+
+    /** Number of items loaded at once */
+    static final int PREFETCH_SIZE = 100;
+
+    /** IDs of the current page of items, when iterating over item ids */
+    private int[] pageIDs = new int[0];
+
+    /** The current page of loaded items */
+    private Item[] page = new Item[0];
+
+    /** Position of the next item in the current page */
+    private int pagePos = 0;
     
     /**
      * Construct an item iterator using a set of TableRow objects from
@@ -81,7 +98,11 @@ public class ItemIterator
      */
     public boolean hasNext() throws SQLException
     {
-    	if (iditr != null)
+        if (pagePos < page.length)
+        {
+            return true;
+        }
+    	else if (iditr != null)
     	{
     		return iditr.hasNext();
     	}
@@ -122,22 +143,27 @@ public class ItemIterator
     private Item nextByID()
     	throws SQLException
     {
-    	if (iditr.hasNext())
+        if (pagePos >= page.length)
         {
-    		// get the id
-    		int id = iditr.next().intValue();
-    		
-            // Check cache
-            Item fromCache = (Item) ourContext.fromCache(Item.class, id);
-
-            if (fromCache != null)
+            // Load the next page of items
+            List<Integer> ids = new ArrayList<Integer>(PREFETCH_SIZE);
+            while (ids.size() < PREFETCH_SIZE && iditr.hasNext())
             {
-                return fromCache;
+                ids.add(iditr.next());
             }
-            else
+
+            pageIDs = new int[ids.size()];
+            for (int i = 0; i < pageIDs.length; i++)
             {
-                return Item.find(ourContext, id);
+                pageIDs[i] = ids.get(i);
             }
+            page = Item.findAll(ourContext, pageIDs);
+            pagePos = 0;
+        }
+
+        if (pagePos < page.length)
+        {
+            return page[pagePos++];
         }
         else
         {
@@ -173,7 +199,11 @@ public class ItemIterator
      */
     private int nextByIDID()
     {
-    	if (iditr.hasNext())
+        if (pagePos < page.length)
+        {
+            return pageIDs[pagePos++];
+        }
+    	else if (iditr.hasNext())
         {
     		// get the id
     		int id = iditr.next().intValue();
@@ -195,7 +225,11 @@ public class ItemIterator
     private int nextByRowID()
     	throws SQLException
     {
-    	if (itemRows.hasNext())
+        if (pagePos < page.length)
+        {
+            return page[pagePos++].getID();
+        }
+    	else if (itemRows.hasNext())
         {
             TableRow row = itemRows.next();
             return row.getIntColumn("item_id");
@@ -215,23 +249,23 @@ public class ItemIterator
     private Item nextByRow()
     	throws SQLException
     {
-    	if (itemRows.hasNext())
+        if (pagePos >= page.length)
         {
-            // Convert the row into an Item object
-            TableRow row = itemRows.next();
-
-            // Check cache
-            Item fromCache = (Item) ourContext.fromCache(Item.class, row
-                    .getIntColumn("item_id"));
-
-            if (fromCache != null)
-            {
-                return fromCache;
-            }
-            else
+            // Convert the next page of rows into Item objects
+            List<TableRow> rows = new ArrayList<TableRow>(PREFETCH_SIZE);
+            while (rows.size() < PREFETCH_SIZE && itemRows.hasNext())
             {
-                return new Item(ourContext, row);
+                rows.add(itemRows.next());
             }
+
+            List<Item> items = Item.load(ourContext, rows);
+            page = items.toArray(new Item[items.size()]);
+            pagePos = 0;
+        }
+
+        if (pagePos < page.length)
+        {
+            return page[pagePos++];
         }
         else
         {
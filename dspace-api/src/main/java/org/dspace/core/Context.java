@@ -32,8 +32,11 @@ import org.springframework.util.CollectionUtils;
  * anything has gone wrong, <code>abort</code> is called to roll back any
  * changes and free up the resources.
  * <P>
- * The context object is also used as a cache for CM API objects.
- * 
+ * The context object is also used as a cache for CM API objects. Objects which
+ * are not in this cache are loaded through
+ * {@link org.dspace.storage.rdbms.DatabaseManager#find}, which is backed by the
+ * shared {@link org.dspace.storage.rdbms.TableRowCache}.
+ *
  * 
  * @version $Revision$
  */
@@ -69,7 +72,10 @@ public class Context
     private Stack<String> authStateClassCallHistory;
 
     /** Object cache for this context */
-    private Map<String, Object> objectCache;
+    private ObjectCache objectCache;
+
+    /** Results of authorization checks made in this context */
+    private Map<String, Boolean> authorizationCache;
 
     /** Group IDs of special groups user is a member of */
     private List<Integer> specialGroups;
@@ -126,7 +132,9 @@ public class Context
         extraLogInfo = "";
         ignoreAuth = false;
 
-        objectCache = new HashMap<String, Object>();
+        objectCache = new ObjectCache(ConfigurationManager.getIntProperty("context.cache.max-size", 0));
+        authorizationCache = newAuthorizationCache(
+                ConfigurationManager.getIntProperty("context.authorization-cache.max-size", 10000));
         specialGroups = new ArrayList<Integer>();
 
         authStateChangeHistory = new Stack<Boolean>();
@@ -154,6 +162,7 @@ public class Context
     public void setCurrentUser(EPerson user)
     {
         currentUser = user;
+        clearAuthorizationCache();
     }
 
     /**
@@ -441,6 +450,9 @@ public class Context
         }
 
         events.add(event);
+
+        // Any change may affect authorization decisions
+        clearAuthorizationCache();
     }
 
     /**
@@ -557,13 +569,13 @@ public class Context
      */
     public Object fromCache(Class<?> objectClass, int id)
     {
-        String key = objectClass.getName() + id;
-
-        return objectCache.get(key);
+        return objectCache.get(objectClass, id);
     }
 
     /**
-     * Store an object in the object cache.
+     * Store an object in the object cache. If this makes the cache grow beyond
+     * <code>context.cache.max-size</code>, the least recently used unmodified DSpace
+     * objects are evicted.
      * 
      * @param o
      *            the object to store
@@ -575,8 +587,7 @@ public class Context
         // bypass cache if in read-only mode
         if (! isReadOnly())
         {
-            String key = o.getClass().getName() + id;
-            objectCache.put(key, o);
+            objectCache.put(o, id);
         }
     }
 
@@ -590,8 +601,7 @@ public class Context
      */
     public void removeCached(Object o, int id)
     {
-        String key = o.getClass().getName() + id;
-        objectCache.remove(key);
+        objectCache.remove(o.getClass(), id);
     }
 
     /**
@@ -600,6 +610,69 @@ public class Context
     public void clearCache()
     {
         objectCache.clear();
+        clearAuthorizationCache();
+    }
+
+    /**
+     * Make the cache of authorization checks. It forgets the least recently
+     * used checks beyond its maximum size, so long jobs which decache the
+     * objects they are done with do not keep a check for each of them.
+     *
+     * @param maxSize
+     *            maximum number of checks remembered, 0 for no limit
+     */
+    private static Map<String, Boolean> newAuthorizationCache(final int maxSize)
+    {
+        if (maxSize <= 0)
+        {
+            return new HashMap<String, Boolean>();
+        }
+
+        return new LinkedHashMap<String, Boolean>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the result of an authorization check made earlier in this context.
+     *
+     * @param key
+     *            identifies the check, see
+     *            {@link org.dspace.authorize.AuthorizeManager}
+     * @return the result, or <code>null</code> if the check has not been made
+     *         since the cache was last cleared
+     */
+    public Boolean getCachedAuthorization(String key)
+    {
+        return authorizationCache.get(key);
+    }
+
+    /**
+     * Remember the result of an authorization check.
+     *
+     * @param key
+     *            identifies the check
+     * @param authorized
+     *            the result
+     */
+    public void cacheAuthorization(String key, boolean authorized)
+    {
+        authorizationCache.put(key, Boolean.valueOf(authorized));
+    }
+
+    /**
+     * Forget the results of all authorization checks, e.g. because policies
+     * or group memberships have changed. This is also done whenever the
+     * current user or special groups change, and when an event is added.
+     */
+    public void clearAuthorizationCache()
+    {
+        authorizationCache.clear();
     }
 
     /**
@@ -618,6 +691,41 @@ public class Context
         return objectCache.size();
     }
 
+    /**
+     * Get the count of cached objects of one class.
+     *
+     * @param objectClass
+     *            Java Class of the objects to count
+     * @return the number of objects of that class in the cache
+     */
+    public int getCacheSize(Class<?> objectClass)
+    {
+        return objectCache.size(objectClass);
+    }
+
+    /**
+     * Get the count of cached objects of each class, which is useful for
+     * finding out what a long-running job is leaking.
+     *
+     * @return map from Java Class to the number of objects of that class in
+     *         the cache
+     */
+    public Map<Class<?>, Integer> getCacheSizes()
+    {
+        return objectCache.sizes();
+    }
+
+    /**
+     * Get the number of objects which have been evicted from the object cache
+     * because it grew beyond <code>context.cache.max-size</code>.
+     *
+     * @return count of evicted objects
+     */
+    public long getCacheEvictionCount()
+    {
+        return objectCache.getEvictionCount();
+    }
+
     /**
      * set membership in a special group
      * 
@@ -627,6 +735,7 @@ public class Context
     public void setSpecialGroup(int groupID)
     {
         specialGroups.add(Integer.valueOf(groupID));
+        clearAuthorizationCache();
 
         // System.out.println("Added " + groupID);
     }
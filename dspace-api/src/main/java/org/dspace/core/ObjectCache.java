@@ -0,0 +1,435 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.DSpaceObject;
+
+/**
+ * Object cache of a {@link Context}. Objects are kept in one table per class,
+ * keyed by their integer ID, so that a lookup does not need to build a key
+ * object.
+ * <P>
+ * The cache may be given a maximum size. When it grows beyond that size, the
+ * least recently used objects which have no unsaved changes (see
+ * {@link DSpaceObject#isModified()}) are evicted until the cache is back to
+ * three quarters of its maximum size. Objects which are not DSpaceObjects
+ * cannot report unsaved changes, so like modified objects they are never
+ * evicted, and a cache full of such objects will keep on growing. When eviction cannot
+ * bring the cache back down, it is not tried again until the cache has grown
+ * by another quarter, so that such a cache is not scanned on every insert.
+ * <P>
+ * Like the Context itself, this class is not thread safe.
+ *
+ * @see Context#fromCache(Class, int)
+ */
+class ObjectCache
+{
+    private static final Logger log = Logger.getLogger(ObjectCache.class);
+
+    /** Tables of cached objects, one per class */
+    private final Map<Class<?>, IdMap> maps = new HashMap<Class<?>, IdMap>();
+
+    /** Maximum number of cached objects, or 0 for no limit */
+    private final int maxSize;
+
+    /** Number of cached objects */
+    private int size = 0;
+
+    /** Size beyond which objects are evicted */
+    private int evictAbove;
+
+    /** Access clock, used to find the least recently used objects */
+    private long clock = 0;
+
+    /** Number of objects evicted so far */
+    private long evictions = 0;
+
+    /** Have we already warned that nothing could be evicted? */
+    private boolean warned = false;
+
+    /**
+     * @param maxSize
+     *            maximum number of cached objects, or 0 for no limit
+     */
+    ObjectCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+        this.evictAbove = maxSize;
+    }
+
+    /**
+     * Get an object from the cache.
+     *
+     * @param objectClass
+     *            class of the object
+     * @param id
+     *            ID of the object
+     * @return the object, or <code>null</code> if it's not cached
+     */
+    Object get(Class<?> objectClass, int id)
+    {
+        IdMap map = maps.get(objectClass);
+        if (map == null)
+        {
+            return null;
+        }
+        return map.get(id, ++clock);
+    }
+
+    /**
+     * Store an object in the cache, replacing any object of the same class
+     * and ID.
+     *
+     * @param o
+     *            the object
+     * @param id
+     *            ID of the object
+     */
+    void put(Object o, int id)
+    {
+        IdMap map = maps.get(o.getClass());
+        if (map == null)
+        {
+            map = new IdMap();
+            maps.put(o.getClass(), map);
+        }
+
+        if (map.put(id, o, ++clock))
+        {
+            size++;
+            if (maxSize > 0 && size > evictAbove)
+            {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Remove an object from the cache.
+     *
+     * @param objectClass
+     *            class of the object
+     * @param id
+     *            ID of the object
+     */
+    void remove(Class<?> objectClass, int id)
+    {
+        IdMap map = maps.get(objectClass);
+        if (map != null && map.remove(id))
+        {
+            size--;
+            if (evictAbove > maxSize)
+            {
+                evictAbove = Math.max(maxSize, Math.min(evictAbove, size + size / 4));
+            }
+        }
+    }
+
+    /**
+     * Remove all objects from the cache.
+     */
+    void clear()
+    {
+        maps.clear();
+        size = 0;
+        evictAbove = maxSize;
+    }
+
+    /**
+     * @return the number of cached objects
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param objectClass
+     *            class of objects
+     * @return the number of cached objects of the given class
+     */
+    int size(Class<?> objectClass)
+    {
+        IdMap map = maps.get(objectClass);
+        return (map == null) ? 0 : map.size;
+    }
+
+    /**
+     * @return the number of cached objects of each class
+     */
+    Map<Class<?>, Integer> sizes()
+    {
+        Map<Class<?>, Integer> sizes = new HashMap<Class<?>, Integer>();
+        for (Map.Entry<Class<?>, IdMap> entry : maps.entrySet())
+        {
+            if (entry.getValue().size > 0)
+            {
+                sizes.put(entry.getKey(), entry.getValue().size);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the number of objects evicted because the cache was full
+     */
+    long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    /**
+     * Evict the least recently used unmodified objects, until the cache is
+     * down to three quarters of its maximum size. If there are too few of
+     * them, wait until the cache has grown by a quarter before trying again.
+     */
+    private void evict()
+    {
+        int target = maxSize - maxSize / 4;
+        try
+        {
+            evictDownTo(target);
+        }
+        finally
+        {
+            evictAbove = (size > target) ? Math.max(maxSize, size + size / 4) : maxSize;
+        }
+    }
+
+    private void evictDownTo(int target)
+    {
+        // Collect the access times of everything which may be evicted
+        long[] stamps = new long[size];
+        int evictable = 0;
+        for (IdMap map : maps.values())
+        {
+            evictable = map.collectEvictable(stamps, evictable);
+        }
+
+        int wanted = size - target;
+        if (evictable == 0)
+        {
+            if (!warned)
+            {
+                log.warn("Context object cache holds " + size
+                        + " modified objects, which exceeds its maximum size of "
+                        + maxSize + ": " + sizes());
+                warned = true;
+            }
+            return;
+        }
+
+        // Everything last used at or before the cutoff is evicted
+        Arrays.sort(stamps, 0, evictable);
+        long cutoff = stamps[Math.min(wanted, evictable) - 1];
+
+        int evicted = 0;
+        for (IdMap map : maps.values())
+        {
+            evicted += map.evictUpTo(cutoff);
+        }
+        size -= evicted;
+        evictions += evicted;
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Evicted " + evicted + " objects from context object cache, sizes now "
+                    + sizes());
+        }
+    }
+
+    /**
+     * Can this object be dropped from the cache without losing changes?
+     */
+    private static boolean isEvictable(Object o)
+    {
+        return o instanceof DSpaceObject && !((DSpaceObject) o).isModified();
+    }
+
+    /**
+     * Open addressing hash table from int to object, using linear probing.
+     * Each slot also records when the object was last used.
+     */
+    private static class IdMap
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int[] keys = new int[INITIAL_CAPACITY];
+
+        /** Slot is empty when value is null */
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        private long[] stamps = new long[INITIAL_CAPACITY];
+
+        private int size = 0;
+
+        Object get(int id, long now)
+        {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); values[i] != null; i = (i + 1) & mask)
+            {
+                if (keys[i] == id)
+                {
+                    stamps[i] = now;
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return true if the ID was not already present
+         */
+        boolean put(int id, Object o, long now)
+        {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            for (; values[i] != null; i = (i + 1) & mask)
+            {
+                if (keys[i] == id)
+                {
+                    values[i] = o;
+                    stamps[i] = now;
+                    return false;
+                }
+            }
+
+            keys[i] = id;
+            values[i] = o;
+            stamps[i] = now;
+            size++;
+
+            // Keep the load factor at or below one half
+            if (size * 2 > keys.length)
+            {
+                resize(keys.length * 2);
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the ID was present
+         */
+        boolean remove(int id)
+        {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            for (; values[i] != null; i = (i + 1) & mask)
+            {
+                if (keys[i] == id)
+                {
+                    break;
+                }
+            }
+            if (values[i] == null)
+            {
+                return false;
+            }
+
+            // Shift following entries of the same probe sequence back into
+            // the gap, so lookups never stop at a hole
+            int gap = i;
+            for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask)
+            {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask))
+                {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    stamps[gap] = stamps[j];
+                    gap = j;
+                }
+            }
+            values[gap] = null;
+            size--;
+            return true;
+        }
+
+        /**
+         * Copy the access times of evictable objects into the given array.
+         *
+         * @return the new number of stamps in the array
+         */
+        int collectEvictable(long[] into, int count)
+        {
+            for (int i = 0; i < values.length; i++)
+            {
+                if (values[i] != null && isEvictable(values[i]))
+                {
+                    into[count++] = stamps[i];
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Evict evictable objects last used at or before the cutoff.
+         *
+         * @return the number of evicted objects
+         */
+        int evictUpTo(long cutoff)
+        {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] oldStamps = stamps;
+            int oldSize = size;
+
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < oldSize * 2)
+            {
+                capacity *= 2;
+            }
+            keys = new int[capacity];
+            values = new Object[capacity];
+            stamps = new long[capacity];
+            size = 0;
+
+            for (int i = 0; i < oldValues.length; i++)
+            {
+                Object o = oldValues[i];
+                if (o != null && !(oldStamps[i] <= cutoff && isEvictable(o)))
+                {
+                    put(oldKeys[i], o, oldStamps[i]);
+                }
+            }
+            return oldSize - size;
+        }
+
+        private void resize(int capacity)
+        {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] oldStamps = stamps;
+
+            keys = new int[capacity];
+            values = new Object[capacity];
+            stamps = new long[capacity];
+            size = 0;
+
+            for (int i = 0; i < oldValues.length; i++)
+            {
+                if (oldValues[i] != null)
+                {
+                    put(oldKeys[i], oldValues[i], oldStamps[i]);
+                }
+            }
+        }
+
+        private static int slot(int id, int mask)
+        {
+            // Spread sequential IDs over the table
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
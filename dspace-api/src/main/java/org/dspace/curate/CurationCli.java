@@ -18,6 +18,7 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 
 import org.dspace.content.Site;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Context;
 import org.dspace.core.PluginManager;
 import org.dspace.eperson.EPerson;
@@ -52,6 +53,8 @@ public class CurationCli
                 "maximum number of objects allowed in context cache. If absent, no limit");
         options.addOption("s", "scope", true,
                 "transaction scope to impose: use 'object', 'curation', or 'open'. If absent, 'open' applies");
+        options.addOption("n", "threads", true,
+                "number of threads working the task queue, if it supports several readers. If absent, taskqueue.threads applies");
         options.addOption("v", "verbose", false,
                 "report activity to stdout");
         options.addOption("h", "help", false, "help");
@@ -66,6 +69,7 @@ public class CurationCli
         String reporterName = null;
         String limit = null;
         String scope = null;
+        String threads = null;
         boolean verbose = false;
 
         if (line.hasOption('h'))
@@ -121,6 +125,11 @@ public class CurationCli
             scope = line.getOptionValue('s');
         }
 
+        if (line.hasOption('n'))
+        { // queue threads
+            threads = line.getOptionValue('n');
+        }
+
         if (line.hasOption('v'))
         { // verbose
             verbose = true;
@@ -145,6 +154,12 @@ public class CurationCli
         	System.exit(1);
         }
         
+        if (threads != null && Integer.parseInt(threads) <= 0)
+        {
+            System.out.println("Number of threads '" + threads + "' must be a positive integer");
+            System.exit(1);
+        }
+
         if (scope != null && Curator.TxScope.valueOf(scope.toUpperCase()) == null)
     	{
         	System.out.println("Bad transaction scope '" + scope + "': only 'object', 'curation' or 'open' recognized");
@@ -251,38 +266,63 @@ public class CurationCli
                 System.out.println("No implementation configured for queue");
                 throw new UnsupportedOperationException("No queue service available");
             }
-            // use current time as our reader 'ticket'
-            long ticket = System.currentTimeMillis();
-            Iterator<TaskQueueEntry> entryIter = queue.dequeue(taskQueueName, ticket).iterator();
-            while (entryIter.hasNext())
+            if (queue instanceof LeasedTaskQueue)
             {
-                TaskQueueEntry entry = entryIter.next();
+                // work the queue in parallel, leasing entries as we go
+                QueueCurator queueCurator = new QueueCurator((LeasedTaskQueue)queue, taskQueueName);
+                queueCurator.setEPerson(ePersonName).setReporter(reporterName).setVerbose(verbose);
+                if (limit != null)
+                {
+                    queueCurator.setCacheLimit(Integer.parseInt(limit));
+                }
+                if (scope != null)
+                {
+                    queueCurator.setTransactionScope(Curator.TxScope.valueOf(scope.toUpperCase()));
+                }
+                int nThreads = (threads != null) ? Integer.parseInt(threads)
+                        : ConfigurationManager.getIntProperty("curate", "taskqueue.threads", 1);
+                int done = queueCurator.run(Math.max(1, nThreads));
                 if (verbose)
                 {
-                    System.out.println("Curating id: " + entry.getObjectId());
+                    System.out.println("Curated " + done + " queue entries, "
+                            + queueCurator.getFailed() + " failed");
                 }
-                curator.clear();
-                // does entry relate to a DSO or workflow object?
-                if (entry.getObjectId().indexOf("/") > 0)
+            }
+            else
+            {
+                // use current time as our reader 'ticket'
+                long ticket = System.currentTimeMillis();
+                Iterator<TaskQueueEntry> entryIter = queue.dequeue(taskQueueName, ticket).iterator();
+                while (entryIter.hasNext())
                 {
-                    for (String task : entry.getTaskNames())
+                    TaskQueueEntry entry = entryIter.next();
+                    if (verbose)
                     {
-                        curator.addTask(task);
+                        System.out.println("Curating id: " + entry.getObjectId());
                     }
-                    curator.curate(c, entry.getObjectId());
-                }
-                else
-                {
-                    // make eperson who queued task the effective user
-                    EPerson agent = EPerson.findByEmail(c, entry.getEpersonId());
-                    if (agent != null)
+                    curator.clear();
+                    // does entry relate to a DSO or workflow object?
+                    if (entry.getObjectId().indexOf("/") > 0)
+                    {
+                        for (String task : entry.getTaskNames())
+                        {
+                            curator.addTask(task);
+                        }
+                        curator.curate(c, entry.getObjectId());
+                    }
+                    else
                     {
-                        c.setCurrentUser(agent);
+                        // make eperson who queued task the effective user
+                        EPerson agent = EPerson.findByEmail(c, entry.getEpersonId());
+                        if (agent != null)
+                        {
+                            c.setCurrentUser(agent);
+                        }
+                        WorkflowCurator.curate(curator, c, entry.getObjectId());
                     }
-                    WorkflowCurator.curate(curator, c, entry.getObjectId());
                 }
+                queue.release(taskQueueName, ticket, true);
             }
-            queue.release(taskQueueName, ticket, true);
         }
         c.complete();
         if (verbose)
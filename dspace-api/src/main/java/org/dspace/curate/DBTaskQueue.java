@@ -0,0 +1,387 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.curate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * DBTaskQueue provides a LeasedTaskQueue implementation which keeps the
+ * queues in the curationqueue table, so that curation processes on any
+ * number of nodes may work the same queues.
+ * <p>
+ * An entry is leased by setting its owner, and the time at which it becomes
+ * visible again, in one update which only succeeds if no other reader has
+ * leased it first. Times are taken from the clock of the node, so the clocks
+ * of the nodes should agree to well within the lease time.
+ * <p>
+ * Configuration, in modules/curate.cfg:
+ * <ul>
+ * <li><code>taskqueue.lease.seconds</code>: seconds an entry stays leased,
+ * which should be longer than its tasks take (default 3600)</li>
+ * <li><code>taskqueue.retry.seconds</code>: seconds before a failed entry is
+ * handed out again (default 300)</li>
+ * <li><code>taskqueue.retry.max</code>: number of times an entry is handed
+ * out before it is moved to the dead-letter queue, named after its queue
+ * with ".dead" appended (default 3)</li>
+ * </ul>
+ *
+ * @see QueueCurator
+ */
+public class DBTaskQueue implements LeasedTaskQueue
+{
+    private static Logger log = Logger.getLogger(DBTaskQueue.class);
+
+    /** Appended to the name of a queue to name its dead-letter queue */
+    public static final String DEAD_LETTER_SUFFIX = ".dead";
+
+    /** Number of candidate entries read at a time for each one leased */
+    private static final int CANDIDATES_PER_LEASE = 2;
+
+    private final long leaseMillis;
+    private final long retryMillis;
+    private final int maxAttempts;
+
+    public DBTaskQueue()
+    {
+        this(ConfigurationManager.getIntProperty("curate", "taskqueue.lease.seconds", 3600),
+             ConfigurationManager.getIntProperty("curate", "taskqueue.retry.seconds", 300),
+             ConfigurationManager.getIntProperty("curate", "taskqueue.retry.max", 3));
+    }
+
+    DBTaskQueue(int leaseSeconds, int retrySeconds, int maxAttempts)
+    {
+        this.leaseMillis = leaseSeconds * 1000L;
+        this.retryMillis = retrySeconds * 1000L;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    @Override
+    public String[] queueNames()
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            List<String> names = new ArrayList<String>();
+            TableRowIterator tri = DatabaseManager.query(context,
+                    "SELECT DISTINCT queue_name FROM curationqueue ORDER BY queue_name");
+            try
+            {
+                while (tri.hasNext())
+                {
+                    names.add(tri.next().getStringColumn("queue_name"));
+                }
+            }
+            finally
+            {
+                tri.close();
+            }
+            context.complete();
+            return names.toArray(new String[names.size()]);
+        }
+        catch (SQLException sqlE)
+        {
+            log.error("Unable to read queue names", sqlE);
+            return new String[0];
+        }
+        finally
+        {
+            abort(context);
+        }
+    }
+
+    @Override
+    public void enqueue(String queueName, TaskQueueEntry entry) throws IOException
+    {
+        Set<TaskQueueEntry> entrySet = new HashSet<TaskQueueEntry>();
+        entrySet.add(entry);
+        enqueue(queueName, entrySet);
+    }
+
+    @Override
+    public void enqueue(String queueName, Set<TaskQueueEntry> entrySet) throws IOException
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (TaskQueueEntry entry : entrySet)
+            {
+                StringBuilder tasks = new StringBuilder();
+                for (String taskName : entry.getTaskNames())
+                {
+                    tasks.append(taskName).append(",");
+                }
+
+                TableRow row = DatabaseManager.row("curationqueue");
+                row.setColumn("queue_name", queueName);
+                row.setColumn("eperson", entry.getEpersonId());
+                row.setColumn("submit_time", new Timestamp(entry.getSubmitTime()));
+                row.setColumn("tasks", tasks.substring(0, tasks.length() - 1));
+                row.setColumn("object_id", entry.getObjectId());
+                row.setColumn("attempts", 0);
+                row.setColumn("visible_after", now);
+                DatabaseManager.insert(context, row);
+            }
+            context.complete();
+        }
+        catch (SQLException sqlE)
+        {
+            throw new IOException(sqlE.getMessage(), sqlE);
+        }
+        finally
+        {
+            abort(context);
+        }
+    }
+
+    /**
+     * Leases all entries available in the queue, with the ticket as owner.
+     * Unlike FileTaskQueue, other readers may go on leasing entries added
+     * meanwhile, or entries whose lease runs out.
+     */
+    @Override
+    public Set<TaskQueueEntry> dequeue(String queueName, long ticket) throws IOException
+    {
+        return new HashSet<TaskQueueEntry>(lease(queueName, ticketOwner(ticket), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void release(String queueName, long ticket, boolean removeEntries)
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            if (removeEntries)
+            {
+                DatabaseManager.updateQuery(context,
+                        "DELETE FROM curationqueue WHERE queue_name = ? AND lease_owner = ?",
+                        queueName, ticketOwner(ticket));
+            }
+            else
+            {
+                DatabaseManager.updateQuery(context,
+                        "UPDATE curationqueue SET lease_owner = NULL, visible_after = ? " +
+                        "WHERE queue_name = ? AND lease_owner = ?",
+                        new Timestamp(System.currentTimeMillis()), queueName, ticketOwner(ticket));
+            }
+            context.complete();
+        }
+        catch (SQLException sqlE)
+        {
+            log.error("Unable to release queue: " + queueName, sqlE);
+        }
+        finally
+        {
+            abort(context);
+        }
+    }
+
+    @Override
+    public List<TaskQueueEntry> lease(String queueName, String owner, int max) throws IOException
+    {
+        List<TaskQueueEntry> entries = new ArrayList<TaskQueueEntry>();
+        Context context = null;
+        try
+        {
+            context = new Context();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            Timestamp until = new Timestamp(now.getTime() + leaseMillis);
+
+            // entries whose readers died holding them as many times as
+            // they may be handed out have failed too
+            if (!queueName.endsWith(DEAD_LETTER_SUFFIX))
+            {
+                int dead = DatabaseManager.updateQuery(context,
+                        "UPDATE curationqueue SET queue_name = ?, attempts = 0, lease_owner = NULL " +
+                        "WHERE queue_name = ? AND attempts >= ? AND visible_after <= ?",
+                        queueName + DEAD_LETTER_SUFFIX, queueName, maxAttempts, now);
+                if (dead > 0)
+                {
+                    log.warn("Moved " + dead + " expired entries of queue " + queueName
+                            + " to " + queueName + DEAD_LETTER_SUFFIX);
+                }
+            }
+
+            int limit = CANDIDATES_PER_LEASE * Math.min(max, 100);
+            boolean more = true;
+            while (more && entries.size() < max)
+            {
+                List<TableRow> candidates = findAvailable(context, queueName, now, limit);
+                more = candidates.size() == limit;
+                for (TableRow row : candidates)
+                {
+                    if (entries.size() >= max)
+                    {
+                        break;
+                    }
+
+                    // attempts serves as a version: the update fails if
+                    // another reader leased the entry since it was read
+                    int attempts = row.getIntColumn("attempts");
+                    int leased = DatabaseManager.updateQuery(context,
+                            "UPDATE curationqueue SET lease_owner = ?, visible_after = ?, attempts = ? " +
+                            "WHERE curationqueue_id = ? AND attempts = ? AND visible_after <= ?",
+                            owner, until, attempts + 1, row.getIntColumn("curationqueue_id"),
+                            attempts, now);
+                    if (leased == 1)
+                    {
+                        entries.add(new TaskQueueEntry(row.getIntColumn("curationqueue_id"),
+                                row.getStringColumn("eperson"),
+                                row.getDateColumn("submit_time").getTime(),
+                                Arrays.asList(row.getStringColumn("tasks").split(",")),
+                                row.getStringColumn("object_id")));
+                    }
+                }
+            }
+            context.complete();
+        }
+        catch (SQLException sqlE)
+        {
+            throw new IOException(sqlE.getMessage(), sqlE);
+        }
+        finally
+        {
+            abort(context);
+        }
+        return entries;
+    }
+
+    @Override
+    public void complete(String queueName, String owner, TaskQueueEntry entry) throws IOException
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            DatabaseManager.updateQuery(context,
+                    "DELETE FROM curationqueue WHERE curationqueue_id = ? AND lease_owner = ?",
+                    entry.getEntryId(), owner);
+            context.complete();
+        }
+        catch (SQLException sqlE)
+        {
+            throw new IOException(sqlE.getMessage(), sqlE);
+        }
+        finally
+        {
+            abort(context);
+        }
+    }
+
+    @Override
+    public void fail(String queueName, String owner, TaskQueueEntry entry) throws IOException
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            long now = System.currentTimeMillis();
+            if (queueName.endsWith(DEAD_LETTER_SUFFIX))
+            {
+                // entries of a dead-letter queue stay there, and are no
+                // longer handed out once they have failed too often
+                DatabaseManager.updateQuery(context,
+                        "UPDATE curationqueue SET lease_owner = NULL, visible_after = ? " +
+                        "WHERE curationqueue_id = ? AND lease_owner = ?",
+                        new Timestamp(now + retryMillis), entry.getEntryId(), owner);
+            }
+            else
+            {
+                DatabaseManager.updateQuery(context,
+                        "UPDATE curationqueue SET lease_owner = NULL, visible_after = ? " +
+                        "WHERE curationqueue_id = ? AND lease_owner = ? AND attempts < ?",
+                        new Timestamp(now + retryMillis), entry.getEntryId(), owner, maxAttempts);
+                int dead = DatabaseManager.updateQuery(context,
+                        "UPDATE curationqueue SET queue_name = ?, attempts = 0, lease_owner = NULL, " +
+                        "visible_after = ? WHERE curationqueue_id = ? AND lease_owner = ?",
+                        queueName + DEAD_LETTER_SUFFIX, new Timestamp(now), entry.getEntryId(), owner);
+                if (dead > 0)
+                {
+                    log.warn("Moved entry " + entry + " of queue " + queueName + " to "
+                            + queueName + DEAD_LETTER_SUFFIX + " after " + maxAttempts + " attempts");
+                }
+            }
+            context.complete();
+        }
+        catch (SQLException sqlE)
+        {
+            throw new IOException(sqlE.getMessage(), sqlE);
+        }
+        finally
+        {
+            abort(context);
+        }
+    }
+
+    /**
+     * Read entries of a queue which are not leased, in the order they were
+     * queued.
+     */
+    private List<TableRow> findAvailable(Context context, String queueName, Timestamp now, int limit)
+            throws SQLException
+    {
+        StringBuilder query = new StringBuilder(
+                "SELECT * FROM curationqueue WHERE queue_name = ? AND attempts < ? " +
+                "AND visible_after <= ? ORDER BY curationqueue_id");
+        if (DatabaseManager.isOracle())
+        {
+            query.insert(0, "SELECT * FROM (").append(") WHERE rownum <= ?");
+        }
+        else
+        {
+            query.append(" LIMIT ?");
+        }
+
+        List<TableRow> rows = new ArrayList<TableRow>();
+        TableRowIterator tri = DatabaseManager.queryTable(context, "curationqueue",
+                query.toString(), queueName, maxAttempts, now, limit);
+        try
+        {
+            while (tri.hasNext())
+            {
+                rows.add(tri.next());
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+        return rows;
+    }
+
+    private static String ticketOwner(long ticket)
+    {
+        return "ticket-" + ticket;
+    }
+
+    private static void abort(Context context)
+    {
+        if (context != null && context.isValid())
+        {
+            context.abort();
+        }
+    }
+}
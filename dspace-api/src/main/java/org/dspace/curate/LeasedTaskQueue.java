@@ -0,0 +1,69 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.curate;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * LeasedTaskQueue is a TaskQueue which any number of readers, in one or
+ * several processes, may work at once. Instead of locking the whole queue,
+ * a reader leases a few entries at a time. A leased entry is invisible to
+ * other readers until the reader completes it, fails it, or the lease runs
+ * out (because the reader died), after which the entry is handed out again.
+ * An entry which has failed too often is moved to a dead-letter queue.
+ *
+ * @see QueueCurator
+ */
+public interface LeasedTaskQueue extends TaskQueue {
+
+    /**
+     * Leases entries of a named queue to a reader.
+     *
+     * @param queueName
+     *        the name of the queue to read
+     * @param owner
+     *        a name for the reader, unique among all readers
+     * @param max
+     *        the maximum number of entries to lease
+     * @return entries
+     *        the entries leased, none if the queue has no entry available
+     * @throws IOException
+     */
+    List<TaskQueueEntry> lease(String queueName, String owner, int max) throws IOException;
+
+    /**
+     * Removes a leased entry from the queue, once its tasks are performed.
+     * Nothing happens if the lease has run out and the entry was leased
+     * again in the meantime.
+     *
+     * @param queueName
+     *        the name of the queue the entry was leased from
+     * @param owner
+     *        the reader which leased the entry
+     * @param entry
+     *        the entry
+     * @throws IOException
+     */
+    void complete(String queueName, String owner, TaskQueueEntry entry) throws IOException;
+
+    /**
+     * Returns a leased entry whose tasks could not be performed to the
+     * queue, to be retried later, or moves it to the dead-letter queue if it
+     * has failed too often.
+     *
+     * @param queueName
+     *        the name of the queue the entry was leased from
+     * @param owner
+     *        the reader which leased the entry
+     * @param entry
+     *        the entry
+     * @throws IOException
+     */
+    void fail(String queueName, String owner, TaskQueueEntry entry) throws IOException;
+}
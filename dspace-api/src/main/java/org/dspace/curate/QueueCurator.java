@@ -0,0 +1,356 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.curate;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.eperson.EPerson;
+
+/**
+ * QueueCurator works a LeasedTaskQueue with several threads, each of which
+ * leases one entry at a time and performs its tasks with its own Context and
+ * Curators, until the queue has no entry available. Each entry is committed
+ * on its own, before it is removed from the queue; an entry whose tasks
+ * throw an exception or end in CURATE_ERROR is rolled back and failed, to be
+ * retried later.
+ * <p>
+ * The number of threads performing a task at once may be limited in
+ * modules/curate.cfg with <code>taskqueue.threads.&lt;task name&gt;</code>,
+ * for tasks which use a scarce resource, such as a virus scanner.
+ *
+ * @see DBTaskQueue
+ */
+public class QueueCurator
+{
+    private static Logger log = Logger.getLogger(QueueCurator.class);
+
+    private final LeasedTaskQueue queue;
+    private final String queueName;
+    private String ePersonName = null;
+    private String reporter = null;
+    private int cacheLimit = 0;
+    private Curator.TxScope txScope = null;
+    private boolean verbose = false;
+
+    // limits on threads per task, null where unlimited
+    private final Map<String, Semaphore> taskLimits = new HashMap<String, Semaphore>();
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param queue the queue
+     * @param queueName name of the queue to work
+     */
+    public QueueCurator(LeasedTaskQueue queue, String queueName)
+    {
+        this.queue = queue;
+        this.queueName = queueName;
+    }
+
+    /**
+     * Sets the EPerson the tasks are performed as. Without one,
+     * authorisation is turned off.
+     *
+     * @param ePersonName email address of the EPerson
+     */
+    public QueueCurator setEPerson(String ePersonName)
+    {
+        this.ePersonName = ePersonName;
+        return this;
+    }
+
+    /**
+     * @see Curator#setReporter(String)
+     */
+    public QueueCurator setReporter(String reporter)
+    {
+        this.reporter = reporter;
+        return this;
+    }
+
+    /**
+     * @see Curator#setCacheLimit(int)
+     */
+    public QueueCurator setCacheLimit(int limit)
+    {
+        cacheLimit = limit;
+        return this;
+    }
+
+    /**
+     * @see Curator#setTransactionScope(Curator.TxScope)
+     */
+    public QueueCurator setTransactionScope(Curator.TxScope scope)
+    {
+        txScope = scope;
+        return this;
+    }
+
+    /**
+     * Sets whether each entry curated is reported on stdout.
+     */
+    public QueueCurator setVerbose(boolean verbose)
+    {
+        this.verbose = verbose;
+        return this;
+    }
+
+    /**
+     * Works the queue until it has no entry available.
+     *
+     * @param threads number of threads
+     * @return the number of entries whose tasks were performed
+     * @throws Exception if a thread failed for a reason other than a task
+     */
+    public int run(int threads) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++)
+            {
+                workers[i] = pool.submit(new Worker());
+            }
+            for (Future<?> worker : workers)
+            {
+                worker.get();
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        if (failed.get() > 0)
+        {
+            log.warn(failed.get() + " entries of queue " + queueName + " failed, to be retried");
+        }
+        return completed.get();
+    }
+
+    /**
+     * @return the number of entries which failed, and went back on the queue
+     *         or to its dead-letter queue
+     */
+    public int getFailed()
+    {
+        return failed.get();
+    }
+
+    private synchronized Semaphore getTaskLimit(String taskName)
+    {
+        if (!taskLimits.containsKey(taskName))
+        {
+            int limit = ConfigurationManager.getIntProperty("curate", "taskqueue.threads." + taskName, 0);
+            taskLimits.put(taskName, (limit > 0) ? new Semaphore(limit) : null);
+        }
+        return taskLimits.get(taskName);
+    }
+
+    private Curator newCurator()
+    {
+        Curator curator = new Curator();
+        if (reporter != null)
+        {
+            curator.setReporter(reporter);
+        }
+        if (cacheLimit > 0)
+        {
+            curator.setCacheLimit(cacheLimit);
+        }
+        if (txScope != null)
+        {
+            curator.setTransactionScope(txScope);
+        }
+        curator.setInvoked(Curator.Invoked.BATCH);
+        return curator;
+    }
+
+    private class Worker implements Runnable
+    {
+        private final String owner = UUID.randomUUID().toString();
+
+        // Curator of each task, reused for every entry
+        private final Map<String, Curator> curators = new HashMap<String, Curator>();
+
+        private Context c = null;
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                List<TaskQueueEntry> entries;
+                while (!Thread.currentThread().isInterrupted()
+                        && !(entries = queue.lease(queueName, owner, 1)).isEmpty())
+                {
+                    TaskQueueEntry entry = entries.get(0);
+                    if (verbose)
+                    {
+                        System.out.println("Curating id: " + entry.getObjectId());
+                    }
+                    if (curate(entry))
+                    {
+                        c.commit();
+                        c.clearCache();
+                        queue.complete(queueName, owner, entry);
+                        completed.incrementAndGet();
+                    }
+                    else
+                    {
+                        // roll back whatever the tasks did
+                        c.abort();
+                        c = null;
+                        queue.fail(queueName, owner, entry);
+                        failed.incrementAndGet();
+                    }
+                }
+                if (c != null)
+                {
+                    c.complete();
+                }
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            finally
+            {
+                if (c != null && c.isValid())
+                {
+                    c.abort();
+                }
+            }
+        }
+
+        /**
+         * Perform the tasks of an entry.
+         *
+         * @return false if a task failed with an error
+         */
+        private boolean curate(TaskQueueEntry entry) throws SQLException, AuthorizeException
+        {
+            if (c == null)
+            {
+                c = newContext();
+            }
+            try
+            {
+                // does entry relate to a DSO or workflow object?
+                if (entry.getObjectId().indexOf("/") > 0)
+                {
+                    for (String task : entry.getTaskNames())
+                    {
+                        Semaphore limit = getTaskLimit(task);
+                        if (limit != null)
+                        {
+                            limit.acquire();
+                        }
+                        try
+                        {
+                            Curator curator = getCurator(task);
+                            if (curator == null)
+                            {
+                                return false;
+                            }
+                            curator.curate(c, entry.getObjectId());
+                            if (curator.getStatus(task) == Curator.CURATE_ERROR)
+                            {
+                                log.error("Curation task " + task + " failed on " + entry.getObjectId()
+                                        + ": " + curator.getResult(task));
+                                return false;
+                            }
+                        }
+                        finally
+                        {
+                            if (limit != null)
+                            {
+                                limit.release();
+                            }
+                        }
+                    }
+                }
+                else
+                {
+                    // make eperson who queued task the effective user
+                    EPerson user = c.getCurrentUser();
+                    EPerson agent = EPerson.findByEmail(c, entry.getEpersonId());
+                    if (agent != null)
+                    {
+                        c.setCurrentUser(agent);
+                    }
+                    try
+                    {
+                        WorkflowCurator.curate(newCurator(), c, entry.getObjectId());
+                    }
+                    finally
+                    {
+                        c.setCurrentUser(user);
+                    }
+                }
+                return true;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            catch (Exception e)
+            {
+                log.error("Curation of " + entry.getObjectId() + " from queue " + queueName + " failed", e);
+                return false;
+            }
+        }
+
+        private Curator getCurator(String task)
+        {
+            Curator curator = curators.get(task);
+            if (curator == null)
+            {
+                curator = newCurator().addTask(task);
+                if (!curator.hasTask(task))
+                {
+                    log.error("Task: " + task + " not resolved");
+                    return null;
+                }
+                curators.put(task, curator);
+            }
+            return curator;
+        }
+
+        private Context newContext() throws SQLException, AuthorizeException
+        {
+            Context context = new Context();
+            if (ePersonName != null)
+            {
+                context.setCurrentUser(EPerson.findByEmail(context, ePersonName));
+            }
+            else
+            {
+                context.turnOffAuthorisationSystem();
+            }
+            return context;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.util.List;
  */
 public final class TaskQueueEntry
 {
+    private final int entryId;
     private final String epersonId;
     private final String submitTime;
     private final String tasks;
@@ -34,6 +35,23 @@ public final class TaskQueueEntry
     public TaskQueueEntry(String epersonId, long submitTime,
                           List<String> taskNames, String objId)
     {
+        this(-1, epersonId, submitTime, taskNames, objId);
+    }
+
+    /**
+     * TaskQueueEntry constructor for an entry stored by a queue under an id,
+     * such as a database key.
+     * 
+     * @param entryId
+     * @param epersonId
+     * @param submitTime
+     * @param taskNames
+     * @param objId
+     */
+    public TaskQueueEntry(int entryId, String epersonId, long submitTime,
+                          List<String> taskNames, String objId)
+    {
+        this.entryId = entryId;
         this.epersonId = epersonId;
         this.submitTime = Long.toString(submitTime);
         StringBuilder sb = new StringBuilder();
@@ -54,12 +72,24 @@ public final class TaskQueueEntry
     public TaskQueueEntry(String entry)
     {
         String[] tokens = entry.split("\\|");
+        entryId = -1;
         epersonId = tokens[0];
         submitTime = tokens[1];
         tasks = tokens[2];
         objId = tokens[3];
     }
     
+    /**
+     * Returns the id under which the queue stores this entry.
+     * 
+     * @return entryId
+     *         the id, or -1 if the queue does not assign ids
+     */
+    public int getEntryId()
+    {
+        return entryId;
+    }
+
     /**
      * Returns the epersonId (email) of the agent who enqueued this task entry.
      *  
@@ -9,6 +9,7 @@ package org.dspace.discovery;
 
 import org.apache.log4j.Logger;
 import org.apache.commons.cli.*;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Context;
 import org.dspace.utils.DSpace;
 
@@ -41,7 +42,7 @@ public class IndexClient {
         Context context = new Context();
         context.turnOffAuthorisationSystem();
 
-        String usage = "org.dspace.discovery.IndexClient [-cbhf[r <item handle>]] or nothing to update/clean an existing index.";
+        String usage = "org.dspace.discovery.IndexClient [-cbhf[r <item handle>]] [-t <threads>] or nothing to update/clean an existing index.";
         Options options = new Options();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine line = null;
@@ -80,6 +81,15 @@ public class IndexClient {
         options.addOption(OptionBuilder.isRequired(false).withDescription(
                 "print this help message").create("h"));
 
+        options
+                .addOption(OptionBuilder
+                        .withArgName("threads")
+                        .hasArg(true)
+                        .withDescription(
+                                "number of threads indexing items when building or updating the index, "
+                                        + "sending documents in batches (default: index.threads in discovery.cfg, or 1)")
+                        .create("t"));
+
         options.addOption(OptionBuilder.isRequired(false).withDescription(
                 "optimize search core").create("o"));
 
@@ -97,6 +107,16 @@ public class IndexClient {
             System.exit(1);
         }
 
+        int threads = ConfigurationManager.getIntProperty("discovery", "index.threads", 1);
+        if (line.hasOption("t")) {
+            try {
+                threads = Integer.parseInt(line.getOptionValue("t"));
+            } catch (NumberFormatException e) {
+                formatter.printHelp(usage, "Invalid number of threads: " + line.getOptionValue("t"), options, "");
+                System.exit(1);
+            }
+        }
+
         /** Acquire from dspace-services in future */
         /**
          * new DSpace.getServiceManager().getServiceByName("org.dspace.discovery.SolrIndexer");
@@ -114,7 +134,7 @@ public class IndexClient {
             indexer.cleanIndex(line.hasOption("f"));
         } else if (line.hasOption("b")) {
             log.info("(Re)building index from scratch.");
-            indexer.createIndex(context);
+            indexer.updateIndex(context, true, threads);
             checkRebuildSpellCheck(line, indexer);
         } else if (line.hasOption("o")) {
             log.info("Optimizing search core.");
@@ -124,7 +144,7 @@ public class IndexClient {
         } else {
             log.info("Updating and Cleaning Index");
             indexer.cleanIndex(line.hasOption("f"));
-            indexer.updateIndex(context, line.hasOption("f"));
+            indexer.updateIndex(context, line.hasOption("f"), threads);
             checkRebuildSpellCheck(line, indexer);
         }
 
@@ -53,6 +53,8 @@ public interface IndexingService {
 
     void updateIndex(Context context, boolean force);
 
+    void updateIndex(Context context, boolean force, int threads);
+
     void cleanIndex(boolean force) throws IOException,
             SQLException, SearchServiceException;
 
@@ -10,14 +10,18 @@ package org.dspace.discovery;
 import org.dspace.util.MultiFormatDateParser;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -31,6 +35,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -49,7 +63,6 @@ import org.apache.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpSolrServer;
-import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
 import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -89,7 +102,9 @@ import org.dspace.discovery.configuration.DiscoverySortConfiguration;
 import org.dspace.discovery.configuration.DiscoverySortFieldConfiguration;
 import org.dspace.discovery.configuration.HierarchicalSidebarFacetConfiguration;
 import org.dspace.handle.HandleManager;
+import org.dspace.storage.rdbms.DatabaseManager;
 import org.dspace.storage.rdbms.DatabaseUtils;
+import org.dspace.storage.rdbms.TableRowIterator;
 import org.dspace.utils.DSpace;
 import org.springframework.stereotype.Service;
 
@@ -136,6 +151,25 @@ public class SolrServiceImpl implements SearchService, IndexingService {
      */
     private HttpSolrServer solr = null;
 
+    /**
+     * Marks the end of the documents of a multi-threaded reindex
+     */
+    private static final SolrInputDocument END_OF_DOCUMENTS = new SolrInputDocument();
+
+    /**
+     * Characters of each text bitstream indexed unless configured otherwise;
+     * documents wait in memory to be sent, so their full text is bounded.
+     */
+    private static final int DEFAULT_FULLTEXT_MAX_CHARS = 2000000;
+
+    /**
+     * Queue of the batch sender, for threads of a multi-threaded reindex.
+     * Documents without full text streams written by such a thread are queued
+     * instead of being sent to Solr one by one.
+     */
+    private final ThreadLocal<BlockingQueue<SolrInputDocument>> batchQueue =
+            new ThreadLocal<BlockingQueue<SolrInputDocument>>();
+
 
     protected HttpSolrServer getSolr()
     {
@@ -223,10 +257,15 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                         /**
                          * If the item is in the repository now, add it to the index
                          */
-                        if (requiresIndexing(handle, ((Item) dso).getLastModified())
-                                || force)
+                        if (force
+                                || requiresIndexing(handle, ((Item) dso).getLastModified()))
                         {
-                            unIndexContent(context, handle);
+                            // A batched document replaces the old one, as
+                            // they share their unique id
+                            if (batchQueue.get() == null)
+                            {
+                                unIndexContent(context, handle);
+                            }
                             buildDocument(context, (Item) dso);
                         }
                     } else {
@@ -443,6 +482,281 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         }
     }
 
+    /**
+     * Iterates over all Items, Collections and Communities, and updates them
+     * in the index like {@link #updateIndex(Context, boolean)}, but indexes
+     * the items with several threads.
+     * <p/>
+     * The item IDs are handed out to the threads in chunks of
+     * <code>index.batch-size</code> (discovery.cfg, default 100). Each thread
+     * has its own Context, so it also needs its own database connection.
+     * The documents built by the threads go through a bounded queue to a
+     * single sender, which sends them to Solr in batches of the same size.
+     * Progress and throughput are logged every 30 seconds.
+     *
+     * @param context the dspace context, used for collections and communities
+     * @param force whether or not to force the reindexing
+     * @param threads number of threads indexing items. With one thread or
+     *            less this is the same as {@link #updateIndex(Context, boolean)}.
+     */
+    @Override
+    public void updateIndex(Context context, boolean force, int threads)
+    {
+        if (threads <= 1)
+        {
+            updateIndex(context, force);
+            return;
+        }
+
+        try {
+            if (getSolr() == null)
+            {
+                log.error("Solr is not available, not updating the index");
+                return;
+            }
+
+            int batchSize = Math.max(1, ConfigurationManager.getIntProperty("discovery", "index.batch-size", 100));
+            int[] itemIDs = findAllItemIDs(context);
+            long start = System.currentTimeMillis();
+            log.info("Indexing " + itemIDs.length + " items with " + threads
+                    + " threads, in batches of " + batchSize);
+
+            BlockingQueue<SolrInputDocument> queue =
+                    new ArrayBlockingQueue<SolrInputDocument>(batchSize * threads * 2);
+            BatchSender sender = new BatchSender(queue, batchSize);
+            Thread senderThread = new Thread(sender, "discovery-batch-sender");
+            senderThread.start();
+
+            AtomicInteger next = new AtomicInteger(0);
+            AtomicInteger indexed = new AtomicInteger(0);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++)
+            {
+                results.add(pool.submit(new ItemIndexer(itemIDs, next, batchSize,
+                        force, queue, indexed)));
+            }
+            pool.shutdown();
+
+            while (!pool.awaitTermination(30, TimeUnit.SECONDS))
+            {
+                logProgress(indexed.get(), itemIDs.length, sender.getSent(), start);
+            }
+            for (Future<Void> result : results)
+            {
+                try {
+                    result.get();
+                } catch (ExecutionException e)
+                {
+                    log.error("Indexing thread failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+
+            queue.put(END_OF_DOCUMENTS);
+            senderThread.join();
+            logProgress(indexed.get(), itemIDs.length, sender.getSent(), start);
+            if (sender.getFailed() > 0)
+            {
+                log.error(sender.getFailed() + " documents could not be sent to Solr");
+            }
+
+            Collection[] collections = Collection.findAll(context);
+            for (Collection collection : collections)
+            {
+                indexContent(context, collection, force);
+                context.removeCached(collection, collection.getID());
+            }
+
+            Community[] communities = Community.findAll(context);
+            for (Community community : communities)
+            {
+                indexContent(context, community, force);
+                context.removeCached(community, community.getID());
+            }
+
+            getSolr().commit();
+
+        } catch (Exception e)
+        {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the IDs of all items, in ascending order
+     */
+    private int[] findAllItemIDs(Context context) throws SQLException
+    {
+        List<Integer> ids = new ArrayList<Integer>();
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT item_id FROM item ORDER BY item_id");
+        try {
+            while (tri.hasNext())
+            {
+                ids.add(tri.next().getIntColumn("item_id"));
+            }
+        } finally {
+            tri.close();
+        }
+
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private void logProgress(int indexed, int total, long sent, long start)
+    {
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        log.info("Indexed " + indexed + " of " + total + " items, sent " + sent
+                + " documents in " + seconds + "s (" + (indexed / seconds) + " items/s)");
+    }
+
+    /**
+     * Indexes chunks of items of a multi-threaded reindex, until there are
+     * none left.
+     */
+    private class ItemIndexer implements Callable<Void>
+    {
+        private final int[] itemIDs;
+        private final AtomicInteger next;
+        private final int chunkSize;
+        private final boolean force;
+        private final BlockingQueue<SolrInputDocument> queue;
+        private final AtomicInteger indexed;
+
+        ItemIndexer(int[] itemIDs, AtomicInteger next, int chunkSize, boolean force,
+                    BlockingQueue<SolrInputDocument> queue, AtomicInteger indexed)
+        {
+            this.itemIDs = itemIDs;
+            this.next = next;
+            this.chunkSize = chunkSize;
+            this.force = force;
+            this.queue = queue;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public Void call() throws Exception
+        {
+            Context context = new Context();
+            context.turnOffAuthorisationSystem();
+            batchQueue.set(queue);
+            try {
+                int start;
+                while ((start = next.getAndAdd(chunkSize)) < itemIDs.length)
+                {
+                    int[] chunk = Arrays.copyOfRange(itemIDs, start,
+                            Math.min(itemIDs.length, start + chunkSize));
+                    for (Item item : Item.findAll(context, chunk))
+                    {
+                        if (item != null)
+                        {
+                            indexContent(context, item, force);
+                        }
+                    }
+                    context.clearCache();
+                    indexed.addAndGet(chunk.length);
+                }
+            } finally {
+                batchQueue.remove();
+                context.abort();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Sends the queued documents of a multi-threaded reindex to Solr in
+     * batches, until it takes {@link #END_OF_DOCUMENTS} from the queue.
+     */
+    private class BatchSender implements Runnable
+    {
+        private final BlockingQueue<SolrInputDocument> queue;
+        private final int batchSize;
+        private final AtomicLong sent = new AtomicLong(0);
+        private final AtomicLong failed = new AtomicLong(0);
+
+        BatchSender(BlockingQueue<SolrInputDocument> queue, int batchSize)
+        {
+            this.queue = queue;
+            this.batchSize = batchSize;
+        }
+
+        long getSent()
+        {
+            return sent.get();
+        }
+
+        long getFailed()
+        {
+            return failed.get();
+        }
+
+        @Override
+        public void run()
+        {
+            List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(batchSize);
+            boolean end = false;
+            try {
+                while (!end)
+                {
+                    // Wait for one document, then take what is already there
+                    SolrInputDocument doc = queue.take();
+                    while (doc != null)
+                    {
+                        if (doc == END_OF_DOCUMENTS)
+                        {
+                            end = true;
+                            break;
+                        }
+                        batch.add(doc);
+                        doc = (batch.size() < batchSize) ? queue.poll() : null;
+                    }
+
+                    if (!batch.isEmpty())
+                    {
+                        send(batch);
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e)
+            {
+                log.error("Interrupted while sending documents to Solr", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void send(List<SolrInputDocument> batch)
+        {
+            try {
+                add(batch);
+                sent.addAndGet(batch.size());
+                return;
+            } catch (Exception e)
+            {
+                log.warn("Sending a batch of " + batch.size()
+                        + " documents failed, sending them one by one: " + e.getMessage());
+            }
+
+            // Find the documents which break the batch
+            for (SolrInputDocument doc : batch)
+            {
+                try {
+                    add(Collections.singletonList(doc));
+                    sent.incrementAndGet();
+                } catch (Exception e)
+                {
+                    failed.incrementAndGet();
+                    log.error("Error while writing document " + doc.getFieldValue("search.uniqueid")
+                            + " to discovery index: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
     /**
      * Iterates over all documents in the Lucene index and verifies they are in
      * database, if not, they are removed.
@@ -710,9 +1024,13 @@ public class SolrServiceImpl implements SearchService, IndexingService {
 
     /**
      * Write the document to the index under the appropriate handle.
+     * Documents with full text streams go through Solr's extracting request
+     * handler. Neither kind of document is committed here: they become
+     * visible within <code>index.commit-within</code> milliseconds if that is
+     * set, otherwise at Solr's next autoCommit.
      *
      * @param doc the solr document to be written to the server
-     * @param streams
+     * @param streams full text streams to be extracted by Solr, if any
      * @throws IOException IO exception
      */
     protected void writeDocument(SolrInputDocument doc, List<BitstreamContentStream> streams) throws IOException {
@@ -744,17 +1062,118 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                     req.setParam(ExtractingParams.UNKNOWN_FIELD_PREFIX, "attr_");
                     req.setParam(ExtractingParams.MAP_PREFIX + "content", "fulltext");
                     req.setParam(ExtractingParams.EXTRACT_FORMAT, "text");
-                    req.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
+                    int commitWithin = getCommitWithin();
+                    if (commitWithin > 0)
+                    {
+                        req.setCommitWithin(commitWithin);
+                    }
                     req.process(getSolr());
                 }
                 else
                 {
-                    getSolr().add(doc);
+                    BlockingQueue<SolrInputDocument> queue = batchQueue.get();
+                    if (queue != null)
+                    {
+                        queue.put(doc);
+                    }
+                    else
+                    {
+                        add(Collections.singletonList(doc));
+                    }
                 }
             }
         } catch (SolrServerException e)
         {
             log.error(e.getMessage(), e);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing a document", e);
+        }
+    }
+
+    /**
+     * Add documents to the index, within the configured commit time if any.
+     * Without one, the documents become visible at Solr's next (auto) commit.
+     */
+    private void add(java.util.Collection<SolrInputDocument> docs)
+            throws SolrServerException, IOException
+    {
+        int commitWithin = getCommitWithin();
+        if (commitWithin > 0)
+        {
+            getSolr().add(docs, commitWithin);
+        }
+        else
+        {
+            getSolr().add(docs);
+        }
+    }
+
+    /**
+     * @return the maximum time in milliseconds before added documents are
+     *         committed (<code>index.commit-within</code>), or 0 to leave it
+     *         to Solr's autoCommit
+     */
+    private int getCommitWithin()
+    {
+        return ConfigurationManager.getIntProperty("discovery", "index.commit-within", 0);
+    }
+
+    /**
+     * Should the full text of items be sent to Solr's extracting request
+     * handler, instead of being read from the TEXT bitstreams here?
+     */
+    private boolean isSolrExtraction()
+    {
+        return "solr".equalsIgnoreCase(ConfigurationManager.getProperty("discovery", "index.fulltext.extract"));
+    }
+
+    /**
+     * Add the content of an extracted text bitstream (from the TEXT bundle,
+     * created by the media filters) to the full text of a document.
+     *
+     * @param doc the solr document of the item
+     * @param bitstream the text bitstream
+     */
+    protected void addFullText(SolrInputDocument doc, Bitstream bitstream)
+    {
+        int maxChars = ConfigurationManager.getIntProperty("discovery", "index.fulltext.max-chars",
+                DEFAULT_FULLTEXT_MAX_CHARS);
+        StringBuilder text = new StringBuilder();
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(bitstream.retrieve(), StandardCharsets.UTF_8);
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1)
+            {
+                if (maxChars > 0 && text.length() + read > maxChars)
+                {
+                    text.append(buffer, 0, maxChars - text.length());
+                    break;
+                }
+                text.append(buffer, 0, read);
+            }
+        } catch (Exception e)
+        {
+            log.error("Error reading full text of bitstream " + bitstream.getID() + ": " + e.getMessage(), e);
+            return;
+        } finally {
+            if (reader != null)
+            {
+                try {
+                    reader.close();
+                } catch (IOException e)
+                {
+                    log.error("Error closing stream:" + bitstream.getID(), e);
+                }
+            }
+        }
+
+        if (text.length() > 0)
+        {
+            doc.addField("fulltext", text.toString());
         }
     }
 
@@ -994,7 +1413,7 @@ public class SolrServiceImpl implements SearchService, IndexingService {
             }
 
             List<String> toIgnoreMetadataFields = SearchUtils.getIgnoredMetadataFields(item.getType());
-            Metadatum[] mydc = item.getMetadata(Item.ANY, Item.ANY, Item.ANY, Item.ANY);
+            List<Metadatum> mydc = item.getMetadataView(Item.ANY, Item.ANY, Item.ANY, Item.ANY);
             for (Metadatum meta : mydc)
             {
                 String field = meta.schema + "." + meta.element;
@@ -1378,6 +1797,7 @@ public class SolrServiceImpl implements SearchService, IndexingService {
 
 
         List<BitstreamContentStream> streams = new ArrayList<BitstreamContentStream>();
+        boolean solrExtraction = isSolrExtraction();
 
         try {
             // now get full text of any bitstreams in the TEXT bundle
@@ -1396,7 +1816,14 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                     {
                         try {
 
-                            streams.add(new BitstreamContentStream(myBitstream));
+                            if (solrExtraction)
+                            {
+                                streams.add(new BitstreamContentStream(myBitstream));
+                            }
+                            else
+                            {
+                                addFullText(doc, myBitstream);
+                            }
 
                             log.debug("  Added BitStream: "
                                     + myBitstream.getStoreNumber() + "	"
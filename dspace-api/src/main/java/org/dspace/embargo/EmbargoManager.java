@@ -391,8 +391,9 @@ public class EmbargoManager
 
 
 
-    // initialize - get plugins and MD field settings from config
-    private static void init()
+    // initialize - get plugins and MD field settings from config;
+    // synchronized since items may be installed by several threads at once
+    private static synchronized void init()
     {
         if (terms_schema == null)
         {
@@ -1061,6 +1061,12 @@ public class EPerson extends DSpaceObject
         }
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * return type found in Constants
      */
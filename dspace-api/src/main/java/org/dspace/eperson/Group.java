@@ -488,56 +488,14 @@ public class Group extends DSpaceObject
         groupIDs.add(Integer.valueOf(0));
         
         // now we have all owning groups, also grab all parents of owning groups
-        // yes, I know this could have been done as one big query and a union,
-        // but doing the Oracle port taught me to keep to simple SQL!
-
-        StringBuilder groupQuery = new StringBuilder();
-        groupQuery.append("SELECT * FROM group2groupcache WHERE ");
-
-        Iterator<Integer> i = groupIDs.iterator();
-
-        // Build a list of query parameters
-        Object[] parameters = new Object[groupIDs.size()];
-        int idx = 0;
-        while (i.hasNext())
+        GroupHierarchy hierarchy = GroupHierarchy.get(c);
+        for (Integer groupID : new ArrayList<Integer>(groupIDs))
         {
-            int groupID = (i.next()).intValue();
-
-            parameters[idx++] = Integer.valueOf(groupID);
-            
-            groupQuery.append("child_id= ? ");
-            if (i.hasNext())
+            for (int parentID : hierarchy.getAncestors(groupID.intValue()))
             {
-                groupQuery.append(" OR ");
-            }
-        }
-
-        // was member of at least one group
-        // NOTE: even through the query is built dynamically, all data is
-        // separated into the parameters array.
-        TableRowIterator tri = DatabaseManager.queryTable(c, "group2groupcache",
-                groupQuery.toString(),
-                parameters);
-
-        try
-        {
-            while (tri.hasNext())
-            {
-                TableRow row = tri.next();
-
-                int parentID = row.getIntColumn("parent_id");
-
                 groupIDs.add(Integer.valueOf(parentID));
             }
         }
-        finally
-        {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
-            {
-                tri.close();
-            }
-        }
 
         return groupIDs;
     }
@@ -591,30 +549,10 @@ public class Group extends DSpaceObject
         Set<Integer> epeopleIDs = new HashSet<Integer>();
         
         // Get all groups which are a member of this group
-        TableRowIterator tri = DatabaseManager.queryTable(c, "group2groupcache",
-                "SELECT * FROM group2groupcache WHERE parent_id= ? ",
-                g.getID());
-        
         Set<Integer> groupIDs = new HashSet<Integer>();
-
-        try
-        {
-            while (tri.hasNext())
-            {
-                TableRow row = tri.next();
-
-                int childID = row.getIntColumn("child_id");
-
-                groupIDs.add(Integer.valueOf(childID));
-            }
-        }
-        finally
+        for (int childID : GroupHierarchy.get(c).getDescendants(g.getID()))
         {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
-            {
-                tri.close();
-            }
+            groupIDs.add(Integer.valueOf(childID));
         }
 
         // now we have all the groups (including this one)
@@ -652,7 +590,7 @@ public class Group extends DSpaceObject
         //get all the EPerson IDs
         // Note: even through the query is dynamically built all data is separated
         // into the parameters array.
-        tri = DatabaseManager.queryTable(c, "epersongroup2eperson",
+        TableRowIterator tri = DatabaseManager.queryTable(c, "epersongroup2eperson",
                 epersonQuery.toString(),
                 parameters);
 
@@ -1083,6 +1021,7 @@ public class Group extends DSpaceObject
         DatabaseManager.updateQuery(ourContext,
                 "DELETE FROM group2group WHERE parent_id= ? OR child_id= ? ",
                 getID(),getID());
+        GroupHierarchy.invalidate(ourContext);
 
         // Delete the Dublin Core
         removeMetadataFromDatabase();
@@ -1094,6 +1033,7 @@ public class Group extends DSpaceObject
         DatabaseManager.delete(ourContext, myRow);
 
         epeople.clear();
+        ourContext.clearAuthorizationCache();
 
         log.info(LogManager.getHeader(ourContext, "delete_group", "group_id="
                 + getID()));
@@ -1223,11 +1163,15 @@ public class Group extends DSpaceObject
             }
 
             // groups changed, now change group cache
+            GroupHierarchy.invalidate(ourContext);
             rethinkGroupCache();
 
             groupsChanged = false;
         }
 
+        // Memberships may have changed
+        ourContext.clearAuthorizationCache();
+
         log.info(LogManager.getHeader(ourContext, "update_group", "group_id="
                 + getID()));
     }
@@ -1269,7 +1213,11 @@ public class Group extends DSpaceObject
          return hash;
      }
 
-
+    @Override
+    public boolean isModified()
+    {
+        return epeopleChanged || groupsChanged || modifiedMetadata;
+    }
 
     public int getType()
     {
@@ -1283,41 +1231,34 @@ public class Group extends DSpaceObject
 
     /**
      * Regenerate the group cache AKA the group2groupcache table in the database -
-     * meant to be called when a group is added or removed from another group
+     * meant to be called when a group is added or removed from another group.
+     * Only the rows which differ from the current group hierarchy are
+     * deleted or inserted.
      * 
      */
     private void rethinkGroupCache() throws SQLException
     {
-        // read in the group2group table
-        TableRowIterator tri = DatabaseManager.queryTable(ourContext, "group2group",
-                "SELECT * FROM group2group");
-
-        Map<Integer,Set<Integer>> parents = new HashMap<Integer,Set<Integer>>();
+        // copy of the transitive parent,child relationships still to write
+        Map<Integer, Set<Integer>> missing = new HashMap<Integer, Set<Integer>>();
+        for (Map.Entry<Integer, Set<Integer>> parent
+                : GroupHierarchy.get(ourContext).getAllDescendants().entrySet())
+        {
+            missing.put(parent.getKey(), new HashSet<Integer>(parent.getValue()));
+        }
 
+        // remove the rows which are no longer right, and tick off those which are
+        List<Integer> obsolete = new ArrayList<Integer>();
+        TableRowIterator tri = DatabaseManager.queryTable(ourContext, "group2groupcache",
+                "SELECT * FROM group2groupcache");
         try
         {
             while (tri.hasNext())
             {
-                TableRow row = (TableRow) tri.next();
-
-                Integer parentID = Integer.valueOf(row.getIntColumn("parent_id"));
-                Integer childID = Integer.valueOf(row.getIntColumn("child_id"));
-
-                // if parent doesn't have an entry, create one
-                if (!parents.containsKey(parentID))
-                {
-                    Set<Integer> children = new HashSet<Integer>();
-
-                    // add child id to the list
-                    children.add(childID);
-                    parents.put(parentID, children);
-                }
-                else
+                TableRow row = tri.next();
+                Set<Integer> children = missing.get(row.getIntColumn("parent_id"));
+                if (children == null || !children.remove(row.getIntColumn("child_id")))
                 {
-                    // parent has an entry, now add the child to the parent's record
-                    // of children
-                    Set<Integer> children =  parents.get(parentID);
-                    children.add(childID);
+                    obsolete.add(row.getIntColumn("id"));
                 }
             }
         }
@@ -1330,23 +1271,17 @@ public class Group extends DSpaceObject
             }
         }
 
-        // now parents is a hash of all of the IDs of groups that are parents
-        // and each hash entry is a hash of all of the IDs of children of those
-        // parent groups
-        // so now to establish all parent,child relationships we can iterate
-        // through the parents hash
-        for (Map.Entry<Integer, Set<Integer>> parent : parents.entrySet())
+        for (int start = 0; start < obsolete.size(); start += DatabaseManager.MAX_IN_VALUES)
         {
-            Set<Integer> myChildren = getChildren(parents, parent.getKey());
-            parent.getValue().addAll(myChildren);
+            List<Integer> chunk = obsolete.subList(start,
+                    Math.min(obsolete.size(), start + DatabaseManager.MAX_IN_VALUES));
+            DatabaseManager.updateQuery(ourContext,
+                    "DELETE FROM group2groupcache WHERE " + DatabaseManager.inClause("id", chunk.size()),
+                    chunk.toArray());
         }
 
-        // empty out group2groupcache table
-        DatabaseManager.updateQuery(ourContext,
-                "DELETE FROM group2groupcache WHERE id >= 0");
-
-        // write out new one
-        for (Map.Entry<Integer, Set<Integer>> parent : parents.entrySet())
+        // write out the new ones
+        for (Map.Entry<Integer, Set<Integer>> parent : missing.entrySet())
         {
             int parentID = parent.getKey().intValue();
 
@@ -1362,46 +1297,6 @@ public class Group extends DSpaceObject
         }
     }
 
-    /**
-     * Used recursively to generate a map of ALL of the children of the given
-     * parent
-     * 
-     * @param parents
-     *            Map of parent,child relationships
-     * @param parent
-     *            the parent you're interested in
-     * @return Map whose keys are all of the children of a parent
-     */
-    private Set<Integer> getChildren(Map<Integer,Set<Integer>> parents, Integer parent)
-    {
-        Set<Integer> myChildren = new HashSet<Integer>();
-
-        // degenerate case, this parent has no children
-        if (!parents.containsKey(parent))
-        {
-            return myChildren;
-        }
-
-        // got this far, so we must have children
-        Set<Integer> children =  parents.get(parent);
-
-        // now iterate over all of the children
-        Iterator<Integer> i = children.iterator();
-
-        while (i.hasNext())
-        {
-            Integer childID = i.next();
-
-            // add this child's ID to our return set
-            myChildren.add(childID);
-
-            // and now its children
-            myChildren.addAll(getChildren(parents, childID));
-        }
-
-        return myChildren;
-    }
-    
     public DSpaceObject getParentObject() throws SQLException
     {
         // could a collection/community administrator manage related groups?
@@ -0,0 +1,287 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Event;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * In-memory copy of the group2group table, with every group's ancestors
+ * (the groups it is a member of, directly or through other groups) and
+ * descendants worked out in advance, as sorted arrays of group IDs.
+ * <P>
+ * One copy is shared by all Contexts of this JVM. Before a Context first
+ * uses it, the row count and highest row ID of group2group are compared with
+ * those the copy was built from. Rows of group2group are only ever inserted
+ * with a new ID or deleted, so any committed change, also by another
+ * DSpace instance using the same database, alters one of the two. A Context
+ * with uncommitted group changes builds its own copy, which is not shared.
+ * Each Context keeps the copy it uses in its object cache.
+ */
+final class GroupHierarchy
+{
+    private static final int[] NONE = new int[0];
+
+    /** The copy shared by Contexts without group changes */
+    private static volatile GroupHierarchy shared = null;
+
+    /** Number of rows in group2group */
+    private final long count;
+
+    /** Highest ID in group2group */
+    private final int maxID;
+
+    /** Map from group ID to the sorted IDs of all groups it is in */
+    private final Map<Integer, int[]> ancestors;
+
+    /** Map from group ID to the sorted IDs of all groups in it */
+    private final Map<Integer, int[]> descendants;
+
+    private GroupHierarchy(long count, int maxID, Map<Integer, Set<Integer>> parents)
+    {
+        this.count = count;
+        this.maxID = maxID;
+
+        Map<Integer, Set<Integer>> children = new HashMap<Integer, Set<Integer>>();
+        ancestors = new HashMap<Integer, int[]>();
+        for (Integer group : parents.keySet())
+        {
+            Set<Integer> groupAncestors = closure(parents, group);
+            ancestors.put(group, toSortedArray(groupAncestors));
+            for (Integer ancestor : groupAncestors)
+            {
+                Set<Integer> ancestorChildren = children.get(ancestor);
+                if (ancestorChildren == null)
+                {
+                    ancestorChildren = new HashSet<Integer>();
+                    children.put(ancestor, ancestorChildren);
+                }
+                ancestorChildren.add(group);
+            }
+        }
+
+        descendants = new HashMap<Integer, int[]>();
+        for (Map.Entry<Integer, Set<Integer>> entry : children.entrySet())
+        {
+            descendants.put(entry.getKey(), toSortedArray(entry.getValue()));
+        }
+    }
+
+    /**
+     * Get the group hierarchy as seen by a Context.
+     *
+     * @param context
+     *            DSpace context
+     * @return the hierarchy
+     * @throws SQLException
+     */
+    static GroupHierarchy get(Context context) throws SQLException
+    {
+        GroupHierarchy hierarchy = (GroupHierarchy) context.fromCache(GroupHierarchy.class, 0);
+        if (hierarchy != null)
+        {
+            return hierarchy;
+        }
+
+        TableRow row = DatabaseManager.querySingle(context,
+                "SELECT COUNT(*) AS num, MAX(id) AS maxid FROM group2group");
+        long count = row.getLongColumn("num");
+        int maxID = (count == 0) ? -1 : row.getIntColumn("maxid");
+
+        boolean changed = hasGroupChanges(context);
+        hierarchy = shared;
+        if (changed || hierarchy == null || hierarchy.count != count || hierarchy.maxID != maxID)
+        {
+            hierarchy = load(context, count, maxID);
+            if (!changed)
+            {
+                shared = hierarchy;
+            }
+        }
+
+        context.cache(hierarchy, 0);
+        return hierarchy;
+    }
+
+    /**
+     * Make a Context read the group hierarchy again, after it changed
+     * group2group.
+     *
+     * @param context
+     *            DSpace context
+     */
+    static void invalidate(Context context)
+    {
+        Object hierarchy = context.fromCache(GroupHierarchy.class, 0);
+        if (hierarchy != null)
+        {
+            context.removeCached(hierarchy, 0);
+        }
+    }
+
+    /**
+     * Get the groups a group is a member of, directly or through other
+     * groups.
+     *
+     * @param groupID
+     *            ID of the group
+     * @return sorted IDs of the groups, not including the group itself
+     */
+    int[] getAncestors(int groupID)
+    {
+        int[] groups = ancestors.get(groupID);
+        return (groups == null) ? NONE : groups;
+    }
+
+    /**
+     * Get the groups which are members of a group, directly or through other
+     * groups.
+     *
+     * @param groupID
+     *            ID of the group
+     * @return sorted IDs of the groups, not including the group itself
+     */
+    int[] getDescendants(int groupID)
+    {
+        int[] groups = descendants.get(groupID);
+        return (groups == null) ? NONE : groups;
+    }
+
+    /**
+     * Is a group a member of another one, directly or through other groups?
+     *
+     * @param groupID
+     *            ID of the group
+     * @param ancestorID
+     *            ID of the group it may be a member of
+     * @return true if it is a member
+     */
+    boolean isAncestor(int groupID, int ancestorID)
+    {
+        return Arrays.binarySearch(getAncestors(groupID), ancestorID) >= 0;
+    }
+
+    /**
+     * Does the Context have uncommitted changes to group memberships of
+     * groups? Adding and removing subgroups, and deleting groups, add events.
+     */
+    private static boolean hasGroupChanges(Context context)
+    {
+        List<Event> events = context.getEvents();
+        if (events == null)
+        {
+            return false;
+        }
+        for (Event event : events)
+        {
+            if (event.getSubjectType() == Constants.GROUP
+                    && (event.getEventType() == Event.DELETE
+                    || event.getObjectType() == Constants.GROUP))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GroupHierarchy load(Context context, long count, int maxID) throws SQLException
+    {
+        Map<Integer, Set<Integer>> parents = new HashMap<Integer, Set<Integer>>();
+        TableRowIterator tri = DatabaseManager.queryTable(context, "group2group",
+                "SELECT * FROM group2group");
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                Integer childID = Integer.valueOf(row.getIntColumn("child_id"));
+                Set<Integer> childParents = parents.get(childID);
+                if (childParents == null)
+                {
+                    childParents = new HashSet<Integer>();
+                    parents.put(childID, childParents);
+                }
+                childParents.add(Integer.valueOf(row.getIntColumn("parent_id")));
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+        return new GroupHierarchy(count, maxID, parents);
+    }
+
+    /**
+     * Walk up from a group to all of its ancestors. Cycles are harmless.
+     */
+    private static Set<Integer> closure(Map<Integer, Set<Integer>> parents, Integer group)
+    {
+        Set<Integer> found = new HashSet<Integer>();
+        Deque<Integer> queue = new ArrayDeque<Integer>(parents.get(group));
+        while (!queue.isEmpty())
+        {
+            Integer next = queue.poll();
+            if (found.add(next))
+            {
+                Set<Integer> nextParents = parents.get(next);
+                if (nextParents != null)
+                {
+                    queue.addAll(nextParents);
+                }
+            }
+        }
+        found.remove(group);
+        return found;
+    }
+
+    private static int[] toSortedArray(Set<Integer> set)
+    {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (Integer value : set)
+        {
+            array[i++] = value.intValue();
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * @return every (ancestor, group) pair of the hierarchy, as the rows of
+     *         group2groupcache should be
+     */
+    Map<Integer, Set<Integer>> getAllDescendants()
+    {
+        Map<Integer, Set<Integer>> all = new HashMap<Integer, Set<Integer>>();
+        for (Map.Entry<Integer, int[]> entry : descendants.entrySet())
+        {
+            Set<Integer> groups = new HashSet<Integer>();
+            for (int group : entry.getValue())
+            {
+                groups.add(group);
+            }
+            all.put(entry.getKey(), Collections.unmodifiableSet(groups));
+        }
+        return all;
+    }
+}
@@ -14,10 +14,16 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.MessagingException;
 
@@ -50,6 +56,12 @@ import org.dspace.storage.rdbms.TableRowIterator;
 
 /**
  * Class defining methods for sending new item e-mail alerts to users
+ * <P>
+ * The new items of each collection are harvested once a run, however many
+ * people subscribe to it, and the emails are sent by a pool of threads
+ * (<code>eperson.subscription.senders</code>, default 4) which retry an
+ * email the mail server fails to accept
+ * (<code>eperson.subscription.retries</code>, default 2).
  *
  * @author Robert Tansley
  * @version $Revision$
@@ -296,6 +308,26 @@ public class Subscribe
      */
     public static void processDaily(Context context, boolean test) throws SQLException,
             IOException
+    {
+        // Each collection's new items are harvested once for all its subscribers
+        Map<Integer, Digest> digests = new HashMap<Integer, Digest>();
+        ExecutorService senders = test ? null : createSenderPool();
+
+        try
+        {
+            processDaily(context, test, digests, senders);
+        }
+        finally
+        {
+            if (senders != null)
+            {
+                awaitSenders(senders);
+            }
+        }
+    }
+
+    private static void processDaily(Context context, boolean test, Map<Integer, Digest> digests,
+            ExecutorService senders) throws SQLException, IOException
     {
         // Grab the subscriptions
         TableRowIterator tri = DatabaseManager.query(context,
@@ -322,7 +354,7 @@ public class Subscribe
 
                         try
                         {
-                            sendEmail(context, currentEPerson, collections, test);
+                            sendEmail(context, currentEPerson, collections, test, digests, senders);
                         }
                         catch (MessagingException me)
                         {
@@ -355,7 +387,7 @@ public class Subscribe
         {
             try
             {
-                sendEmail(context, currentEPerson, collections, test);
+                sendEmail(context, currentEPerson, collections, test, digests, senders);
             }
             catch (MessagingException me)
             {
@@ -382,44 +414,133 @@ public class Subscribe
     public static void sendEmail(Context context, EPerson eperson,
             List<Collection> collections, boolean test) throws IOException, MessagingException,
             SQLException
+    {
+        sendEmail(context, eperson, collections, test, new HashMap<Integer, Digest>(), null);
+    }
+
+    /**
+     * Sends an email as above, with the digests of collections computed so
+     * far, and with a pool of threads to send it, or in this thread if null.
+     */
+    private static void sendEmail(Context context, EPerson eperson,
+            List<Collection> collections, boolean test, Map<Integer, Digest> digests,
+            ExecutorService senders) throws IOException, MessagingException, SQLException
     {
         // Get a resource bundle according to the eperson language preferences
         Locale supportedLocale = I18nUtil.getEPersonLocale(eperson);
         ResourceBundle labels =  ResourceBundle.getBundle("Messages", supportedLocale);
 
-        // Get the start and end dates for yesterday
+        // FIXME: text of email should be more configurable from an
+        // i18n viewpoint
+        StringBuilder emailText = new StringBuilder();
 
-        // The date should reflect the timezone as well. Otherwise we stand to lose that information
-        // in truncation and roll to an earlier date than intended.
-        Calendar cal = Calendar.getInstance(TimeZone.getDefault());
-        cal.setTime(new Date());
+        for (Collection c : collections)
+        {
+            Digest digest = digests.get(c.getID());
+            if (digest == null)
+            {
+                digest = new Digest(context, c);
+                digests.put(c.getID(), digest);
+            }
 
-        // What we actually want to pass to Harvest is "Midnight of yesterday in my current timezone"
-        // Truncation will actually pass in "Midnight of yesterday in UTC", which will be,
-        // at least in CDT, "7pm, the day before yesterday, in my current timezone".
-        cal.add(Calendar.HOUR, -24);
-        Date thisTimeYesterday = cal.getTime();
+            // Only add to buffer if there are new items
+            String text = digest.getText(supportedLocale, labels);
+            if (text.length() > 0)
+            {
+                if (emailText.length() > 0)
+                {
+                    emailText.append("\n---------------------------------------\n");
+                }
+                emailText.append(text);
+            }
+        }
 
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        Date midnightYesterday = cal.getTime();
+        // Send an e-mail if there were any new items
+        if (emailText.length() > 0)
+        {
 
+            if(test)
+            {
+                log.info(LogManager.getHeader(context, "subscription:", "eperson=" + eperson.getEmail() ));
+                log.info(LogManager.getHeader(context, "subscription:", "text=" + emailText.toString() ));
 
-        // FIXME: text of email should be more configurable from an
-        // i18n viewpoint
-        StringBuffer emailText = new StringBuffer();
-        boolean isFirst = true;
+            } else {
+
+                Sender sender = new Sender(eperson, supportedLocale, emailText.toString(),
+                        LogManager.getHeader(context, "sent_subscription", "eperson_id=" + eperson.getID()));
+                if (senders == null)
+                {
+                    sender.send();
+                }
+                else
+                {
+                    senders.execute(sender);
+                }
+
+            }
+
+
+        }
+    }
+
+    /**
+     * Start the threads sending emails. Their queue is bounded, so that when
+     * mail is sent more slowly than digests are composed the composing thread
+     * sends the next email itself.
+     */
+    private static ExecutorService createSenderPool()
+    {
+        int threads = Math.max(1, ConfigurationManager.getIntProperty("eperson.subscription.senders", 4));
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 10), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 
-        for (int i = 0; i < collections.size(); i++)
+    /**
+     * Wait for the emails queued to be sent.
+     */
+    private static void awaitSenders(ExecutorService senders)
+    {
+        senders.shutdown();
+        try
         {
-            Collection c = collections.get(i);
+            while (!senders.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                log.info("Waiting for subscription emails to be sent");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The items a collection received yesterday, harvested once and rendered
+     * once per language for all of the collection's subscribers.
+     */
+    private static class Digest
+    {
+        private final String name;
+
+        private final List<String> titles = new ArrayList<String>();
+
+        private final List<String[]> authors = new ArrayList<String[]>();
+
+        private final List<String> handles = new ArrayList<String>();
+
+        /** Text of the digest by language */
+        private final Map<Locale, String> texts = new HashMap<Locale, String>();
+
+        Digest(Context context, Collection c) throws SQLException
+        {
+            name = c.getMetadata("name");
 
             try {
                 boolean includeAll = ConfigurationManager.getBooleanProperty("harvest.includerestricted.subscription", true);
 
                 // we harvest all the changed item from yesterday until now
-                List<HarvestedItemInfo> itemInfos = Harvest.harvest(context, c, new DCDate(midnightYesterday).toString(), null, 0, // Limit
+                List<HarvestedItemInfo> itemInfos = Harvest.harvest(context, c, new DCDate(getMidnightYesterday()).toString(), null, 0, // Limit
                                                                                     // and
                                                                                     // offset
                                                                                     // zero,
@@ -442,89 +563,184 @@ public class Subscribe
                     itemInfos = filterOutToday(itemInfos);
                 }
 
-                // Only add to buffer if there are new items
-                if (itemInfos.size() > 0)
+                for (HarvestedItemInfo hii : itemInfos)
+                {
+                    Metadatum[] itemTitles = hii.item.getDC("title", null, Item.ANY);
+                    titles.add(itemTitles.length > 0 ? itemTitles[0].value : null);
+
+                    Metadatum[] itemAuthors = hii.item.getDC("contributor", Item.ANY, Item.ANY);
+                    String[] values = new String[itemAuthors.length];
+                    for (int k = 0; k < itemAuthors.length; k++)
+                    {
+                        values[k] = itemAuthors[k].value;
+                    }
+                    authors.add(values);
+
+                    handles.add(hii.handle);
+
+                    // only the summary is kept
+                    hii.item.decache();
+                }
+            }
+            catch (ParseException pe)
+            {
+                // This should never get thrown as the Dates are auto-generated
+            }
+        }
+
+        /**
+         * @return the digest in the language of the labels, or an empty
+         *         string if there are no new items
+         */
+        String getText(Locale locale, ResourceBundle labels)
+        {
+            String text = texts.get(locale);
+            if (text != null)
+            {
+                return text;
+            }
+
+            StringBuilder emailText = new StringBuilder();
+            if (handles.size() > 0)
+            {
+                emailText.append(labels.getString("org.dspace.eperson.Subscribe.new-items")).append(" ").append(
+                        name).append(": ").append(
+                        handles.size()).append("\n\n");
+
+                for (int j = 0; j < handles.size(); j++)
                 {
-                    if (!isFirst)
+                    emailText.append("      ").append(labels.getString("org.dspace.eperson.Subscribe.title")).append(" ");
+
+                    if (titles.get(j) != null)
                     {
-                        emailText
-                                .append("\n---------------------------------------\n");
+                        emailText.append(titles.get(j));
                     }
                     else
                     {
-                        isFirst = false;
+                        emailText.append(labels.getString("org.dspace.eperson.Subscribe.untitled"));
                     }
 
-                    emailText.append(labels.getString("org.dspace.eperson.Subscribe.new-items")).append(" ").append(
-                            c.getMetadata("name")).append(": ").append(
-                            itemInfos.size()).append("\n\n");
-
-                    for (int j = 0; j < itemInfos.size(); j++)
+                    String[] itemAuthors = authors.get(j);
+                    if (itemAuthors.length > 0)
                     {
-                        HarvestedItemInfo hii = (HarvestedItemInfo) itemInfos
-                                .get(j);
-
-                        Metadatum[] titles = hii.item.getDC("title", null, Item.ANY);
-                        emailText.append("      ").append(labels.getString("org.dspace.eperson.Subscribe.title")).append(" ");
+                        emailText.append("\n    ").append(labels.getString("org.dspace.eperson.Subscribe.authors")).append(" ").append(
+                                itemAuthors[0]);
 
-                        if (titles.length > 0)
+                        for (int k = 1; k < itemAuthors.length; k++)
                         {
-                            emailText.append(titles[0].value);
-                        }
-                        else
-                        {
-                            emailText.append(labels.getString("org.dspace.eperson.Subscribe.untitled"));
+                            emailText.append("\n             ").append(
+                                    itemAuthors[k]);
                         }
+                    }
 
-                        Metadatum[] authors = hii.item.getDC("contributor", Item.ANY,
-                                Item.ANY);
+                    emailText.append("\n         ").append(labels.getString("org.dspace.eperson.Subscribe.id")).append(" ").append(
+                            HandleManager.getCanonicalForm(handles.get(j))).append(
+                            "\n\n");
+                }
+            }
 
-                        if (authors.length > 0)
-                        {
-                            emailText.append("\n    ").append(labels.getString("org.dspace.eperson.Subscribe.authors")).append(" ").append(
-                                    authors[0].value);
+            text = emailText.toString();
+            texts.put(locale, text);
+            return text;
+        }
+    }
 
-                            for (int k = 1; k < authors.length; k++)
-                            {
-                                emailText.append("\n             ").append(
-                                        authors[k].value);
-                            }
-                        }
+    /**
+     * Sends one subscription email, retrying if the mail server fails.
+     */
+    private static class Sender implements Runnable
+    {
+        private final int epersonID;
 
-                        emailText.append("\n         ").append(labels.getString("org.dspace.eperson.Subscribe.id")).append(" ").append(
-                                HandleManager.getCanonicalForm(hii.handle)).append(
-                                "\n\n");
-                    }
-                }
+        private final String address;
+
+        private final Locale locale;
+
+        private final String text;
+
+        /** Logged once the email is sent */
+        private final String logHeader;
+
+        Sender(EPerson eperson, Locale locale, String text, String logHeader)
+        {
+            this.epersonID = eperson.getID();
+            this.address = eperson.getEmail();
+            this.locale = locale;
+            this.text = text;
+            this.logHeader = logHeader;
+        }
+
+        public void run()
+        {
+            try
+            {
+                send();
             }
-            catch (ParseException pe)
+            catch (Exception e)
             {
-                // This should never get thrown as the Dates are auto-generated
+                log.error("Failed to send subscription to eperson_id=" + epersonID, e);
             }
         }
 
-        // Send an e-mail if there were any new items
-        if (emailText.length() > 0)
+        void send() throws IOException, MessagingException
         {
+            int retries = ConfigurationManager.getIntProperty("eperson.subscription.retries", 2);
+            int delay = ConfigurationManager.getIntProperty("eperson.subscription.retry-delay", 30);
 
-            if(test)
+            for (int attempt = 1; ; attempt++)
             {
-                log.info(LogManager.getHeader(context, "subscription:", "eperson=" + eperson.getEmail() ));
-                log.info(LogManager.getHeader(context, "subscription:", "text=" + emailText.toString() ));
-
-            } else {
-
-                Email email = Email.getEmail(I18nUtil.getEmailFilename(supportedLocale, "subscription"));
-                email.addRecipient(eperson.getEmail());
-                email.addArgument(emailText.toString());
-                email.send();
+                try
+                {
+                    Email email = Email.getEmail(I18nUtil.getEmailFilename(locale, "subscription"));
+                    email.addRecipient(address);
+                    email.addArgument(text);
+                    email.send();
 
-                log.info(LogManager.getHeader(context, "sent_subscription", "eperson_id=" + eperson.getID() ));
+                    log.info(logHeader);
+                    return;
+                }
+                catch (MessagingException me)
+                {
+                    if (attempt > retries)
+                    {
+                        throw me;
+                    }
+                    log.warn("Failed to send subscription to eperson_id=" + epersonID
+                            + ", retrying: " + me.getMessage());
+                }
 
+                try
+                {
+                    Thread.sleep(delay * 1000L * attempt);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new MessagingException("Interrupted sending subscription to eperson_id=" + epersonID);
+                }
             }
+        }
+    }
 
+    /**
+     * @return midnight at the start of yesterday, in the default timezone
+     */
+    private static Date getMidnightYesterday()
+    {
+        // The date should reflect the timezone as well. Otherwise we stand to lose that information
+        // in truncation and roll to an earlier date than intended.
+        Calendar cal = Calendar.getInstance(TimeZone.getDefault());
+        cal.setTime(new Date());
 
-        }
+        // What we actually want to pass to Harvest is "Midnight of yesterday in my current timezone"
+        // Truncation will actually pass in "Midnight of yesterday in UTC", which will be,
+        // at least in CDT, "7pm, the day before yesterday, in my current timezone".
+        cal.add(Calendar.HOUR, -24);
+
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        return cal.getTime();
     }
 
     /**
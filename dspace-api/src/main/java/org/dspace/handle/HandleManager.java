@@ -9,7 +9,9 @@ package org.dspace.handle;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.dspace.content.Collection;
@@ -433,6 +435,59 @@ public class HandleManager
         }
     }
 
+    /**
+     * Return the handles of several objects of the same type, using as few
+     * queries as possible. The same handle is chosen for each object as by
+     * {@link #findHandle(Context, DSpaceObject)}.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            The type of the objects, as defined in Constants
+     * @param ids
+     *            The internal IDs of the objects
+     * @return Map from object ID to handle. Objects without a handle are not
+     *         in the map.
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    public static Map<Integer, String> findHandles(Context context, int type, List<Integer> ids)
+            throws SQLException
+    {
+        Map<Integer, String> handles = new HashMap<Integer, String>();
+        for (int start = 0; start < ids.size(); start += DatabaseManager.MAX_IN_VALUES)
+        {
+            List<Integer> chunk = ids.subList(start, Math.min(ids.size(), start + DatabaseManager.MAX_IN_VALUES));
+            List<Object> params = new ArrayList<Object>(chunk.size() + 1);
+            params.add(type);
+            params.addAll(chunk);
+
+            TableRowIterator rows = DatabaseManager.queryTable(context, "Handle",
+                    "SELECT * FROM Handle WHERE resource_type_id = ? AND "
+                            + DatabaseManager.inClause("resource_id", chunk.size()),
+                    params.toArray());
+            try
+            {
+                while (rows.hasNext())
+                {
+                    TableRow row = rows.next();
+                    Integer id = row.getIntColumn("resource_id");
+                    String handle = row.getStringColumn("handle");
+                    //Prefer a handle that does NOT look like {handle.part}/{handle.part}.{version}
+                    if (!handles.containsKey(id) || !handle.matches(".*/.*\\.\\d+"))
+                    {
+                        handles.put(id, handle);
+                    }
+                }
+            }
+            finally
+            {
+                rows.close();
+            }
+        }
+        return handles;
+    }
+
     /**
      * Return all the handles which start with prefix.
      *
@@ -0,0 +1,288 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.harvest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.jdom.Text;
+
+/**
+ * Reads one page of an OAI-PMH ListRecords response with StAX, building a
+ * JDOM element for each record as it goes, instead of a DOM of the whole
+ * page which is then converted to JDOM. Takes the place of the OCLC
+ * harvester2 ListRecords verb in {@link OAIHarvester#runHarvest()}, and
+ * makes the same HTTP request (including the handling of compressed
+ * responses and of "503 Retry-After").
+ */
+class ListRecordsReader
+{
+    private static final Logger log = Logger.getLogger(ListRecordsReader.class);
+
+    private static final String OAI_NS = "http://www.openarchives.org/OAI/2.0/";
+
+    /** Number of times a "503 Retry-After" response is retried */
+    private static final int MAX_RETRIES = 5;
+
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    static
+    {
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    private final String requestURL;
+
+    private final List<Element> records = new ArrayList<Element>();
+
+    private final Set<String> errors = new LinkedHashSet<String>();
+
+    private String resumptionToken = null;
+
+    /**
+     * Request the first page of records.
+     */
+    ListRecordsReader(String oaiSource, String from, String until, String set, String metadataPrefix)
+    {
+        StringBuilder url = new StringBuilder(oaiSource).append("?verb=ListRecords");
+        if (from != null)
+        {
+            url.append("&from=").append(from);
+        }
+        if (until != null)
+        {
+            url.append("&until=").append(until);
+        }
+        if (set != null)
+        {
+            url.append("&set=").append(set);
+        }
+        url.append("&metadataPrefix=").append(metadataPrefix);
+        requestURL = url.toString();
+    }
+
+    /**
+     * Request the page of records following a resumption token.
+     */
+    ListRecordsReader(String oaiSource, String resumptionToken) throws IOException
+    {
+        requestURL = oaiSource + "?verb=ListRecords&resumptionToken="
+                + URLEncoder.encode(resumptionToken, "UTF-8");
+    }
+
+    String getRequestURL()
+    {
+        return requestURL;
+    }
+
+    /**
+     * Fetch and parse the page.
+     *
+     * @throws IOException if the OAI server cannot be read
+     * @throws XMLStreamException if the response is not well-formed
+     */
+    void read() throws IOException, XMLStreamException
+    {
+        HttpURLConnection con = null;
+        for (int retries = 0; ; retries++)
+        {
+            con = (HttpURLConnection) new URL(requestURL).openConnection();
+            con.setRequestProperty("User-Agent", "OAIHarvester/2.0");
+            con.setRequestProperty("Accept-Encoding", "compress, gzip, identify");
+            int responseCode = con.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_UNAVAILABLE || retries == MAX_RETRIES)
+            {
+                break;
+            }
+
+            int retryAfter = con.getHeaderFieldInt("Retry-After", -1);
+            con.disconnect();
+            if (retryAfter < 0)
+            {
+                throw new IOException("OAI server unavailable: " + requestURL);
+            }
+            log.info("OAI server busy, retrying after " + retryAfter + " seconds: " + requestURL);
+            try
+            {
+                Thread.sleep(retryAfter * 1000L);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the OAI server", e);
+            }
+        }
+
+        if (con.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND)
+        {
+            throw new FileNotFoundException("Bad URL? " + requestURL);
+        }
+
+        InputStream in = con.getInputStream();
+        try
+        {
+            String contentEncoding = con.getHeaderField("Content-Encoding");
+            if ("compress".equals(contentEncoding))
+            {
+                ZipInputStream zip = new ZipInputStream(in);
+                zip.getNextEntry();
+                in = zip;
+            }
+            else if ("gzip".equals(contentEncoding))
+            {
+                in = new GZIPInputStream(in);
+            }
+            else if ("deflate".equals(contentEncoding))
+            {
+                in = new InflaterInputStream(in);
+            }
+            read(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse a page from a stream.
+     */
+    void read(InputStream in) throws XMLStreamException
+    {
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try
+        {
+            while (reader.hasNext())
+            {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT
+                        || !OAI_NS.equals(reader.getNamespaceURI()))
+                {
+                    continue;
+                }
+
+                // records are read whole, so elements of the same names
+                // inside a record never get here
+                String name = reader.getLocalName();
+                if ("record".equals(name))
+                {
+                    records.add(readElement(reader));
+                }
+                else if ("error".equals(name))
+                {
+                    errors.add(reader.getAttributeValue(null, "code"));
+                }
+                else if ("resumptionToken".equals(name))
+                {
+                    resumptionToken = reader.getElementText().trim();
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the records of the page, as OAI-PMH record elements
+     */
+    List<Element> getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * @return the codes of the OAI-PMH errors returned, empty if none
+     */
+    Set<String> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * @return the resumption token, empty or null if this is the last page
+     */
+    String getResumptionToken()
+    {
+        return resumptionToken;
+    }
+
+    /**
+     * Build a JDOM element from the element the reader is at, leaving the
+     * reader at its end tag.
+     */
+    private static Element readElement(XMLStreamReader reader) throws XMLStreamException
+    {
+        Namespace ns = namespace(reader.getPrefix(), reader.getNamespaceURI());
+        Element element = new Element(reader.getLocalName(), ns);
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++)
+        {
+            Namespace declared = namespace(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+            if (!declared.getPrefix().equals(ns.getPrefix()))
+            {
+                element.addNamespaceDeclaration(declared);
+            }
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+        {
+            String prefix = reader.getAttributePrefix(i);
+            Namespace attrNS = (prefix == null || prefix.length() == 0) ? Namespace.NO_NAMESPACE
+                    : namespace(prefix, reader.getAttributeNamespace(i));
+            element.setAttribute(new Attribute(reader.getAttributeLocalName(i),
+                    reader.getAttributeValue(i), attrNS));
+        }
+
+        while (true)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.addContent(readElement(reader));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    element.addContent(new Text(reader.getText()));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return element;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static Namespace namespace(String prefix, String uri)
+    {
+        return Namespace.getNamespace(prefix == null ? "" : prefix, uri == null ? "" : uri);
+    }
+}
@@ -13,18 +13,26 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -240,6 +248,7 @@ public class OAIHarvester {
 
 		String dateGranularity;
 
+		RecordIngester ingester = null;
 		try
 		{
 			// obtain the desired descriptive metadata format and verify that the OAI server actually provides it
@@ -273,8 +282,6 @@ public class OAIHarvester {
 				throw new HarvestingException("The OAI server does not support ORE dissemination in the configured serialization format: " + ORESerialNS.getURI());
 			}
 
-			Document oaiResponse = null;
-			Element root = null;
 			String resumptionToken;
 
 			// set the status indicating the collection is currently being processed
@@ -296,30 +303,25 @@ public class OAIHarvester {
 			calendar.add(Calendar.HOUR, expirationInterval);
             Date expirationTime = calendar.getTime();
 
-			// main loop to keep requesting more objects until we're done
+			// main loop to keep requesting more objects until we're done.
+			// Records are ingested by worker threads while the next page is fetched.
 			List<Element> records;
 			Set<String> errorSet = new HashSet<String>();
+			ingester = new RecordIngester(OREPrefix, expirationTime);
 
-			ListRecords listRecords = new ListRecords(oaiSource, fromDate, toDate, oaiSetId, descMDPrefix);
+			ListRecordsReader listRecords = new ListRecordsReader(oaiSource, fromDate, toDate, oaiSetId, descMDPrefix);
 			log.debug("Harvesting request parameters: listRecords " + oaiSource + " " + fromDate + " " + toDate + " " + oaiSetId + " " + descMDPrefix);
-			if (listRecords != null)
-            {
-                log.info("HTTP Request: " + listRecords.getRequestURL());
-            }
+			log.info("HTTP Request: " + listRecords.getRequestURL());
 			while (listRecords != null)
 			{
-				records = new ArrayList<Element>();
-				oaiResponse = db.build(listRecords.getDocument());
+				listRecords.read();
 
-				if (listRecords.getErrors() != null && listRecords.getErrors().getLength() > 0)
+				if (!listRecords.getErrors().isEmpty())
 				{
-					for (int i=0; i<listRecords.getErrors().getLength(); i++)
-					{
-						String errorCode = listRecords.getErrors().item(i).getAttributes().getNamedItem("code").getTextContent();
-						errorSet.add(errorCode);
-					}
+					errorSet.addAll(listRecords.getErrors());
 					if (errorSet.contains("noRecordsMatch"))
 					{
+						ingester.finish();
 						log.info("noRecordsMatch: OAI server did not contain any updates");
 						harvestRow.setHarvestResult(new Date(), "OAI server did not contain any updates");
 						harvestRow.setHarvestStatus(HarvestedCollection.STATUS_READY);
@@ -329,30 +331,15 @@ public class OAIHarvester {
 						throw new HarvestingException(errorSet.toString());
 					}
 				}
-				else
-				{
-					root = oaiResponse.getRootElement();
-					records.addAll(root.getChild("ListRecords", OAI_NS).getChildren("record", OAI_NS));
-				}
+				records = listRecords.getRecords();
 
-				// Process the obtained records
-				if (records != null && records.size()>0)
+				// Hand the obtained records to the workers
+				if (records.size()>0)
 				{
 					log.info("Found " + records.size() + " records to process");
 					for (Element record : records) {
-						// check for STOP interrupt from the scheduler
-						if (HarvestScheduler.interrupt == HarvestScheduler.HARVESTER_INTERRUPT_STOP)
-                        {
-                            throw new HarvestingException("Harvest process for " + targetCollection.getID() + " interrupted by stopping the scheduler.");
-                        }
-						// check for timeout
-						if (expirationTime.before(new Date()))
-                        {
-                            throw new HarvestingException("runHarvest method timed out for collection " + targetCollection.getID());
-                        }
-
-						processRecord(record,OREPrefix);
-						ourContext.commit();
+						checkInterrupted(expirationTime);
+						ingester.submit(record);
 					}
 				}
 
@@ -362,7 +349,7 @@ public class OAIHarvester {
 					listRecords = null;
 				}
 				else {
-					listRecords = new ListRecords(oaiSource, resumptionToken);
+					listRecords = new ListRecordsReader(oaiSource, resumptionToken);
 				}
                 ourContext.turnOffAuthorisationSystem();
                 try {
@@ -373,6 +360,9 @@ public class OAIHarvester {
                 }
 				ourContext.commit();
 			}
+
+			// wait for the workers to ingest the last records
+			ingester.finish();
 		}
 		catch (HarvestingException hex) {
 			log.error("Harvesting error occurred while processing an OAI record: " + hex.getMessage());
@@ -394,6 +384,10 @@ public class OAIHarvester {
 			return;
 		}
 		finally {
+			if (ingester != null)
+			{
+				ingester.shutdown();
+			}
 			harvestRow.update();
             ourContext.turnOffAuthorisationSystem();
 			targetCollection.update();
@@ -411,6 +405,25 @@ public class OAIHarvester {
 		ourContext.commit();
 	}
 
+    /**
+     * Check whether the harvest should stop, because the scheduler is being
+     * stopped or the harvest has run out of time.
+     * @param expirationTime the time the harvest must be done by
+     */
+    private void checkInterrupted(Date expirationTime) throws HarvestingException
+    {
+        // check for STOP interrupt from the scheduler
+        if (HarvestScheduler.interrupt == HarvestScheduler.HARVESTER_INTERRUPT_STOP)
+        {
+            throw new HarvestingException("Harvest process for " + targetCollection.getID() + " interrupted by stopping the scheduler.");
+        }
+        // check for timeout
+        if (expirationTime.before(new Date()))
+        {
+            throw new HarvestingException("runHarvest method timed out for collection " + targetCollection.getID());
+        }
+    }
+
     /**
      * Process an individual PMH record, making (or updating) a corresponding DSpace Item.
      * @param record a JDOM Element containing the actual PMH record with descriptive metadata.
@@ -1062,6 +1075,159 @@ public class OAIHarvester {
     }
 
 
+    /**
+     * Ingests the records of a harvest with a pool of worker threads, while
+     * the harvest thread fetches the next page. Each worker has its own
+     * Context and commits every harvester.commitBatchSize records. Records
+     * are assigned to workers by OAI identifier, so that the versions of a
+     * record which occur in one harvest are ingested in order by the same
+     * worker.
+     * <p>
+     * If a worker fails, the others stop, and the failure is thrown from
+     * submit() or finish(). The records since the last commit of the failed
+     * worker are rolled back, and harvested again in the next harvest, as the
+     * harvest date of the collection is only moved on if the harvest succeeds.
+     */
+    private class RecordIngester
+    {
+        /** Records waiting to be ingested, for all workers together */
+        private static final int QUEUED_RECORDS = 1000;
+
+        private final String OREPrefix;
+        private final Date expirationTime;
+        private final int batchSize;
+        private final List<BlockingQueue<Element>> queues = new ArrayList<BlockingQueue<Element>>();
+        private final List<Thread> workers = new ArrayList<Thread>();
+        private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+        /** Tells a worker there are no more records */
+        private final Element end = new Element("end");
+
+        RecordIngester(String OREPrefix, Date expirationTime)
+        {
+            this.OREPrefix = OREPrefix;
+            this.expirationTime = expirationTime;
+            batchSize = Math.max(1, ConfigurationManager.getIntProperty("oai", "harvester.commitBatchSize", 50));
+            int threads = Math.max(1, ConfigurationManager.getIntProperty("oai", "harvester.ingestThreads", 1));
+
+            for (int i = 0; i < threads; i++)
+            {
+                final BlockingQueue<Element> queue = new ArrayBlockingQueue<Element>(QUEUED_RECORDS / threads + 1);
+                Thread worker = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ingest(queue);
+                    }
+                }, "harvest-" + targetCollection.getID() + "-" + i);
+                queues.add(queue);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        /**
+         * Queue a record for ingest, waiting while the worker it is assigned
+         * to is busy.
+         */
+        void submit(Element record) throws Exception
+        {
+            String itemOaiID = record.getChild("header", OAI_NS).getChildText("identifier", OAI_NS);
+            int worker = (itemOaiID == null) ? 0 : (itemOaiID.hashCode() & Integer.MAX_VALUE) % queues.size();
+            put(queues.get(worker), record);
+        }
+
+        /**
+         * Wait for the workers to ingest all the records submitted.
+         */
+        void finish() throws Exception
+        {
+            for (BlockingQueue<Element> queue : queues)
+            {
+                put(queue, end);
+            }
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+            rethrowFailure();
+        }
+
+        /**
+         * Stop the workers, if they are still running.
+         */
+        void shutdown()
+        {
+            failure.compareAndSet(null, new HarvestingException("Harvest stopped"));
+            for (Thread worker : workers)
+            {
+                worker.interrupt();
+            }
+        }
+
+        private void put(BlockingQueue<Element> queue, Element record) throws Exception
+        {
+            rethrowFailure();
+            while (!queue.offer(record, 1, TimeUnit.SECONDS))
+            {
+                rethrowFailure();
+            }
+        }
+
+        private void rethrowFailure() throws Exception
+        {
+            Exception e = failure.get();
+            if (e != null)
+            {
+                throw e;
+            }
+        }
+
+        private void ingest(BlockingQueue<Element> queue)
+        {
+            Context context = null;
+            try
+            {
+                context = new Context();
+                context.setCurrentUser(ourContext.getCurrentUser());
+                OAIHarvester harvester = new OAIHarvester(context,
+                        Collection.find(context, targetCollection.getID()), harvestRow);
+
+                int uncommitted = 0;
+                Element record;
+                while ((record = queue.take()) != end && failure.get() == null)
+                {
+                    checkInterrupted(expirationTime);
+                    harvester.processRecord(record, OREPrefix);
+                    if (++uncommitted >= batchSize)
+                    {
+                        context.commit();
+                        context.clearCache();
+                        uncommitted = 0;
+                    }
+                }
+                context.complete();
+            }
+            catch (InterruptedException e)
+            {
+                // shut down
+            }
+            catch (Exception e)
+            {
+                log.error("Error ingesting harvested record: " + e.getMessage(), e);
+                failure.compareAndSet(null, e);
+            }
+            finally
+            {
+                if (context != null && context.isValid())
+                {
+                    context.abort();
+                }
+            }
+        }
+    }
+
 	/**
 	 * Exception class specifically assigned to recoverable errors that occur during harvesting. Throughout the harvest process, various exceptions
 	 * are caught and turned into a HarvestingException. Uncaught exceptions are irrecoverable errors.
@@ -1102,6 +1268,11 @@ public class OAIHarvester {
 
         private static Integer maxActiveThreads;
 
+        private static int maxThreadsPerSource;
+
+        /** Number of harvest threads running for each OAI server, by host name */
+        private static Map<String, Integer> activeSources = new HashMap<String, Integer>();
+
         protected static volatile Integer activeThreads = 0;
 
         public static final int HARVESTER_STATUS_RUNNING = 1;
@@ -1177,6 +1348,7 @@ public class OAIHarvester {
             {
                 maxActiveThreads = 3;
             }
+            maxThreadsPerSource = ConfigurationManager.getIntProperty("oai", "harvester.maxThreadsPerSource");
             minHeartbeat = ConfigurationManager.getIntProperty("oai", "harvester.minHeartbeat") * 1000;
             if (minHeartbeat == 0)
             {
@@ -1240,12 +1412,28 @@ public class OAIHarvester {
                         addThread(cid);
                     }
 
-                    // Stage #2: start up all the threads currently in the queue up to the maximum number
+                    // Stage #2: start up all the threads currently in the queue up to the maximum number,
+                    // and up to the maximum number for each OAI server
                     while (!harvestThreads.isEmpty()) {
+                        HarvestThread nextThread = null;
                         synchronized(HarvestScheduler.class) {
-                            activeThreads++;
+                            for (int t = harvestThreads.size() - 1; t >= 0 && nextThread == null; t--) {
+                                if (canStart(harvestThreads.get(t))) {
+                                    nextThread = harvestThreads.remove(t);
+                                }
+                            }
+                            if (nextThread != null) {
+                                activeThreads++;
+                                Integer sourceThreads = activeSources.get(nextThread.source);
+                                activeSources.put(nextThread.source, (sourceThreads == null) ? 1 : sourceThreads + 1);
+                            }
                         }
-                        Thread activeThread = new Thread(harvestThreads.pop());
+                        if (nextThread == null) {
+                            /* All the OAI servers left are busy, wait a second */
+                            Thread.sleep(1000);
+                            continue;
+                        }
+                        Thread activeThread = new Thread(nextThread);
                         activeThread.start();
                         log.info("Thread started: " + activeThread.toString());
 
@@ -1327,6 +1515,30 @@ public class OAIHarvester {
         }
 
 
+        /**
+         * Whether a harvest thread may start without going over the maximum
+         * number of threads for its OAI server. Call while synchronized on
+         * HarvestScheduler.class.
+         */
+        private static boolean canStart(HarvestThread thread) {
+            Integer sourceThreads = activeSources.get(thread.source);
+            return maxThreadsPerSource <= 0 || sourceThreads == null || sourceThreads < maxThreadsPerSource;
+        }
+
+        /**
+         * Called by a harvest thread when it is done.
+         */
+        private static synchronized void threadDone(HarvestThread thread) {
+            activeThreads--;
+            Integer sourceThreads = activeSources.get(thread.source);
+            if (sourceThreads != null && sourceThreads > 1) {
+                activeSources.put(thread.source, sourceThreads - 1);
+            }
+            else {
+                activeSources.remove(thread.source);
+            }
+        }
+
         /**
          * Adds a thread to the ready stack. Can also be called externally to queue up a collection
          * for harvesting before it is "due" for another cycle. This allows starting a harvest process
@@ -1359,11 +1571,19 @@ public class OAIHarvester {
     private static class HarvestThread extends Thread {
         Context context;
         HarvestedCollection hc;
+        // the OAI server harvested, for HarvestScheduler.maxThreadsPerSource
+        String source;
 
 
         HarvestThread(Context context, HarvestedCollection hc) throws SQLException {
                 this.context = context;
                 this.hc = hc;
+                try {
+                    source = new URL(hc.getOaiSource()).getHost();
+                }
+                catch (MalformedURLException e) {
+                    source = hc.getOaiSource();
+                }
         }
 
         public void run() {
@@ -1407,9 +1627,7 @@ public class OAIHarvester {
                         context.abort();
                 }
 
-                synchronized (HarvestScheduler.class) {
-                        HarvestScheduler.activeThreads--;
-                }
+                HarvestScheduler.threadDone(this);
             }
 
             log.info("Thread for collection " + hc.getCollectionId() + " completes.");
@@ -23,11 +23,13 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,6 +74,7 @@ import org.dspace.eperson.EPerson;
 import org.dspace.eperson.Group;
 import org.dspace.statistics.util.DnsLookup;
 import org.dspace.statistics.util.LocationUtils;
+import org.dspace.statistics.util.ShardSelector;
 import org.dspace.statistics.util.SpiderDetector;
 import org.dspace.usage.UsageWorkflowEvent;
 import org.slf4j.Logger;
@@ -106,6 +109,30 @@ public class SolrLogger
 
     private static List<String> statisticYearCores = new ArrayList<String>();
 
+    /** Queue of asynchronous usage logging, null when logging synchronously */
+    private static final SolrLoggerQueue queue;
+
+    /** Seconds responses stay in the query cache, 0 to disable it */
+    private static final int queryCacheTTL =
+            ConfigurationManager.getIntProperty("solr-statistics", "query.cache.ttl", 300);
+
+    private static final int queryCacheSize =
+            ConfigurationManager.getIntProperty("solr-statistics", "query.cache.size", 1000);
+
+    /**
+     * Responses to the queries of the statistics pages, by query and all
+     * its parameters, least recently used first
+     */
+    private static final Map<String, CachedResponse> queryCache =
+            new LinkedHashMap<String, CachedResponse>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest)
+                {
+                    return size() > queryCacheSize;
+                }
+            };
+
     public static enum StatisticsType {
    		VIEW ("view"),
    		SEARCH ("search"),
@@ -204,6 +231,31 @@ public class SolrLogger
         }
 
         log.info("useProxies=" + useProxies);
+
+        SolrLoggerQueue loggerQueue = null;
+        if (solr != null && ConfigurationManager.getBooleanProperty("solr-statistics", "async.enabled", true))
+        {
+            long blockTimeout = 0;
+            if ("block".equals(ConfigurationManager.getProperty("solr-statistics", "async.full-policy")))
+            {
+                blockTimeout = ConfigurationManager.getLongProperty("solr-statistics", "async.block-timeout", 1000);
+            }
+            loggerQueue = new SolrLoggerQueue(solr,
+                    ConfigurationManager.getIntProperty("solr-statistics", "async.queue-size", 10000),
+                    ConfigurationManager.getIntProperty("solr-statistics", "async.batch-size", 500),
+                    ConfigurationManager.getLongProperty("solr-statistics", "async.flush-interval", 5000),
+                    blockTimeout,
+                    new SolrLoggerQueue.Enricher()
+                    {
+                        @Override
+                        public void enrich(SolrInputDocument doc)
+                        {
+                            addLocation(doc);
+                        }
+                    });
+            // Drained by SolrLoggerQueue.shutdownAll() when the application stops
+        }
+        queue = loggerQueue;
     }
 
     /**
@@ -251,10 +303,7 @@ public class SolrLogger
 
             doc1.addField("statistics_type", StatisticsType.VIEW.text());
 
-
-            solr.add(doc1);
-            //commits are executed automatically using the solr autocommit
-//            solr.commit(false, false);
+            send(doc1);
 
         }
         catch (RuntimeException re)
@@ -288,9 +337,7 @@ public class SolrLogger
 
 			doc1.addField("statistics_type", StatisticsType.VIEW.text());
 
-			solr.add(doc1);
-			// commits are executed automatically using the solr autocommit
-			// solr.commit(false, false);
+			send(doc1);
 
 		} catch (RuntimeException re) {
 			throw re;
@@ -343,51 +390,11 @@ public class SolrLogger
                 doc1.addField("referrer", request.getHeader("referer"));
             }
 
-            try
-            {
-                String dns = DnsLookup.reverseDns(ip);
-                doc1.addField("dns", dns.toLowerCase());
-            }
-            catch (Exception e)
-            {
-                log.error("Failed DNS Lookup for IP:" + ip);
-                log.debug(e.getMessage(),e);
-            }
 		    if(request.getHeader("User-Agent") != null)
 		    {
 		        doc1.addField("userAgent", request.getHeader("User-Agent"));
 		    }
 		    doc1.addField("isBot",isSpiderBot);
-            // Save the location information if valid, save the event without
-            // location information if not valid
-            if (locationService != null) {
-                try {
-                    InetAddress ipAddress = InetAddress.getByName(ip);
-                    CityResponse location = locationService.city(ipAddress);
-                    String countryCode = location.getCountry().getIsoCode();
-                    double latitude = location.getLocation().getLatitude();
-                    double longitude = location.getLocation().getLongitude();
-                    if (!(
-                            "--".equals(countryCode)
-                            && latitude == -180
-                            && longitude == -180)
-                    ) {
-                        try {
-                            doc1.addField("continent", LocationUtils
-                                .getContinentCode(countryCode));
-                        } catch (Exception e) {
-                            System.out
-                                .println("COUNTRY ERROR: " + countryCode);
-                        }
-                        doc1.addField("countryCode", countryCode);
-                        doc1.addField("city", location.getCity().getName());
-                        doc1.addField("latitude", latitude);
-                        doc1.addField("longitude", longitude);
-                    }
-                } catch (IOException | GeoIp2Exception e) {
-                    log.error("Unable to get location of request:  {}", e.getMessage());
-                }
-            }
         }
 
         if(dspaceObject != null){
@@ -431,51 +438,11 @@ public class SolrLogger
 
             doc1.addField("ip", ip);
 
-            try
-            {
-                String dns = DnsLookup.reverseDns(ip);
-                doc1.addField("dns", dns.toLowerCase());
-            }
-            catch (Exception e)
-            {
-                log.error("Failed DNS Lookup for IP:" + ip);
-                log.debug(e.getMessage(),e);
-            }
 		    if(userAgent != null)
 		    {
 		        doc1.addField("userAgent", userAgent);
 		    }
 		    doc1.addField("isBot",isSpiderBot);
-            // Save the location information if valid, save the event without
-            // location information if not valid
-            if (locationService != null) {
-                try {
-                    InetAddress ipAddress = InetAddress.getByName(ip);
-                    CityResponse location = locationService.city(ipAddress);
-                    String countryCode = location.getCountry().getIsoCode();
-                    double latitude = location.getLocation().getLatitude();
-                    double longitude = location.getLocation().getLongitude();
-                    if (!(
-                            "--".equals(countryCode)
-                            && latitude == -180
-                            && longitude == -180)
-                    ) {
-                        try {
-                            doc1.addField("continent", LocationUtils
-                                .getContinentCode(countryCode));
-                        } catch (Exception e) {
-                            System.out
-                                .println("COUNTRY ERROR: " + countryCode);
-                        }
-                        doc1.addField("countryCode", countryCode);
-                        doc1.addField("city", location.getCity().getName());
-                        doc1.addField("latitude", latitude);
-                        doc1.addField("longitude", longitude);
-                    }
-                } catch (GeoIp2Exception | IOException e) {
-                    log.error("Unable to get location of request:  {}", e.getMessage());
-                }
-            }
         }
 
         if(dspaceObject != null){
@@ -493,7 +460,92 @@ public class SolrLogger
         return doc1;
     }
 
-    
+    /**
+     * Add the reverse DNS name and the location of the "ip" field of a
+     * document. These lookups may be slow, so with asynchronous logging they
+     * are done by the queue's thread, not by the request.
+     *
+     * @param doc1 the usage event document
+     */
+    private static void addLocation(SolrInputDocument doc1)
+    {
+        String ip = (String) doc1.getFieldValue("ip");
+        if (ip == null)
+        {
+            return;
+        }
+
+        try
+        {
+            String dns = DnsLookup.reverseDns(ip);
+            doc1.addField("dns", dns.toLowerCase());
+        }
+        catch (Exception e)
+        {
+            log.error("Failed DNS Lookup for IP:" + ip);
+            log.debug(e.getMessage(),e);
+        }
+        // Save the location information if valid, save the event without
+        // location information if not valid
+        if (locationService != null) {
+            try {
+                InetAddress ipAddress = InetAddress.getByName(ip);
+                CityResponse location = locationService.city(ipAddress);
+                String countryCode = location.getCountry().getIsoCode();
+                double latitude = location.getLocation().getLatitude();
+                double longitude = location.getLocation().getLongitude();
+                if (!(
+                        "--".equals(countryCode)
+                        && latitude == -180
+                        && longitude == -180)
+                ) {
+                    try {
+                        doc1.addField("continent", LocationUtils
+                            .getContinentCode(countryCode));
+                    } catch (Exception e) {
+                        System.out
+                            .println("COUNTRY ERROR: " + countryCode);
+                    }
+                    doc1.addField("countryCode", countryCode);
+                    doc1.addField("city", location.getCity().getName());
+                    doc1.addField("latitude", latitude);
+                    doc1.addField("longitude", longitude);
+                }
+            } catch (IOException | GeoIp2Exception e) {
+                log.error("Unable to get location of request:  {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send a usage event document to Solr, through the queue if logging is
+     * asynchronous.
+     *
+     * @param doc the usage event document
+     */
+    private static void send(SolrInputDocument doc) throws SolrServerException, IOException
+    {
+        if (queue != null)
+        {
+            queue.offer(doc);
+        }
+        else
+        {
+            addLocation(doc);
+            solr.add(doc);
+            //commits are executed automatically using the solr autocommit
+        }
+    }
+
+    /**
+     * @return the queue of asynchronous usage logging, with its counters, or
+     *         <code>null</code> if logging is synchronous
+     */
+    public static SolrLoggerQueue getQueue()
+    {
+        return queue;
+    }
+
     public static void postSearch(DSpaceObject resultObject, HttpServletRequest request, EPerson currentUser,
                                  List<String> queries, int rpp, String sortBy, String order, int page, DSpaceObject scope) {
         try
@@ -532,7 +584,7 @@ public class SolrLogger
                 solrDoc.addField("page", page);
             }
 
-            solr.add(solrDoc);
+            send(solrDoc);
         }
         catch (RuntimeException re)
         {
@@ -582,7 +634,7 @@ public class SolrLogger
                 solrDoc.addField("actor", usageWorkflowEvent.getActor().getID());
             }
 
-            solr.add(solrDoc);
+            send(solrDoc);
         }
         catch (Exception e)
         {
@@ -1135,7 +1187,6 @@ public class SolrLogger
         // System.out.println("QUERY");
         SolrQuery solrQuery = new SolrQuery().setRows(rows).setQuery(query)
                 .setFacetMinCount(1);
-        addAdditionalSolrYearCores(solrQuery);
 
         // Set the date facet if present
         if (dateType != null)
@@ -1226,7 +1277,15 @@ public class SolrLogger
             solrQuery.addFilterQuery(filterQuery);
         }
 
-        QueryResponse response;
+        addAdditionalSolrYearCores(solrQuery);
+
+        String cacheKey = solrQuery.toString();
+        QueryResponse response = getCachedResponse(cacheKey);
+        if (response != null)
+        {
+            return response;
+        }
+
         try
         {
             // solr.set
@@ -1237,6 +1296,15 @@ public class SolrLogger
             System.err.println("Error using query " + query);
             throw e;
         }
+
+        if (0 < queryCacheTTL)
+        {
+            synchronized (queryCache)
+            {
+                queryCache.put(cacheKey, new CachedResponse(response,
+                        System.currentTimeMillis() + queryCacheTTL * 1000L));
+            }
+        }
         return response;
     }
 
@@ -1672,12 +1740,75 @@ public class SolrLogger
         return result.toString();
     }
 
+    /**
+     * Add the yearly statistics cores to a query, leaving out those which
+     * can't hold results because of the query's time range (see
+     * {@link ShardSelector}). The query and its filter queries must already
+     * be set. If only the main statistics core is left, the query is not
+     * distributed at all.
+     *
+     * @param solrQuery the query
+     */
     private static void addAdditionalSolrYearCores(SolrQuery solrQuery){
         //Only add if needed
         if(0 < statisticYearCores.size()){
-            //The shards are a comma separated list of the urls to the cores
-            solrQuery.add(ShardParams.SHARDS, StringUtils.join(statisticYearCores.iterator(), ","));
+            List<String> queries = new ArrayList<String>();
+            queries.add(solrQuery.getQuery());
+            if (solrQuery.getFilterQueries() != null)
+            {
+                queries.addAll(Arrays.asList(solrQuery.getFilterQueries()));
+            }
+            List<String> cores = ShardSelector.select(statisticYearCores,
+                    queries.toArray(new String[queries.size()]));
+
+            // The main core is the last one
+            boolean mainCoreOnly = cores.size() == 1
+                    && cores.get(0).equals(statisticYearCores.get(statisticYearCores.size() - 1));
+            if (!mainCoreOnly)
+            {
+                //The shards are a comma separated list of the urls to the cores
+                solrQuery.add(ShardParams.SHARDS, StringUtils.join(cores.iterator(), ","));
+            }
         }
 
     }
+
+    /**
+     * Get the response to a query from the query cache.
+     *
+     * @param key the query, with all its parameters
+     * @return the cached response, or <code>null</code>
+     */
+    private static QueryResponse getCachedResponse(String key)
+    {
+        synchronized (queryCache)
+        {
+            CachedResponse cached = queryCache.get(key);
+            if (cached == null)
+            {
+                return null;
+            }
+            if (cached.expires < System.currentTimeMillis())
+            {
+                queryCache.remove(key);
+                return null;
+            }
+            return cached.response;
+        }
+    }
+
+    /**
+     * A query response in the query cache, with its expiry time
+     */
+    private static class CachedResponse
+    {
+        final QueryResponse response;
+        final long expires;
+
+        CachedResponse(QueryResponse response, long expires)
+        {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
 }
@@ -0,0 +1,354 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.common.SolrInputDocument;
+import org.dspace.core.ConfigurationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of usage event documents, which a background thread sends to
+ * Solr in batches. A batch is sent when it is full, or when its oldest
+ * document has waited for the flush interval.
+ * <P>
+ * When the queue is full, a new document is either dropped straight away, or
+ * the posting thread waits for room up to a timeout and then drops it.
+ * Before a document is sent, the background thread can complete it with
+ * information which is slow to get (see {@link Enricher}).
+ * <P>
+ * {@link #shutdown(long)} stops accepting documents and sends those still
+ * queued. The web applications and the command line launcher call
+ * {@link #shutdownAll()} when they stop, so that the background thread does
+ * not outlive them.
+ *
+ * @see SolrLogger
+ */
+public class SolrLoggerQueue
+{
+    private static final Logger log = LoggerFactory.getLogger(SolrLoggerQueue.class);
+
+    /**
+     * Completes a document on the background thread, before it is sent.
+     */
+    public interface Enricher
+    {
+        void enrich(SolrInputDocument doc);
+    }
+
+    /** Wakes the background thread up on shutdown */
+    private static final SolrInputDocument WAKE_UP = new SolrInputDocument();
+
+    /** Queues not shut down yet */
+    private static final List<SolrLoggerQueue> running = new CopyOnWriteArrayList<SolrLoggerQueue>();
+
+    private final SolrServer solr;
+
+    private final BlockingQueue<SolrInputDocument> queue;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    /** How long to wait for room in a full queue, in ms; 0 to drop at once */
+    private final long blockTimeout;
+
+    private final Enricher enricher;
+
+    private final Thread worker;
+
+    private volatile boolean closed = false;
+
+    private final AtomicLong enqueued = new AtomicLong(0);
+    private final AtomicLong flushed = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong flushes = new AtomicLong(0);
+    private final AtomicLong flushTime = new AtomicLong(0);
+    private volatile long lastFlushTime = 0;
+
+    /**
+     * Create the queue and start its background thread.
+     *
+     * @param solr
+     *            where to send the documents
+     * @param capacity
+     *            maximum number of queued documents
+     * @param batchSize
+     *            maximum number of documents sent at once
+     * @param flushInterval
+     *            maximum time in ms a document waits before being sent
+     * @param blockTimeout
+     *            how long in ms to wait for room when the queue is full
+     *            before dropping the document, 0 to drop it at once
+     * @param enricher
+     *            completes documents before they are sent, may be
+     *            <code>null</code>
+     */
+    public SolrLoggerQueue(SolrServer solr, int capacity, int batchSize, long flushInterval,
+            long blockTimeout, Enricher enricher)
+    {
+        this.solr = solr;
+        this.queue = new ArrayBlockingQueue<SolrInputDocument>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.blockTimeout = blockTimeout;
+        this.enricher = enricher;
+
+        worker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                process();
+            }
+        }, "solr-statistics-queue");
+        worker.setDaemon(true);
+        worker.start();
+        running.add(this);
+    }
+
+    /**
+     * Shut down all the queues still running, waiting at most
+     * <code>async.drain-timeout</code> ms (in solr-statistics.cfg) for each
+     * to send what it holds.
+     */
+    public static void shutdownAll()
+    {
+        long timeout = ConfigurationManager.getLongProperty("solr-statistics", "async.drain-timeout", 10000);
+        for (SolrLoggerQueue queue : running)
+        {
+            queue.shutdown(timeout);
+        }
+    }
+
+    /**
+     * Queue a document to be sent to Solr.
+     *
+     * @param doc
+     *            the document
+     * @return <code>false</code> if the document was dropped, because the
+     *         queue is full or shut down
+     */
+    public boolean offer(SolrInputDocument doc)
+    {
+        boolean queued = false;
+        if (!closed)
+        {
+            try
+            {
+                queued = (blockTimeout > 0)
+                        ? queue.offer(doc, blockTimeout, TimeUnit.MILLISECONDS)
+                        : queue.offer(doc);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (queued)
+        {
+            enqueued.incrementAndGet();
+        }
+        else
+        {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0)
+            {
+                log.warn("Statistics queue is " + (closed ? "shut down" : "full")
+                        + ", " + count + " usage events dropped so far");
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Stop accepting documents, and wait for the queued ones to be sent.
+     *
+     * @param timeout
+     *            maximum time to wait in ms
+     */
+    public void shutdown(long timeout)
+    {
+        if (!running.remove(this))
+        {
+            return;
+        }
+        closed = true;
+        queue.offer(WAKE_UP);
+        try
+        {
+            worker.join(timeout);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive())
+        {
+            log.warn("Statistics queue still holds " + queue.size()
+                    + " usage events after waiting " + timeout + "ms for it to drain");
+            worker.interrupt();
+        }
+        log.info("Statistics queue shut down: " + enqueued.get() + " usage events queued, "
+                + flushed.get() + " sent, " + failed.get() + " failed, " + dropped.get() + " dropped");
+    }
+
+    /**
+     * Main loop of the background thread: collect a batch, send it, repeat
+     * until shut down and empty.
+     */
+    private void process()
+    {
+        List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(batchSize);
+        try
+        {
+            while (!(closed && queue.isEmpty()))
+            {
+                SolrInputDocument doc = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (doc == null || doc == WAKE_UP)
+                {
+                    continue;
+                }
+
+                batch.add(doc);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize)
+                {
+                    long wait = closed ? 0 : deadline - System.currentTimeMillis();
+                    doc = (wait > 0) ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (doc == null)
+                    {
+                        break;
+                    }
+                    if (doc != WAKE_UP)
+                    {
+                        batch.add(doc);
+                    }
+                }
+
+                flush(batch);
+                batch.clear();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            log.warn("Statistics queue interrupted, " + (batch.size() + queue.size())
+                    + " usage events not sent");
+        }
+    }
+
+    private void flush(List<SolrInputDocument> batch)
+    {
+        long start = System.currentTimeMillis();
+        if (enricher != null)
+        {
+            for (SolrInputDocument doc : batch)
+            {
+                try
+                {
+                    enricher.enrich(doc);
+                }
+                catch (RuntimeException e)
+                {
+                    log.error("Unable to complete usage event: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        try
+        {
+            solr.add(batch);
+            flushed.addAndGet(batch.size());
+        }
+        catch (Exception e)
+        {
+            failed.addAndGet(batch.size());
+            log.error("Unable to send " + batch.size() + " usage events to Solr: " + e.getMessage(), e);
+        }
+
+        lastFlushTime = System.currentTimeMillis() - start;
+        flushTime.addAndGet(lastFlushTime);
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * @return the number of documents waiting in the queue
+     */
+    public int getSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of documents accepted by the queue
+     */
+    public long getEnqueuedCount()
+    {
+        return enqueued.get();
+    }
+
+    /**
+     * @return the number of documents sent to Solr
+     */
+    public long getFlushedCount()
+    {
+        return flushed.get();
+    }
+
+    /**
+     * @return the number of documents dropped because the queue was full or
+     *         shut down
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of documents which Solr did not accept
+     */
+    public long getFailedCount()
+    {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of batches sent
+     */
+    public long getFlushCount()
+    {
+        return flushes.get();
+    }
+
+    /**
+     * @return the total time spent completing and sending batches, in ms
+     */
+    public long getFlushTime()
+    {
+        return flushTime.get();
+    }
+
+    /**
+     * @return the time spent completing and sending the last batch, in ms
+     */
+    public long getLastFlushTime()
+    {
+        return lastFlushTime;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the statistics cores a query has to be sent to. The yearly cores
+ * made by <code>stats-util -s</code> (named <code>statistics-YYYY</code>)
+ * only hold usage events of their year, so a query restricted to a range of
+ * time does not need the cores of the other years.
+ * <P>
+ * The range is only taken from <code>time:[start TO end]</code> clauses
+ * which every result must match: clauses joined to the rest of the query
+ * with <code>AND</code> only, and not negated. Start and end must be ISO
+ * 8601 dates or <code>*</code>; date math (<code>NOW-1YEAR</code>) is
+ * treated as unbounded. Cores whose name has no year, such as the main
+ * statistics core, are always kept.
+ *
+ * @see org.dspace.statistics.SolrLogger#shardSolrIndex()
+ */
+public class ShardSelector
+{
+    private static final Pattern TIME_RANGE =
+            Pattern.compile("time:[\\[{](\\S+) TO (\\S+)[\\]}]");
+
+    private static final Pattern YEAR_CORE = Pattern.compile(".*statistics-(\\d{4})/?$");
+
+    private static final Pattern ISO_YEAR = Pattern.compile("^(\\d{4})-.*");
+
+    /** Default class constructor */
+    private ShardSelector()
+    {
+    }
+
+    /**
+     * Select the cores which may hold results of a query.
+     *
+     * @param cores
+     *            the URLs of the cores, as used in the <code>shards</code>
+     *            parameter
+     * @param queries
+     *            the query and filter queries, which may be
+     *            <code>null</code>
+     * @return the cores which may hold results, in the original order
+     */
+    public static List<String> select(List<String> cores, String... queries)
+    {
+        int[] range = { Integer.MIN_VALUE, Integer.MAX_VALUE };
+        for (String query : queries)
+        {
+            if (query != null)
+            {
+                restrict(query, range);
+            }
+        }
+
+        List<String> selected = new ArrayList<String>(cores.size());
+        for (String core : cores)
+        {
+            Matcher matcher = YEAR_CORE.matcher(core);
+            if (matcher.matches())
+            {
+                int year = Integer.parseInt(matcher.group(1));
+                if (year < range[0] || range[1] < year)
+                {
+                    continue;
+                }
+            }
+            selected.add(core);
+        }
+        return selected;
+    }
+
+    /**
+     * Get the range of years a query is restricted to.
+     *
+     * @param query
+     *            a Solr query
+     * @return the first and last year, <code>Integer.MIN_VALUE</code> and
+     *         <code>Integer.MAX_VALUE</code> when unbounded
+     */
+    public static int[] getYearRange(String query)
+    {
+        int[] range = { Integer.MIN_VALUE, Integer.MAX_VALUE };
+        restrict(query, range);
+        return range;
+    }
+
+    /**
+     * Narrow a range of years down to the time clauses of a query.
+     */
+    private static void restrict(String query, int[] range)
+    {
+        for (String clause : splitAnd(query))
+        {
+            Matcher matcher = TIME_RANGE.matcher(clause);
+            if (matcher.matches())
+            {
+                range[0] = Math.max(range[0], parseYear(matcher.group(1), Integer.MIN_VALUE));
+                range[1] = Math.min(range[1], parseYear(matcher.group(2), Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    private static int parseYear(String date, int unbounded)
+    {
+        Matcher matcher = ISO_YEAR.matcher(date);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : unbounded;
+    }
+
+    /**
+     * Split a query into the clauses that are all required, going into
+     * parenthesised groups which are themselves only joined by AND. Returns
+     * nothing for a query which uses OR at its top level.
+     */
+    private static List<String> splitAnd(String query)
+    {
+        List<String> clauses = new ArrayList<String>();
+        String trimmed = query.trim();
+
+        // Split at top-level " AND ", outside of parentheses and ranges
+        List<String> parts = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < trimmed.length(); i++)
+        {
+            char c = trimmed.charAt(i);
+            if (c == '(' || c == '[' || c == '{')
+            {
+                depth++;
+            }
+            else if (c == ')' || c == ']' || c == '}')
+            {
+                depth--;
+            }
+            else if (depth == 0)
+            {
+                if (trimmed.startsWith(" AND ", i))
+                {
+                    parts.add(trimmed.substring(start, i));
+                    start = i + 5;
+                    i += 4;
+                }
+                else if (trimmed.startsWith(" OR ", i) || trimmed.startsWith("||", i))
+                {
+                    return clauses;
+                }
+            }
+        }
+        parts.add(trimmed.substring(start));
+
+        for (String part : parts)
+        {
+            String clause = part.trim();
+            if (clause.startsWith("(") && clause.endsWith(")") && isGroup(clause))
+            {
+                clauses.addAll(splitAnd(clause.substring(1, clause.length() - 1)));
+            }
+            else
+            {
+                clauses.add(clause);
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Is the whole clause one parenthesised group, rather than e.g.
+     * <code>(a) AND (b)</code>?
+     */
+    private static boolean isGroup(String clause)
+    {
+        int depth = 0;
+        for (int i = 0; i < clause.length() - 1; i++)
+        {
+            char c = clause.charAt(i);
+            if (c == '(')
+            {
+                depth++;
+            }
+            else if (c == ')')
+            {
+                depth--;
+                if (depth == 0)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -525,6 +525,34 @@ public class BitstreamStorageManager
 		return (file != null) ? FileFactory.newFileInputStream(file) : null;
     }
 
+    /**
+     * Get the file holding the bits for the bitstream with ID, if it is kept
+     * in a local assetstore. Callers which read whole files, like the
+     * checksum checker, can then use a FileChannel instead of the stream
+     * returned by {@link #retrieve(Context, int)}.
+     * 
+     * @param context
+     *            The current context
+     * @param id
+     *            The ID of the bitstream
+     * @exception IOException
+     *                If a problem occurs while determining the file
+     * @exception SQLException
+     *                If a problem occurs accessing the RDBMS
+     * 
+     * @return The local file, or null if the bitstream does not exist or is
+     *         kept in an SRB assetstore
+     */
+    public static File retrieveLocalFile(Context context, int id)
+            throws SQLException, IOException
+    {
+        TableRow bitstream = DatabaseManager.find(context, "bitstream", id);
+
+        GeneralFile file = getFile(bitstream);
+
+        return (file instanceof LocalFile) ? ((LocalFile) file).getFile() : null;
+    }
+
     /**
      * <p>
      * Remove a bitstream from the asset store. This method does not delete any
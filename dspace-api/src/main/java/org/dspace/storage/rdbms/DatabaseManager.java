@@ -58,7 +58,13 @@ public class DatabaseManager
 
     /** Name to use for the pool */
     private static String poolName = "dspacepool";
-    
+
+    /**
+     * Maximum number of values to pass in one IN (...) list, see
+     * {@link #inClause}. Oracle does not accept more than 1000.
+     */
+    public static final int MAX_IN_VALUES = 500;
+
     /**
      * This regular expression is used to perform sanity checks
      * on database names (i.e. tables and columns).
@@ -486,9 +492,18 @@ public class DatabaseManager
     {
         String ctable = canonicalize(table);
 
+        // Rows of frequently read tables may be held in the shared cache
+        TableRow cached = TableRowCache.get(ctable, id);
+        if (cached != null)
+        {
+            return cached;
+        }
+
         try {
-            return findByUnique(context, ctable, getPrimaryKeyColumn(context, ctable),
+            TableRow row = findByUnique(context, ctable, getPrimaryKeyColumn(context, ctable),
                     Integer.valueOf(id));
+            TableRowCache.put(context, id, row);
+            return row;
         } catch (SQLException e) {
             log.error("SQL find Error - ", e);
             throw e;
@@ -553,6 +568,7 @@ public class DatabaseManager
     {
         try {
             String ctable = canonicalize(table);
+            TableRowCache.invalidate(ctable, id);
             return deleteByValue(context, ctable, getPrimaryKeyColumn(context, ctable),
                     Integer.valueOf(id));
         } catch (SQLException e) {
@@ -751,6 +767,8 @@ public class DatabaseManager
             sql.append(" where ").append(pk.getName()).append(" = ?");
             columns.add(pk);
 
+            TableRowCache.invalidate(table, row.getIntColumn(pk.getName()));
+
             return executeUpdate(context.getDBConnection(), sql.toString(), columns, row);
         }
 
@@ -1882,6 +1900,27 @@ public class DatabaseManager
         return newID;
     }
 
+    /**
+     * Build an SQL condition matching a column against a list of values, for
+     * use with a query taking the values as parameters. Callers should pass at
+     * most {@link #MAX_IN_VALUES} values per query.
+     *
+     * @param column
+     *            The column to match
+     * @param count
+     *            The number of values (must be at least one)
+     * @return condition of the form <code>column IN (?, ?, ...)</code>
+     */
+    public static String inClause(String column, int count)
+    {
+        StringBuilder sql = new StringBuilder(column).append(" IN (?");
+        for (int i = 1; i < count; i++)
+        {
+            sql.append(", ?");
+        }
+        return sql.append(")").toString();
+    }
+
     public static void applyOffsetAndLimit(StringBuffer query, List<Serializable> params, int offset, int limit){
         if(!isOracle()){
             offsetAndLimitPostgresQuery(query,params,offset,limit);
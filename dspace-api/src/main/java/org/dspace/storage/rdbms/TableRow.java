@@ -8,6 +8,7 @@
 package org.dspace.storage.rdbms;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -667,6 +668,29 @@ public class TableRow
         throw new IllegalArgumentException("No such column '" + canonicalized + "'");
     }
 
+    /**
+     * package private method to create an independent copy of this row, with
+     * the same values and change flags. Dates are the only mutable column
+     * values, so they are the only values which are cloned.
+     *
+     * @return a copy of this row
+     */
+    TableRow copy()
+    {
+        TableRow copy = new TableRow(table, new ArrayList<String>());
+        for (Map.Entry<String, Object> entry : data.entrySet())
+        {
+            Object value = entry.getValue();
+            if (value instanceof java.util.Date)
+            {
+                value = ((java.util.Date) value).clone();
+            }
+            copy.data.put(entry.getKey(), value);
+        }
+        copy.changed.putAll(changed);
+        return copy;
+    }
+
     /**
      * package private method to reset the flags of which columns have been updated
      * This is used by the database manager after it has finished processing the contents
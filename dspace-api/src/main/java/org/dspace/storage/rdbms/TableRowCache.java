@@ -0,0 +1,306 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared, JVM-wide second-level cache of table rows looked up by primary key.
+ * <P>
+ * The per-request object cache in {@link Context} dies with the Context, so
+ * every request reloads the same Communities, Collections, Groups and EPersons.
+ * DSpace objects are bound to the Context (and database connection) that
+ * loaded them, so they cannot be shared between requests; their rows can.
+ * When <code>Context.fromCache</code> misses, the <code>find()</code> methods
+ * call {@link DatabaseManager#find}, which consults this cache before going to
+ * the database.
+ * <P>
+ * The cache is bounded both in size (least recently used entries are evicted)
+ * and in time (entries older than the configured TTL are discarded). Only the
+ * tables listed in <code>db.cache.tables</code> are cached; if none are
+ * listed the cache is disabled. Rows are invalidated locally whenever they are
+ * updated or deleted through the DatabaseManager, and again after commit by
+ * {@link TableRowCacheConsumer} on MODIFY/DELETE events.
+ * <P>
+ * Configuration (dspace.cfg):
+ * <ul>
+ * <li><code>db.cache.tables</code> - comma separated list of tables to cache</li>
+ * <li><code>db.cache.max-entries</code> - maximum number of cached rows (default 10000)</li>
+ * <li><code>db.cache.ttl</code> - time to live of a cached row, in seconds (default 300)</li>
+ * </ul>
+ *
+ * @see TableRowCacheConsumer
+ */
+public class TableRowCache
+{
+    private static final Logger log = LoggerFactory.getLogger(TableRowCache.class);
+
+    /** Default maximum number of cached rows */
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** Default time to live, in seconds */
+    private static final int DEFAULT_TTL = 300;
+
+    private static volatile boolean initialized = false;
+
+    /** Tables whose rows may be cached */
+    private static Set<String> tables = Collections.emptySet();
+
+    private static int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private static long ttlMillis = DEFAULT_TTL * 1000L;
+
+    /** Access-ordered map, so iteration order is least recently used first */
+    private static Map<String, CachedRow> rows;
+
+    private static final AtomicLong hits = new AtomicLong();
+
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /** Default constructor */
+    private TableRowCache() { }
+
+    /**
+     * Is the given table cached?
+     *
+     * @param table
+     *            table name (case-insensitive)
+     * @return true if rows of this table are kept in the shared cache
+     */
+    public static boolean isCached(String table)
+    {
+        initialize();
+        return table != null && tables.contains(table.toLowerCase());
+    }
+
+    /**
+     * Get a copy of a cached row.
+     *
+     * @param table
+     *            table name (case-insensitive)
+     * @param id
+     *            primary key value
+     * @return a private copy of the cached row, or <code>null</code> if the
+     *         row is not cached or has expired.
+     */
+    static TableRow get(String table, int id)
+    {
+        if (!isCached(table))
+        {
+            return null;
+        }
+
+        String key = key(table, id);
+        CachedRow cached;
+        synchronized (rows)
+        {
+            cached = rows.get(key);
+            if (cached != null && cached.isExpired())
+            {
+                rows.remove(key);
+                evictions.incrementAndGet();
+                cached = null;
+            }
+        }
+
+        if (cached == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return cached.row.copy();
+    }
+
+    /**
+     * Store a copy of a row just read from the database. Rows read by a
+     * Context with uncommitted changes are not stored, since they may never
+     * be committed.
+     *
+     * @param context
+     *            the Context which read the row
+     * @param id
+     *            primary key value
+     * @param row
+     *            the row
+     */
+    static void put(Context context, int id, TableRow row)
+    {
+        if (row == null || !isCached(row.getTable()) || (context != null && context.hasEvents()))
+        {
+            return;
+        }
+
+        CachedRow cached = new CachedRow(row.copy());
+        synchronized (rows)
+        {
+            rows.put(key(row.getTable(), id), cached);
+        }
+    }
+
+    /**
+     * Remove a row from the cache.
+     *
+     * @param table
+     *            table name (case-insensitive)
+     * @param id
+     *            primary key value
+     */
+    public static void invalidate(String table, int id)
+    {
+        if (!isCached(table))
+        {
+            return;
+        }
+
+        synchronized (rows)
+        {
+            rows.remove(key(table, id));
+        }
+    }
+
+    /**
+     * Remove all rows from the cache.
+     */
+    public static void clear()
+    {
+        initialize();
+        synchronized (rows)
+        {
+            rows.clear();
+        }
+    }
+
+    /**
+     * @return the number of rows currently cached
+     */
+    public static int getSize()
+    {
+        initialize();
+        synchronized (rows)
+        {
+            return rows.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public static long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups which had to go to the database
+     */
+    public static long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of rows evicted because the cache was full or the
+     *         row had expired
+     */
+    public static long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    private static String key(String table, int id)
+    {
+        return table.toLowerCase() + ':' + id;
+    }
+
+    private static void initialize()
+    {
+        if (initialized)
+        {
+            return;
+        }
+
+        synchronized (TableRowCache.class)
+        {
+            if (initialized)
+            {
+                return;
+            }
+
+            Set<String> configured = new HashSet<String>();
+            String tableList = ConfigurationManager.getProperty("db.cache.tables");
+            if (StringUtils.isNotBlank(tableList))
+            {
+                for (String table : tableList.split(","))
+                {
+                    if (StringUtils.isNotBlank(table))
+                    {
+                        configured.add(table.trim().toLowerCase());
+                    }
+                }
+            }
+            tables = Collections.unmodifiableSet(configured);
+            maxEntries = ConfigurationManager.getIntProperty("db.cache.max-entries", DEFAULT_MAX_ENTRIES);
+            ttlMillis = ConfigurationManager.getIntProperty("db.cache.ttl", DEFAULT_TTL) * 1000L;
+
+            rows = new LinkedHashMap<String, CachedRow>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedRow> eldest)
+                {
+                    if (size() > maxEntries)
+                    {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+            if (!tables.isEmpty())
+            {
+                log.info("Shared table row cache enabled for " + tables
+                        + " (max-entries=" + maxEntries + ", ttl=" + ttlMillis / 1000 + "s)");
+            }
+
+            initialized = true;
+        }
+    }
+
+    /** A cached row along with the time it was loaded */
+    private static class CachedRow
+    {
+        private final TableRow row;
+
+        private final long loaded = System.currentTimeMillis();
+
+        CachedRow(TableRow row)
+        {
+            this.row = row;
+        }
+
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() - loaded > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which removes modified and deleted objects from the shared
+ * {@link TableRowCache} once the transaction changing them has been committed.
+ *
+ * @version $Revision$
+ */
+public class TableRowCacheConsumer implements Consumer
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(TableRowCacheConsumer.class);
+
+    /**
+     * Initialize - allocate any resources required to operate.
+     */
+    public void initialize() throws Exception
+    {
+        // no-op
+    }
+
+    /**
+     * Consume an event
+     *
+     * @param ctx       the execution context object
+     *
+     * @param event the content event
+     */
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        int eventType = event.getEventType();
+        if (eventType != Event.MODIFY && eventType != Event.DELETE)
+        {
+            return;
+        }
+
+        String table = getTable(event.getSubjectType());
+        if (table != null)
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("Invalidating cached row " + table + ":" + event.getSubjectID());
+            }
+            TableRowCache.invalidate(table, event.getSubjectID());
+        }
+    }
+
+    /**
+     * Signal that there are no more events queued in this
+     * event stream.
+     */
+    public void end(Context ctx) throws Exception
+    {
+        // no-op
+    }
+
+    /**
+     * Finish - free any allocated resources.
+     */
+    public void finish(Context ctx) throws Exception
+    {
+        // no-op
+    }
+
+    /**
+     * Map a DSpace object type to the table holding objects of that type.
+     *
+     * @param type
+     *            object type, as defined in {@link Constants}
+     * @return the table name, or <code>null</code> for types without a table
+     */
+    private String getTable(int type)
+    {
+        switch (type)
+        {
+            case Constants.BITSTREAM:
+                return "bitstream";
+            case Constants.BUNDLE:
+                return "bundle";
+            case Constants.ITEM:
+                return "item";
+            case Constants.COLLECTION:
+                return "collection";
+            case Constants.COMMUNITY:
+                return "community";
+            case Constants.GROUP:
+                return "epersongroup";
+            case Constants.EPERSON:
+                return "eperson";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+--
+-- The contents of this file are subject to the license and copyright
+-- detailed in the LICENSE and NOTICE files at the root of the source
+-- tree and available online at
+--
+-- http://www.dspace.org/license/
+--
+
+-- ===============================================================
+-- WARNING WARNING WARNING WARNING WARNING WARNING WARNING WARNING
+--
+-- DO NOT MANUALLY RUN THIS DATABASE MIGRATION. IT WILL BE EXECUTED
+-- AUTOMATICALLY (IF NEEDED) BY "FLYWAY" WHEN YOU STARTUP DSPACE.
+-- http://flywaydb.org/
+-- ===============================================================
+
+------------------------------------------------------
+-- Stamps of the objects changed, written by
+-- CacheStampConsumer so that cached XMLUI pages can be
+-- checked without reading the whole object. The stamp
+-- of an object is its highest cachestamp_id.
+------------------------------------------------------
+CREATE SEQUENCE cachestamp_seq;
+
+CREATE TABLE cachestamp
+(
+  cachestamp_id    INTEGER PRIMARY KEY,
+  resource_type_id INTEGER,
+  resource_id      INTEGER
+);
+
+CREATE INDEX cachestamp_resource_idx ON cachestamp(resource_type_id, resource_id);
@@ -0,0 +1,36 @@
+--
+-- The contents of this file are subject to the license and copyright
+-- detailed in the LICENSE and NOTICE files at the root of the source
+-- tree and available online at
+--
+-- http://www.dspace.org/license/
+--
+
+-- ===============================================================
+-- WARNING WARNING WARNING WARNING WARNING WARNING WARNING WARNING
+--
+-- DO NOT MANUALLY RUN THIS DATABASE MIGRATION. IT WILL BE EXECUTED
+-- AUTOMATICALLY (IF NEEDED) BY "FLYWAY" WHEN YOU STARTUP DSPACE.
+-- http://flywaydb.org/
+-- ===============================================================
+
+------------------------------------------------------
+-- Curation task queue entries of DBTaskQueue, leased
+-- by the curation workers which process them
+------------------------------------------------------
+CREATE SEQUENCE curationqueue_seq;
+
+CREATE TABLE curationqueue
+(
+  curationqueue_id INTEGER PRIMARY KEY,
+  queue_name       VARCHAR2(256),
+  eperson          VARCHAR2(256),
+  submit_time      TIMESTAMP,
+  tasks            VARCHAR2(2000),
+  object_id        VARCHAR2(256),
+  attempts         INTEGER,
+  lease_owner      VARCHAR2(64),
+  visible_after    TIMESTAMP
+);
+
+CREATE INDEX curationqueue_queue_idx ON curationqueue(queue_name, visible_after);
@@ -0,0 +1,30 @@
+--
+-- The contents of this file are subject to the license and copyright
+-- detailed in the LICENSE and NOTICE files at the root of the source
+-- tree and available online at
+--
+-- http://www.dspace.org/license/
+--
+
+-- ===============================================================
+-- WARNING WARNING WARNING WARNING WARNING WARNING WARNING WARNING
+--
+-- DO NOT MANUALLY RUN THIS DATABASE MIGRATION. IT WILL BE EXECUTED
+-- AUTOMATICALLY (IF NEEDED) BY "FLYWAY" WHEN YOU STARTUP DSPACE.
+-- http://flywaydb.org/
+-- ===============================================================
+
+------------------------------------------------------
+-- Items with new or changed ORIGINAL bitstreams, queued
+-- by MediaFilterConsumer for "filter-media -u"
+------------------------------------------------------
+CREATE SEQUENCE filterqueue_seq;
+
+CREATE TABLE filterqueue
+(
+  filterqueue_id INTEGER PRIMARY KEY,
+  item_id        INTEGER,
+  queued         TIMESTAMP
+);
+
+CREATE INDEX filterqueue_item_id_idx ON filterqueue(item_id);
@@ -144,4 +144,52 @@ public class DSpaceCSVTest extends AbstractUnitTest
             fail("IO Error while creating test CSV file");
         }
     }
+
+    /**
+     * Test the reading of CSV files a chunk at a time
+     */
+    @Test
+    public void testDSpaceCSVReader() throws Exception
+    {
+        String[] csv = {"id,collection,\"dc.title[en]\",dc.contributor.author,dc.description.abstract",
+                        "1,2,Easy line,\"Lewis, Stuart\",A nice short abstract",
+                        "2,2,Two authors,\"Lewis, Stuart||Bloggs, Joe\",Two people wrote this item",
+                        "3,2,\"Two line\ntitle\",\"Lewis, Stuart\",abstract",
+                        "4,2,\"\"\"Embedded quotes\"\" here\",\"Lewis, Stuart\",\"Abstract with\ntwo\nnew lines\"",
+                        "5,2,Last line,\"Lewis, Stuart\",abstract"};
+        File file = File.createTempFile("test", ".csv");
+        BufferedWriter out = new BufferedWriter(
+                             new OutputStreamWriter(
+                             new FileOutputStream(file), "UTF-8"));
+        for (String csvLine : csv) {
+            out.write(csvLine + "\n");
+        }
+        out.close();
+
+        DSpaceCSVReader reader = new DSpaceCSVReader(file, context);
+        try
+        {
+            assertThat("testDSpaceCSVReader 0", reader.skip(1), equalTo(1));
+
+            DSpaceCSV chunk = reader.read(2);
+            assertThat("testDSpaceCSVReader 1", chunk.getCSVLines().size(), equalTo(2));
+            assertThat("testDSpaceCSVReader 2", chunk.getCSVLines().get(0).getID(), equalTo(2));
+            assertThat("testDSpaceCSVReader 3", chunk.getCSVLines().get(1).get("dc.title[en]").get(0),
+                                                equalTo("Two line\ntitle"));
+            assertThat("testDSpaceCSVReader 4", chunk.getHeadings().size(), equalTo(4));
+
+            chunk = reader.read(2);
+            assertThat("testDSpaceCSVReader 5", chunk.getCSVLines().size(), equalTo(2));
+            assertThat("testDSpaceCSVReader 6", chunk.getCSVLines().get(0).get("dc.description.abstract").get(0),
+                                                equalTo("Abstract with\ntwo\nnew lines"));
+            assertThat("testDSpaceCSVReader 7", chunk.getCSVLines().get(1).getID(), equalTo(5));
+            assertThat("testDSpaceCSVReader 8", reader.getLinesRead(), equalTo(5));
+            assertThat("testDSpaceCSVReader 9", reader.read(2), nullValue());
+        }
+        finally
+        {
+            reader.close();
+            file.delete();
+        }
+    }
 }
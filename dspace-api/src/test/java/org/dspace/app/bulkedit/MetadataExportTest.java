@@ -0,0 +1,77 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.bulkedit;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.WorkspaceItem;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class MetadataExport
+ */
+public class MetadataExportTest extends AbstractUnitTest
+{
+    /**
+     * Test that a community exported to a file gives the same CSV as one
+     * exported in memory.
+     */
+    @Test
+    public void testExportToFile() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection first = community.createCollection();
+        Collection second = community.createCollection();
+        Item item = InstallItem.installItem(context, WorkspaceItem.create(context, first, false));
+        item.addMetadata("dc", "title", null, "en", "First, \"quoted\" title");
+        item.addMetadata("dc", "contributor", "author", null, new String[] {"Lewis, Stuart", "Bloggs, Joe"});
+        item.update();
+        second.addItem(item);
+        Item other = InstallItem.installItem(context, WorkspaceItem.create(context, second, false));
+        other.addMetadata("dc", "description", "abstract", null, "Two\nlines");
+        other.update();
+        context.restoreAuthSystemState();
+
+        String expected = new MetadataExport(context, community, false).export().toString();
+
+        File file = File.createTempFile("test", ".csv");
+        try
+        {
+            int count = new MetadataExport(context, community, false).exportToFile(file.getPath());
+            assertThat("testExportToFile 0", count, equalTo(2));
+
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                assertThat("testExportToFile 1", IOUtils.toString(in, "UTF-8"), equalTo(expected));
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+        assertThat("testExportToFile 2", expected.split("\n")[0],
+                   equalTo("id,collection,dc.contributor.author,dc.description.abstract,"
+                           + "dc.identifier.uri,dc.title[en]"));
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.itemexport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Bitstream;
+import org.dspace.content.BitstreamFormat;
+import org.dspace.content.Bundle;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.ItemIterator;
+import org.dspace.content.WorkspaceItem;
+import org.dspace.core.Utils;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class ItemExport
+ */
+public class ItemExportTest extends AbstractUnitTest
+{
+    /**
+     * Test of exportAsZip method, of class ItemExport, writing to a stream.
+     */
+    @Test
+    public void testExportAsZip() throws Exception
+    {
+        byte[] repetitive = new byte[10000];
+        Arrays.fill(repetitive, (byte) 'a');
+
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        WorkspaceItem wi = WorkspaceItem.create(context, collection, false);
+        wi.getItem().addMetadata("dc", "title", null, null, "Exported");
+        Item item = InstallItem.installItem(context, wi);
+        Bundle bundle = item.createBundle("ORIGINAL");
+        Bitstream text = bundle.createBitstream(new ByteArrayInputStream(repetitive));
+        text.setName("file");
+        text.update();
+        Bitstream image = bundle.createBitstream(new ByteArrayInputStream(repetitive));
+        image.setName("file");
+        image.setFormat(BitstreamFormat.findByMIMEType(context, "image/jpeg"));
+        image.update();
+        context.restoreAuthSystemState();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ItemExport.exportAsZip(context, new ItemIterator(context, Arrays.asList(item.getID())),
+                out, 1, false);
+
+        Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+        Map<String, String> texts = new HashMap<String, String>();
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry())
+        {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            Utils.copy(zip, data);
+            entries.put(entry.getName(), entry);
+            texts.put(entry.getName(), data.toString("UTF-8"));
+        }
+        zip.close();
+
+        assertThat("testExportAsZip 0", entries.keySet().size(), equalTo(5));
+        assertThat("testExportAsZip 1", texts.get("1/dublin_core.xml"),
+                containsString("<dcvalue element=\"title\" qualifier=\"none\">Exported</dcvalue>"));
+        assertThat("testExportAsZip 2", texts.get("1/handle").trim(), equalTo(item.getHandle()));
+        assertThat("testExportAsZip 3", texts.get("1/contents"), containsString("file\tbundle:ORIGINAL"));
+        assertThat("testExportAsZip 4", texts.get("1/contents"), containsString("1_file\tbundle:ORIGINAL"));
+        assertThat("testExportAsZip 5", texts.get("1/file").length(), equalTo(10000));
+
+        // the JPEG is not compressed again, the other file is
+        ZipEntry compressed = entries.get("1/file");
+        ZipEntry stored = entries.get("1/1_file");
+        assertThat("testExportAsZip 6", compressed.getCompressedSize() < 1000, equalTo(true));
+        assertThat("testExportAsZip 7", stored.getCompressedSize() >= 10000, equalTo(true));
+        assertThat("testExportAsZip 8", texts.get("1/1_file").length(), equalTo(10000));
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.itemimport;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.ItemIterator;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class ItemImport
+ */
+public class ItemImportTest extends AbstractUnitTest
+{
+    /**
+     * Test of addItemsParallel method, of class ItemImport.
+     */
+    @Test
+    public void testAddItemsParallel() throws Exception
+    {
+        File source = createSource(5, null);
+        File mapFile = File.createTempFile("mapfile", ".txt");
+
+        // the threads import with contexts of their own, so must see these
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        context.commit();
+        try
+        {
+            new ItemImport().addItemsParallel(context, new Collection[] {collection},
+                    source.getPath(), mapFile.getPath(), false, 2, 2);
+
+            List<String> lines = FileUtils.readLines(mapFile, "UTF-8");
+            assertThat("testAddItemsParallel 0", lines.size(), equalTo(5));
+            assertThat("testAddItemsParallel 1", countItems(collection), equalTo(5));
+        }
+        finally
+        {
+            community.delete();
+            context.commit();
+            context.restoreAuthSystemState();
+            FileUtils.deleteDirectory(source);
+            mapFile.delete();
+        }
+    }
+
+    /**
+     * Test that a failed parallel import leaves the chunks committed before
+     * the failure, and only those, in the mapfile.
+     */
+    @Test
+    public void testAddItemsParallelFailure() throws Exception
+    {
+        File source = createSource(5, "4");
+        File mapFile = File.createTempFile("mapfile", ".txt");
+
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        context.commit();
+        try
+        {
+            try
+            {
+                new ItemImport().addItemsParallel(context, new Collection[] {collection},
+                        source.getPath(), mapFile.getPath(), false, 1, 2);
+                fail("testAddItemsParallelFailure 0");
+            }
+            catch (Exception e)
+            {
+                // item 4 is malformed
+            }
+
+            List<String> lines = FileUtils.readLines(mapFile, "UTF-8");
+            assertThat("testAddItemsParallelFailure 1", lines.size(), equalTo(2));
+            assertThat("testAddItemsParallelFailure 2", lines.get(0), startsWith("1 "));
+            assertThat("testAddItemsParallelFailure 3", lines.get(1), startsWith("2 "));
+
+            // item 3 was in the chunk rolled back with item 4
+            assertThat("testAddItemsParallelFailure 4", countItems(collection), equalTo(2));
+        }
+        finally
+        {
+            community.delete();
+            context.commit();
+            context.restoreAuthSystemState();
+            FileUtils.deleteDirectory(source);
+            mapFile.delete();
+        }
+    }
+
+    /**
+     * Make a simple archive of items named 1 to count, each with a title and
+     * one file.
+     */
+    private File createSource(int count, String malformed) throws Exception
+    {
+        File source = File.createTempFile("import", "");
+        source.delete();
+        source.mkdir();
+
+        for (int i = 1; i <= count; i++)
+        {
+            String name = String.valueOf(i);
+            File item = new File(source, name);
+            item.mkdir();
+
+            String dc = "<dublin_core><dcvalue element=\"title\" qualifier=\"none\">Item " + name
+                    + "</dcvalue></dublin_core>";
+            FileUtils.writeStringToFile(new File(item, "dublin_core.xml"),
+                    name.equals(malformed) ? dc.substring(0, 20) : dc, "UTF-8");
+            FileUtils.writeStringToFile(new File(item, "file.txt"), "Content of item " + name, "UTF-8");
+            FileUtils.writeStringToFile(new File(item, "contents"), "file.txt\n", "UTF-8");
+        }
+        return source;
+    }
+
+    private int countItems(Collection collection) throws Exception
+    {
+        int count = 0;
+        ItemIterator items = Collection.find(context, collection.getID()).getAllItems();
+        try
+        {
+            while (items.hasNext())
+            {
+                items.next();
+                count++;
+            }
+        }
+        finally
+        {
+            items.close();
+        }
+        return count;
+    }
+}
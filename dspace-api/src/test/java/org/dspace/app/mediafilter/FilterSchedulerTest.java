@@ -0,0 +1,143 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Bitstream;
+import org.dspace.content.BitstreamFormat;
+import org.dspace.content.Bundle;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.WorkspaceItem;
+import org.dspace.core.Context;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class FilterScheduler
+ */
+public class FilterSchedulerTest extends AbstractUnitTest
+{
+    /**
+     * Test that the renditions of an item's bitstreams, all prepared before
+     * any is stored, go in one bundle, and that a rendition stored earlier
+     * in the run is not made again.
+     */
+    @Test
+    public void testSubmit() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        Item item = InstallItem.installItem(context, WorkspaceItem.create(context, collection, false));
+        Bundle original = item.createBundle("ORIGINAL");
+        BitstreamFormat text = BitstreamFormat.findByMIMEType(context, "text/plain");
+        for (String name : new String[] {"a", "b", "a"})
+        {
+            Bitstream source = original.createBitstream(new ByteArrayInputStream(name.getBytes("UTF-8")));
+            source.setName(name);
+            source.setFormat(text);
+            source.update();
+        }
+        item.update();
+
+        FilterScheduler scheduler = new FilterScheduler(new FormatFilter[] {new UpperCaseFilter()},
+                new int[] {2}, new int[] {0});
+        try
+        {
+            scheduler.submit(context, item);
+            scheduler.finish(context);
+        }
+        finally
+        {
+            scheduler.shutdown();
+        }
+
+        try
+        {
+            Bundle[] bundles = Item.find(context, item.getID()).getBundles("UPPER");
+            assertThat("testSubmit 0", bundles.length, equalTo(1));
+
+            Bitstream[] renditions = bundles[0].getBitstreams();
+            assertThat("testSubmit 1", renditions.length, equalTo(2));
+            assertThat("testSubmit 2", renditions[0].getName(), equalTo("a.upper"));
+            assertThat("testSubmit 3", IOUtils.toString(renditions[0].retrieve(), "UTF-8"), equalTo("A"));
+            assertThat("testSubmit 4", renditions[1].getName(), equalTo("b.upper"));
+        }
+        finally
+        {
+            // items are committed once filtered, so clean up
+            community.delete();
+            context.commit();
+            context.restoreAuthSystemState();
+        }
+    }
+
+    /**
+     * Filter making upper case copies of text bitstreams.
+     */
+    private static class UpperCaseFilter implements FormatFilter, SelfRegisterInputFormats
+    {
+        public String getFilteredName(String sourceName)
+        {
+            return sourceName + ".upper";
+        }
+
+        public String getBundleName()
+        {
+            return "UPPER";
+        }
+
+        public String getFormatString()
+        {
+            return "Text";
+        }
+
+        public String getDescription()
+        {
+            return "Upper case text";
+        }
+
+        public InputStream getDestinationStream(InputStream source) throws Exception
+        {
+            return new ByteArrayInputStream(IOUtils.toString(source, "UTF-8").toUpperCase().getBytes("UTF-8"));
+        }
+
+        public boolean preProcessBitstream(Context c, Item item, Bitstream source) throws Exception
+        {
+            return true;
+        }
+
+        public void postProcessBitstream(Context c, Item item, Bitstream generatedBitstream) throws Exception
+        {
+        }
+
+        public String[] getInputMIMETypes()
+        {
+            return new String[] {"text/plain"};
+        }
+
+        public String[] getInputDescriptions()
+        {
+            return null;
+        }
+
+        public String[] getInputExtensions()
+        {
+            return null;
+        }
+    }
+}
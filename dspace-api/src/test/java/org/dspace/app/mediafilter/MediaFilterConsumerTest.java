@@ -0,0 +1,80 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Bundle;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.WorkspaceItem;
+import org.dspace.core.Constants;
+import org.dspace.event.Event;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class MediaFilterConsumer, and the queue it writes to
+ */
+public class MediaFilterConsumerTest extends AbstractUnitTest
+{
+    /**
+     * Test that only bitstreams added to the ORIGINAL bundle of archived
+     * items queue their item.
+     */
+    @Test
+    public void testConsume() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        Item item = InstallItem.installItem(context, WorkspaceItem.create(context, collection, false));
+        Bundle original = item.createBundle("ORIGINAL");
+        Bundle license = item.createBundle("LICENSE");
+        Bitstream file = original.createBitstream(new ByteArrayInputStream("file".getBytes()));
+        Bitstream text = license.createBitstream(new ByteArrayInputStream("license".getBytes()));
+        WorkspaceItem submission = WorkspaceItem.create(context, collection, false);
+        Bundle submitted = submission.getItem().createBundle("ORIGINAL");
+        Bitstream draft = submitted.createBitstream(new ByteArrayInputStream("draft".getBytes()));
+        context.restoreAuthSystemState();
+
+        MediaFilterConsumer consumer = new MediaFilterConsumer();
+        consumer.consume(context, new Event(Event.ADD, Constants.BUNDLE, license.getID(),
+                Constants.BITSTREAM, text.getID(), null));
+        consumer.consume(context, new Event(Event.ADD, Constants.BUNDLE, submitted.getID(),
+                Constants.BITSTREAM, draft.getID(), null));
+        consumer.end(context);
+        assertThat("testConsume 0", FilterQueue.getLastEntry(context), equalTo(-1));
+
+        consumer.consume(context, new Event(Event.ADD, Constants.BUNDLE, original.getID(),
+                Constants.BITSTREAM, file.getID(), null));
+        consumer.consume(context, new Event(Event.MODIFY, Constants.BITSTREAM, file.getID(), null));
+        consumer.end(context);
+
+        int lastEntry = FilterQueue.getLastEntry(context);
+        List<Integer> queued = FilterQueue.getItems(context, lastEntry);
+        assertThat("testConsume 1", queued.size(), equalTo(1));
+        assertThat("testConsume 2", queued.get(0), equalTo(item.getID()));
+
+        FilterQueue.dequeue(context, item.getID(), lastEntry);
+        assertThat("testConsume 3", FilterQueue.getItems(context, lastEntry).size(), equalTo(0));
+
+        // end() committed, so clean up
+        context.turnOffAuthorisationSystem();
+        community.delete();
+        context.restoreAuthSystemState();
+        context.commit();
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.statistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.dspace.AbstractUnitTest;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class LogAnalyser
+ */
+public class LogAnalyserTest extends AbstractUnitTest
+{
+    private static final String VIEW = "2026-10-01 10:00:00,123 INFO  org.dspace.app.webui.servlet.DSpaceServlet"
+            + " @ anonymous:session_id=ABC:ip_addr=127.0.0.1:view_item:handle=123456789/1,item_id=1";
+
+    private static final String SEARCH = "2026-10-02 10:00:00,123 WARN  org.dspace.app.webui.search.Search"
+            + " @ user@example.com:session_id=ABC:search:query=open access,results=(3,0,0)";
+
+    /**
+     * Test the splitting of log lines into their segments.
+     */
+    @Test
+    public void testGetLogLine()
+    {
+        LogLine line = LogAnalyser.getLogLine(VIEW);
+        assertThat("testGetLogLine 0", line, notNullValue());
+        assertThat("testGetLogLine 1", line.getLevel(), equalTo("INFO"));
+        assertThat("testGetLogLine 2", line.getUser(), equalTo("anonymous"));
+        assertThat("testGetLogLine 3", line.getAction(), equalTo("view_item"));
+        assertThat("testGetLogLine 4", line.getParams(), equalTo("handle=123456789/1,item_id=1"));
+        assertThat("testGetLogLine 5", LogAnalyser.unParseDate(line.getDate()).substring(0, 4), equalTo("2026"));
+
+        line = LogAnalyser.getLogLine(SEARCH);
+        assertThat("testGetLogLine 6", line.getUser(), equalTo("user@example.com"));
+        assertThat("testGetLogLine 7", line.getAction(), equalTo("search"));
+        assertThat("testGetLogLine 8", line.getParams(), equalTo("query=open access,results=(3,0,0)"));
+
+        assertThat("testGetLogLine 9", LogAnalyser.getLogLine("2026-10-01 10:00:00,123 INFO  x @ a::b:c"),
+                nullValue());
+        assertThat("testGetLogLine 10", LogAnalyser.getLogLine("2026-10-01 10:00:00,123 INFO x@ a:b:c:d"),
+                nullValue());
+        assertThat("testGetLogLine 11", LogAnalyser.getLogLine("java.lang.NullPointerException"), nullValue());
+    }
+
+    /**
+     * Test that an incremental analysis only counts the lines added since
+     * the last one, leaving a line still being written for the next one.
+     */
+    @Test
+    public void testIncremental() throws Exception
+    {
+        File dir = File.createTempFile("logs", "");
+        dir.delete();
+        dir.mkdir();
+        try
+        {
+            File config = new File(dir, "dstat.cfg");
+            FileUtils.writeStringToFile(config, "general.summary=view_item\nuser.email=on\n"
+                    + "exclude.word=the\nexclude.type=title:\nexclude.character=(\n"
+                    + "item.floor=0\nsearch.floor=0\nitem.lookup=0\nanalysis.threads=2\n", "UTF-8");
+            File out = new File(dir, "dstat.dat");
+            File state = new File(dir, "dstat.state");
+            File log = new File(dir, "dspace.log.2026-10-01");
+            File other = new File(dir, "dspace.log.2026-10-02");
+
+            append(log, VIEW + "\n" + VIEW + "\n");
+            append(other, SEARCH + "\n" + VIEW);
+            analyse(dir, config, out, state);
+            Properties first = load(out);
+            assertThat("testIncremental 0", first.getProperty("log_lines"), equalTo("3"));
+            assertThat("testIncremental 1", first.getProperty("action.view_item"), equalTo("2"));
+            assertThat("testIncremental 2", first.getProperty("warnings"), equalTo("1"));
+            assertThat("testIncremental 3", first.getProperty("search.open"), equalTo("1"));
+
+            append(other, "\n" + VIEW + "\n");
+            analyse(dir, config, out, state);
+            Properties second = load(out);
+            assertThat("testIncremental 4", second.getProperty("log_lines"), equalTo("5"));
+            assertThat("testIncremental 5", second.getProperty("action.view_item"), equalTo("4"));
+            assertThat("testIncremental 6", second.getProperty("item.123456789/1"), equalTo("4"));
+            assertThat("testIncremental 7", second.getProperty("search.access"), equalTo("1"));
+
+            // a full analysis gives the same counts
+            analyse(dir, config, out, null);
+            Properties full = load(out);
+            assertThat("testIncremental 8", full.getProperty("log_lines"), equalTo("5"));
+            assertThat("testIncremental 9", full.getProperty("action.view_item"), equalTo("4"));
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private void analyse(File dir, File config, File out, File state) throws Exception
+    {
+        LogAnalyser.processLogs(context, dir.getPath(), null, config.getPath(), out.getPath(), null, null,
+                false, (state == null) ? null : state.getPath(), 0);
+    }
+
+    private static void append(File file, String text) throws IOException
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try
+        {
+            out.write(text);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static Properties load(File file) throws IOException
+    {
+        Properties properties = new Properties();
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            properties.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        return properties;
+    }
+}
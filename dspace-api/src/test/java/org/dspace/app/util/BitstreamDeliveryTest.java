@@ -0,0 +1,169 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.WorkspaceItem;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class BitstreamDelivery
+ */
+public class BitstreamDeliveryTest extends AbstractUnitTest
+{
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    /**
+     * Test of parseRanges method, of class BitstreamDelivery.
+     */
+    @Test
+    public void testParseRanges()
+    {
+        List<long[]> ranges = BitstreamDelivery.parseRanges("bytes=0-4, 10-, -3", 20, 5);
+        assertThat("testParseRanges 0", ranges.size(), equalTo(3));
+        assertThat("testParseRanges 1", ranges.get(0), equalTo(new long[] { 0, 4 }));
+        assertThat("testParseRanges 2", ranges.get(1), equalTo(new long[] { 10, 19 }));
+        assertThat("testParseRanges 3", ranges.get(2), equalTo(new long[] { 17, 19 }));
+
+        // ends past the content are cut, unsatisfiable ranges are dropped
+        ranges = BitstreamDelivery.parseRanges("bytes=15-100,30-40,-50", 20, 5);
+        assertThat("testParseRanges 4", ranges.size(), equalTo(2));
+        assertThat("testParseRanges 5", ranges.get(0), equalTo(new long[] { 15, 19 }));
+        assertThat("testParseRanges 6", ranges.get(1), equalTo(new long[] { 0, 19 }));
+        assertThat("testParseRanges 7", BitstreamDelivery.parseRanges("bytes=20-", 20, 5).isEmpty(),
+                equalTo(true));
+
+        // invalid headers, and too many ranges, are ignored
+        assertThat("testParseRanges 8", BitstreamDelivery.parseRanges("items=0-4", 20, 5), nullValue());
+        assertThat("testParseRanges 9", BitstreamDelivery.parseRanges("bytes=5-4", 20, 5), nullValue());
+        assertThat("testParseRanges 10", BitstreamDelivery.parseRanges("bytes=a-b", 20, 5), nullValue());
+        assertThat("testParseRanges 11", BitstreamDelivery.parseRanges("bytes=", 20, 5), nullValue());
+        assertThat("testParseRanges 12", BitstreamDelivery.parseRanges("bytes=0-1,2-3", 20, 1), nullValue());
+    }
+
+    /**
+     * Test of matches method, of class BitstreamDelivery.
+     */
+    @Test
+    public void testMatches()
+    {
+        assertThat("testMatches 0", BitstreamDelivery.matches("\"abc\"", "\"abc\""), equalTo(true));
+        assertThat("testMatches 1", BitstreamDelivery.matches("\"x\", W/\"abc\"", "\"abc\""), equalTo(true));
+        assertThat("testMatches 2", BitstreamDelivery.matches("*", "\"abc\""), equalTo(true));
+        assertThat("testMatches 3", BitstreamDelivery.matches("\"abcd\"", "\"abc\""), equalTo(false));
+    }
+
+    /**
+     * Test of write method, of class BitstreamDelivery, for a file.
+     */
+    @Test
+    public void testWriteFile() throws Exception
+    {
+        File file = File.createTempFile("delivery", ".txt");
+        try
+        {
+            FileOutputStream fos = new FileOutputStream(file);
+            fos.write(CONTENT.getBytes("US-ASCII"));
+            fos.close();
+
+            BitstreamDelivery delivery = new BitstreamDelivery(file, "text/plain", null, null);
+            assertThat("testWriteFile 0", delivery.getStatus(), equalTo(HttpServletResponse.SC_OK));
+            assertThat("testWriteFile 1", write(delivery), equalTo(CONTENT));
+            assertThat("testWriteFile 2", delivery.getContentLength(), equalTo(20L));
+
+            delivery = new BitstreamDelivery(file, "text/plain", "bytes=5-9", null);
+            assertThat("testWriteFile 3", delivery.getStatus(), equalTo(HttpServletResponse.SC_PARTIAL_CONTENT));
+            assertThat("testWriteFile 4", delivery.getContentRange(), equalTo("bytes 5-9/20"));
+            assertThat("testWriteFile 5", delivery.getContentLength(), equalTo(5L));
+            assertThat("testWriteFile 6", write(delivery), equalTo("56789"));
+
+            // several ranges, in any order, make a multipart body
+            delivery = new BitstreamDelivery(file, "text/plain", "bytes=-2,0-1", null);
+            String type = delivery.getContentType();
+            assertThat("testWriteFile 7", type.startsWith("multipart/byteranges; boundary="), equalTo(true));
+            String boundary = type.substring(type.indexOf('=') + 1);
+            String body = write(delivery);
+            assertThat("testWriteFile 8", body, equalTo(
+                    "--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 18-19/20\r\n\r\nij\r\n"
+                    + "--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/20\r\n\r\n01\r\n"
+                    + "--" + boundary + "--\r\n"));
+            assertThat("testWriteFile 9", delivery.getContentLength(), equalTo((long) body.length()));
+            assertThat("testWriteFile 10", delivery.getContentRange(), nullValue());
+
+            delivery = new BitstreamDelivery(file, "text/plain", "bytes=20-", null);
+            assertThat("testWriteFile 11", delivery.getStatus(),
+                    equalTo(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE));
+            assertThat("testWriteFile 12", delivery.getContentRange(), equalTo("bytes */20"));
+            assertThat("testWriteFile 13", write(delivery), equalTo(""));
+
+            // a file has no ETag, so an If-Range never matches
+            delivery = new BitstreamDelivery(file, "text/plain", "bytes=5-9", "\"abc\"");
+            assertThat("testWriteFile 14", delivery.getStatus(), equalTo(HttpServletResponse.SC_OK));
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of delivering a bitstream, with its ETag.
+     */
+    @Test
+    public void testBitstream() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Community community = Community.create(null, context);
+        Collection collection = community.createCollection();
+        Item item = InstallItem.installItem(context, WorkspaceItem.create(context, collection, false));
+        Bitstream bitstream = item.createBundle("ORIGINAL").createBitstream(
+                new ByteArrayInputStream(CONTENT.getBytes("US-ASCII")));
+        context.restoreAuthSystemState();
+
+        String etag = '"' + bitstream.getChecksum() + '"';
+        assertThat("testBitstream 0", BitstreamDelivery.getETag(bitstream), equalTo(etag));
+
+        BitstreamDelivery delivery = new BitstreamDelivery(context, bitstream, "text/plain", null, null, etag);
+        assertThat("testBitstream 1", delivery.getStatus(), equalTo(HttpServletResponse.SC_NOT_MODIFIED));
+        assertThat("testBitstream 2", delivery.hasBody(), equalTo(false));
+        delivery.close();
+
+        delivery = new BitstreamDelivery(context, bitstream, "text/plain", "bytes=10-", etag, "\"other\"");
+        assertThat("testBitstream 3", delivery.getStatus(), equalTo(HttpServletResponse.SC_PARTIAL_CONTENT));
+        assertThat("testBitstream 4", write(delivery), equalTo("abcdefghij"));
+
+        // the client's copy is out of date, so it gets everything
+        delivery = new BitstreamDelivery(context, bitstream, "text/plain", "bytes=10-", "\"other\"", null);
+        assertThat("testBitstream 5", delivery.getStatus(), equalTo(HttpServletResponse.SC_OK));
+        assertThat("testBitstream 6", write(delivery), equalTo(CONTENT));
+    }
+
+    private String write(BitstreamDelivery delivery) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        delivery.write(out);
+        delivery.close();
+        return out.toString("US-ASCII");
+    }
+}
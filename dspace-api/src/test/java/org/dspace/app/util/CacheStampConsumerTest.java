@@ -0,0 +1,97 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.io.ByteArrayInputStream;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Bitstream;
+import org.dspace.content.Bundle;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.InstallItem;
+import org.dspace.content.Item;
+import org.dspace.content.WorkspaceItem;
+import org.dspace.core.Constants;
+import org.dspace.event.Event;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class CacheStampConsumer, and the stamps it writes
+ */
+public class CacheStampConsumerTest extends AbstractUnitTest
+{
+    /**
+     * Test that changes stamp the objects whose pages show them, and only
+     * those.
+     */
+    @Test
+    public void testConsume() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Community parent = Community.create(null, context);
+        Community community = parent.createSubcommunity();
+        Collection collection = community.createCollection();
+        Item item = InstallItem.installItem(context, WorkspaceItem.create(context, collection, false));
+        Item other = InstallItem.installItem(context, WorkspaceItem.create(context, collection, false));
+        Bundle bundle = item.createBundle("ORIGINAL");
+        Bitstream file = bundle.createBitstream(new ByteArrayInputStream("file".getBytes()));
+        context.restoreAuthSystemState();
+
+        assertThat("testConsume 0", stamp(item), equalTo(CacheStamp.UNCHANGED));
+
+        CacheStampConsumer consumer = new CacheStampConsumer();
+        consumer.consume(context, new Event(Event.MODIFY, Constants.BITSTREAM, file.getID(), null));
+        consumer.end(context);
+        int first = stamp(item);
+        assertThat("testConsume 1", first, not(equalTo(CacheStamp.UNCHANGED)));
+        assertThat("testConsume 2", stamp(other), equalTo(CacheStamp.UNCHANGED));
+        assertThat("testConsume 3", stamp(collection), equalTo(CacheStamp.UNCHANGED));
+
+        consumer.consume(context, new Event(Event.MODIFY_METADATA, Constants.BUNDLE, bundle.getID(), null));
+        consumer.end(context);
+        assertThat("testConsume 4", stamp(item), not(equalTo(first)));
+
+        // a renamed collection changes the page of its community, but not
+        // of the community above
+        consumer.consume(context, new Event(Event.MODIFY_METADATA, Constants.COLLECTION, collection.getID(), null));
+        consumer.end(context);
+        assertThat("testConsume 5", stamp(collection), not(equalTo(CacheStamp.UNCHANGED)));
+        assertThat("testConsume 6", stamp(community), not(equalTo(CacheStamp.UNCHANGED)));
+        assertThat("testConsume 7", stamp(parent), equalTo(CacheStamp.UNCHANGED));
+
+        consumer.consume(context, new Event(Event.REMOVE, Constants.COLLECTION, collection.getID(),
+                Constants.ITEM, other.getID(), null));
+        consumer.end(context);
+        assertThat("testConsume 8", stamp(other), not(equalTo(CacheStamp.UNCHANGED)));
+
+        // end() committed, so clean up
+        context.turnOffAuthorisationSystem();
+        parent.delete();
+        context.restoreAuthSystemState();
+        context.commit();
+    }
+
+    private int stamp(Item item) throws Exception
+    {
+        return CacheStamp.get(context, Constants.ITEM, item.getID());
+    }
+
+    private int stamp(Collection collection) throws Exception
+    {
+        return CacheStamp.get(context, Constants.COLLECTION, collection.getID());
+    }
+
+    private int stamp(Community community) throws Exception
+    {
+        return CacheStamp.get(context, Constants.COMMUNITY, community.getID());
+    }
+}
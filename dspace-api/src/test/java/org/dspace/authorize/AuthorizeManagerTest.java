@@ -0,0 +1,71 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.authorize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Community;
+import org.dspace.content.DSpaceObject;
+import org.dspace.core.Constants;
+import org.dspace.eperson.Group;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class AuthorizeManager
+ */
+public class AuthorizeManagerTest extends AbstractUnitTest
+{
+    /**
+     * Test of authorizeActionBoolean for a list of objects, and that cached
+     * results are dropped when policies change.
+     */
+    @Test
+    public void testAuthorizeActionBooleanList() throws Exception
+    {
+        // New communities can be read by anonymous
+        context.turnOffAuthorisationSystem();
+        Community readable1 = Community.create(null, context);
+        Community hidden = Community.create(null, context);
+        Community readable2 = Community.create(null, context);
+        AuthorizeManager.removeAllPolicies(context, hidden);
+        context.restoreAuthSystemState();
+
+        List<DSpaceObject> objects = new ArrayList<DSpaceObject>();
+        objects.add(readable1);
+        objects.add(null);
+        objects.add(hidden);
+        objects.add(readable2);
+
+        boolean[] authorized = AuthorizeManager.authorizeActionBoolean(context, objects, Constants.READ);
+        assertTrue("testAuthorizeActionBooleanList 0",
+                Arrays.equals(new boolean[] { true, false, false, true }, authorized));
+        for (int i = 0; i < objects.size(); i++)
+        {
+            assertEquals("testAuthorizeActionBooleanList 1", authorized[i],
+                    AuthorizeManager.authorizeActionBoolean(context, objects.get(i), Constants.READ));
+        }
+
+        context.turnOffAuthorisationSystem();
+        AuthorizeManager.addPolicy(context, hidden, Constants.READ, Group.find(context, 0));
+        context.restoreAuthSystemState();
+        assertTrue("testAuthorizeActionBooleanList 2",
+                AuthorizeManager.authorizeActionBoolean(context, hidden, Constants.READ));
+
+        context.turnOffAuthorisationSystem();
+        AuthorizeManager.removeAllPolicies(context, readable1);
+        context.restoreAuthSystemState();
+        assertTrue("testAuthorizeActionBooleanList 3",
+                Arrays.equals(new boolean[] { false, false, true, true },
+                        AuthorizeManager.authorizeActionBoolean(context, objects, Constants.READ)));
+    }
+}
@@ -1032,6 +1032,8 @@ public class CommunityTest extends AbstractDSpaceObjectTest
             // Allow Community DELETE perms (needed to actually delete subcommunity)
             AuthorizeManager.authorizeAction((Context) any, (Community) any,
                     Constants.DELETE, true); result = null;
+            AuthorizeManager.authorizeActionBoolean((Context) any, (Community) any,
+                    Constants.DELETE, true); result = true;
         }};
 
         // Turn off authorization temporarily to create a new top-level community
@@ -7,6 +7,7 @@
  */
 package org.dspace.content;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -17,6 +18,7 @@ import org.apache.commons.lang.time.DateUtils;
 import org.dspace.authorize.AuthorizeException;
 import org.apache.log4j.Logger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -149,6 +151,89 @@ public class ItemTest  extends AbstractDSpaceObjectTest
         assertTrue("testFindAll 1",added);
     }
 
+    /**
+     * Test of findAllUnfiltered and findAllUnfilteredAfter methods, of class Item.
+     */
+    @Test
+    public void testFindAllUnfilteredPaged() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Item second = Item.create(context);
+        second.setArchived(true);
+        second.update();
+        Item draft = Item.create(context);
+        context.restoreAuthSystemState();
+
+        // page through everything by ID, two at a time
+        List<Integer> ids = new ArrayList<Integer>();
+        int last = -1;
+        boolean more = true;
+        while (more)
+        {
+            ItemIterator page = Item.findAllUnfilteredAfter(context, last, 2);
+            int count = 0;
+            while (page.hasNext())
+            {
+                last = page.next().getID();
+                ids.add(last);
+                count++;
+            }
+            page.close();
+            more = (count == 2);
+        }
+        assertTrue("testFindAllUnfilteredPaged 0", ids.contains(it.getID()));
+        assertTrue("testFindAllUnfilteredPaged 1", ids.contains(second.getID()));
+        assertFalse("testFindAllUnfilteredPaged 2", ids.contains(draft.getID()));
+        List<Integer> sorted = new ArrayList<Integer>(ids);
+        Collections.sort(sorted);
+        assertThat("testFindAllUnfilteredPaged 3", ids, equalTo(sorted));
+
+        ItemIterator page = Item.findAllUnfilteredAfter(context, it.getID(), 1);
+        assertThat("testFindAllUnfilteredPaged 4", page.next().getID(), equalTo(second.getID()));
+        page.close();
+
+        page = Item.findAllUnfiltered(context, 1, ids.indexOf(second.getID()));
+        assertThat("testFindAllUnfilteredPaged 5", page.next().getID(), equalTo(second.getID()));
+        assertFalse("testFindAllUnfilteredPaged 6", page.hasNext());
+        page.close();
+    }
+
+    /**
+     * Test of findAll method with a list of IDs, of class Item.
+     */
+    @Test
+    public void testFindAllByIDs() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        it.addMetadata("dc", "title", null, null, "bulk loaded");
+        it.update();
+        Bundle bundle = it.createBundle("ORIGINAL");
+        bundle.createBitstream(new ByteArrayInputStream("bulk".getBytes()));
+        context.restoreAuthSystemState();
+        context.commit();
+
+        // Load into a fresh context, so nothing is cached yet
+        Context other = new Context();
+        try
+        {
+            Item[] found = Item.findAll(other, new int[] { it.getID(), -1, it.getID() });
+            assertThat("testFindAllByIDs 0", found.length, equalTo(3));
+            assertThat("testFindAllByIDs 1", found[0].getID(), equalTo(it.getID()));
+            assertThat("testFindAllByIDs 2", found[1], nullValue());
+            assertThat("testFindAllByIDs 3", found[2], sameInstance(found[0]));
+            assertThat("testFindAllByIDs 4", found[0].getName(), equalTo("bulk loaded"));
+            assertThat("testFindAllByIDs 5", found[0].getHandle(), equalTo(it.getHandle()));
+            assertThat("testFindAllByIDs 6", found[0].getBundles("ORIGINAL").length, equalTo(1));
+            assertThat("testFindAllByIDs 7", found[0].getBundles("ORIGINAL")[0].getBitstreams().length,
+                    equalTo(1));
+            assertThat("testFindAllByIDs 8", Item.find(other, it.getID()), sameInstance(found[0]));
+        }
+        finally
+        {
+            other.abort();
+        }
+    }
+
     /**
      * Test of findBySubmitter method, of class Item.
      */
@@ -295,6 +380,47 @@ public class ItemTest  extends AbstractDSpaceObjectTest
         assertTrue("testGetMetadata_4args 1",dc.length == 0);
     }
 
+    /**
+     * Test of getMetadataView method, of class Item.
+     */
+    @Test
+    public void testGetMetadataView()
+    {
+        it.addMetadata("dc", "contributor", "author", null, "author0");
+        it.addMetadata("dc", "contributor", "author", "en", "author1");
+        it.addMetadata("dc", "contributor", null, null, "contributor0");
+        it.addMetadata("dc", "title", null, null, "title0");
+
+        List<Metadatum> view = it.getMetadataView("dc", "contributor", "author", Item.ANY);
+        assertThat("testGetMetadataView 0", view.size(), equalTo(2));
+        assertThat("testGetMetadataView 1", view.get(0).value, equalTo("author0"));
+        assertThat("testGetMetadataView 2", view.get(1).value, equalTo("author1"));
+        assertThat("testGetMetadataView 3", it.getMetadataView("dc", "contributor", "author", Item.ANY),
+                sameInstance(view));
+
+        assertThat("testGetMetadataView 4", it.getMetadataView("dc", "contributor", "author", "en").size(), equalTo(1));
+        assertThat("testGetMetadataView 5", it.getMetadataView("dc", "contributor", null, Item.ANY).size(), equalTo(1));
+        assertThat("testGetMetadataView 6", it.getMetadataView("dc", "contributor", Item.ANY, Item.ANY).size(), equalTo(3));
+        assertThat("testGetMetadataView 7", it.getMetadataView("dc", "subject", null, Item.ANY).size(), equalTo(0));
+        assertThat("testGetMetadataView 8", it.getMetadataView("dcterms", "title", null, Item.ANY).size(), equalTo(0));
+
+        // Changes to the item must be visible in later lookups
+        it.addMetadata("dc", "contributor", "author", null, "author2");
+        assertThat("testGetMetadataView 9", it.getMetadataView("dc", "contributor", "author", Item.ANY).size(), equalTo(3));
+        it.clearMetadata("dc", "contributor", "author", "en");
+        assertThat("testGetMetadataView 10", it.getMetadata("dc", "contributor", "author", Item.ANY).length, equalTo(2));
+
+        try
+        {
+            view.add(new Metadatum());
+            fail("Exception expected");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // expected
+        }
+    }
+
     /**
      * Test of getMetadataByMetadataString method, of class Item.
      */
@@ -1687,6 +1813,8 @@ public class ItemTest  extends AbstractDSpaceObjectTest
             // Disallow Item WRITE perms
             AuthorizeManager.authorizeAction((Context) any, (Item) any,
                     Constants.WRITE); result = new AuthorizeException();
+            AuthorizeManager.authorizeActionBoolean((Context) any, (Item) any,
+                    Constants.WRITE); result = false;
             // Disallow parent Community WRITE and ADD perms
             AuthorizeManager.authorizeAction((Context) any, (Community) any,
                     Constants.WRITE,anyBoolean); result = new AuthorizeException();
@@ -572,6 +572,27 @@ public class ContextTest extends AbstractUnitTest
         cleanupContext(instance);
     }
 
+    /**
+     * Test that the authorization cache forgets the least recently used
+     * checks beyond its maximum size.
+     */
+    @Test
+    public void testCacheAuthorization() throws SQLException
+    {
+        Context instance = new Context();
+
+        instance.cacheAuthorization("first", true);
+        for (int i = 0; i < 10000; i++)
+        {
+            instance.cacheAuthorization("check" + i, false);
+        }
+        assertThat("testCacheAuthorization 0", instance.getCachedAuthorization("first"), nullValue());
+        assertThat("testCacheAuthorization 1", instance.getCachedAuthorization("check9999"), equalTo(Boolean.FALSE));
+
+        // Cleanup our context
+        cleanupContext(instance);
+    }
+
     /**
      * Test of finalize method, of class Context.
      */
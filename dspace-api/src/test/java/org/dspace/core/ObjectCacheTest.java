@@ -0,0 +1,179 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.core;
+
+import org.dspace.content.DSpaceObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class ObjectCache
+ */
+public class ObjectCacheTest
+{
+    /**
+     * Test of get, put and remove, including removal from the middle of a
+     * probe sequence.
+     */
+    @Test
+    public void testPutGetRemove()
+    {
+        ObjectCache cache = new ObjectCache(0);
+        for (int id = 0; id < 1000; id++)
+        {
+            cache.put("s" + id, id);
+            cache.put(Integer.valueOf(id), id);
+        }
+        assertThat("testPutGetRemove 0", cache.size(), equalTo(2000));
+        assertThat("testPutGetRemove 1", cache.size(String.class), equalTo(1000));
+
+        for (int id = 0; id < 1000; id += 2)
+        {
+            cache.remove(String.class, id);
+        }
+        assertThat("testPutGetRemove 2", cache.size(), equalTo(1500));
+
+        for (int id = 0; id < 1000; id++)
+        {
+            Object expected = (id % 2 == 0) ? null : "s" + id;
+            assertThat("testPutGetRemove 3", cache.get(String.class, id), equalTo(expected));
+            assertThat("testPutGetRemove 4", cache.get(Integer.class, id), equalTo((Object) id));
+        }
+
+        assertThat("testPutGetRemove 5", cache.get(Long.class, 1), nullValue());
+    }
+
+    /**
+     * Test that a full cache evicts the least recently used unmodified
+     * DSpaceObjects, and nothing else.
+     */
+    @Test
+    public void testEviction()
+    {
+        ObjectCache cache = new ObjectCache(100);
+        cache.put("s0", 0);
+        for (int id = 0; id < 99; id++)
+        {
+            cache.put(new TestObject(id, false), id);
+        }
+
+        // Touch object 0, so it is the most recently used
+        cache.get(TestObject.class, 0);
+        cache.put(new TestObject(100, false), 100);
+
+        assertThat("testEviction 0", cache.size(), equalTo(75));
+        assertThat("testEviction 1", cache.getEvictionCount(), equalTo(26L));
+        assertThat("testEviction 2", cache.get(TestObject.class, 0), notNullValue());
+        assertThat("testEviction 3", cache.get(TestObject.class, 1), nullValue());
+        assertThat("testEviction 4", cache.get(TestObject.class, 100), notNullValue());
+        assertThat("testEviction 5", cache.get(String.class, 0), equalTo((Object) "s0"));
+    }
+
+    /**
+     * Test that a cache full of modified objects is not scanned for objects
+     * to evict on every insert.
+     */
+    @Test
+    public void testEvictionBackOff()
+    {
+        ObjectCache cache = new ObjectCache(100);
+        for (int id = 0; id < 100; id++)
+        {
+            cache.put(new TestObject(id, true), id);
+        }
+
+        // Only object 100 can be evicted, then nothing is evicted for a while
+        for (int id = 100; id < 120; id++)
+        {
+            cache.put(new TestObject(id, false), id);
+        }
+        assertThat("testEvictionBackOff 0", cache.getEvictionCount(), equalTo(1L));
+        assertThat("testEvictionBackOff 1", cache.size(), equalTo(119));
+        assertThat("testEvictionBackOff 2", cache.get(TestObject.class, 100), nullValue());
+
+        // Once the cache has grown by a quarter, it evicts again
+        for (int id = 120; id < 127; id++)
+        {
+            cache.put(new TestObject(id, false), id);
+        }
+        assertThat("testEvictionBackOff 3", cache.getEvictionCount(), equalTo(27L));
+        assertThat("testEvictionBackOff 4", cache.size(), equalTo(100));
+        assertThat("testEvictionBackOff 5", cache.get(TestObject.class, 99), notNullValue());
+    }
+
+    /**
+     * Test that clear empties the cache.
+     */
+    @Test
+    public void testClear()
+    {
+        ObjectCache cache = new ObjectCache(0);
+        cache.put("s", 1);
+        cache.clear();
+        assertThat("testClear 0", cache.size(), equalTo(0));
+        assertThat("testClear 1", cache.get(String.class, 1), nullValue());
+    }
+
+    /**
+     * A DSpaceObject, with or without unsaved changes.
+     */
+    private static class TestObject extends DSpaceObject
+    {
+        private final int id;
+
+        private final boolean modified;
+
+        TestObject(int id, boolean modified)
+        {
+            this.id = id;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean isModified()
+        {
+            return modified;
+        }
+
+        @Override
+        public int getType()
+        {
+            return Constants.ITEM;
+        }
+
+        @Override
+        public int getID()
+        {
+            return id;
+        }
+
+        @Override
+        public String getHandle()
+        {
+            return null;
+        }
+
+        @Override
+        public String getName()
+        {
+            return null;
+        }
+
+        @Override
+        public void update()
+        {
+        }
+
+        @Override
+        public void updateLastModified()
+        {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.curate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class DBTaskQueue
+ */
+public class DBTaskQueueTest extends AbstractUnitTest
+{
+    private static final String QUEUE = "testqueue";
+
+    private TaskQueueEntry newEntry(String objId)
+    {
+        return new TaskQueueEntry("test@example.com", System.currentTimeMillis(),
+                Arrays.asList("noop", "profileformats"), objId);
+    }
+
+    @After
+    @Override
+    public void destroy()
+    {
+        try
+        {
+            DatabaseManager.updateQuery(context, "DELETE FROM curationqueue");
+            context.commit();
+        }
+        catch (Exception e)
+        {
+            fail("Unable to empty curationqueue: " + e.getMessage());
+        }
+        super.destroy();
+    }
+
+    /**
+     * Test that an entry leased by one reader is not handed to another, and
+     * is gone once completed.
+     */
+    @Test
+    public void testLease() throws Exception
+    {
+        DBTaskQueue queue = new DBTaskQueue(3600, 0, 3);
+        queue.enqueue(QUEUE, newEntry("123456789/1"));
+        queue.enqueue(QUEUE, newEntry("123456789/2"));
+
+        List<TaskQueueEntry> first = queue.lease(QUEUE, "reader1", 1);
+        assertThat("testLease 0", first.size(), equalTo(1));
+        assertThat("testLease 1", first.get(0).getObjectId(), equalTo("123456789/1"));
+        assertThat("testLease 2", first.get(0).getTaskNames(), equalTo(Arrays.asList("noop", "profileformats")));
+        assertThat("testLease 3", first.get(0).getEpersonId(), equalTo("test@example.com"));
+
+        List<TaskQueueEntry> second = queue.lease(QUEUE, "reader2", 5);
+        assertThat("testLease 4", second.size(), equalTo(1));
+        assertThat("testLease 5", second.get(0).getObjectId(), equalTo("123456789/2"));
+        assertThat("testLease 6", queue.lease(QUEUE, "reader3", 5).size(), equalTo(0));
+
+        // completing under another reader's name does nothing
+        queue.complete(QUEUE, "reader2", first.get(0));
+        queue.complete(QUEUE, "reader1", first.get(0));
+        queue.complete(QUEUE, "reader2", second.get(0));
+        assertThat("testLease 7", queue.queueNames().length, equalTo(0));
+    }
+
+    /**
+     * Test that an entry whose lease runs out is handed out again.
+     */
+    @Test
+    public void testLeaseExpiry() throws Exception
+    {
+        DBTaskQueue queue = new DBTaskQueue(0, 0, 3);
+        queue.enqueue(QUEUE, newEntry("123456789/1"));
+
+        assertThat("testLeaseExpiry 0", queue.lease(QUEUE, "reader1", 1).size(), equalTo(1));
+        Thread.sleep(10);
+        assertThat("testLeaseExpiry 1", queue.lease(QUEUE, "reader2", 1).size(), equalTo(1));
+    }
+
+    /**
+     * Test that a failed entry is retried, then moved to the dead-letter
+     * queue.
+     */
+    @Test
+    public void testFail() throws Exception
+    {
+        DBTaskQueue queue = new DBTaskQueue(3600, 0, 2);
+        queue.enqueue(QUEUE, newEntry("123456789/1"));
+
+        for (int i = 0; i < 2; i++)
+        {
+            List<TaskQueueEntry> entries = queue.lease(QUEUE, "reader1", 1);
+            assertThat("testFail " + i, entries.size(), equalTo(1));
+            queue.fail(QUEUE, "reader1", entries.get(0));
+        }
+
+        assertThat("testFail 2", queue.lease(QUEUE, "reader1", 1).size(), equalTo(0));
+        assertThat("testFail 3", Arrays.asList(queue.queueNames()),
+                equalTo(Arrays.asList(QUEUE + DBTaskQueue.DEAD_LETTER_SUFFIX)));
+
+        List<TaskQueueEntry> dead = queue.lease(QUEUE + DBTaskQueue.DEAD_LETTER_SUFFIX, "reader1", 1);
+        assertThat("testFail 4", dead.size(), equalTo(1));
+        assertThat("testFail 5", dead.get(0).getObjectId(), equalTo("123456789/1"));
+    }
+
+    /**
+     * Test the single reader interface of TaskQueue.
+     */
+    @Test
+    public void testDequeue() throws Exception
+    {
+        DBTaskQueue queue = new DBTaskQueue(3600, 0, 3);
+        queue.enqueue(QUEUE, newEntry("123456789/1"));
+        queue.enqueue(QUEUE, newEntry("123456789/2"));
+
+        assertThat("testDequeue 0", queue.dequeue(QUEUE, 1L).size(), equalTo(2));
+        queue.release(QUEUE, 1L, false);
+        assertThat("testDequeue 1", queue.dequeue(QUEUE, 2L).size(), equalTo(2));
+        queue.release(QUEUE, 2L, true);
+        assertThat("testDequeue 2", queue.queueNames().length, equalTo(0));
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import org.dspace.AbstractUnitTest;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class GroupHierarchy, through the membership methods of
+ * Group
+ */
+public class GroupHierarchyTest extends AbstractUnitTest
+{
+    /**
+     * Test that membership through nested groups follows changes to the
+     * nesting.
+     */
+    @Test
+    public void testNestedMembership() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        Group top = Group.create(context);
+        Group middle = Group.create(context);
+        Group bottom = Group.create(context);
+        bottom.addMember(eperson);
+        bottom.update();
+        middle.addMember(bottom);
+        middle.update();
+        top.addMember(middle);
+        top.update();
+
+        assertTrue("testNestedMembership 0", Group.isMember(context, eperson, top.getID()));
+        assertTrue("testNestedMembership 1", Group.allMemberGroupIDs(context, eperson).contains(middle.getID()));
+        assertThat("testNestedMembership 2", Group.allMemberIDs(context, top).contains(eperson.getID()), equalTo(true));
+
+        GroupHierarchy hierarchy = GroupHierarchy.get(context);
+        assertTrue("testNestedMembership 3", hierarchy.isAncestor(bottom.getID(), top.getID()));
+        assertFalse("testNestedMembership 4", hierarchy.isAncestor(top.getID(), bottom.getID()));
+        assertThat("testNestedMembership 5", hierarchy.getDescendants(top.getID()).length, equalTo(2));
+
+        top.removeMember(middle);
+        top.update();
+        context.restoreAuthSystemState();
+
+        assertFalse("testNestedMembership 6", Group.isMember(context, eperson, top.getID()));
+        assertTrue("testNestedMembership 7", Group.isMember(context, eperson, middle.getID()));
+        assertThat("testNestedMembership 8", GroupHierarchy.get(context).getDescendants(top.getID()).length, equalTo(0));
+    }
+}
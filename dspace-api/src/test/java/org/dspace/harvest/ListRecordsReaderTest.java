@@ -0,0 +1,93 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.harvest;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.dspace.AbstractUnitTest;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class ListRecordsReader
+ */
+public class ListRecordsReaderTest extends AbstractUnitTest
+{
+    private static final Namespace OAI = Namespace.getNamespace("http://www.openarchives.org/OAI/2.0/");
+
+    private static final Namespace DC = Namespace.getNamespace("dc", "http://purl.org/dc/elements/1.1/");
+
+    /**
+     * Test of read method, of class ListRecordsReader, with a page of
+     * records and a resumption token.
+     */
+    @Test
+    public void testRead() throws Exception
+    {
+        String page = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<ListRecords>"
+                + "<record><header><identifier>oai:test:1</identifier></header>"
+                + "<metadata><oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\""
+                + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+                + "<dc:title xml:lang=\"en\">First &amp; only</dc:title>"
+                + "</oai_dc:dc></metadata></record>"
+                + "<record><header status=\"deleted\"><identifier>oai:test:2</identifier></header></record>"
+                + "<resumptionToken cursor=\"0\"> token-2 </resumptionToken>"
+                + "</ListRecords></OAI-PMH>";
+
+        ListRecordsReader reader = new ListRecordsReader("http://localhost/oai", null, null, null, "oai_dc");
+        reader.read(new ByteArrayInputStream(page.getBytes("UTF-8")));
+
+        assertThat("testRead 0", reader.getRequestURL(),
+                equalTo("http://localhost/oai?verb=ListRecords&metadataPrefix=oai_dc"));
+        assertThat("testRead 1", reader.getErrors().isEmpty(), equalTo(true));
+        assertThat("testRead 2", reader.getResumptionToken(), equalTo("token-2"));
+
+        List<Element> records = reader.getRecords();
+        assertThat("testRead 3", records.size(), equalTo(2));
+
+        Element first = records.get(0);
+        assertThat("testRead 4", first.getChild("header", OAI).getChildText("identifier", OAI),
+                equalTo("oai:test:1"));
+        Element dc = (Element) first.getChild("metadata", OAI).getChildren().get(0);
+        Element title = dc.getChild("title", DC);
+        assertThat("testRead 5", title.getText(), equalTo("First & only"));
+        assertThat("testRead 6", title.getAttributeValue("lang", Namespace.XML_NAMESPACE), equalTo("en"));
+
+        Element second = records.get(1);
+        assertThat("testRead 7", second.getChild("header", OAI).getAttributeValue("status"),
+                equalTo("deleted"));
+    }
+
+    /**
+     * Test of read method, of class ListRecordsReader, with OAI-PMH errors.
+     */
+    @Test
+    public void testReadErrors() throws Exception
+    {
+        String page = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<error code=\"noRecordsMatch\">No records</error>"
+                + "</OAI-PMH>";
+
+        ListRecordsReader reader = new ListRecordsReader("http://localhost/oai", "token 1");
+        reader.read(new ByteArrayInputStream(page.getBytes("UTF-8")));
+
+        assertThat("testReadErrors 0", reader.getRequestURL(),
+                equalTo("http://localhost/oai?verb=ListRecords&resumptionToken=token+1"));
+        assertThat("testReadErrors 1", reader.getErrors().contains("noRecordsMatch"), equalTo(true));
+        assertThat("testReadErrors 2", reader.getRecords().size(), equalTo(0));
+        assertThat("testReadErrors 3", reader.getResumptionToken(), nullValue());
+    }
+}
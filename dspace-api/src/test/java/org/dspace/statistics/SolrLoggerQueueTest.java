@@ -0,0 +1,173 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class SolrLoggerQueue
+ */
+public class SolrLoggerQueueTest
+{
+    /**
+     * Solr server which records the size of every batch it receives, and
+     * can be held up until released.
+     */
+    private static class RecordingSolrServer extends SolrServer
+    {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch release;
+
+        RecordingSolrServer(CountDownLatch release)
+        {
+            this.release = release;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request)
+        {
+            try
+            {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(((UpdateRequest) request).getDocuments().size());
+            return new NamedList<Object>();
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+    }
+
+    private static SolrInputDocument doc(int id)
+    {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", id);
+        return doc;
+    }
+
+    /**
+     * Test that documents are sent in batches, enriched, and all sent on
+     * shutdown.
+     */
+    @Test
+    public void testBatchesAndDrain()
+    {
+        RecordingSolrServer solr = new RecordingSolrServer(new CountDownLatch(0));
+        SolrLoggerQueue queue = new SolrLoggerQueue(solr, 100, 10, 60000, 0,
+                new SolrLoggerQueue.Enricher()
+                {
+                    @Override
+                    public void enrich(SolrInputDocument doc)
+                    {
+                        doc.addField("enriched", true);
+                    }
+                });
+
+        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>();
+        for (int i = 0; i < 25; i++)
+        {
+            docs.add(doc(i));
+            assertTrue("testBatchesAndDrain 0", queue.offer(docs.get(i)));
+        }
+        queue.shutdown(10000);
+
+        assertThat("testBatchesAndDrain 1", queue.getEnqueuedCount(), equalTo(25L));
+        assertThat("testBatchesAndDrain 2", queue.getFlushedCount(), equalTo(25L));
+        assertThat("testBatchesAndDrain 3", queue.getDroppedCount(), equalTo(0L));
+        int sent = 0;
+        for (int size : solr.batches)
+        {
+            assertTrue("testBatchesAndDrain 4", size <= 10);
+            sent += size;
+        }
+        assertThat("testBatchesAndDrain 5", sent, equalTo(25));
+        assertThat("testBatchesAndDrain 6", docs.get(24).getFieldValue("enriched"), equalTo((Object) true));
+
+        assertFalse("testBatchesAndDrain 7", queue.offer(doc(25)));
+        assertThat("testBatchesAndDrain 8", queue.getDroppedCount(), equalTo(1L));
+    }
+
+    /**
+     * Test that shutting down an idle queue does not wait for the flush
+     * interval.
+     */
+    @Test
+    public void testShutdownIdle()
+    {
+        SolrLoggerQueue queue = new SolrLoggerQueue(new RecordingSolrServer(new CountDownLatch(0)),
+                10, 10, 60000, 0, null);
+        long start = System.currentTimeMillis();
+        queue.shutdown(30000);
+        assertTrue("testShutdownIdle 0", System.currentTimeMillis() - start < 10000);
+    }
+
+    /**
+     * Test that shutdownAll sends what is queued and stops the background
+     * thread.
+     */
+    @Test
+    public void testShutdownAll()
+    {
+        RecordingSolrServer solr = new RecordingSolrServer(new CountDownLatch(0));
+        SolrLoggerQueue queue = new SolrLoggerQueue(solr, 10, 10, 60000, 0, null);
+        queue.offer(doc(0));
+        queue.offer(doc(1));
+
+        SolrLoggerQueue.shutdownAll();
+        assertThat("testShutdownAll 0", queue.getFlushedCount(), equalTo(2L));
+        assertFalse("testShutdownAll 1", queue.offer(doc(2)));
+    }
+
+    /**
+     * Test that documents are dropped when the queue is full.
+     */
+    @Test
+    public void testDropWhenFull()
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSolrServer solr = new RecordingSolrServer(release);
+        SolrLoggerQueue queue = new SolrLoggerQueue(solr, 5, 1, 60000, 0, null);
+
+        // The first document may be taken by the background thread, which
+        // then waits for Solr, so at most 6 can be accepted
+        int accepted = 0;
+        for (int i = 0; i < 20; i++)
+        {
+            if (queue.offer(doc(i)))
+            {
+                accepted++;
+            }
+        }
+        assertTrue("testDropWhenFull 0", accepted >= 5 && accepted <= 6);
+        assertThat("testDropWhenFull 1", queue.getDroppedCount(), equalTo((long) (20 - accepted)));
+
+        release.countDown();
+        queue.shutdown(10000);
+        assertThat("testDropWhenFull 2", queue.getFlushedCount(), equalTo((long) accepted));
+    }
+}
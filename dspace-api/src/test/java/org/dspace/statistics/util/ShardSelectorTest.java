@@ -0,0 +1,84 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class ShardSelector
+ */
+public class ShardSelectorTest
+{
+    private static final List<String> CORES = Arrays.asList(
+            "localhost:8080/solr/statistics-2012",
+            "localhost:8080/solr/statistics-2013",
+            "localhost:8080/solr/statistics-2014",
+            "localhost:8080/solr/statistics");
+
+    /**
+     * Test of select method, with time ranges as built by the statistics
+     * pages.
+     */
+    @Test
+    public void testSelect()
+    {
+        List<String> cores = ShardSelector.select(CORES, "id:5",
+                "(time:[2013-01-01T00:00:00.000Z TO 2013-12-31T00:00:00.000Z]) AND -(statistics_type:[* TO *] AND -statistics_type:view)");
+        assertThat("testSelect 0", cores, equalTo(Arrays.asList(
+                "localhost:8080/solr/statistics-2013", "localhost:8080/solr/statistics")));
+
+        cores = ShardSelector.select(CORES, "type:2", "time:[2014-01-01T00:00:00.000Z TO *]");
+        assertThat("testSelect 1", cores, equalTo(Arrays.asList(
+                "localhost:8080/solr/statistics-2014", "localhost:8080/solr/statistics")));
+
+        // Several ranges are intersected
+        cores = ShardSelector.select(CORES, "time:[2012-06-01T00:00:00.000Z TO *]",
+                "time:[* TO 2013-02-01T00:00:00.000Z]");
+        assertThat("testSelect 2", cores, equalTo(Arrays.asList(
+                "localhost:8080/solr/statistics-2012", "localhost:8080/solr/statistics-2013",
+                "localhost:8080/solr/statistics")));
+
+        cores = ShardSelector.select(CORES, "*:*", null);
+        assertThat("testSelect 3", cores, equalTo(CORES));
+    }
+
+    /**
+     * Test that time ranges which don't restrict all results are ignored.
+     */
+    @Test
+    public void testUnrestricted()
+    {
+        assertThat("testUnrestricted 0", ShardSelector.select(CORES,
+                "time:[2013-01-01T00:00:00.000Z TO 2013-12-31T00:00:00.000Z] OR type:2"), equalTo(CORES));
+        assertThat("testUnrestricted 1", ShardSelector.select(CORES,
+                "-time:[2013-01-01T00:00:00.000Z TO 2013-12-31T00:00:00.000Z]"), equalTo(CORES));
+        assertThat("testUnrestricted 2", ShardSelector.select(CORES,
+                "(time:[2013-01-01T00:00:00.000Z TO *] OR id:1) AND type:2"), equalTo(CORES));
+        assertThat("testUnrestricted 3", ShardSelector.select(CORES,
+                "(time:[2013-01-01T00:00:00.000Z TO *]) OR (id:1)"), equalTo(CORES));
+        assertThat("testUnrestricted 4", ShardSelector.select(CORES,
+                "time:[NOW-1YEAR TO NOW]"), equalTo(CORES));
+    }
+
+    /**
+     * Test of getYearRange method.
+     */
+    @Test
+    public void testGetYearRange()
+    {
+        int[] range = ShardSelector.getYearRange("type:2 AND (id:1 AND time:{2010-05-01T00:00:00Z TO 2011-01-01T00:00:00Z})");
+        assertThat("testGetYearRange 0", range[0], equalTo(2010));
+        assertThat("testGetYearRange 1", range[1], equalTo(2011));
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.content.Community;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for class TableRowCache
+ */
+public class TableRowCacheTest extends AbstractUnitTest
+{
+    /** Community whose row is cached */
+    private Community community;
+
+    @Before
+    @Override
+    public void init()
+    {
+        super.init();
+        try
+        {
+            context.turnOffAuthorisationSystem();
+            community = Community.create(null, context);
+            context.restoreAuthSystemState();
+            context.commit();
+        }
+        catch (Exception ex)
+        {
+            fail("Error in init: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Test that a second lookup of the same row is answered from the cache.
+     */
+    @Test
+    public void testFindUsesCache() throws Exception
+    {
+        assertTrue("testFindUsesCache 0", TableRowCache.isCached("community"));
+
+        TableRowCache.invalidate("community", community.getID());
+        long hits = TableRowCache.getHitCount();
+
+        TableRow first = DatabaseManager.find(context, "community", community.getID());
+        TableRow second = DatabaseManager.find(context, "community", community.getID());
+
+        assertThat("testFindUsesCache 1", TableRowCache.getHitCount(), equalTo(hits + 1));
+        assertThat("testFindUsesCache 2", second, equalTo(first));
+        assertNotSame("testFindUsesCache 3", first, second);
+    }
+
+    /**
+     * Test that changes to a row returned from the cache do not leak into the
+     * cache itself.
+     */
+    @Test
+    public void testCachedRowIsCopied() throws Exception
+    {
+        TableRow row = DatabaseManager.find(context, "community", community.getID());
+        row.setColumn("logo_bitstream_id", 42);
+
+        TableRow cached = DatabaseManager.find(context, "community", community.getID());
+        assertTrue("testCachedRowIsCopied 0", cached.isColumnNull("logo_bitstream_id"));
+    }
+
+    /**
+     * Test that updating a row removes it from the cache.
+     */
+    @Test
+    public void testUpdateInvalidates() throws Exception
+    {
+        TableRow row = DatabaseManager.find(context, "eperson", eperson.getID());
+        DatabaseManager.find(context, "eperson", eperson.getID());
+        long misses = TableRowCache.getMissCount();
+
+        row.setColumn("netid", "rowcache-" + System.currentTimeMillis());
+        DatabaseManager.update(context, row);
+        DatabaseManager.find(context, "eperson", eperson.getID());
+
+        assertThat("testUpdateInvalidates 0", TableRowCache.getMissCount(), equalTo(misses + 1));
+    }
+}
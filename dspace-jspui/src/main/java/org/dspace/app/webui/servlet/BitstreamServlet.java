@@ -8,7 +8,6 @@
 package org.dspace.app.webui.servlet;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.sql.SQLException;
 
 import javax.servlet.ServletConfig;
@@ -17,6 +16,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.dspace.app.util.BitstreamDelivery;
 import org.dspace.app.webui.util.JSPManager;
 import org.dspace.app.webui.util.UIUtil;
 import org.dspace.authorize.AuthorizeException;
@@ -28,7 +28,6 @@ import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Constants;
 import org.dspace.core.Context;
 import org.dspace.core.LogManager;
-import org.dspace.core.Utils;
 import org.dspace.handle.HandleManager;
 import org.dspace.usage.UsageEvent;
 import org.dspace.utils.DSpace;
@@ -203,15 +202,11 @@ public class BitstreamServlet extends DSpaceServlet
             }
         }
         
-        // Pipe the bits
-        InputStream is = bitstream.retrieve();
-     
-		// Set the response MIME type
-        response.setContentType(bitstream.getFormat().getMIMEType());
-
-        // Response length
-        response.setHeader("Content-Length", String
-                .valueOf(bitstream.getSize()));
+        // Work out the response to any Range or If-None-Match header, and
+        // open the bits
+        BitstreamDelivery delivery = new BitstreamDelivery(context, bitstream,
+                bitstream.getFormat().getMIMEType(), request.getHeader("Range"),
+                request.getHeader("If-Range"), request.getHeader("If-None-Match"));
 
 		if(threshold != -1 && bitstream.getSize() >= threshold)
 		{
@@ -221,8 +216,7 @@ public class BitstreamServlet extends DSpaceServlet
         //DO NOT REMOVE IT - WE NEED TO FREE DB CONNECTION TO AVOID CONNECTION POOL EXHAUSTION FOR BIG FILES AND SLOW DOWNLOADS
         context.complete();
 
-        Utils.bufferedCopy(is, response.getOutputStream());
-        is.close();
-        response.getOutputStream().flush();
+        // Pipe the bits
+        delivery.send(response);
     }
 }
@@ -55,10 +55,20 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.lyncode.xoai.dataprovider.core.Granularity.Second;
-import static org.dspace.content.Item.find;
 import static org.dspace.xoai.util.ItemUtils.retrieveMetadata;
 
 /**
@@ -72,6 +82,7 @@ public class XOAI {
     private boolean optimize;
     private boolean verbose;
     private boolean clean;
+    private int threads = 1;
 
     @Autowired
     private SolrServerResolver solrServerResolver;
@@ -117,6 +128,16 @@ public class XOAI {
         verbose = hasOption;
     }
 
+    /**
+     * Set the number of threads compiling and indexing items. Each thread
+     * uses its own Context, so it also needs its own database connection.
+     *
+     * @param threads number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
     private void println(String line) {
         System.out.println(line);
     }
@@ -206,42 +227,165 @@ public class XOAI {
     private int index(TableRowIterator iterator)
             throws DSpaceSolrIndexerException {
         try {
-            int i = 0;
+            List<Integer> ids = new ArrayList<Integer>();
+            try {
+                while (iterator.hasNext()) {
+                    ids.add(iterator.next().getIntColumn("item_id"));
+                }
+            } finally {
+                iterator.close();
+            }
+            int[] itemIDs = new int[ids.size()];
+            for (int i = 0; i < itemIDs.length; i++) {
+                itemIDs[i] = ids.get(i);
+            }
+
+            int batchSize = Math.max(1, ConfigurationManager.getIntProperty("oai", "import.batch-size", 100));
+            System.out.println("Indexing " + itemIDs.length + " items with " + threads
+                    + " thread(s), in batches of " + batchSize);
+
             SolrServer server = solrServerResolver.getServer();
-            while (iterator.hasNext()) {
+            long start = System.currentTimeMillis();
+            AtomicInteger next = new AtomicInteger(0);
+            AtomicInteger indexed = new AtomicInteger(0);
+            HandleCache handles = new HandleCache();
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new ItemIndexer(itemIDs, next, batchSize, server, handles, indexed)));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                printProgress(indexed.get(), itemIDs.length, start);
+            }
+            for (Future<Void> result : results) {
                 try {
-                    server.add(this.index(find(context, iterator.next().getIntColumn("item_id"))));
-                    context.clearCache();
-                } catch (SQLException ex) {
-                    log.error(ex.getMessage(), ex);
-                } catch (MetadataBindException e) {
-                    log.error(e.getMessage(), e);
-                } catch (ParseException e) {
-                    log.error(e.getMessage(), e);
-                } catch (XMLStreamException e) {
-                    log.error(e.getMessage(), e);
-                } catch (WritingXmlException e) {
-                    log.error(e.getMessage(), e);
+                    result.get();
+                } catch (ExecutionException e) {
+                    throw new DSpaceSolrIndexerException(e.getCause().getMessage(), e.getCause());
                 }
-                i++;
-                if (i % 100 == 0) System.out.println(i + " items imported so far...");
             }
-            System.out.println("Total: " + i + " items");
+
+            printProgress(indexed.get(), itemIDs.length, start);
+            System.out.println("Total: " + indexed.get() + " items");
             server.commit();
-            return i;
+            return indexed.get();
         } catch (SQLException ex) {
             throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
         } catch (SolrServerException ex) {
             throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
         } catch (IOException ex) {
             throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
+        }
+    }
+
+    private void printProgress(int indexed, int total, long start) {
+        long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+        println(indexed + " of " + total + " items imported so far, in " + seconds
+                + "s (" + (indexed / seconds) + " items/s)");
+    }
+
+    /**
+     * Compiles and indexes chunks of items, until there are none left. Every
+     * chunk is loaded at once, and sent to Solr in one request.
+     */
+    private class ItemIndexer implements Callable<Void> {
+        private final int[] itemIDs;
+        private final AtomicInteger next;
+        private final int chunkSize;
+        private final SolrServer server;
+        private final HandleCache handles;
+        private final AtomicInteger indexed;
+
+        ItemIndexer(int[] itemIDs, AtomicInteger next, int chunkSize, SolrServer server,
+                    HandleCache handles, AtomicInteger indexed) {
+            this.itemIDs = itemIDs;
+            this.next = next;
+            this.chunkSize = chunkSize;
+            this.server = server;
+            this.handles = handles;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            Context itemContext = new Context();
+            try {
+                int start;
+                while ((start = next.getAndAdd(chunkSize)) < itemIDs.length) {
+                    int[] chunk = Arrays.copyOfRange(itemIDs, start,
+                            Math.min(itemIDs.length, start + chunkSize));
+                    List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(chunk.length);
+                    for (Item item : Item.findAll(itemContext, chunk)) {
+                        if (item == null) {
+                            continue;
+                        }
+                        try {
+                            docs.add(index(itemContext, item, handles));
+                        } catch (SQLException ex) {
+                            log.error(ex.getMessage(), ex);
+                        } catch (MetadataBindException e) {
+                            log.error(e.getMessage(), e);
+                        } catch (ParseException e) {
+                            log.error(e.getMessage(), e);
+                        } catch (XMLStreamException e) {
+                            log.error(e.getMessage(), e);
+                        } catch (WritingXmlException e) {
+                            log.error(e.getMessage(), e);
+                        }
+                    }
+                    if (!docs.isEmpty()) {
+                        server.add(docs);
+                    }
+                    itemContext.clearCache();
+                    indexed.addAndGet(chunk.length);
+                }
+            } finally {
+                itemContext.abort();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * OAI set names of collections and of the communities above them, shared
+     * by all indexing threads so that every collection is only looked up
+     * once.
+     */
+    private class HandleCache {
+        private final Map<Integer, String> collectionSets = new ConcurrentHashMap<Integer, String>();
+        private final Map<Integer, List<String>> communitySets = new ConcurrentHashMap<Integer, List<String>>();
+
+        String getCollectionSet(Collection col) {
+            String set = collectionSets.get(col.getID());
+            if (set == null) {
+                set = "col_" + col.getHandle().replace("/", "_");
+                collectionSets.put(col.getID(), set);
+            }
+            return set;
+        }
+
+        List<String> getCommunitySets(Collection col) throws SQLException {
+            List<String> sets = communitySets.get(col.getID());
+            if (sets == null) {
+                sets = new ArrayList<String>();
+                for (Community com : collectionsService.flatParentCommunities(col)) {
+                    sets.add("com_" + com.getHandle().replace("/", "_"));
+                }
+                communitySets.put(col.getID(), sets);
+            }
+            return sets;
         }
     }
 
-    private SolrInputDocument index(Item item) throws SQLException, MetadataBindException, ParseException, XMLStreamException, WritingXmlException {
+    private SolrInputDocument index(Context context, Item item, HandleCache handles) throws SQLException, MetadataBindException, ParseException, XMLStreamException, WritingXmlException {
         SolrInputDocument doc = new SolrInputDocument();
         doc.addField("item.id", item.getID());
-        boolean pub = this.isPublic(item);
+        boolean pub = this.isPublic(context, item);
         doc.addField("item.public", pub);
         String handle = item.getHandle();
         doc.addField("item.handle", handle);
@@ -250,14 +394,15 @@ public class XOAI {
             doc.addField("item.submitter", item.getSubmitter().getEmail());
         }
         doc.addField("item.deleted", item.isWithdrawn() ? "true" : "false");
-        for (Collection col : item.getCollections())
-            doc.addField("item.collections",
-                    "col_" + col.getHandle().replace("/", "_"));
-        for (Community com : collectionsService.flatParentCommunities(item))
-            doc.addField("item.communities",
-                    "com_" + com.getHandle().replace("/", "_"));
-
-        Metadatum[] allData = item.getMetadata(Item.ANY, Item.ANY, Item.ANY,
+        Set<String> communities = new LinkedHashSet<String>();
+        for (Collection col : item.getCollections()) {
+            doc.addField("item.collections", handles.getCollectionSet(col));
+            communities.addAll(handles.getCommunitySets(col));
+        }
+        for (String com : communities)
+            doc.addField("item.communities", com);
+
+        List<Metadatum> allData = item.getMetadataView(Item.ANY, Item.ANY, Item.ANY,
                 Item.ANY);
         for (Metadatum dc : allData) {
             String key = "metadata." + dc.schema + "." + dc.element;
@@ -291,7 +436,7 @@ public class XOAI {
         return doc;
     }
 
-    private boolean isPublic(Item item) {
+    private boolean isPublic(Context context, Item item) {
         boolean pub = false;
         try {
             //Check if READ access allowed on this Item
@@ -368,6 +513,7 @@ public class XOAI {
             options.addOption("v", "verbose", false, "Verbose output");
             options.addOption("h", "help", false, "Shows some help");
             options.addOption("n", "number", true, "FOR DEVELOPMENT MUST DELETE");
+            options.addOption("t", "threads", true, "Number of threads compiling items");
             CommandLine line = parser.parse(options, argv);
 
             String[] validSolrCommands = {COMMAND_IMPORT, COMMAND_CLEAN_CACHE};
@@ -398,12 +544,28 @@ public class XOAI {
                 String command = line.getArgs()[0];
 
                 if (COMMAND_IMPORT.equals(command)) {
+                    int threads = ConfigurationManager.getIntProperty("oai", "import.threads", 1);
+                    if (line.hasOption('t')) {
+                        try {
+                            threads = Integer.parseInt(line.getOptionValue('t'));
+                        } catch (NumberFormatException e) {
+                            threads = 0;
+                        }
+                        if (threads < 1) {
+                            System.out.println("Error - the number of threads must be a positive integer");
+                            usage();
+                            return;
+                        }
+                    }
+
                     ctx = new Context();
                     XOAI indexer = new XOAI(ctx,
                             line.hasOption('o'),
                             line.hasOption('c'),
                             line.hasOption('v'));
 
+                    indexer.setThreads(threads);
+
                     applicationContext.getAutowireCapableBeanFactory().autowireBean(indexer);
 
                     int imported = indexer.index();
@@ -492,6 +654,7 @@ public class XOAI {
             System.out.println("> Parameters:");
             System.out.println("     -o Optimize index after indexing (" + COMMAND_IMPORT + " only)");
             System.out.println("     -c Clear index (" + COMMAND_IMPORT + " only)");
+            System.out.println("     -t <threads> Number of threads compiling items (" + COMMAND_IMPORT + " only)");
             System.out.println("     -v Verbose output");
             System.out.println("     -h Shows this text");
         } else {
@@ -9,6 +9,7 @@ package org.dspace.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLConnection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -31,8 +32,10 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.log4j.Logger;
+import org.dspace.app.util.BitstreamDelivery;
 import org.dspace.authorize.AuthorizeException;
 import org.dspace.authorize.AuthorizeManager;
 import org.dspace.content.BitstreamFormat;
@@ -274,7 +277,9 @@ public class BitstreamResource extends Resource
      * @return Returns response with data with file content type. It can
      *         return the NOT_FOUND(404) response code in case of wrong bitstream
      *         id. Or response code UNAUTHORIZED(401) if user is not
-     *         allowed to read bitstream.
+     *         allowed to read bitstream. The Range, If-Range and
+     *         If-None-Match headers are honoured, giving PARTIAL_CONTENT(206),
+     *         REQUESTED_RANGE_NOT_SATISFIABLE(416) or NOT_MODIFIED(304).
      * @throws WebApplicationException
      *             Thrown if there was a problem: reading the file data; or reading
      *             the database; or creating the context; or with authorization.
@@ -289,8 +294,7 @@ public class BitstreamResource extends Resource
 
         log.info("Reading data of bitstream(id=" + bitstreamId + ").");
         org.dspace.core.Context context = null;
-        InputStream inputStream = null;
-        String type = null;
+        BitstreamDelivery delivery = null;
         String name = null;
 
         try
@@ -302,8 +306,8 @@ public class BitstreamResource extends Resource
                     request, context);
 
             log.trace("Bitsream(id=" + bitstreamId + ") data was successfully read.");
-            inputStream = dspaceBitstream.retrieve();
-            type = dspaceBitstream.getFormat().getMIMEType();
+            delivery = new BitstreamDelivery(context, dspaceBitstream, dspaceBitstream.getFormat().getMIMEType(),
+                    request.getHeader("Range"), request.getHeader("If-Range"), request.getHeader("If-None-Match"));
             name = dspaceBitstream.getName();
 
             context.complete();
@@ -333,8 +337,35 @@ public class BitstreamResource extends Resource
             processFinally(context);
         }
 
-        return Response.ok(inputStream).type(type)
+        final BitstreamDelivery data = delivery;
+        Response.ResponseBuilder builder = Response.status(data.getStatus())
+                .header("Accept-Ranges", "bytes")
+                .header("ETag", data.getETag())
+                .header("Content-Range", data.getContentRange());
+        if (!data.hasBody())
+        {
+            data.close();
+            return builder.build();
+        }
+
+        return builder.type(data.getContentType())
+                .header("Content-Length", String.valueOf(data.getContentLength()))
                 .header("Content-Disposition", "attachment; filename=\"" + name + "\"")
+                .entity(new StreamingOutput()
+                {
+                    @Override
+                    public void write(OutputStream output) throws IOException
+                    {
+                        try
+                        {
+                            data.write(output);
+                        }
+                        finally
+                        {
+                            data.close();
+                        }
+                    }
+                })
                 .build();
     }
 
@@ -34,7 +34,6 @@ import org.dspace.authorize.AuthorizeException;
 import org.dspace.authorize.AuthorizeManager;
 import org.dspace.browse.BrowseException;
 import org.dspace.content.WorkspaceItem;
-import org.dspace.content.service.ItemService;
 import org.dspace.core.ConfigurationManager;
 import org.dspace.core.LogManager;
 import org.dspace.rest.common.Collection;
@@ -226,7 +225,13 @@ public class CollectionsResource extends Resource
      *            Limit value for items in array. Default value is 100.
      * @param offset
      *            Offset of start index in array of items of collection. Default
-     *            value is 0.
+     *            value is 0. Ignored if after is set.
+     * @param after
+     *            Id of the last item of the previous page. If set, the array
+     *            holds the first limit items after it which the user may
+     *            see, and is only shorter than limit at the end of the
+     *            collection. Items are sorted by id, so a page costs the same
+     *            wherever it is in the collection.
      * @param headers
      *            If you want to access to collection under logged user into
      *            context. In headers must be set header "rest-dspace-token"
@@ -246,12 +251,14 @@ public class CollectionsResource extends Resource
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
     public org.dspace.rest.common.Item[] getCollectionItems(@PathParam("collection_id") Integer collectionId,
             @QueryParam("expand") String expand, @QueryParam("limit") @DefaultValue("100") Integer limit,
-            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("userIP") String user_ip,
+            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("after") Integer after,
+            @QueryParam("userIP") String user_ip,
             @QueryParam("userAgent") String user_agent, @QueryParam("xforwardedfor") String xforwardedfor,
             @Context HttpHeaders headers, @Context HttpServletRequest request) throws WebApplicationException
     {
 
-        log.info("Reading collection(id=" + collectionId + ") items.");
+        log.info("Reading collection(id=" + collectionId + ") items.(offset=" + offset + ",after=" + after
+                + ",limit=" + limit + ").");
         org.dspace.core.Context context = null;
         List<Item> items = null;
 
@@ -264,21 +271,40 @@ public class CollectionsResource extends Resource
                     headers, request, context);
 
             items = new ArrayList<Item>();
-            org.dspace.content.ItemIterator dspaceItems = dspaceCollection.getItems();
-            for (int i = 0; (dspaceItems.hasNext()) && (i < (limit + offset)); i++)
+            if (!((limit != null) && (limit >= 0) && (offset != null) && (offset >= 0)))
             {
-                if (i >= offset)
+                log.warn("Pagging was badly set, using default values.");
+                limit = 100;
+                offset = 0;
+            }
+
+            limit = limitItems(limit);
+
+            if (after != null)
+            {
+                final org.dspace.content.Collection batchCollection = dspaceCollection;
+                addItemsAfter(items, new ItemBatches()
+                {
+                    public org.dspace.content.ItemIterator after(int lastID, int limit) throws SQLException
+                    {
+                        return batchCollection.getItemsAfter(lastID, limit);
+                    }
+                }, after, limit, expand, user_ip, user_agent, xforwardedfor, headers, request, context);
+            }
+            else if (limit > 0) // no row limit in SQL at 0, so no query
+            {
+                org.dspace.content.ItemIterator dspaceItems = dspaceCollection.getItems(limit, offset);
+                try
                 {
-                    org.dspace.content.Item dspaceItem = dspaceItems.next();
-                    if (ItemService.isItemListedForUser(context, dspaceItem))
+                    while (dspaceItems.hasNext())
                     {
-                        items.add(new Item(dspaceItem, expand, context));
-                        writeStats(dspaceItem, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor,
+                        addItem(items, dspaceItems.next(), expand, user_ip, user_agent, xforwardedfor,
                                 headers, request, context);
                     }
-                } else {
-                    //Advance the iterator to offset.
-                    dspaceItems.nextID();
+                }
+                finally
+                {
+                    dspaceItems.close();
                 }
             }
 
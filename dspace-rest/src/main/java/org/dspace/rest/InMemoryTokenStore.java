@@ -0,0 +1,85 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Default {@link TokenStore}, which keeps the tokens in the memory of this
+ * web application. Tokens are lost on restart, and are not shared with other
+ * instances of the REST API.
+ */
+public class InMemoryTokenStore implements TokenStore
+{
+    /** Map with pair token, entry */
+    private final ConcurrentMap<String, Entry> tokens = new ConcurrentHashMap<String, Entry>();
+
+    /** Map with pair email, entry */
+    private final ConcurrentMap<String, Entry> emails = new ConcurrentHashMap<String, Entry>();
+
+    @Override
+    public Entry get(String token)
+    {
+        return tokens.get(token);
+    }
+
+    @Override
+    public Entry getByEmail(String email)
+    {
+        return emails.get(email);
+    }
+
+    @Override
+    public Entry putIfAbsent(Entry entry)
+    {
+        // Map the token first, so that the entry can be found by its token
+        // as soon as another login can find it by email
+        tokens.put(entry.getToken(), entry);
+        Entry existing = emails.putIfAbsent(entry.getEmail(), entry);
+        if (existing != null)
+        {
+            // Lost the race to another login, drop our token
+            tokens.remove(entry.getToken(), entry);
+            return existing;
+        }
+        return entry;
+    }
+
+    @Override
+    public boolean remove(String token)
+    {
+        Entry entry = tokens.remove(token);
+        if (entry == null)
+        {
+            return false;
+        }
+        emails.remove(entry.getEmail(), entry);
+        return true;
+    }
+
+    @Override
+    public int removeExpired(long now, long idleTimeout, long maxAge)
+    {
+        int removed = 0;
+        for (Entry entry : tokens.values())
+        {
+            if (entry.isExpired(now, idleTimeout, maxAge) && remove(entry.getToken()))
+            {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size()
+    {
+        return tokens.size();
+    }
+}
@@ -40,7 +40,6 @@ import org.dspace.content.BitstreamFormat;
 import org.dspace.content.Bundle;
 import org.dspace.content.ItemIterator;
 import org.dspace.content.Metadatum;
-import org.dspace.content.service.ItemService;
 import org.dspace.eperson.Group;
 import org.dspace.rest.common.Bitstream;
 import org.dspace.rest.common.Item;
@@ -132,12 +131,19 @@ public class ItemsResource extends Resource
     /**
      * It returns an array of items in DSpace. You can define how many items in
      * list will be and from which index will start. Items in list are sorted by
-     * handle, not by id.
+     * id. To page deep into the list, pass the id of the last item of the
+     * previous page as after instead of an offset; the page then costs the
+     * same wherever it is in the list.
      * 
      * @param limit
      *            How many items in array will be. Default value is 100.
      * @param offset
-     *            On which index will array start. Default value is 0.
+     *            On which index will array start. Default value is 0. Ignored
+     *            if after is set.
+     * @param after
+     *            Id of the last item of the previous page. If set, the array
+     *            holds the first limit items after it which the user may
+     *            see, and is only shorter than limit at the end of the list.
      * @param headers
      *            If you want to access to item under logged user into context.
      *            In headers must be set header "rest-dspace-token" with passed
@@ -152,12 +158,13 @@ public class ItemsResource extends Resource
     @GET
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
     public Item[] getItems(@QueryParam("expand") String expand, @QueryParam("limit") @DefaultValue("100") Integer limit,
-            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("userIP") String user_ip,
+            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("after") Integer after,
+            @QueryParam("userIP") String user_ip,
             @QueryParam("userAgent") String user_agent, @QueryParam("xforwardedfor") String xforwardedfor,
             @Context HttpHeaders headers, @Context HttpServletRequest request) throws WebApplicationException
     {
 
-        log.info("Reading items.(offset=" + offset + ",limit=" + limit + ").");
+        log.info("Reading items.(offset=" + offset + ",after=" + after + ",limit=" + limit + ").");
         org.dspace.core.Context context = null;
         List<Item> items = null;
 
@@ -165,7 +172,6 @@ public class ItemsResource extends Resource
         {
             context = createContext(getUser(headers));
 
-            ItemIterator dspaceItems = org.dspace.content.Item.findAllUnfiltered(context);
             items = new ArrayList<Item>();
 
             if (!((limit != null) && (limit >= 0) && (offset != null) && (offset >= 0)))
@@ -175,18 +181,34 @@ public class ItemsResource extends Resource
                 offset = 0;
             }
 
-            for (int i = 0; (dspaceItems.hasNext()) && (i < (limit + offset)); i++)
+            limit = limitItems(limit);
+
+            if (after != null)
+            {
+                final org.dspace.core.Context batchContext = context;
+                addItemsAfter(items, new ItemBatches()
+                {
+                    public org.dspace.content.ItemIterator after(int lastID, int limit) throws SQLException
+                    {
+                        return org.dspace.content.Item.findAllUnfilteredAfter(batchContext, lastID, limit);
+                    }
+                }, after, limit, expand, user_ip, user_agent, xforwardedfor, headers, request, context);
+            }
+            else if (limit > 0) // no row limit in SQL at 0, so no query
             {
-                org.dspace.content.Item dspaceItem = dspaceItems.next();
-                if (i >= offset)
+                ItemIterator dspaceItems = org.dspace.content.Item.findAllUnfiltered(context, limit, offset);
+                try
                 {
-                    if (ItemService.isItemListedForUser(context, dspaceItem))
+                    while (dspaceItems.hasNext())
                     {
-                        items.add(new Item(dspaceItem, expand, context));
-                        writeStats(dspaceItem, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor,
+                        addItem(items, dspaceItems.next(), expand, user_ip, user_agent, xforwardedfor,
                                 headers, request, context);
                     }
                 }
+                finally
+                {
+                    dspaceItems.close();
+                }
             }
             context.complete();
         }
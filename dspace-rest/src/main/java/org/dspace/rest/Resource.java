@@ -19,9 +19,11 @@ import javax.ws.rs.core.Response;
 
 import org.apache.log4j.Logger;
 import org.dspace.content.DSpaceObject;
+import org.dspace.content.service.ItemService;
 import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Context;
 import org.dspace.eperson.EPerson;
+import org.dspace.rest.common.Item;
 import org.dspace.rest.exceptions.ContextException;
 import org.dspace.usage.UsageEvent;
 import org.dspace.utils.DSpace;
@@ -43,9 +45,15 @@ public class Resource
     private static Logger log = Logger.getLogger(Resource.class);
 
     private static final boolean writeStatistics;
+
+    /** Most items in one page of an item listing, unless configured */
+    private static final int DEFAULT_MAX_ITEMS = 1000;
+
+    private static final int maxItems;
     static
     {
         writeStatistics = ConfigurationManager.getBooleanProperty("rest", "stats", false);
+        maxItems = ConfigurationManager.getIntProperty("rest", "items.max-limit", DEFAULT_MAX_ITEMS);
     }
 
     static public String getServletContextPath() {
@@ -130,6 +138,95 @@ public class Resource
         log.debug("fired event");
     }
 
+    /**
+     * Bound the number of items requested for one page of an item listing.
+     *
+     * @param limit
+     *            number of items requested
+     * @return the number of items to return
+     */
+    protected static int limitItems(int limit)
+    {
+        return (maxItems > 0) ? Math.min(limit, maxItems) : limit;
+    }
+
+    /**
+     * Reads the items with IDs above a given one, in order of ID, for keyset
+     * paging of item listings.
+     */
+    protected interface ItemBatches
+    {
+        /**
+         * @param lastID
+         *            ID of the last item read
+         * @param limit
+         *            maximum number of items to read
+         * @return the items following lastID
+         */
+        org.dspace.content.ItemIterator after(int lastID, int limit) throws SQLException;
+    }
+
+    /**
+     * Add the items following an item ID to a listing. Batches of items are
+     * read until enough of them may be seen by the user, or there are no
+     * more.
+     *
+     * @param items
+     *            listing to add to
+     * @param batches
+     *            reads the batches of items
+     * @param after
+     *            ID of the item the listing follows
+     * @param limit
+     *            maximum number of items in the listing
+     */
+    protected void addItemsAfter(List<Item> items, ItemBatches batches, int after, int limit, String expand,
+            String user_ip, String user_agent, String xforwardedfor, HttpHeaders headers,
+            HttpServletRequest request, Context context) throws SQLException, WebApplicationException
+    {
+        int lastID = after;
+        boolean more = (limit > 0);
+        while (more)
+        {
+            org.dspace.content.ItemIterator dspaceItems = batches.after(lastID, limit);
+            int read = 0;
+            try
+            {
+                while (dspaceItems.hasNext() && (items.size() < limit))
+                {
+                    org.dspace.content.Item dspaceItem = dspaceItems.next();
+                    lastID = dspaceItem.getID();
+                    read++;
+                    addItem(items, dspaceItem, expand, user_ip, user_agent, xforwardedfor,
+                            headers, request, context);
+                }
+            }
+            finally
+            {
+                dspaceItems.close();
+            }
+            more = (read == limit) && (items.size() < limit);
+        }
+    }
+
+    /**
+     * Add an item to a listing, if the user may see it, and record the view.
+     * The item is then removed from the context cache, so that reading many
+     * pages of items does not fill it.
+     */
+    protected void addItem(List<Item> items, org.dspace.content.Item dspaceItem, String expand, String user_ip,
+            String user_agent, String xforwardedfor, HttpHeaders headers, HttpServletRequest request,
+            Context context) throws SQLException, WebApplicationException
+    {
+        if (ItemService.isItemListedForUser(context, dspaceItem))
+        {
+            items.add(new Item(dspaceItem, expand, context));
+            writeStats(dspaceItem, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor,
+                    headers, request, context);
+        }
+        dspaceItem.decache();
+    }
+
     /**
      * Process exception, print message to logger error stream and abort DSpace
      * context.
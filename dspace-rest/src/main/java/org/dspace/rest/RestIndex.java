@@ -82,7 +82,7 @@ public class RestIndex {
                 	"<ul>" +
                   		"<li>GET /collections - Return all DSpace collections in array.</li>" +
                   		"<li>GET /collections/{collectionId} - Return a collection with the specified ID.</li>" +
-                  		"<li>GET /collections/{collectionId}/items - Return all items of the specified collection.</li>" +
+                  		"<li>GET /collections/{collectionId}/items - Return all items of the specified collection. Page with limit and offset, or with limit and after={id of the last item of the previous page}.</li>" +
                   		"<li>POST /collections/{collectionId}/items - Create an item in the specified collection. You must post an item.</li>" +
                   		"<li>POST /collections/find-collection - Find a collection by name.</li>" +
                   		"<li>PUT /collections/{collectionId} </li> - Update the specified collection. You must post a collection." +
@@ -91,7 +91,7 @@ public class RestIndex {
                   	"</ul>" +
                   	"<h2>Items</h2>" +
                   	"<ul>" +
-                  		"<li>GET /items - Return a list of items.</li>" +
+                  		"<li>GET /items - Return a list of items. Page with limit and offset, or with limit and after={id of the last item of the previous page}.</li>" +
                   		"<li>GET /items/{item id} - Return the specified item.</li>" +
                   		"<li>GET /items/{item id}/metadata - Return metadata of the specified item.</li>" +
                   		"<li>GET /items/{item id}/bitstreams - Return bitstreams of the specified item.</li>" +
@@ -0,0 +1,35 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Starts the removal of expired tokens when the REST API is started, and
+ * stops it when the REST API is stopped, so that no thread is left behind
+ * after an undeploy. Must be listed after
+ * {@link org.dspace.app.util.DSpaceContextListener}, which loads the
+ * configuration.
+ *
+ * @see TokenHolder
+ */
+public class TokenExpiryListener implements ServletContextListener
+{
+    @Override
+    public void contextInitialized(ServletContextEvent event)
+    {
+        TokenHolder.startExpiry();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event)
+    {
+        TokenHolder.stopExpiry();
+    }
+}
@@ -8,15 +8,18 @@
 package org.dspace.rest;
 
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
 import org.apache.log4j.Logger;
 import org.dspace.authorize.AuthorizeException;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.eperson.EPerson;
 import org.dspace.rest.common.User;
 
@@ -24,6 +27,13 @@ import org.dspace.rest.common.User;
  * This class provide token generation, token holding and logging user into rest
  * api. For login use method login with class org.dspace.rest.common.User. If
  * you want to be deleted from holder, use method for logout.
+ * <P>
+ * Tokens expire after they have not been used for
+ * <code>token.idle-timeout</code> seconds, or <code>token.max-age</code>
+ * seconds after login (both in <code>rest.cfg</code>). Expired tokens are
+ * removed by a background thread every <code>token.expiry-interval</code>
+ * seconds, started and stopped with the web application by
+ * {@link TokenExpiryListener}. The tokens are kept in a {@link TokenStore}.
  * 
  * @author Rostislav Novak (Computing and Information Centre, CTU in Prague)
  */
@@ -34,9 +44,99 @@ public class TokenHolder
 
     public static String TOKEN_HEADER = "rest-dspace-token";
 
-    private static Map<String, String> tokens = new HashMap<String, String>(); // Map with pair Email,token
+    private static final long idleTimeout = 1000L * ConfigurationManager.getIntProperty("rest", "token.idle-timeout", 3600);
 
-    private static Map<String, EPerson> persons = new HashMap<String, EPerson>(); // Map with pair token,Eperson
+    private static final long maxAge = 1000L * ConfigurationManager.getIntProperty("rest", "token.max-age", 0);
+
+    private static final TokenStore store = createStore();
+
+    /** Removes expired tokens, while the web application is running */
+    private static ScheduledExecutorService expiry = null;
+
+    /**
+     * Start removing expired tokens every <code>token.expiry-interval</code>
+     * seconds, unless tokens never expire. Called when the web application
+     * starts, see {@link TokenExpiryListener}.
+     */
+    static synchronized void startExpiry()
+    {
+        int interval = ConfigurationManager.getIntProperty("rest", "token.expiry-interval", 300);
+        if ((expiry != null) || (interval <= 0) || ((idleTimeout <= 0) && (maxAge <= 0)))
+        {
+            return;
+        }
+        expiry = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "rest-token-expiry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        expiry.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    int removed = store.removeExpired(System.currentTimeMillis(), idleTimeout, maxAge);
+                    if (removed > 0)
+                    {
+                        log.debug("Removed " + removed + " expired tokens, " + store.size() + " left.");
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    log.error("Could not remove expired tokens. Message:" + e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop removing expired tokens. Called when the web application stops,
+     * so that the thread does not outlive it.
+     */
+    static synchronized void stopExpiry()
+    {
+        if (expiry == null)
+        {
+            return;
+        }
+        expiry.shutdownNow();
+        try
+        {
+            if (!expiry.awaitTermination(10, TimeUnit.SECONDS))
+            {
+                log.warn("Expired token removal did not stop in time.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        expiry = null;
+    }
+
+    private static TokenStore createStore()
+    {
+        String className = ConfigurationManager.getProperty("rest", "token.store");
+        if (className != null)
+        {
+            try
+            {
+                return (TokenStore) Class.forName(className.trim()).newInstance();
+            }
+            catch (Exception e)
+            {
+                log.error("Could not create token store " + className + ", keeping tokens in memory. Message:" + e);
+            }
+        }
+        return new InMemoryTokenStore();
+    }
 
     /**
      * Login user into rest api. It check user credentials if they are okay.
@@ -61,21 +161,25 @@ public class TokenHolder
             context = new org.dspace.core.Context();
             EPerson dspaceUser = EPerson.findByEmail(context, user.getEmail());
 
-            synchronized (TokenHolder.class) {
-                if ((dspaceUser == null) || (!dspaceUser.checkPassword(user.getPassword())))
-                {
-                    token = null;
-                }
-                else if (tokens.containsKey(user.getEmail()))
+            if ((dspaceUser == null) || (!dspaceUser.checkPassword(user.getPassword())))
+            {
+                token = null;
+            }
+            else
+            {
+                long now = System.currentTimeMillis();
+                TokenStore.Entry entry = store.getByEmail(dspaceUser.getEmail());
+                if ((entry != null) && entry.isExpired(now, idleTimeout, maxAge))
                 {
-                    token = tokens.get(user.getEmail());
+                    store.remove(entry.getToken());
+                    entry = null;
                 }
-                else
+                if (entry == null)
                 {
-                    token = generateToken();
-                    persons.put(token, dspaceUser);
-                    tokens.put(user.getEmail(), token);
+                    entry = store.putIfAbsent(new TokenStore.Entry(generateToken(), dspaceUser, now));
                 }
+                entry.touch(now);
+                token = entry.getToken();
             }
 
             log.trace("User(" + user.getEmail() + ") has been logged.");
@@ -115,9 +219,25 @@ public class TokenHolder
      * @return Return instance of EPerson if is token right, otherwise it
      *         returns NULL.
      */
-    public static synchronized EPerson getEPerson(String token)
+    public static EPerson getEPerson(String token)
     {
-        return persons.get(token);
+        if (token == null)
+        {
+            return null;
+        }
+        TokenStore.Entry entry = store.get(token);
+        if (entry == null)
+        {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.isExpired(now, idleTimeout, maxAge))
+        {
+            store.remove(token);
+            return null;
+        }
+        entry.touch(now);
+        return entry.getEPerson();
     }
 
     /**
@@ -127,20 +247,13 @@ public class TokenHolder
      *            Token under which is stored eperson.
      * @return Return true if was all okay, otherwise return false.
      */
-    public static synchronized boolean logout(String token)
+    public static boolean logout(String token)
     {
-        if ((token == null) || (persons.get(token) == null))
-        {
-            return false;
-        }
-        String email = persons.get(token).getEmail();
-        EPerson person = persons.remove(token);
-        if (person == null)
+        if (token == null)
         {
             return false;
         }
-        tokens.remove(email);
-        return true;
+        return store.remove(token);
     }
 
     /**
@@ -0,0 +1,158 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import org.dspace.eperson.EPerson;
+
+/**
+ * Storage of the tokens handed out by {@link TokenHolder}. Every user has at
+ * most one token. Implementations must be safe to use from many request
+ * threads at once, without locking the whole store.
+ * <P>
+ * The implementation is chosen with <code>token.store</code> in
+ * <code>rest.cfg</code>, and needs a public no-argument constructor.
+ *
+ * @see InMemoryTokenStore
+ */
+public interface TokenStore
+{
+    /**
+     * A token, with the user it was given to.
+     */
+    public static class Entry
+    {
+        private final String token;
+
+        private final String email;
+
+        private final EPerson ePerson;
+
+        private final long created;
+
+        private volatile long lastUsed;
+
+        public Entry(String token, EPerson ePerson, long created)
+        {
+            this.token = token;
+            this.email = ePerson.getEmail();
+            this.ePerson = ePerson;
+            this.created = created;
+            this.lastUsed = created;
+        }
+
+        public String getToken()
+        {
+            return token;
+        }
+
+        public String getEmail()
+        {
+            return email;
+        }
+
+        public EPerson getEPerson()
+        {
+            return ePerson;
+        }
+
+        public long getCreated()
+        {
+            return created;
+        }
+
+        public long getLastUsed()
+        {
+            return lastUsed;
+        }
+
+        /**
+         * Record that the token has been used.
+         *
+         * @param now
+         *            current time in ms
+         */
+        public void touch(long now)
+        {
+            lastUsed = now;
+        }
+
+        /**
+         * Has the token expired?
+         *
+         * @param now
+         *            current time in ms
+         * @param idleTimeout
+         *            time in ms the token may stay unused, 0 for no limit
+         * @param maxAge
+         *            time in ms the token may be used after it was created,
+         *            0 for no limit
+         * @return true if the token must not be used anymore
+         */
+        public boolean isExpired(long now, long idleTimeout, long maxAge)
+        {
+            return ((idleTimeout > 0) && (now - lastUsed > idleTimeout))
+                    || ((maxAge > 0) && (now - created > maxAge));
+        }
+    }
+
+    /**
+     * Find a token.
+     *
+     * @param token
+     *            the token
+     * @return the entry of the token, or null if it is not stored
+     */
+    public Entry get(String token);
+
+    /**
+     * Find the token of a user.
+     *
+     * @param email
+     *            email address of the user
+     * @return the entry of the user's token, or null if the user has none
+     */
+    public Entry getByEmail(String email);
+
+    /**
+     * Store a token, unless its user already has one.
+     *
+     * @param entry
+     *            the new token
+     * @return the entry now stored for the user: either the given one, or
+     *         the token the user already had
+     */
+    public Entry putIfAbsent(Entry entry);
+
+    /**
+     * Remove a token.
+     *
+     * @param token
+     *            the token
+     * @return true if the token was stored
+     */
+    public boolean remove(String token);
+
+    /**
+     * Remove all expired tokens.
+     *
+     * @param now
+     *            current time in ms
+     * @param idleTimeout
+     *            time in ms a token may stay unused, 0 for no limit
+     * @param maxAge
+     *            time in ms a token may be used after it was created, 0 for
+     *            no limit
+     * @return the number of tokens removed
+     */
+    public int removeExpired(long now, long idleTimeout, long maxAge);
+
+    /**
+     * @return the number of stored tokens
+     */
+    public int size();
+}
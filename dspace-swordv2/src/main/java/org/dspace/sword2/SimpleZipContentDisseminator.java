@@ -7,39 +7,35 @@
  */
 package org.dspace.sword2;
 
+import org.dspace.app.itemexport.ZipExportWriter;
 import org.dspace.authorize.AuthorizeException;
+import org.dspace.authorize.AuthorizeManager;
 import org.dspace.content.Bitstream;
 import org.dspace.content.Bundle;
 import org.dspace.content.Item;
-import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Constants;
 import org.dspace.core.Context;
-import org.dspace.core.Utils;
+import org.dspace.storage.bitstore.BitstreamStorageManager;
 import org.swordapp.server.SwordError;
 import org.swordapp.server.SwordServerException;
 import org.swordapp.server.UriRegistry;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.sql.SQLException;
-import java.util.UUID;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 public class SimpleZipContentDisseminator implements SwordContentDisseminator
 {
     public InputStream disseminate(Context context, Item item)
             throws DSpaceSwordException, SwordError, SwordServerException
     {
+        // the archive is made as the stream is read, so look up and open
+        // everything it needs now, while the context is still open
+        ZipStreamInputStream zip = new ZipStreamInputStream();
+        boolean built = false;
         try
         {
-            // first write everything to a temp file
-            String tempDir = ConfigurationManager.getProperty("upload.temp.dir");
-            String fn = tempDir + File.separator + "SWORD." + item.getID() + "." + UUID.randomUUID().toString() + ".zip";
-            OutputStream outStream = new FileOutputStream(new File(fn));
-            ZipOutputStream zip = new ZipOutputStream(outStream);
 
             Bundle[] originals = item.getBundles("ORIGINAL");
             for (Bundle original : originals)
@@ -47,17 +43,24 @@ public class SimpleZipContentDisseminator implements SwordContentDisseminator
                 Bitstream[] bss = original.getBitstreams();
                 for (Bitstream bitstream : bss)
                 {
-                    ZipEntry ze = new ZipEntry(bitstream.getName());
-                    zip.putNextEntry(ze);
-                    InputStream is = bitstream.retrieve();
-                    Utils.copy(is, zip);
-                    zip.closeEntry();
-                    is.close();
+                    boolean compress = !ZipExportWriter.isStoredFormat(bitstream.getFormat().getMIMEType());
+
+                    // the same check that retrieve() makes
+                    AuthorizeManager.authorizeAction(context, bitstream, Constants.READ);
+                    File file = BitstreamStorageManager.retrieveLocalFile(context, bitstream.getID());
+                    if (file != null)
+                    {
+                        zip.addEntry(bitstream.getName(), file, compress);
+                    }
+                    else
+                    {
+                        zip.addEntry(bitstream.getName(), bitstream.retrieve(), compress);
+                    }
                 }
             }
-            zip.close();
 
-            return new TempFileInputStream(new File(fn));
+            built = true;
+            return zip;
         }
         catch (SQLException e)
         {
@@ -71,6 +74,21 @@ public class SimpleZipContentDisseminator implements SwordContentDisseminator
         {
             throw new DSpaceSwordException(e);
         }
+        finally
+        {
+            if (!built)
+            {
+                // close the streams opened so far
+                try
+                {
+                    zip.close();
+                }
+                catch (IOException e)
+                {
+                    // already failing
+                }
+            }
+        }
     }
 
     public boolean disseminatesContentType(String contentType)
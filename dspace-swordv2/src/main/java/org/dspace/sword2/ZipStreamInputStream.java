@@ -0,0 +1,191 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.sword2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An InputStream of a ZIP archive which is made as it is read, so that no
+ * temporary file is needed. Each entry is read from a file, opened when the
+ * entry is reached, or from a stream opened beforehand; either way no DSpace
+ * context is needed once it has been built.
+ */
+public class ZipStreamInputStream extends InputStream
+{
+    /** How much of an entry to compress at a time */
+    private static final int CHUNK_SIZE = 65536;
+
+    private final List<String> names = new ArrayList<String>();
+
+    /** The source of each entry: a File or an InputStream */
+    private final List<Object> sources = new ArrayList<Object>();
+
+    private final List<Boolean> compress = new ArrayList<Boolean>();
+
+    /** Holds the archive as it is written, until it is read */
+    private final Buffer buffer = new Buffer();
+
+    private final ZipOutputStream zip = new ZipOutputStream(buffer);
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /** Position in the buffer */
+    private int position = 0;
+
+    /** Entry being written, and the stream it is read from */
+    private int entry = -1;
+
+    private InputStream current = null;
+
+    private boolean finished = false;
+
+    /**
+     * Add an entry read from a file.
+     *
+     * @param name
+     *            name of the entry
+     * @param file
+     *            the file
+     * @param compressed
+     *            true if the content should be compressed
+     */
+    public void addEntry(String name, File file, boolean compressed)
+    {
+        names.add(name);
+        sources.add(file);
+        compress.add(compressed);
+    }
+
+    /**
+     * Add an entry read from a stream, which is closed when it has been read
+     * or this stream is closed.
+     *
+     * @param name
+     *            name of the entry
+     * @param stream
+     *            the stream
+     * @param compressed
+     *            true if the content should be compressed
+     */
+    public void addEntry(String name, InputStream stream, boolean compressed)
+    {
+        names.add(name);
+        sources.add(stream);
+        compress.add(compressed);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return (n < 0) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        while (position == buffer.size())
+        {
+            if (finished)
+            {
+                return -1;
+            }
+            buffer.reset();
+            position = 0;
+            step();
+        }
+
+        int n = Math.min(len, buffer.size() - position);
+        System.arraycopy(buffer.bytes(), position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Write the next piece of the archive into the buffer.
+     */
+    private void step() throws IOException
+    {
+        if (current == null)
+        {
+            entry++;
+            if (entry == names.size())
+            {
+                zip.finish();
+                finished = true;
+                return;
+            }
+
+            Object source = sources.get(entry);
+            current = (source instanceof File) ? new FileInputStream((File) source) : (InputStream) source;
+            sources.set(entry, null);
+
+            zip.setLevel(compress.get(entry) ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(names.get(entry)));
+            return;
+        }
+
+        int n = current.read(chunk);
+        if (n < 0)
+        {
+            zip.closeEntry();
+            current.close();
+            current = null;
+        }
+        else
+        {
+            zip.write(chunk, 0, n);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (current != null)
+        {
+            current.close();
+            current = null;
+        }
+        for (Object source : sources)
+        {
+            if (source instanceof InputStream)
+            {
+                ((InputStream) source).close();
+            }
+        }
+        sources.clear();
+        finished = true;
+        position = buffer.size();
+    }
+
+    /**
+     * A ByteArrayOutputStream whose bytes can be read without a copy.
+     */
+    private static class Buffer extends ByteArrayOutputStream
+    {
+        byte[] bytes()
+        {
+            return buf;
+        }
+    }
+}
@@ -109,7 +109,7 @@ public class CollectionViewer extends AbstractDSpaceTransformer implements Cache
 	            DSpaceValidity validity = new DSpaceValidity();
 	            
 	            // Add the actual collection;
-	            validity.add(collection);
+	            validity.add(context, collection);
 	
 	            this.validity = validity.complete();
 	        }
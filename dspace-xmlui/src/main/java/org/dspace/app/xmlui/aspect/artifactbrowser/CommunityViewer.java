@@ -14,6 +14,7 @@ import java.sql.SQLException;
 import org.apache.cocoon.caching.CacheableProcessingComponent;
 import org.apache.cocoon.util.HashUtil;
 import org.apache.excalibur.source.SourceValidity;
+import org.dspace.app.util.CacheStamp;
 import org.dspace.app.xmlui.cocoon.AbstractDSpaceTransformer;
 import org.dspace.app.xmlui.utils.DSpaceValidity;
 import org.dspace.app.xmlui.utils.HandleUtil;
@@ -114,17 +115,29 @@ public class CommunityViewer extends AbstractDSpaceTransformer implements Cachea
 	            community = (Community) dso;
 	            
 	            DSpaceValidity validity = new DSpaceValidity();
-	            validity.add(community);
+	            validity.add(context, community);
+	            
+	            // The stamp of the community also covers its sub-communities
+	            // and collections, so they only need to be read for their counts.
+	            boolean stamped = CacheStamp.isEnabled();
+	            boolean showCount = ConfigurationManager.getBooleanProperty("webui.strengths.show");
+	            if (stamped && !showCount)
+	            {
+	                this.validity = validity.complete();
+	                return this.validity;
+	            }
 	            
 	            Community[] subCommunities = community.getSubcommunities();
 	            Collection[] collections = community.getCollections();
 	            // Sub communities
 	            for (Community subCommunity : subCommunities)
 	            {
-	                validity.add(subCommunity);
+	                if (!stamped)
+	                {
+	                    validity.add(subCommunity);
+	                }
 	                
 	                // Include the item count in the validity, only if the value is shown.
-	                boolean showCount = ConfigurationManager.getBooleanProperty("webui.strengths.show");
 	                if (showCount)
 	        		{
 	                    try {	
@@ -136,10 +149,12 @@ public class CommunityViewer extends AbstractDSpaceTransformer implements Cachea
 	            // Sub collections
 	            for (Collection collection : collections)
 	            {
-	                validity.add(collection);
+	                if (!stamped)
+	                {
+	                    validity.add(collection);
+	                }
 	                
 	                // Include the item count in the validity, only if the value is shown.
-	                boolean showCount = ConfigurationManager.getBooleanProperty("webui.strengths.show");
 	                if (showCount)
 	        		{
 	                    try {
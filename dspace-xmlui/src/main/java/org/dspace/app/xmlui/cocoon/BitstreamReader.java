@@ -25,10 +25,9 @@ import org.apache.cocoon.environment.Request;
 import org.apache.cocoon.environment.Response;
 import org.apache.cocoon.environment.SourceResolver;
 import org.apache.cocoon.environment.http.HttpEnvironment;
-import org.apache.cocoon.environment.http.HttpResponse;
 import org.apache.cocoon.reading.AbstractReader;
-import org.apache.cocoon.util.ByteRange;
 import org.apache.commons.lang.StringUtils;
+import org.dspace.app.util.BitstreamDelivery;
 import org.dspace.app.xmlui.utils.AuthenticationUtil;
 import org.dspace.app.xmlui.utils.ContextUtil;
 import org.dspace.authorize.AuthorizeException;
@@ -114,12 +113,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     private static final String AUTH_REQUIRED_HEADER = "xmlui.BitstreamReader.auth_header";
     private static final String AUTH_REQUIRED_MESSAGE = "xmlui.BitstreamReader.auth_message";
         
-    /**
-     * How big a buffer should we use when reading from the bitstream before
-     * writing to the HTTP response?
-     */
-    protected static final int BUFFER_SIZE = 8192;
-
     /**
      * When should a bitstream expire in milliseconds. This should be set to
      * some low value just to prevent someone hiting DSpace repeatedy from
@@ -136,8 +129,8 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     /** The Cocoon request */
     protected Request request;
 
-    /** The bitstream file */
-    protected InputStream bitstreamInputStream;
+    /** The delivery of the bitstream, or of its citation version */
+    protected BitstreamDelivery delivery;
     
     /** The bitstream's reported size */
     protected long bitstreamSize;
@@ -338,11 +331,11 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             // 1) Intercepting Enabled
             // 2) This User is not an admin
             // 3) This object is citation-able
-            if (CitationDocument.isCitationEnabledForBitstream(bitstream, context)) {
+            boolean isCitable = CitationDocument.isCitationEnabledForBitstream(bitstream, context);
+            if (isCitable) {
                 // on-the-fly citation generator
                 log.info(item.getHandle() + " - " + bitstream.getName() + " is citable.");
 
-                FileInputStream fileInputStream = null;
                 CitationDocument citationDocument = new CitationDocument();
 
                 try {
@@ -353,24 +346,11 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                     } else {
                         log.info("CitedDocument was ok," + tempFile.getAbsolutePath());
                     }
-
-
-                    fileInputStream = new FileInputStream(tempFile);
-                    if(fileInputStream == null) {
-                        log.error("Error opening fileInputStream: ");
-                    }
-
-                    this.bitstreamInputStream = fileInputStream;
-                    this.bitstreamSize = tempFile.length();
-
                 } catch (Exception e) {
                     log.error("Caught an error with intercepting the citation document:" + e.getMessage());
                 }
 
                 //End of CitationDocument
-            } else {
-                this.bitstreamInputStream = bitstream.retrieve();
-                this.bitstreamSize = bitstream.getSize();
             }
 
             this.bitstreamMimeType = bitstream.getFormat().getMIMEType();
@@ -414,6 +394,22 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                     bitstreamName = "bitstream";
                 }
             }
+
+            // Work out what to send for the Range and conditional headers,
+            // while the context is still open
+            String range = request.getHeader("Range");
+            String ifRange = request.getHeader("If-Range");
+            if (!isCitable)
+            {
+                this.delivery = new BitstreamDelivery(context, bitstream, bitstreamMimeType,
+                        range, ifRange, request.getHeader("If-None-Match"));
+                this.bitstreamSize = delivery.getSize();
+            }
+            else if (tempFile != null)
+            {
+                this.delivery = new BitstreamDelivery(tempFile, bitstreamMimeType, range, ifRange);
+                this.bitstreamSize = delivery.getSize();
+            }
             
             // Log that the bitstream has been viewed, this is non-cached and the complexity
             // of adding it to the sitemap for every possible bitstream uri is not very tractable
@@ -567,7 +563,7 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     public void generate() throws IOException, SAXException,
             ProcessingException
     {
-        if (this.bitstreamInputStream == null)
+        if (this.delivery == null)
         {
             return;
         }
@@ -584,6 +580,7 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 // Item has not been modified since requested date,
                 // hence bitstream has not been, either; return 304
                 response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                this.delivery.close();
                 return;
             }
         }
@@ -606,9 +603,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             throw new ProcessingException(e);
         }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int length = -1;
-
         // Only encourage caching if this is not a restricted resource, i.e.
         // if it is accessed anonymously or is readable by Anonymous:
         if (isAnonymouslyReadable)
@@ -641,89 +635,37 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 response.setHeader("Content-Disposition", "attachment;filename=" + '"' + name + '"');
         }
 
-        ByteRange byteRange = null;
-
-        // Turn off partial downloads, they cause problems
-        // and are only rarely used. Specifically some windows pdf
-        // viewers are incapable of handling this request. You can
-        // uncomment the following lines to turn this feature back on.
-
-//        response.setHeader("Accept-Ranges", "bytes");
-//        String ranges = request.getHeader("Range");
-//        if (ranges != null)
-//        {
-//            try
-//            {
-//                ranges = ranges.substring(ranges.indexOf('=') + 1);
-//                byteRange = new ByteRange(ranges);
-//            }
-//            catch (NumberFormatException e)
-//            {
-//                byteRange = null;
-//                if (response instanceof HttpResponse)
-//                {
-//                    // Respond with status 416 (Request range not
-//                    // satisfiable)
-//                    response.setStatus(416);
-//                }
-//            }
-//        }
+        // Partial downloads (single or multiple ranges) and If-None-Match
+        // were worked out in setup(); the content type, which is multipart
+        // for several ranges, is given by getMimeType()
+        response.setHeader("Accept-Ranges", "bytes");
+        if (delivery.getETag() != null)
+        {
+            response.setHeader("ETag", delivery.getETag());
+        }
+        if (delivery.getContentRange() != null)
+        {
+            response.setHeader("Content-Range", delivery.getContentRange());
+        }
+        if (delivery.getStatus() != HttpServletResponse.SC_OK)
+        {
+            response.setStatus(delivery.getStatus());
+        }
 
         try
         {
-            if (byteRange != null)
+            if (delivery.hasBody())
             {
-                String entityLength;
-                String entityRange;
-                if (this.bitstreamSize != -1)
-                {
-                    entityLength = "" + this.bitstreamSize;
-                    entityRange = byteRange.intersection(
-                            new ByteRange(0, this.bitstreamSize)).toString();
-                }
-                else
-                {
-                    entityLength = "*";
-                    entityRange = byteRange.toString();
-                }
-
-                response.setHeader("Content-Range", entityRange + "/" + entityLength);
-                if (response instanceof HttpResponse)
-                {
-                    // Response with status 206 (Partial content)
-                    response.setStatus(206);
-                }
-
-                int pos = 0;
-                int posEnd;
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
-                {
-                    posEnd = pos + length - 1;
-                    ByteRange intersection = byteRange.intersection(new ByteRange(pos, posEnd));
-                    if (intersection != null)
-                    {
-                        out.write(buffer, (int) intersection.getStart() - pos, (int) intersection.length());
-                    }
-                    pos += length;
-                }
-            }
-            else
-            {
-                response.setHeader("Content-Length", String.valueOf(this.bitstreamSize));
-
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
-                {
-                    out.write(buffer, 0, length);
-                }
-                out.flush();
+                response.setHeader("Content-Length", String.valueOf(delivery.getContentLength()));
+                delivery.write(out);
             }
         }
         finally
         {
             try
             {
-                // Close the bitstream input stream so that we don't leak a file descriptor
-                this.bitstreamInputStream.close();
+                // Close the bitstream so that we don't leak a file descriptor
+                this.delivery.close();
                 
                 // Close the output stream as per Cocoon docs: http://cocoon.apache.org/2.2/core-modules/core/2.2/681_1_1.html
                 out.close();
@@ -743,6 +685,10 @@ public class BitstreamReader extends AbstractReader implements Recyclable
      */
     public String getMimeType()
     {
+        if (this.delivery != null)
+        {
+            return this.delivery.getContentType();
+        }
         return this.bitstreamMimeType;
     }
     
@@ -752,7 +698,7 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     public void recycle() {
         this.response = null;
         this.request = null;
-        this.bitstreamInputStream = null;
+        this.delivery = null;
         this.bitstreamSize = 0;
         this.bitstreamMimeType = null;
         this.bitstreamName = null;
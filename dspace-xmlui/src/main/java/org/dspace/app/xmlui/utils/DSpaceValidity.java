@@ -12,6 +12,7 @@ import java.sql.SQLException;
 
 import org.apache.cocoon.util.HashUtil;
 import org.apache.excalibur.source.SourceValidity;
+import org.dspace.app.util.CacheStamp;
 import org.dspace.browse.BrowseItem;
 import org.dspace.content.Bitstream;
 import org.dspace.content.Bundle;
@@ -20,6 +21,7 @@ import org.dspace.content.Community;
 import org.dspace.content.Metadatum;
 import org.dspace.content.DSpaceObject;
 import org.dspace.content.Item;
+import org.dspace.core.Context;
 import org.dspace.eperson.EPerson;
 import org.dspace.eperson.Group;
 
@@ -367,7 +369,50 @@ public class DSpaceValidity implements SourceValidity
     }
     
     /**
-     * Add a non-DSpaceObject to the validity, the object should be 
+     * Add a DSpace object to the validity, by its stamp if stamps are
+     * enabled (xmlui.cache.stamps) and the object is a community, collection
+     * or item. The stamp changes whenever the object, or anything the
+     * add(DSpaceObject) method would have included, changes, so reading it
+     * replaces walking the object's metadata, bundles and bitstreams.
+     * Other objects are added as by add(DSpaceObject).
+     *
+     * A community's stamp also changes when its sub-communities and
+     * collections are added, removed or renamed.
+     *
+     * Only the check is made cheaper: the rendered fragments themselves stay
+     * in this node's Cocoon store and are not shared between nodes.
+     *
+     * @param context
+     *          The DSpace context, used to read the stamp.
+     * @param dso
+     *          The object to add to the validity.
+     * @see CacheStamp
+     */
+    public void add(Context context, DSpaceObject dso) throws SQLException
+    {
+        if (dso == null || !CacheStamp.isEnabled() || !(dso instanceof Community
+                || dso instanceof Collection || dso instanceof Item))
+        {
+            this.add(dso);
+            return;
+        }
+
+        if (this.completed)
+        {
+            throw new IllegalStateException("Cannot add DSpaceObject to a completed validity object");
+        }
+
+        validityKey.append("Stamp:");
+        validityKey.append(dso.getType());
+        validityKey.append(":");
+        validityKey.append(dso.getID());
+        validityKey.append(dso.getHandle());
+        validityKey.append(":");
+        validityKey.append(CacheStamp.get(context, dso.getType(), dso.getID()));
+    }
+
+    /**
+     * Add a non-DSpaceObject to the validity, the object should be
      * serialized into a string form. The order in which objects 
      * are added to the validity object is important, ensure that 
      * objects are added in the *exact* same order each time a 